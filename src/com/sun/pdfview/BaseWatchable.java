@@ -18,6 +18,8 @@
  */
 package com.sun.pdfview;
 
+import java.util.concurrent.Executor;
+
 /**
  * An abstract implementation of the watchable interface, that is extended
  * by the parser and renderer to do their thing.
@@ -36,10 +38,22 @@ public abstract class BaseWatchable implements Watchable, Runnable {
     private static boolean SuppressSetErrorStackTrace = false;
     /** the thread we are running in */
     private Thread thread;
+    /**
+     * whether a task of this watchable has been handed to the executor and
+     * has not yet given its thread back.  Guarded by statusLock.
+     */
+    private boolean scheduled;
+    /** whether this watchable has ever been handed to the executor */
+    private boolean everScheduled;
     private Exception exception;
     
     // handle exceptions via this class
     private static PDFErrorHandler errorHandler = new PDFErrorHandler(); 
+    /**
+     * the executor asynchronous watchables are run on, or null to start a
+     * new thread for each of them
+     */
+    private static volatile Executor executor;
 
     /** 
      * Creates a new instance of BaseWatchable
@@ -78,68 +92,105 @@ public abstract class BaseWatchable implements Watchable, Runnable {
         // do nothing
     }
 
+    /**
+     * Called by the iterating thread whenever it stops calling iterate()
+     * for now: the gate told it to stop, or the status is no longer
+     * RUNNING.  Resources held for a run of iterations should be released
+     * here.
+     */
+    protected void endIterations() {
+        // do nothing
+    }
+
     @Override
 	public void run() {
-        try {
-            Thread.sleep(1);
-            // call setup once we started
-            if (getStatus() == Watchable.NOT_STARTED) {
-                setup();
-            }
+        start(false);
+    }
+
+    /**
+     * Set up if necessary, then iterate until finished or stopped.
+     *
+     * @param pooled true if running on the shared executor
+     */
+    private void start(boolean pooled) {
+        // call setup once we started
+        if (getStatus() == Watchable.NOT_STARTED) {
+            setup();
+        }
 
-            setStatus(Watchable.PAUSED);
-
-            synchronized (this.parserLock) {
-                while (!isFinished() && getStatus() != Watchable.STOPPED) {
-                    if (isExecutable()) {
-                        // set the status to running
-                        setStatus(Watchable.RUNNING);
-
-                        try {
-                            // keep going until the status is no longer running,
-                            // our gate tells us to stop, or no-one is watching
-                            int laststatus = Watchable.RUNNING;
-                            while ((getStatus() == Watchable.RUNNING) && (this.gate == null || !this.gate.iterate())) {
-                                // update the status based on this iteration
-                                int status = iterate();
-                                if (status != laststatus) {
-                                    // update status only when necessary, this increases performance
-                                    setStatus(status);
-                                    laststatus = status;
-                                }
+        setStatus(Watchable.PAUSED);
 
-                            }
+        runIterations(pooled);
+    }
 
-                            // make sure we are paused
-                            if (getStatus() == Watchable.RUNNING) {
-                                setStatus(Watchable.PAUSED);
+    /**
+     * Iterate until finished or stopped.  A watchable with a thread of its
+     * own waits while it is not executable; one that runs on the executor
+     * gives its thread back instead, and is handed to the executor again
+     * once it becomes executable.
+     *
+     * @param pooled true if running on the shared executor
+     */
+    private void runIterations(boolean pooled) {
+        synchronized (this.parserLock) {
+            while (!isFinished() && getStatus() != Watchable.STOPPED) {
+                if (isExecutable()) {
+                    // set the status to running
+                    setStatus(Watchable.RUNNING);
+
+                    try {
+                        // keep going until the status is no longer running,
+                        // our gate tells us to stop, or no-one is watching
+                        int laststatus = Watchable.RUNNING;
+                        while ((getStatus() == Watchable.RUNNING) && (this.gate == null || !this.gate.iterate())) {
+                            // update the status based on this iteration
+                            int status = iterate();
+                            if (status != laststatus) {
+                                // update status only when necessary, this increases performance
+                                setStatus(status);
+                                laststatus = status;
                             }
-                        } catch (Exception ex) {
-                            setError(ex);
+
                         }
-                    } else {
-                        // wait for our status to change
-                        synchronized (this.statusLock) {
-                            if (!isExecutable()) {
-                                try {
-                                    this.statusLock.wait();
-                                } catch (InterruptedException ie) {
-                                    // ignore
-                                }
+
+                        // make sure we are paused
+                        if (getStatus() == Watchable.RUNNING) {
+                            setStatus(Watchable.PAUSED);
+                        }
+                    } catch (Exception ex) {
+                        setError(ex);
+                    } finally {
+                        endIterations();
+                    }
+                } else {
+                    // wait for our status to change
+                    synchronized (this.statusLock) {
+                        if (!isExecutable()) {
+                            if (pooled) {
+                                // don't block a shared thread, setStatus()
+                                // or execute() will schedule us again
+                                this.scheduled = false;
+                                return;
+                            }
+                            try {
+                                this.statusLock.wait();
+                            } catch (InterruptedException ie) {
+                                // ignore
                             }
                         }
                     }
                 }
             }
-            // call cleanup when we are done
-            if (getStatus() == Watchable.COMPLETED || getStatus() == Watchable.ERROR) {
+        }
+        // call cleanup when we are done
+        if (getStatus() == Watchable.COMPLETED || getStatus() == Watchable.ERROR) {
 
-                cleanup();
-            }
-        } catch (InterruptedException e) {
-            PDFDebugger.debug("Interrupted.");
+            cleanup();
         }
         // notify that we are no longer running
+        synchronized (this.statusLock) {
+            this.scheduled = false;
+        }
         this.thread = null;
     }
 
@@ -257,22 +308,25 @@ public abstract class BaseWatchable implements Watchable, Runnable {
      */
     protected synchronized void execute(boolean synchronous) {
         // see if we're already running
-        if (this.thread != null) {
-            // we're already running. Make sure we wake up on any change.
-            synchronized (this.statusLock) {
+        synchronized (this.statusLock) {
+            if (this.thread != null || this.scheduled) {
+                // we're already running. Make sure we wake up on any change.
                 this.statusLock.notifyAll();
-            }
 
-            return;
-        } else if (isFinished()) {
-            // we're all finished
-            return;
+                return;
+            } else if (isFinished()) {
+                // we're all finished
+                return;
+            }
         }
 
         // we'return not running. Start up
+        Executor exec = executor;
         if (synchronous) {
             this.thread = Thread.currentThread();
             run();
+        } else if (exec != null) {
+            schedule(exec, true);
         } else {
         	this.thread = new Thread(this);
         	this.thread.setName(getClass().getName());
@@ -296,14 +350,69 @@ public abstract class BaseWatchable implements Watchable, Runnable {
         }
     }
 
+    /**
+     * Hand this watchable to the executor.  Unlike a thread of its own, the
+     * caller does not wait for the task to start, as the executor may be
+     * busy with other watchables.
+     *
+     * @param exec the executor to run on
+     * @param start true to (re)start, as go() does; false to continue
+     *  after the watchable gave its thread back
+     */
+    private void schedule(Executor exec, final boolean start) {
+        synchronized (this.statusLock) {
+            if (this.scheduled || this.thread != null) {
+                return;
+            }
+            this.scheduled = true;
+            this.everScheduled = true;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (start) {
+                        start(true);
+                    } else {
+                        runIterations(true);
+                    }
+                } catch (Throwable ex) {
+                    PDFDebugger.debug("Uncaught exception: " + ex);
+                    synchronized (BaseWatchable.this.statusLock) {
+                        BaseWatchable.this.scheduled = false;
+                    }
+                }
+            }
+        };
+        try {
+            exec.execute(task);
+        } catch (RuntimeException ex) {
+            // rejected, e.g. the executor has been shut down
+            synchronized (this.statusLock) {
+                this.scheduled = false;
+            }
+            setError(ex);
+        }
+    }
+
     /**
      * Set the status of this watchable
      */
     protected void setStatus(int status) {
+        boolean resume;
         synchronized (this.statusLock) {
             this.status = status;
 
             this.statusLock.notifyAll();
+
+            // a watchable running on the executor gives its thread back
+            // while it can't make progress, so start it again if it can
+            resume = !this.scheduled && this.thread == null &&
+                    this.everScheduled && isExecutable();
+        }
+        Executor exec = executor;
+        if (resume && exec != null) {
+            schedule(exec, false);
         }
     }
 
@@ -385,6 +494,29 @@ public abstract class BaseWatchable implements Watchable, Runnable {
         }
     }
     
+    /**
+     * Set the executor that parsers and renderers started asynchronously
+     * (go() without synchronous flag) are run on, e.g. a shared bounded
+     * thread pool.  While such a watchable can't make progress, e.g. a
+     * renderer waiting for its page to be parsed, or a watchable whose
+     * time slice given to go(long) is over, it gives its thread back to the
+     * executor instead of blocking it.  Set to null (the default) to start
+     * a new thread for each watchable.
+     *
+     * @param e the executor, or null
+     */
+    public static void setExecutor(Executor e) {
+        executor = e;
+    }
+
+    /**
+     * @return the executor asynchronous watchables are run on, or null if
+     *  each one gets a thread of its own
+     */
+    public static Executor getExecutor() {
+        return executor;
+    }
+
     public static void setErrorHandler(PDFErrorHandler e) {
         errorHandler = e;
     }
@@ -70,7 +70,7 @@ public class ByteBufferInputStream extends InputStream {
             return 0;
         } else {
             final int remaining = buffer.remaining();
-            if (n < remaining) {
+            if (n > remaining) {
                 buffer.position(buffer.position() + remaining);
                 return remaining;
             } else {
@@ -82,7 +82,10 @@ public class ByteBufferInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
-        return buffer.get();
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
     }
 
     @Override
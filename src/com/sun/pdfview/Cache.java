@@ -19,22 +19,73 @@
 package com.sun.pdfview;
 
 import java.awt.image.BufferedImage;
-import java.lang.ref.SoftReference;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.DataBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A cache of PDF pages and images.
+ * <p>
+ * Entries are held strongly as long as the estimated size of all entries
+ * stays within a memory budget.  Images are weighed by the size of their
+ * pixel data, pages by the estimated size of the commands parsed so far.  When the
+ * budget is exceeded, a {@link CachePolicy} chooses which entries to drop;
+ * by default the least recently used ones.  Removing a page also removes
+ * all images rendered from it.
+ * <p>
+ * The number of hits, misses and evictions is counted, see
+ * {@link #getHitCount()}, {@link #getMissCount()} and
+ * {@link #getEvictionCount()}.
  */
 public class Cache {
 
     /** the pages in the cache, mapped by page number */
-    private final Map<Integer, SoftReference<PageRecord>> pages;
+    private final ConcurrentMap<Integer, PageRecord> pages;
 
-    /** Creates a new instance of a Cache */
+    /** the policy choosing the entries to evict */
+    private final CachePolicy policy;
+
+    /** the budget in bytes, or a value &lt;= 0 for an unbounded cache */
+    private final long maxBytes;
+
+    /** the estimated size of all entries in the cache */
+    private final AtomicLong weight = new AtomicLong();
+
+    /** the statistics */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new instance of a Cache, using the budget from the
+     * {@link Configuration} and least recently used eviction
+     */
     public Cache() {
-        this.pages = Collections.synchronizedMap(new HashMap<Integer, SoftReference<PageRecord>>());
+        this(Configuration.getInstance().getCacheMaxBytes());
+    }
+
+    /**
+     * Creates a new instance of a Cache with least recently used eviction
+     *
+     * @param maxBytes the memory budget in bytes; a value &lt;= 0 means
+     *  the cache is never trimmed
+     */
+    public Cache(long maxBytes) {
+        this(maxBytes, new LRUCachePolicy());
+    }
+
+    /**
+     * Creates a new instance of a Cache
+     *
+     * @param maxBytes the memory budget in bytes; a value &lt;= 0 means
+     *  the cache is never trimmed
+     * @param policy the policy choosing the entries to evict
+     */
+    public Cache(long maxBytes, CachePolicy policy) {
+        this.pages = new ConcurrentHashMap<Integer, PageRecord>();
+        this.maxBytes = maxBytes;
+        this.policy = policy;
     }
 
     /**
@@ -173,17 +224,61 @@ public class Cache {
         removeImageRecord(page, info);
     }
 
+    /**
+     * get the memory budget of this cache
+     *
+     * @return the budget in bytes, or a value &lt;= 0 if unbounded
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * get the estimated size of all entries in this cache
+     *
+     * @return the size in bytes
+     */
+    public long getWeight() {
+        return this.weight.get();
+    }
+
+    /**
+     * get the number of successful page and image lookups
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * get the number of page and image lookups that found nothing
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * get the number of entries removed to stay within the budget
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
     /**
      * The internal routine to add a page to the cache, and return the
      * page record which was generated
      */
     PageRecord addPageRecord(Integer pageNumber, PDFPage page,
             PDFParser parser) {
-        PageRecord rec = new PageRecord();
+        PageRecord rec = new PageRecord(pageNumber);
         rec.value = page;
         rec.generator = parser;
+        rec.weight = weigh(page);
 
-        this.pages.put(pageNumber, new SoftReference<PageRecord>(rec));
+        PageRecord old = this.pages.put(pageNumber, rec);
+        if (old != null) {
+            discard(old);
+        }
+        admit(rec);
 
         return rec;
     }
@@ -195,14 +290,18 @@ public class Cache {
      */
     PageRecord getPageRecord(Integer pageNumber) {
         PDFDebugger.debug("Request for page " + pageNumber, 1000);
-        SoftReference<PageRecord> ref = this.pages.get(pageNumber);
-        if (ref != null) {
-            String val = (ref.get() == null) ? " not in " : " in ";
-            PDFDebugger.debug("Page " + pageNumber + val + "cache", 1000);
-            return ref.get();
+        PageRecord rec = this.pages.get(pageNumber);
+        if (rec != null) {
+            PDFDebugger.debug("Page " + pageNumber + " in cache", 1000);
+            this.hits.incrementAndGet();
+            this.policy.entryAccessed(rec);
+            // the page may have grown since we last looked at it
+            reweigh(rec, weigh((PDFPage) rec.value));
+            return rec;
         }
 
         PDFDebugger.debug("Page " + pageNumber + " not in cache", 1000);
+        this.misses.incrementAndGet();
         // not in cache
         return null;
     }
@@ -211,13 +310,11 @@ public class Cache {
      * Remove a page's record from the cache
      */
     PageRecord removePageRecord(Integer pageNumber) {
-        SoftReference<PageRecord> ref = this.pages.remove(pageNumber);
-        if (ref != null) {
-            return ref.get();
+        PageRecord rec = this.pages.remove(pageNumber);
+        if (rec != null) {
+            discard(rec);
         }
-
-        // not in cache
-        return null;
+        return rec;
     }
 
     /**
@@ -228,18 +325,23 @@ public class Cache {
             BufferedImage image, PDFRenderer renderer) {
         // first, find or create the relevant page record
         Integer pageNumber = Integer.valueOf(page.getPageNumber());
-        PageRecord pageRec = getPageRecord(pageNumber);
+        PageRecord pageRec = this.pages.get(pageNumber);
         if (pageRec == null) {
             pageRec = addPageRecord(pageNumber, page, null);
         }
 
         // next, create the image record
-        Record rec = new Record();
+        Record rec = new Record(pageNumber, info);
         rec.value = image;
         rec.generator = renderer;
+        rec.weight = weigh(image);
 
         // add it to the cache
-        pageRec.images.put(info, new SoftReference<Record>(rec));
+        Record old = pageRec.images.put(info, rec);
+        if (old != null) {
+            discard(old);
+        }
+        admit(rec);
 
         return rec;
     }
@@ -255,17 +357,21 @@ public class Cache {
 
         PDFDebugger.debug("Request for image on page " + pageNumber, 1000);
 
-        PageRecord pageRec = getPageRecord(pageNumber);
+        PageRecord pageRec = this.pages.get(pageNumber);
         if (pageRec != null) {
-            SoftReference<Record> ref = pageRec.images.get(info);
-            if (ref != null) {
-                String val = (ref.get() == null) ? " not in " : " in ";
-                PDFDebugger.debug("Image on page " + pageNumber + val + " cache", 1000);
-                return ref.get();
+            Record rec = pageRec.images.get(info);
+            if (rec != null) {
+                PDFDebugger.debug("Image on page " + pageNumber + " in cache", 1000);
+                this.hits.incrementAndGet();
+                this.policy.entryAccessed(rec);
+                // using an image keeps its page alive as well
+                this.policy.entryAccessed(pageRec);
+                return rec;
             }
         }
 
         PDFDebugger.debug("Image on page " + pageNumber + " not in cache", 1000);
+        this.misses.incrementAndGet();
         // not found
         return null;
     }
@@ -276,18 +382,142 @@ public class Cache {
     Record removeImageRecord(PDFPage page, ImageInfo info) {
         // first find the relevant page record
         Integer pageNumber = Integer.valueOf(page.getPageNumber());
-        PageRecord pageRec = getPageRecord(pageNumber);
+        PageRecord pageRec = this.pages.get(pageNumber);
         if (pageRec != null) {
-            SoftReference<Record> ref = pageRec.images.remove(info);
-            if (ref != null) {
-                return ref.get();
+            Record rec = pageRec.images.remove(info);
+            if (rec != null) {
+                discard(rec);
+                return rec;
             }
-
         }
 
         return null;
     }
 
+    /**
+     * Account for a record that has just been added, then evict entries
+     * until the cache is within its budget again.
+     */
+    private void admit(Record rec) {
+        this.weight.addAndGet(rec.weight);
+        this.policy.entryAdded(rec, rec.weight);
+        trim();
+    }
+
+    /**
+     * Account for a record that is no longer in the cache.  Removing a
+     * page record also removes all of its images.
+     */
+    private void discard(Record rec) {
+        long recWeight;
+        synchronized (rec) {
+            if (rec.discarded) {
+                return;
+            }
+            rec.discarded = true;
+            recWeight = rec.weight;
+        }
+        this.weight.addAndGet(-recWeight);
+        this.policy.entryRemoved(rec);
+        if (rec instanceof PageRecord) {
+            PageRecord pageRec = (PageRecord) rec;
+            for (ImageInfo info : pageRec.images.keySet()) {
+                Record image = pageRec.images.remove(info);
+                if (image != null) {
+                    discard(image);
+                }
+            }
+        }
+    }
+
+    /**
+     * Change the weight of a record that is in the cache.  A record that
+     * has been discarded meanwhile is no longer counted, so it is left
+     * alone.
+     */
+    private void reweigh(Record rec, long newWeight) {
+        long delta;
+        synchronized (rec) {
+            if (rec.discarded) {
+                return;
+            }
+            delta = newWeight - rec.weight;
+            rec.weight = newWeight;
+        }
+        if (delta != 0) {
+            this.weight.addAndGet(delta);
+            if (delta > 0) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Evict the entries chosen by the policy until the estimated size of
+     * the cache fits into the budget.
+     */
+    private void trim() {
+        if (this.maxBytes <= 0) {
+            return;
+        }
+        while (this.weight.get() > this.maxBytes) {
+            Object victim = this.policy.selectVictim();
+            if (victim == null) {
+                return;
+            }
+            if (!evict((Record) victim)) {
+                // no longer reachable through the maps (e.g. an image added
+                // to a page that was evicted meanwhile), just drop it
+                discard((Record) victim);
+                this.policy.entryRemoved(victim);
+            }
+        }
+    }
+
+    /**
+     * Remove a record chosen as victim, if it is still in the cache.
+     *
+     * @return true if the record was removed by this call
+     */
+    private boolean evict(Record rec) {
+        boolean removed;
+        if (rec instanceof PageRecord) {
+            removed = this.pages.remove(rec.pageNumber, rec);
+        } else {
+            PageRecord pageRec = this.pages.get(rec.pageNumber);
+            removed = pageRec != null && pageRec.images.remove(rec.info, rec);
+        }
+        if (removed) {
+            this.evictions.incrementAndGet();
+            discard(rec);
+        }
+        return removed;
+    }
+
+    /**
+     * estimate the size of a page from the commands in it, or from its
+     * display list once it has been frozen
+     */
+    static long weigh(PDFPage page) {
+        if (page == null) {
+            return 0;
+        }
+        return page.getByteSize();
+    }
+
+    /**
+     * get the size of the pixel data of an image
+     */
+    static long weigh(BufferedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        DataBuffer data = image.getRaster().getDataBuffer();
+        long bits = (long) data.getSize() * data.getNumBanks() *
+                DataBuffer.getDataTypeSize(data.getDataType());
+        return bits / 8;
+    }
+
     /** the basic information about a page or image */
     class Record {
 
@@ -295,17 +525,32 @@ public class Cache {
         Object value;
         /** the thing generating the page, or null if done/not provided */
         BaseWatchable generator;
+        /** the number of the page this record belongs to */
+        final Integer pageNumber;
+        /** the image info for an image record, null for a page */
+        final ImageInfo info;
+        /** the estimated size of the value, in bytes */
+        long weight;
+        /** whether this record has been accounted for as removed */
+        boolean discarded;
+
+        /** create a new record */
+        Record(Integer pageNumber, ImageInfo info) {
+            this.pageNumber = pageNumber;
+            this.info = info;
+        }
     }
 
     /** the record stored for each page in the cache */
     class PageRecord extends Record {
 
         /** any images associated with the page */
-        Map<ImageInfo, SoftReference<Record>> images;
+        ConcurrentMap<ImageInfo, Record> images;
 
         /** create a new page record */
-        public PageRecord() {
-            this.images = Collections.synchronizedMap(new HashMap<ImageInfo, SoftReference<Record>>());
+        public PageRecord(Integer pageNumber) {
+            super(pageNumber, null);
+            this.images = new ConcurrentHashMap<ImageInfo, Record>();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+/**
+ * Decides which entry of a {@link Cache} is dropped once the cache has
+ * grown beyond its memory budget.  The cache tells the policy about every
+ * entry that is added, used or removed, and asks it for a victim whenever
+ * the total weight is over budget.
+ * <p>
+ * Entries are opaque to the policy and compared by identity.  Calls may
+ * come from several threads at once, so implementations must be thread
+ * safe.
+ */
+public interface CachePolicy {
+
+    /**
+     * An entry has been added to the cache.
+     *
+     * @param entry the new entry
+     * @param weight the estimated size of the entry, in bytes
+     */
+    public void entryAdded(Object entry, long weight);
+
+    /**
+     * An entry has been found in the cache.
+     *
+     * @param entry the entry that was used
+     */
+    public void entryAccessed(Object entry);
+
+    /**
+     * An entry has been removed from the cache, either explicitly or
+     * because it was chosen as a victim.
+     *
+     * @param entry the removed entry
+     */
+    public void entryRemoved(Object entry);
+
+    /**
+     * Choose the entry that should be removed next.  The entry stays
+     * known to the policy until {@link #entryRemoved} is called for it.
+     *
+     * @return the entry to evict, or null if there is nothing to evict
+     */
+    public Object selectVictim();
+}
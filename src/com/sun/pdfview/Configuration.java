@@ -30,6 +30,12 @@ public class Configuration {
     private boolean printFreetextAnnotations = true;
     /** Print link annotations on pdf **/
     private boolean printLinkAnnotations = true;
+    /** memory budget of the page and image cache of each PDFFile, in bytes */
+    private long cacheMaxBytes = 128L * 1024 * 1024;
+    /** memory budget of the image cache of each PDFFile, in bytes */
+    private long imageCacheMaxBytes = 64L * 1024 * 1024;
+    /** whether black and white images are kept at one bit per pixel */
+    private boolean keepBilevelImagesPacked = false;
     
 	public static synchronized Configuration getInstance() {
 		if (INSTANCE == null) {
@@ -204,4 +210,75 @@ public class Configuration {
     public boolean isPrintLinkAnnotations() {
     	return this.printLinkAnnotations;
     }
+
+    /**
+     * Set the memory budget of the page and image cache that each
+     * {@link PDFFile} creates. Rendered page images are weighed by the
+     * size of their pixel data, parsed pages by their number of commands.
+     * Once the budget is exceeded the least recently used entries are
+     * dropped. Has to be set before a PDFFile is opened to have an effect.
+     *
+     * Set to a value <= 0 for a cache that is never trimmed.
+     * Defaults to 128 MB.
+     *
+     * @param cacheMaxBytes the budget in bytes
+     */
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+    	this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    /**
+     * @return the memory budget of the page and image cache, in bytes
+     */
+    public long getCacheMaxBytes() {
+    	return this.cacheMaxBytes;
+    }
+
+    /**
+     * Set the memory budget of the {@link PDFImageCache} that each
+     * {@link PDFFile} creates, which keeps images in the form they are
+     * drawn in. Once the budget is exceeded the least recently used images
+     * are dropped. Has to be set before a PDFFile is opened to have an
+     * effect.
+     *
+     * Set to a value <= 0 for a cache that is never trimmed.
+     * Defaults to 64 MB.
+     *
+     * @param imageCacheMaxBytes the budget in bytes
+     */
+    public void setImageCacheMaxBytes(long imageCacheMaxBytes) {
+    	this.imageCacheMaxBytes = imageCacheMaxBytes;
+    }
+
+    /**
+     * @return the memory budget of the image cache, in bytes
+     */
+    public long getImageCacheMaxBytes() {
+    	return this.imageCacheMaxBytes;
+    }
+
+    /**
+     * Keep black and white images, like the scans coming out of CCITT or
+     * JBIG2 data, at one bit per pixel until they are drawn, instead of
+     * expanding them to a byte per pixel of gray. A 300 dpi A4 scan then
+     * takes about 1 MB instead of 8.7 MB. Blur resizing, if switched on,
+     * still works on an ARGB copy of an image drawn scaled down. Has to be
+     * set before the images are decoded to have an effect.
+     *
+     * Disabled by default.
+     *
+     * @param keepBilevelImagesPacked whether black and white images stay
+     *            packed
+     */
+    public void setKeepBilevelImagesPacked(boolean keepBilevelImagesPacked) {
+    	this.keepBilevelImagesPacked = keepBilevelImagesPacked;
+    }
+
+    /**
+     * @return <code>true</code> if black and white images are kept at one
+     *         bit per pixel
+     */
+    public boolean isKeepBilevelImagesPacked() {
+    	return this.keepBilevelImagesPacked;
+    }
 }
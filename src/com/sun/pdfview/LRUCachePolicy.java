@@ -0,0 +1,121 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link CachePolicy} which evicts the least recently used entry first.
+ * <p>
+ * The entries are spread over several stripes, each with its own lock,
+ * so threads using different entries don't wait for each other.  Each
+ * stripe keeps its entries in the order they were used and stamps them
+ * with the time of their last use.  The victim is the least recently
+ * used entry of the stripe whose least recently used entry is oldest,
+ * which is the least recently used entry of all, except for uses that
+ * happen while the victim is chosen.
+ */
+public class LRUCachePolicy implements CachePolicy {
+
+    /** the number of stripes, a power of two */
+    private static final int STRIPES = 16;
+
+    /** the stripes, each with its entries in least recently used order */
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public LRUCachePolicy() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public void entryAdded(Object entry, long weight) {
+        Stripe stripe = stripeFor(entry);
+        synchronized (stripe) {
+            stripe.entries.put(entry, new Stamp(System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void entryAccessed(Object entry) {
+        Stripe stripe = stripeFor(entry);
+        synchronized (stripe) {
+            // a get on an access ordered map moves the entry to the end
+            Stamp stamp = stripe.entries.get(entry);
+            if (stamp != null) {
+                stamp.time = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public void entryRemoved(Object entry) {
+        Stripe stripe = stripeFor(entry);
+        synchronized (stripe) {
+            stripe.entries.remove(entry);
+        }
+    }
+
+    @Override
+    public Object selectVictim() {
+        Object victim = null;
+        long oldest = 0;
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                Iterator<Map.Entry<Object, Stamp>> it = stripe.entries.entrySet().iterator();
+                if (it.hasNext()) {
+                    Map.Entry<Object, Stamp> eldest = it.next();
+                    long time = eldest.getValue().time;
+                    if (victim == null || time - oldest < 0) {
+                        victim = eldest.getKey();
+                        oldest = time;
+                    }
+                }
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * get the stripe an entry belongs to, chosen by its identity
+     */
+    private Stripe stripeFor(Object entry) {
+        int h = System.identityHashCode(entry);
+        return this.stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /** a part of the entries, guarded by its own lock */
+    private static class Stripe {
+        /** the entries, least recently used first */
+        final LinkedHashMap<Object, Stamp> entries =
+                new LinkedHashMap<Object, Stamp>(16, 0.75f, true);
+    }
+
+    /** the time an entry was last used, as System.nanoTime() */
+    private static class Stamp {
+        long time;
+
+        Stamp(long time) {
+            this.time = time;
+        }
+    }
+}
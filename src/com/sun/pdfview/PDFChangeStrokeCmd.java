@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package com.sun.pdfview;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+* change the stroke style
+*/
+class PDFChangeStrokeCmd extends PDFCmd {
+    float w, limit, phase;
+    int cap, join;
+    float[] ary;
+
+    public PDFChangeStrokeCmd() {
+        this.w = PDFRenderer.NOWIDTH;
+        this.cap = PDFRenderer.NOCAP;
+        this.join = PDFRenderer.NOJOIN;
+        this.limit = PDFRenderer.NOLIMIT;
+        this.ary = PDFRenderer.NODASH;
+        this.phase = PDFRenderer.NOPHASE;
+    }
+
+    /**
+    * set the width of the stroke. Rendering needs to account for a minimum
+    * stroke width in creating the output.
+    *
+    * @param w
+    * float
+    */
+    public void setWidth(float w) {
+        this.w = w;
+    }
+
+    public void setEndCap(int cap) {
+        this.cap = cap;
+    }
+
+    public void setLineJoin(int join) {
+        this.join = join;
+    }
+
+    public void setMiterLimit(float limit) {
+        this.limit = limit;
+    }
+
+    public void setDash(float[] ary, float phase) {
+        if (ary != null) {
+            // make sure no pairs start with 0, since having no opaque
+            // region doesn't make any sense.
+            for (int i = 0; i < ary.length - 1; i += 2) {
+                if (ary[i] == 0) {
+                    /* Give a very small value, since 0 messes java up */
+                    ary[i] = 0.00001f;
+                    break;
+                }
+            }
+        }
+        this.ary = ary;
+        this.phase = phase;
+    }
+
+    @Override
+    public Rectangle2D execute(PDFRenderer state) {
+        state.setStrokeParts(this.w, this.cap, this.join, this.limit, this.ary, this.phase);
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PDFChangeStrokeCmd)) {
+            return false;
+        }
+        PDFChangeStrokeCmd sc = (PDFChangeStrokeCmd) obj;
+        return sc.w == this.w && sc.cap == this.cap && sc.join == this.join && sc.limit == this.limit
+                && sc.phase == this.phase && Arrays.equals(sc.ary, this.ary);
+    }
+
+    @Override
+    public int hashCode() {
+        return Float.floatToIntBits(this.w) * 31 + this.cap * 7 + this.join + Arrays.hashCode(this.ary);
+    }
+
+    @Override
+    public long getByteSize() {
+        return 48 + (this.ary != null ? 16 + 4L * this.ary.length : 0);
+    }
+
+    public String toString(PDFRenderer state) {
+        return "STROKE: w=" + this.w + " cap=" + this.cap + " join=" + this.join + " limit=" + this.limit + " ary=" + this.ary + " phase=" + this.phase;
+    }
+}
@@ -56,4 +56,13 @@ public abstract class PDFCmd {
     public String getDetails() {
         return super.toString();
     }
+
+    /**
+     * estimate the memory taken by this command, in bytes, as used to
+     * weigh pages in the {@link Cache}.  Commands holding more than a few
+     * fields override this.
+     */
+    public long getByteSize() {
+        return 32;
+    }
 }
\ No newline at end of file
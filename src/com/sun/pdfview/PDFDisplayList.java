@@ -0,0 +1,444 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The commands of a finished PDFPage in a compact, immutable form.
+ * <p>
+ * Instead of one object per command, every command is an opcode and an
+ * int argument.  Paths are packed into one array of segment types and
+ * one array of float coordinates; paints, transforms, stroke changes
+ * and all other objects live in a table in which equal entries are
+ * shared.  As nothing changes after construction, any number of
+ * renderers may execute the list at the same time without locking.
+ * <p>
+ * Shapes are drawn from a path made from the packed segments for the
+ * draw, and no command objects are kept for executing the list.  The
+ * command objects handed out by getCommand() are made the first time
+ * they are asked for and kept while memory allows; their size counts in
+ * getByteSize() as long as they are kept.
+ */
+final class PDFDisplayList {
+
+    /** push the graphics state */
+    private static final byte PUSH = 0;
+    /** pop the graphics state */
+    private static final byte POP = 1;
+    /** concatenate the transform objects[arg] */
+    private static final byte XFORM = 2;
+    /** draw the shape number arg */
+    private static final byte SHAPE = 3;
+    /** set the fill paint objects[arg] */
+    private static final byte FILL_PAINT = 4;
+    /** set the stroke paint objects[arg] */
+    private static final byte STROKE_PAINT = 5;
+    /** set the fill alpha, arg holds the float bits */
+    private static final byte FILL_ALPHA = 6;
+    /** set the stroke alpha, arg holds the float bits */
+    private static final byte STROKE_ALPHA = 7;
+    /** execute the command objects[arg] */
+    private static final byte COMMAND = 8;
+
+    /** the style bits of a shape, see PDFShapeCmd */
+    private static final int STYLE_MASK = 0x07;
+    /** set if the shape uses stroke auto adjustment */
+    private static final int AUTO_ADJUST = 0x08;
+    /** set if the path uses the even odd winding rule */
+    private static final int EVEN_ODD = 0x10;
+    /** set if the shape has no path */
+    private static final int NO_PATH = 0x20;
+
+    /** the push and pop commands, which have no state and are shared */
+    private static final PDFCmd PUSH_CMD = new PDFPushCmd();
+    private static final PDFCmd POP_CMD = new PDFPopCmd();
+
+    /** the opcode of each command */
+    private final byte[] ops;
+    /** the argument of each command */
+    private final int[] args;
+    /** the shared objects referred to by the commands */
+    private final Object[] objects;
+    /** the style and flags of each shape */
+    private final byte[] shapeFlags;
+    /** for each shape, the index of its first segment; one extra entry */
+    private final int[] segmentStart;
+    /** for each shape, the index of its first coordinate; one extra entry */
+    private final int[] coordStart;
+    /** the segment types of all paths, as PathIterator.SEG_* */
+    private final byte[] segments;
+    /** the coordinates of all paths */
+    private final float[] coords;
+    /** the estimated size of the objects in the table */
+    private final long objectBytes;
+    /** the commands made by getCommand() so far */
+    private volatile SoftReference<MadeCommands> madeCommands;
+
+    /**
+     * Build the display list for a list of commands.  The caller must
+     * make sure the list doesn't change while this runs.
+     */
+    PDFDisplayList(List<PDFCmd> commands) {
+        int size = commands.size();
+        this.ops = new byte[size];
+        this.args = new int[size];
+
+        List<Object> table = new ArrayList<Object>();
+        Map<Object, Integer> byValue = new HashMap<Object, Integer>();
+        Map<Object, Integer> byIdentity = new IdentityHashMap<Object, Integer>();
+
+        int shapes = 0;
+        byte[] flags = new byte[16];
+        int[] segStart = new int[17];
+        int[] crdStart = new int[17];
+        byte[] segs = new byte[64];
+        float[] crds = new float[128];
+        float[] point = new float[6];
+
+        for (int i = 0; i < size; i++) {
+            PDFCmd cmd = commands.get(i);
+            Class<?> type = cmd.getClass();
+            if (type == PDFPushCmd.class) {
+                this.ops[i] = PUSH;
+            } else if (type == PDFPopCmd.class) {
+                this.ops[i] = POP;
+            } else if (type == PDFXformCmd.class) {
+                this.ops[i] = XFORM;
+                AffineTransform at = ((PDFXformCmd) cmd).at;
+                this.args[i] = share(at, new AffineTransform(at), table, byValue);
+            } else if (type == PDFFillPaintCmd.class) {
+                this.ops[i] = FILL_PAINT;
+                this.args[i] = sharePaint(((PDFFillPaintCmd) cmd).p, table, byValue, byIdentity);
+            } else if (type == PDFStrokePaintCmd.class) {
+                this.ops[i] = STROKE_PAINT;
+                this.args[i] = sharePaint(((PDFStrokePaintCmd) cmd).p, table, byValue, byIdentity);
+            } else if (type == PDFFillAlphaCmd.class) {
+                this.ops[i] = FILL_ALPHA;
+                this.args[i] = Float.floatToIntBits(((PDFFillAlphaCmd) cmd).a);
+            } else if (type == PDFStrokeAlphaCmd.class) {
+                this.ops[i] = STROKE_ALPHA;
+                this.args[i] = Float.floatToIntBits(((PDFStrokeAlphaCmd) cmd).a);
+            } else if (type == PDFShapeCmd.class) {
+                PDFShapeCmd shape = (PDFShapeCmd) cmd;
+                GeneralPath gp = shape.getPath();
+                if (shapes == flags.length) {
+                    flags = Arrays.copyOf(flags, shapes * 2);
+                    segStart = Arrays.copyOf(segStart, shapes * 2 + 1);
+                    crdStart = Arrays.copyOf(crdStart, shapes * 2 + 1);
+                }
+                int f = shape.getStyle() & STYLE_MASK;
+                if (shape.isAutoAdjustStroke()) {
+                    f |= AUTO_ADJUST;
+                }
+                int nsegs = segStart[shapes];
+                int ncrds = crdStart[shapes];
+                if (gp == null) {
+                    f |= NO_PATH;
+                } else {
+                    if (gp.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+                        f |= EVEN_ODD;
+                    }
+                    for (PathIterator pi = gp.getPathIterator(null); !pi.isDone(); pi.next()) {
+                        int seg = pi.currentSegment(point);
+                        int n = coordCount(seg);
+                        if (nsegs == segs.length) {
+                            segs = Arrays.copyOf(segs, nsegs * 2);
+                        }
+                        if (ncrds + n > crds.length) {
+                            crds = Arrays.copyOf(crds, Math.max(crds.length * 2, ncrds + n));
+                        }
+                        segs[nsegs++] = (byte) seg;
+                        System.arraycopy(point, 0, crds, ncrds, n);
+                        ncrds += n;
+                    }
+                }
+                flags[shapes] = (byte) f;
+                segStart[shapes + 1] = nsegs;
+                crdStart[shapes + 1] = ncrds;
+                this.ops[i] = SHAPE;
+                this.args[i] = shapes++;
+            } else {
+                if (type == PDFChangeStrokeCmd.class) {
+                    this.args[i] = share(cmd, cmd, table, byValue);
+                } else {
+                    this.args[i] = share(cmd, cmd, table, byIdentity);
+                }
+                this.ops[i] = COMMAND;
+            }
+        }
+
+        this.objects = table.toArray();
+        this.shapeFlags = Arrays.copyOf(flags, shapes);
+        this.segmentStart = Arrays.copyOf(segStart, shapes + 1);
+        this.coordStart = Arrays.copyOf(crdStart, shapes + 1);
+        this.segments = Arrays.copyOf(segs, this.segmentStart[shapes]);
+        this.coords = Arrays.copyOf(crds, this.coordStart[shapes]);
+
+        long bytes = 0;
+        for (Object o : this.objects) {
+            if (o instanceof PDFCmd) {
+                bytes += ((PDFCmd) o).getByteSize();
+            } else if (o instanceof AffineTransform) {
+                bytes += 72;
+            } else {
+                // a paint and its colour
+                bytes += 48;
+            }
+        }
+        this.objectBytes = bytes;
+    }
+
+    /**
+     * Get the table index of an object, adding it if no equal object (as
+     * decided by the given map) is in the table yet.
+     */
+    private static int share(Object key, Object value, List<Object> table, Map<Object, Integer> index) {
+        Integer i = index.get(key);
+        if (i == null) {
+            i = Integer.valueOf(table.size());
+            table.add(value);
+            index.put(key, i);
+        }
+        return i.intValue();
+    }
+
+    /**
+     * Get the table index of a paint.  Plain paints are shared if their
+     * colours are equal, subclasses like patterns only if identical.
+     */
+    private static int sharePaint(PDFPaint paint, List<Object> table,
+            Map<Object, Integer> byValue, Map<Object, Integer> byIdentity) {
+        if (paint != null && paint.getClass() == PDFPaint.class && paint.getPaint() != null) {
+            return share(paint.getPaint(), paint, table, byValue);
+        }
+        return share(paint, paint, table, byIdentity);
+    }
+
+    /**
+     * the number of coordinates used by a path segment
+     */
+    private static int coordCount(int segment) {
+        switch (segment) {
+        case PathIterator.SEG_MOVETO:
+        case PathIterator.SEG_LINETO:
+            return 2;
+        case PathIterator.SEG_QUADTO:
+            return 4;
+        case PathIterator.SEG_CUBICTO:
+            return 6;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * get the number of commands
+     */
+    public int size() {
+        return this.ops.length;
+    }
+
+    /**
+     * Execute a command.
+     *
+     * @return the region made dirty by the command, as PDFCmd.execute()
+     */
+    public Rectangle2D execute(int index, PDFRenderer state) {
+        int arg = this.args[index];
+        switch (this.ops[index]) {
+        case PUSH:
+            state.push();
+            return null;
+        case POP:
+            state.pop();
+            return null;
+        case XFORM:
+            state.transform((AffineTransform) this.objects[arg]);
+            return null;
+        case SHAPE: {
+            int f = this.shapeFlags[arg];
+            return PDFShapeCmd.execute(state, createPath(arg), f & STYLE_MASK, (f & AUTO_ADJUST) != 0);
+        }
+        case FILL_PAINT:
+            state.setFillPaint((PDFPaint) this.objects[arg]);
+            return null;
+        case STROKE_PAINT:
+            state.setStrokePaint((PDFPaint) this.objects[arg]);
+            return null;
+        case FILL_ALPHA:
+            state.setFillAlpha(Float.intBitsToFloat(arg));
+            return null;
+        case STROKE_ALPHA:
+            state.setStrokeAlpha(Float.intBitsToFloat(arg));
+            return null;
+        default:
+            return ((PDFCmd) this.objects[arg]).execute(state);
+        }
+    }
+
+    /**
+     * Get a command as a PDFCmd object.  Commands that are stored packed
+     * are made the first time they are asked for and then kept while
+     * memory allows, so this is meant for occasional use only.
+     */
+    public PDFCmd getCommand(int index) {
+        if (this.ops[index] == COMMAND) {
+            return (PDFCmd) this.objects[this.args[index]];
+        }
+        SoftReference<MadeCommands> ref = this.madeCommands;
+        MadeCommands made = (ref != null) ? ref.get() : null;
+        if (made == null) {
+            // threads racing here each start a table, one of them is kept
+            made = new MadeCommands(this.ops.length);
+            this.madeCommands = new SoftReference<MadeCommands>(made);
+        }
+        PDFCmd cmd = made.commands.get(index);
+        if (cmd == null) {
+            cmd = createCommand(index);
+            if (made.commands.compareAndSet(index, null, cmd)) {
+                made.bytes.addAndGet(cmd.getByteSize());
+            } else {
+                cmd = made.commands.get(index);
+            }
+        }
+        return cmd;
+    }
+
+    /**
+     * Make a PDFCmd object from a packed command.
+     */
+    private PDFCmd createCommand(int index) {
+        int arg = this.args[index];
+        switch (this.ops[index]) {
+        case PUSH:
+            return PUSH_CMD;
+        case POP:
+            return POP_CMD;
+        case XFORM:
+            return new PDFXformCmd(new AffineTransform((AffineTransform) this.objects[arg]));
+        case SHAPE: {
+            int f = this.shapeFlags[arg];
+            return new PDFShapeCmd(createPath(arg), f & STYLE_MASK, (f & AUTO_ADJUST) != 0);
+        }
+        case FILL_PAINT:
+            return new PDFFillPaintCmd((PDFPaint) this.objects[arg]);
+        case STROKE_PAINT:
+            return new PDFStrokePaintCmd((PDFPaint) this.objects[arg]);
+        case FILL_ALPHA:
+            return new PDFFillAlphaCmd(Float.intBitsToFloat(arg));
+        case STROKE_ALPHA:
+            return new PDFStrokeAlphaCmd(Float.intBitsToFloat(arg));
+        default:
+            return (PDFCmd) this.objects[arg];
+        }
+    }
+
+    /**
+     * Get a range of commands as PDFCmd objects, see getCommand().
+     */
+    public List<PDFCmd> getCommands(int startIndex, int endIndex) {
+        List<PDFCmd> list = new ArrayList<PDFCmd>(Math.max(endIndex - startIndex, 0));
+        for (int i = startIndex; i < endIndex; i++) {
+            list.add(getCommand(i));
+        }
+        return list;
+    }
+
+    /**
+     * Make the path of a shape from its packed segments.
+     *
+     * @return the path, or null if the shape has none
+     */
+    private GeneralPath createPath(int shape) {
+        int f = this.shapeFlags[shape];
+        GeneralPath gp = null;
+        if ((f & NO_PATH) == 0) {
+            int seg = this.segmentStart[shape];
+            int end = this.segmentStart[shape + 1];
+            int c = this.coordStart[shape];
+            gp = new GeneralPath((f & EVEN_ODD) != 0 ? PathIterator.WIND_EVEN_ODD : PathIterator.WIND_NON_ZERO,
+                    end - seg);
+            float[] p = this.coords;
+            for (; seg < end; seg++) {
+                switch (this.segments[seg]) {
+                case PathIterator.SEG_MOVETO:
+                    gp.moveTo(p[c], p[c + 1]);
+                    c += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    gp.lineTo(p[c], p[c + 1]);
+                    c += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    gp.quadTo(p[c], p[c + 1], p[c + 2], p[c + 3]);
+                    c += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    gp.curveTo(p[c], p[c + 1], p[c + 2], p[c + 3], p[c + 4], p[c + 5]);
+                    c += 6;
+                    break;
+                default:
+                    gp.closePath();
+                    break;
+                }
+            }
+        }
+        return gp;
+    }
+
+    /**
+     * An estimate of the memory taken by this display list, the objects
+     * it refers to and the commands made by getCommand() while they are
+     * kept.
+     */
+    public long getByteSize() {
+        long size = this.ops.length * 5L + this.objects.length * 4L
+                + this.shapeFlags.length * 9L + this.segments.length
+                + this.coords.length * 4L + 6 * 16 + this.objectBytes;
+        SoftReference<MadeCommands> ref = this.madeCommands;
+        MadeCommands made = (ref != null) ? ref.get() : null;
+        if (made != null) {
+            size += 16 + 4L * this.ops.length + made.bytes.get();
+        }
+        return size;
+    }
+
+    /** the commands made by getCommand(), by index, and their size */
+    private static class MadeCommands {
+        final AtomicReferenceArray<PDFCmd> commands;
+        final AtomicLong bytes = new AtomicLong();
+
+        MadeCommands(int size) {
+            this.commands = new AtomicReferenceArray<PDFCmd>(size);
+        }
+    }
+}
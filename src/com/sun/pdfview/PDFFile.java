@@ -20,14 +20,20 @@ package com.sun.pdfview;
 
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import com.sun.pdfview.action.GoToAction;
 import com.sun.pdfview.action.PDFAction;
@@ -70,6 +76,18 @@ public class PDFFile {
      * in the PDF file
      */
     PDFXref[] objIdx;
+    /**
+     * the parsed headers of the object streams (PDF 1.5) read so far,
+     * keyed by the object number of the stream
+     */
+    private final ConcurrentMap<Integer,ObjStmIndex> objStmIndex =
+            new ConcurrentHashMap<Integer,ObjStmIndex>();
+    /**
+     * the objects and the object streams the current thread is reading,
+     * to catch the ones which can only be read by reading themselves
+     */
+    private final ThreadLocal<Set<Integer>> readingObjects = createThreadSet();
+    private final ThreadLocal<Set<Integer>> indexingStreams = createThreadSet();
     /** the root PDFObject, as specified in the PDF file */
     PDFObject root = null;
     /** the Encrypt PDFObject, from the trailer */
@@ -80,6 +98,9 @@ public class PDFFile {
 
     /** a mapping of page numbers to parsed PDF commands */
     Cache cache;
+
+    /** the images of this file in the form they are drawn in */
+    private final PDFImageCache imageCache = new PDFImageCache();
     /**
      * whether the file is printable or not (trailer -> Encrypt -> P & 0x4)
      */
@@ -160,6 +181,22 @@ public class PDFFile {
         return this.saveable;
     }
 
+    /**
+     * get the cache holding the parsed pages and rendered images of this
+     * file, e.g. to look at its hit and eviction counts
+     */
+    public Cache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * get the cache holding the images of this file in the form they are
+     * drawn in, e.g. to look at its hit and eviction counts
+     */
+    public PDFImageCache getImageCache() {
+        return this.imageCache;
+    }
+
     /**
      * get the root PDFObject of this PDFFile.  You generally shouldn't need
      * this, but we've left it open in case you want to go spelunking.
@@ -217,90 +254,229 @@ public class PDFFile {
      * Used internally to track down PDFObject references.  You should never
      * need to call this.
      * <p>
-     * Since this is the only public method for tracking down PDF objects,
-     * it is synchronized.  This means that the PDFFile can only hunt down
-     * one object at a time, preventing the file's location from getting
-     * messed around.
-     * <p>
-     * This call stores the current buffer position before any changes are made
-     * and restores it afterwards, so callers need not know that the position
-     * has changed.
+     * Each call reads from its own duplicate of the file buffer, positioned
+     * absolutely at the object's offset, so the shared buffer position is
+     * never touched and different objects can be dereferenced concurrently.
+     * No lock is held while an object is read, since reading a stream may
+     * dereference its /Length, which may lie in an object stream whose own
+     * /Length is elsewhere. Two threads asking for the same object may both
+     * parse it, but both return the one stored first in its cross
+     * reference entry.
      *
      */
-    public synchronized PDFObject dereference(PDFXref ref, PDFDecrypter decrypter)
+    public PDFObject dereference(PDFXref ref, PDFDecrypter decrypter)
             throws IOException {
         int id = ref.getID();
 
         // make sure the id is valid and has been read
-        if (id >= this.objIdx.length || this.objIdx[id] == null) {
+        PDFXref[] xrefs = this.objIdx;
+        if (id >= xrefs.length || xrefs[id] == null) {
             return PDFObject.nullObj;
         }
+        PDFXref xref = xrefs[id];
 
         // check to see if this is already dereferenced
-        PDFObject obj = this.objIdx[id].getObject();
+        PDFObject obj = xref.getObject();
         if (obj != null) {
             return obj;
         }
 
-        // store the current position in the buffer
-        int startPos = this.buf.position();
+        // objects in an object stream are guarded by the stream
+        if (xref.getCompressed()) {
+            return readCompressedObject(id, xref, decrypter);
+        }
 
-        boolean compressed = this.objIdx[id].getCompressed();
-        if (!compressed) {
-	        int loc = this.objIdx[id].getFilePos();
-	        if (loc < 0) {
-	            return PDFObject.nullObj;
-	        }
-	
-	        // move to where this object is
-	        this.buf.position(loc);
-	
-	        // read the object and cache the reference
-	        obj= readObject(ref.getID(), ref.getGeneration(), decrypter);
-        }
-        else { // compressed
-	        int compId = this.objIdx[id].getID();
-	        int idx = this.objIdx[id].getIndex();
-	        if (idx < 0)
-	            return PDFObject.nullObj;
-	        PDFXref compRef = new PDFXref(compId, 0);
-	        PDFObject compObj = dereference(compRef, decrypter);
-	        int first = compObj.getDictionary().get("First").getIntValue();
-	        int length = compObj.getDictionary().get("Length").getIntValue();
-	        int n = compObj.getDictionary().get("N").getIntValue();
-	        if (idx >= n)
-	            return PDFObject.nullObj;
-	        ByteBuffer strm = compObj.getStreamBuffer();
-	        
-        	ByteBuffer oldBuf = this.buf;
-        	this.buf = strm;
-	        // skip other nums
-	        for (int i=0; i<idx; i++) {
-	        	PDFObject skip1num= readObject(-1, -1, true, IdentityDecrypter.getInstance());
-	        	PDFObject skip2num= readObject(-1, -1, true, IdentityDecrypter.getInstance());
-	        }
-        	PDFObject objNumPO= readObject(-1, -1, true, IdentityDecrypter.getInstance());
-        	PDFObject offsetPO= readObject(-1, -1, true, IdentityDecrypter.getInstance());
-        	int objNum = objNumPO.getIntValue();
-        	int offset = offsetPO.getIntValue();
-        	if (objNum != id)
-	            return PDFObject.nullObj;
-        	
-        	this.buf.position(first+offset);
-        	obj= readObject(objNum, 0, IdentityDecrypter.getInstance());
-        	this.buf = oldBuf;
+        int loc = xref.getFilePos();
+        if (loc < 0) {
+            return PDFObject.nullObj;
+        }
+
+        Set<Integer> reading = this.readingObjects.get();
+        Integer key = Integer.valueOf(id);
+        if (!reading.add(key)) {
+            throw new PDFParseException("Object " + id + " depends on itself");
+        }
+        try {
+            // get a private view of the file, positioned at the object
+            ByteBuffer objBuf = this.buf.duplicate();
+            objBuf.position(loc);
+            obj = readObject(objBuf, ref.getID(), ref.getGeneration(), decrypter);
+        } finally {
+            reading.remove(key);
         }
-        
         if (obj == null) {
             obj = PDFObject.nullObj;
         }
 
-        this.objIdx[id].setObject(obj);
+        // cache the reference, unless somebody else was quicker
+        synchronized (xref) {
+            PDFObject cached = xref.getObject();
+            if (cached != null) {
+                return cached;
+            }
+            xref.setObject(obj);
+        }
+        return obj;
+    }
+
+    private static ThreadLocal<Set<Integer>> createThreadSet() {
+        return new ThreadLocal<Set<Integer>>() {
+            @Override
+            protected Set<Integer> initialValue() {
+                return new HashSet<Integer>();
+            }
+        };
+    }
 
-        // reset to the previous position
-        this.buf.position(startPos);
+    /**
+     * read an object stored in an object stream (PDF 1.5).  The first
+     * request for any object of a stream reads all the objects in that
+     * stream and stores them in their cross reference entries, so the
+     * stream is decoded and its header parsed only once, not once per
+     * object.
+     * @param id the object number of the object to read
+     * @param xref the cross reference entry of the object, holding the
+     *  number of the containing object stream and the index within it
+     * @param decrypter the decrypter to use for the object stream
+     */
+    private PDFObject readCompressedObject(int id, PDFXref xref,
+            PDFDecrypter decrypter) throws IOException {
+        int compId = xref.getID();
+        int idx = xref.getIndex();
+        if (idx < 0) {
+            return PDFObject.nullObj;
+        }
 
-        return obj;
+        ObjStmIndex index = getObjStmIndex(compId, decrypter);
+        if (index == null || idx >= index.objNums.length ||
+                index.objNums[idx] != id) {
+            return PDFObject.nullObj;
+        }
+
+        PDFObject obj = xref.getObject();
+        if (obj != null) {
+            return obj;
+        }
+
+        // decode the stream before locking its index, as decoding may
+        // need other objects. getStreamBuffer() hands out a duplicate, so
+        // we own its position
+        PDFObject compObj = dereference(new PDFXref(compId, 0), decrypter);
+        ByteBuffer strm = compObj.getStreamBuffer();
+
+        synchronized (index) {
+            obj = xref.getObject();
+            if (obj != null) {
+                return obj;
+            }
+
+            PDFXref[] xrefs = this.objIdx;
+            for (int i = 0; i < index.objNums.length; i++) {
+                int objNum = index.objNums[i];
+                if (objNum < 0 || objNum >= xrefs.length) {
+                    continue;
+                }
+                // only fill in entries that really live at this place
+                PDFXref member = xrefs[objNum];
+                if (member == null || !member.getCompressed() ||
+                        member.getID() != compId || member.getIndex() != i ||
+                        member.getObject() != null) {
+                    continue;
+                }
+                strm.position(index.first + index.offsets[i]);
+                PDFObject memberObj = readObject(strm, objNum, 0,
+                        IdentityDecrypter.getInstance());
+                member.setObject(memberObj == null ? PDFObject.nullObj : memberObj);
+            }
+
+            obj = xref.getObject();
+            return obj == null ? PDFObject.nullObj : obj;
+        }
+    }
+
+    /**
+     * get the parsed header of an object stream: the object numbers
+     * and offsets of the N objects it contains.  The header is kept for
+     * the life time of this file.  No lock is held while the stream is
+     * read and decoded, which may need objects from other object streams;
+     * if two threads parse the header at the same time, the first one
+     * stored is used.
+     * @param compId the object number of the object stream
+     * @param decrypter the decrypter to use for the object stream
+     * @return the index, or null if the object is not an object stream
+     */
+    private ObjStmIndex getObjStmIndex(int compId, PDFDecrypter decrypter)
+            throws IOException {
+        Integer key = Integer.valueOf(compId);
+        ObjStmIndex index = this.objStmIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        PDFXref[] xrefs = this.objIdx;
+        if (compId >= xrefs.length || xrefs[compId] == null) {
+            return null;
+        }
+
+        Set<Integer> indexing = this.indexingStreams.get();
+        if (!indexing.add(key)) {
+            throw new PDFParseException("Object stream " + compId + " depends on itself");
+        }
+        int first;
+        ByteBuffer strm;
+        int n;
+        try {
+            PDFObject compObj = dereference(new PDFXref(compId, 0), decrypter);
+            PDFObject firstObj = compObj.getDictRef("First");
+            PDFObject nObj = compObj.getDictRef("N");
+            strm = compObj.getStreamBuffer();
+            if (firstObj == null || nObj == null || strm == null) {
+                return null;
+            }
+            first = firstObj.getIntValue();
+            n = nObj.getIntValue();
+        } finally {
+            indexing.remove(key);
+        }
+
+        int[] objNums = new int[n];
+        int[] offsets = new int[n];
+        for (int i = 0; i < n; i++) {
+            PDFObject objNumPO = readObject(strm, -1, -1, true, IdentityDecrypter.getInstance());
+            PDFObject offsetPO = readObject(strm, -1, -1, true, IdentityDecrypter.getInstance());
+            if (objNumPO == null || offsetPO == null) {
+                // truncated header, mark the rest as missing
+                for (; i < n; i++) {
+                    objNums[i] = -1;
+                }
+                break;
+            }
+            objNums[i] = objNumPO.getIntValue();
+            offsets[i] = offsetPO.getIntValue();
+        }
+
+        index = new ObjStmIndex(first, objNums, offsets);
+        ObjStmIndex stored = this.objStmIndex.putIfAbsent(key, index);
+        return stored != null ? stored : index;
+    }
+
+    /**
+     * The header of an object stream, mapping the index of an object
+     * within the stream to its object number and offset.
+     */
+    private static class ObjStmIndex {
+        /** the offset of the first object in the decoded stream */
+        final int first;
+        /** the object numbers, by index */
+        final int[] objNums;
+        /** the offsets relative to first, by index */
+        final int[] offsets;
+
+        ObjStmIndex(int first, int[] objNums, int[] offsets) {
+            this.first = first;
+            this.objNums = objNums;
+            this.offsets = offsets;
+        }
     }
 
     /**
@@ -369,8 +545,8 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readObject(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
-	return readObject(objNum, objGen, false, decrypter);
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+	return readObject(buf, objNum, objGen, false, decrypter);
     }
 
     /**
@@ -387,13 +563,13 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readObject(
-            int objNum, int objGen,
+            ByteBuffer buf, int objNum, int objGen,
             boolean numscan, PDFDecrypter decrypter) throws IOException {
         // skip whitespace
         int c;
         PDFObject obj = null;
-        while (obj == null && this.buf.hasRemaining()) {
-            while (isWhiteSpace(c = this.buf.get())) {
+        while (obj == null && buf.hasRemaining()) {
+            while (isWhiteSpace(c = buf.get())) {
             	if(!buf.hasRemaining()) {
             		break;
             	}
@@ -401,40 +577,40 @@ public class PDFFile {
             // check character for special punctuation:
             if (c == '<') {
                 // could be start of <hex data>, or start of <<dictionary>>
-                c = this.buf.get();
+                c = buf.get();
                 if (c == '<') {
                     // it's a dictionary
-		    obj= readDictionary(objNum, objGen, decrypter);
+		    obj= readDictionary(buf, objNum, objGen, decrypter);
                 } else {
-                    this.buf.position(this.buf.position() - 1);
-		    obj= readHexString(objNum, objGen, decrypter);
+                    buf.position(buf.position() - 1);
+		    obj= readHexString(buf, objNum, objGen, decrypter);
                 }
             } else if (c == '(') {
-		obj= readLiteralString(objNum, objGen, decrypter);
+		obj= readLiteralString(buf, objNum, objGen, decrypter);
             } else if (c == '[') {
                 // it's an array
-		obj= readArray(objNum, objGen, decrypter);
+		obj= readArray(buf, objNum, objGen, decrypter);
             } else if (c == '/') {
                 // it's a name
-                obj = readName();
+                obj = readName(buf);
             } else if (c == '%') {
                 // it's a comment
-                readLine();
+                readLine(buf);
             } else if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.') {
                 // it's a number
-                obj = readNumber((char) c);
+                obj = readNumber(buf, (char) c);
                 if (!numscan) {
                     // It could be the start of a reference.
                     // Check to see if there's another number, then "R".
                     //
                     // We can't use mark/reset, since this could be called
                     // from dereference, which already is using a mark
-                    int startPos = this.buf.position();
+                    int startPos = buf.position();
 
-		    PDFObject testnum= readObject(-1, -1, true, decrypter);
+		    PDFObject testnum= readObject(buf, -1, -1, true, decrypter);
                     if (testnum != null &&
                             testnum.getType() == PDFObject.NUMBER) {
-			PDFObject testR= readObject(-1, -1, true, decrypter);
+			PDFObject testR= readObject(buf, -1, -1, true, decrypter);
                         if (testR != null &&
                                 testR.getType() == PDFObject.KEYWORD &&
                                 testR.getStringValue().equals("R")) {
@@ -449,23 +625,23 @@ public class PDFFile {
                                 testR.getStringValue().equals("obj")) {
                             // it's an object description
 			    obj= readObjectDescription(
-                                    obj.getIntValue(),
+                                    buf, obj.getIntValue(),
                                     testnum.getIntValue(),
                                     decrypter);
                         } else {
-                            this.buf.position(startPos);
+                            buf.position(startPos);
                         }
                     } else {
-                        this.buf.position(startPos);
+                        buf.position(startPos);
                     }
                 }
             } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
                 // it's a keyword
-                obj = readKeyword((char) c);
+                obj = readKeyword(buf, (char) c);
             } else {
                 // it's probably a closing character.
                 // throwback
-                this.buf.position(this.buf.position() - 1);
+                buf.position(buf.position() - 1);
                 break;
             }
         }
@@ -502,12 +678,12 @@ public class PDFFile {
      * must be in the file
      * @return true if the next characters match; false otherwise.
      */
-    private boolean nextItemIs(String match) throws IOException {
+    private boolean nextItemIs(ByteBuffer buf, String match) throws IOException {
         // skip whitespace
         int c = nextNonWhitespaceChar(buf);
         for (int i = 0; i < match.length(); i++) {
             if (i > 0) {
-                c = this.buf.get();
+                c = buf.get();
             }
             if (c != match.charAt(i)) {
                 return false;
@@ -573,21 +749,21 @@ public class PDFFile {
      * @return the Dictionary as a PDFObject.
      */
     private PDFObject readDictionary(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
         HashMap<String,PDFObject> hm = new HashMap<String,PDFObject>();
         // we've already read the <<.  Now get /Name obj pairs until >>
         PDFObject name;
-	while ((name= readObject(objNum, objGen, decrypter))!=null) {
+	while ((name= readObject(buf, objNum, objGen, decrypter))!=null) {
             // make sure first item is a NAME
             if (name.getType() != PDFObject.NAME) {
                 throw new PDFParseException("First item in dictionary must be a /Name.  (Was " + name + ")");
             }
-	    PDFObject value= readObject(objNum, objGen, decrypter);
+	    PDFObject value= readObject(buf, objNum, objGen, decrypter);
             if (value != null) {
                 hm.put(name.getStringValue(), value);
             }
         }
-        if (!nextItemIs(">>")) {
+        if (!nextItemIs(buf, ">>")) {
             throw new PDFParseException("End of dictionary wasn't '>>'");
         }
         return new PDFObject(this, PDFObject.DICTIONARY, hm);
@@ -600,9 +776,9 @@ public class PDFFile {
      * hexidecimal character.  Returns -1 if the next character isn't in
      * [0-9a-fA-F]
      */
-    private int readHexDigit() throws IOException {
+    private int readHexDigit(ByteBuffer buf) throws IOException {
         int a;
-        while (isWhiteSpace(a = this.buf.get())) {
+        while (isWhiteSpace(a = buf.get())) {
         }
         switch (a) {
             case '0': case '1': case '2': case '3': case '4':
@@ -628,15 +804,15 @@ public class PDFFile {
      * and reset the read head.  If there is only one hex character,
      * return its value as if there were an implicit 0 after it.
      */
-    private int readHexPair() throws IOException {
-        int first = readHexDigit();
+    private int readHexPair(ByteBuffer buf) throws IOException {
+        int first = readHexDigit(buf);
         if (first < 0) {
-            this.buf.position(this.buf.position() - 1);
+            buf.position(buf.position() - 1);
             return -1;
         }
-        int second = readHexDigit();
+        int second = readHexDigit(buf);
         if (second < 0) {
-            this.buf.position(this.buf.position() - 1);
+            buf.position(buf.position() - 1);
             return (first << 4);
         } else {
             return (first << 4) + second;
@@ -654,14 +830,14 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readHexString(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
         // we've already read the <. Now get the hex bytes until >
         int val;
         StringBuffer sb = new StringBuffer();
-        while ((val = readHexPair()) >= 0) {
+        while ((val = readHexPair(buf)) >= 0) {
             sb.append((char) val);
         }
-        if (buf.hasRemaining() && this.buf.get() != '>') {
+        if (buf.hasRemaining() && buf.get() != '>') {
             throw new PDFParseException("Bad character in Hex String");
         }
         return new PDFObject(this, PDFObject.STRING,
@@ -701,7 +877,7 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readLiteralString(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
         int c;
 
         // we've already read the (.  now get the characters until a
@@ -711,7 +887,7 @@ public class PDFFile {
         StringBuffer sb = new StringBuffer();
 
         while (buf.hasRemaining() && parencount > 0) {
-            c = this.buf.get() & 0xFF;
+            c = buf.get() & 0xFF;
             // process unescaped parenthesis
             if (c == '(') {
                 parencount++;
@@ -751,18 +927,18 @@ public class PDFFile {
                 // any other sequence should see the backslash ignored
 
                 // grab the next character to see what we're dealing with
-                c = this.buf.get() & 0xFF;
+                c = buf.get() & 0xFF;
                 if (c >= '0' && c < '8') {
                     // \ddd form - one to three OCTAL digits
                     int count = 0;
                     int val = 0;
                     while (c >= '0' && c < '8' && count < 3) {
                         val = val * 8 + c - '0';
-                        c = this.buf.get() & 0xFF;
+                        c = buf.get() & 0xFF;
                         count++;
                     }
                     // we'll have read one character too many
-                    this.buf.position(this.buf.position() - 1);
+                    buf.position(buf.position() - 1);
                     c = val;
                 } else if (c == 'n') {
                     c = '\n';
@@ -776,11 +952,11 @@ public class PDFFile {
                     c = '\f';
                 } else if (c == '\r') {
                     // escaped CR to be ignored; look for a following LF
-                    c = this.buf.get() & 0xFF;
+                    c = buf.get() & 0xFF;
                     if (c != '\n') {
                         // not an LF, we'll consume this character on
                         // the next iteration
-                        this.buf.position(this.buf.position() - 1);
+                        buf.position(buf.position() - 1);
                     }
                     c = -1;
                 } else if (c == '\n') {
@@ -804,17 +980,17 @@ public class PDFFile {
      * DataInput -- it reads character by character until a '\n' is
      * encountered.  If a '\r' is encountered, it is discarded.
      */
-    private String readLine() {
+    private String readLine(ByteBuffer buf) {
         StringBuffer sb = new StringBuffer();
 
-        while (this.buf.remaining() > 0) {
-            char c = (char) this.buf.get();
+        while (buf.remaining() > 0) {
+            char c = (char) buf.get();
 
             if (c == '\r') {
-                if (this.buf.remaining() > 0) {
-                    char n = (char) this.buf.get(this.buf.position());
+                if (buf.remaining() > 0) {
+                    char n = (char) buf.get(buf.position());
                     if (n == '\n') {
-                        this.buf.get();
+                        buf.get();
                     }
                 }
                 break;
@@ -840,14 +1016,14 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readArray(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
         // we've already read the [.  Now read objects until ]
         ArrayList<PDFObject> ary = new ArrayList<PDFObject>();
         PDFObject obj;
-	while((obj= readObject(objNum, objGen, decrypter))!=null) {
+	while((obj= readObject(buf, objNum, objGen, decrypter))!=null) {
             ary.add(obj);
         }
-        if (this.buf.hasRemaining() && this.buf.get() != ']') {
+        if (buf.hasRemaining() && buf.get() != ']') {
             throw new PDFParseException("Array should end with ']'");
         }
         PDFObject[] objlist = new PDFObject[ary.size()];
@@ -860,18 +1036,18 @@ public class PDFFile {
     /**
      * read a /name.  The / has already been read.
      */
-    private PDFObject readName() throws IOException {
+    private PDFObject readName(ByteBuffer buf) throws IOException {
         // we've already read the / that begins the name.
         // all we have to check for is #hh hex notations.
         StringBuffer sb = new StringBuffer();
         int c;
-        while (this.buf.hasRemaining() && isRegularCharacter(c = this.buf.get())) {
+        while (buf.hasRemaining() && isRegularCharacter(c = buf.get())) {
             if (c < '!' && c > '~') {
                 break;      // out-of-range, should have been hex
             }
             // H.3.2.4 indicates version 1.1 did not do hex escapes
             if (c == '#' && (this.majorVersion >= 1 && this.minorVersion > 1)) {
-                int hex = readHexPair();
+                int hex = readHexPair(buf);
                 if (hex >= 0) {
                     c = hex;
                 } else {
@@ -880,7 +1056,7 @@ public class PDFFile {
             }
             sb.append((char) c);
         }
-        this.buf.position(this.buf.position() - 1);
+        buf.position(buf.position() - 1);
         return new PDFObject(this, PDFObject.NAME, sb.toString());
     }
 
@@ -888,14 +1064,14 @@ public class PDFFile {
      * read a number.  The initial digit or . or - is passed in as the
      * argument.
      */
-    private PDFObject readNumber(char start) throws IOException {
+    private PDFObject readNumber(ByteBuffer buf, char start) throws IOException {
         // we've read the first digit (it's passed in as the argument)
         boolean neg = start == '-';
         boolean sawdot = start == '.';
         double dotmult = sawdot ? 0.1 : 1;
         double value = (start >= '0' && start <= '9') ? start - '0' : 0;
-        while (true && this.buf.hasRemaining()) {
-            int c = this.buf.get();
+        while (true && buf.hasRemaining()) {
+            int c = buf.get();
             if (c == '.') {
                 if (sawdot) {
                     throw new PDFParseException("Can't have two '.' in a number");
@@ -911,7 +1087,7 @@ public class PDFFile {
                     value = value * 10 + val;
                 }
             } else {
-                this.buf.position(this.buf.position() - 1);
+                buf.position(buf.position() - 1);
                 break;
             }
         }
@@ -925,14 +1101,14 @@ public class PDFFile {
      * read a bare keyword.  The initial character is passed in as the
      * argument.
      */
-    private PDFObject readKeyword(char start) throws IOException {
+    private PDFObject readKeyword(ByteBuffer buf, char start) throws IOException {
         // we've read the first character (it's passed in as the argument)
         StringBuffer sb = new StringBuffer(String.valueOf(start));
         int c;
-        while (buf.hasRemaining() && isRegularCharacter(c = this.buf.get())) {
+        while (buf.hasRemaining() && isRegularCharacter(c = buf.get())) {
             sb.append((char) c);
         }
-        this.buf.position(this.buf.position() - 1);
+        buf.position(buf.position() - 1);
         return new PDFObject(this, PDFObject.KEYWORD, sb.toString());
     }
 
@@ -946,25 +1122,25 @@ public class PDFFile {
      * @param decrypter the decrypter to use
      */
     private PDFObject readObjectDescription(
-            int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
+            ByteBuffer buf, int objNum, int objGen, PDFDecrypter decrypter) throws IOException {
         // we've already read the 4 0 obj bit.  Next thing up is the object.
         // object descriptions end with the keyword endobj
-        long debugpos = this.buf.position();
-        PDFObject obj = readObject(objNum, objGen, decrypter);
+        long debugpos = buf.position();
+        PDFObject obj = readObject(buf, objNum, objGen, decrypter);
         // see if it's a dictionary.  If so, this could be a stream.
-        PDFObject endkey = readObject(objNum, objGen, decrypter);
+        PDFObject endkey = readObject(buf, objNum, objGen, decrypter);
         if (endkey.getType() != PDFObject.KEYWORD && endkey.getType() != PDFObject.STREAM) {
             PDFDebugger.debug("WARNING: Expected 'stream' or 'endobj' but was " + endkey.getType() + " " + String.valueOf(endkey.getStringValue()));
         }
         if (obj.getType() == PDFObject.DICTIONARY && endkey.getStringValue() != null && endkey.getStringValue().equals("stream")) {
             // skip until we see \n
-            readLine();
-            ByteBuffer data = readStream(obj);
+            readLine(buf);
+            ByteBuffer data = readStream(buf, obj);
             if (data == null) {
                 data = ByteBuffer.allocate(0);
             }
             obj.setStream(data);
-            endkey = readObject(objNum, objGen, decrypter);
+            endkey = readObject(buf, objNum, objGen, decrypter);
         }
         // at this point, obj is the object, keyword should be "endobj"
         String endcheck = endkey.getStringValue();
@@ -982,7 +1158,7 @@ public class PDFFile {
      * @param dict the dictionary associated with this stream.
      * @return a ByteBuffer with the encoded stream data
      */
-    private ByteBuffer readStream(PDFObject dict) throws IOException {
+    private ByteBuffer readStream(ByteBuffer buf, PDFObject dict) throws IOException {
         // pointer is at the start of a stream.  read the stream and
         // decode, based on the entries in the dictionary
         PDFObject lengthObj = dict.getDictRef("Length");
@@ -995,15 +1171,15 @@ public class PDFFile {
         }
 
         // slice the data
-        int start = this.buf.position();
-        ByteBuffer streamBuf = this.buf.slice();
+        int start = buf.position();
+        ByteBuffer streamBuf = buf.slice();
         streamBuf.limit(length);
 
         // move the current position to the end of the data
-        this.buf.position(this.buf.position() + length);
-        int ending = this.buf.position();
+        buf.position(buf.position() + length);
+        int ending = buf.position();
 
-        if (!nextItemIs("endstream")) {
+        if (!nextItemIs(buf, "endstream")) {
             PDFDebugger.debug("read " + length + " chars from " + start + " to " + ending);
             throw new PDFParseException("Stream ended inappropriately");
         }
@@ -1037,7 +1213,7 @@ public class PDFFile {
         // read a bunch of nested trailer tables
         while (true) {
             // make sure we are looking at an xref table
-            if (!nextItemIs("xref")) {
+            if (!nextItemIs(this.buf, "xref")) {
             	this.buf.position(pos);
             	readTrailer15(password);
             	return;
@@ -1047,7 +1223,7 @@ public class PDFFile {
             // read a bunch of linked tabled
             while (true) {
                 // read until the word "trailer"
-		PDFObject obj=readObject(-1, -1, IdentityDecrypter.getInstance());
+		PDFObject obj=readObject(this.buf, -1, -1, IdentityDecrypter.getInstance());
                 if (obj.getType() == PDFObject.KEYWORD &&
                         obj.getStringValue().equals("trailer")) {
                     break;
@@ -1060,14 +1236,14 @@ public class PDFFile {
                 int refstart = obj.getIntValue();
 
                 // read the size of the reference table
-                obj = readObject(-1, -1, IdentityDecrypter.getInstance());
+                obj = readObject(this.buf, -1, -1, IdentityDecrypter.getInstance());
                 if (obj.getType() != PDFObject.NUMBER) {
                     throw new PDFParseException("Expected number for length of xref table");
                 }
                 int reflen = obj.getIntValue();
 
                 // skip a line
-                readLine();
+                readLine(this.buf);
 
                 if (refstart == 1) {// Check and try to fix incorrect Object Number Start
                     int startPos = this.buf.position();
@@ -1113,7 +1289,7 @@ public class PDFFile {
             }
 
             // at this point, the "trailer" word (not EOL) has been read.
-	    PDFObject trailerdict = readObject(-1, -1, IdentityDecrypter.getInstance());
+	    PDFObject trailerdict = readObject(this.buf, -1, -1, IdentityDecrypter.getInstance());
             if (trailerdict.getType() != PDFObject.DICTIONARY) {
                 throw new IOException("Expected dictionary after \"trailer\"");
             }
@@ -1223,7 +1399,7 @@ public class PDFFile {
         PDFDecrypter newDefaultDecrypter = null;
         
         while (true) {
-			PDFObject xrefObj = readObject(-1, -1, IdentityDecrypter.getInstance());
+			PDFObject xrefObj = readObject(this.buf, -1, -1, IdentityDecrypter.getInstance());
 			if (xrefObj == null) {
 				break;
 			}
@@ -1390,7 +1566,7 @@ public class PDFFile {
     private void parseFile(PDFPassword password) throws IOException {
         // start at the begining of the file
         this.buf.rewind();
-        String versionLine = readLine();
+        String versionLine = readLine(this.buf);
         if (versionLine.startsWith(VERSION_COMMENT)) {
             processVersion(versionLine.substring(VERSION_COMMENT.length()));
         }
@@ -1607,7 +1783,7 @@ public class PDFFile {
 
                 page = createPage(pagenum, pageObj);
 
-                byte[] stream = getContents(pageObj);
+                InputStream stream = getContents(pageObj);
                 parser = new PDFParser(page, stream, resources);
 
                 this.cache.addPage(key, page, parser);
@@ -1628,6 +1804,58 @@ public class PDFFile {
         return page;
     }
 
+    /**
+     * Render a range of pages in page order, with as many pages in flight
+     * as twice the number of processors.
+     *
+     * @see #renderPages(int, int, float, Executor, PDFPageSink, boolean, int)
+     */
+    public PDFRenderStatistics renderPages(int first, int last, float dpi,
+            Executor executor, PDFPageSink sink) throws IOException, InterruptedException {
+        return renderPages(first, last, dpi, executor, sink, true,
+                2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Render a range of pages into images, parsing and rendering the pages
+     * concurrently on the given executor, and hand each image to the sink.
+     * This returns once all pages have been handed to the sink, or after
+     * the first error.
+     *
+     * @param first the number of the first page, starting with 1
+     * @param last the number of the last page to render
+     * @param dpi the resolution; 72 renders one pixel per point
+     * @param executor runs one task per page, e.g. a fixed thread pool.
+     * If null, the pages are rendered by the calling thread.
+     * @param sink receives the images
+     * @param inPageOrder true to hand the images to the sink in page order,
+     * false to hand them over as soon as they are done
+     * @param maxInFlight the maximum number of pages being rendered or
+     * waiting for the sink at any time, which bounds the memory taken by
+     * the images
+     * @return the throughput of the batch
+     * @throws IOException if a page can't be parsed or rendered, or the
+     * sink fails
+     * @throws InterruptedException if the calling thread is interrupted
+     * while waiting for the pages
+     */
+    public PDFRenderStatistics renderPages(int first, int last, float dpi,
+            Executor executor, PDFPageSink sink, boolean inPageOrder, int maxInFlight)
+            throws IOException, InterruptedException {
+        if (first < 1 || last > getNumPages() || first > last) {
+            throw new IllegalArgumentException("Invalid page range " + first + " - " + last);
+        }
+        if (executor == null) {
+            executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        }
+        return new PageBatchRenderer(this, first, last, dpi, sink, inPageOrder, maxInFlight).run(executor);
+    }
+
     /**
      * Stop the rendering of a particular image on this page
      */
@@ -1641,46 +1869,92 @@ public class PDFFile {
 
     /**
      * get the stream representing the content of a particular page.
+     * Nothing is decoded until the stream is read, so parsing can begin
+     * while the later content streams are still undecoded.
      *
      * @param pageObj the page object to get the contents of
      * @return a concatenation of any content streams for the requested
      * page.
      */
-    private byte[] getContents(PDFObject pageObj) throws IOException {
-        // concatenate all the streams
+    private InputStream getContents(PDFObject pageObj) throws IOException {
         PDFObject contentsObj = pageObj.getDictRef("Contents");
         if (contentsObj == null) {
-            return new byte[0];
+            return new ContentStreams(new PDFObject[0]);
         }
+        return new ContentStreams(contentsObj.getArray());
+    }
 
-        PDFObject contents[] = contentsObj.getArray();
-
-        // see if we have only one stream (the easy case)
-        if (contents.length == 1) {
-            return contents[0].getStream();
+    /**
+     * The content streams of a page read one after the other, as if they
+     * were concatenated. Each one is only decoded once the previous one
+     * has been read.
+     */
+    private static class ContentStreams extends InputStream {
+        private final PDFObject[] contents;
+        /** the index of the next content stream to open */
+        private int next;
+        /** the content stream being read, or null */
+        private InputStream current;
+
+        private ContentStreams(PDFObject[] contents) {
+            this.contents = contents;
+        }
+
+        /**
+         * @return the content stream being read, or null at the end of
+         * the last one
+         */
+        private InputStream current() throws IOException {
+            if (this.current == null && this.next < this.contents.length) {
+                this.current = this.contents[this.next].getInputStream();
+                if (this.current == null) {
+                    throw new PDFParseException("No stream on content " + this.next +
+                            ": " + this.contents[this.next]);
+                }
+                this.next++;
+            }
+            return this.current;
         }
 
-        // first get the total length of all the streams
-        int len = 0;
-        for (int i = 0; i < contents.length; i++) {
-            byte[] data = contents[i].getStream();
-            if (data == null) {
-                throw new PDFParseException("No stream on content " + i +
-                        ": " + contents[i]);
+        @Override
+        public int read() throws IOException {
+            InputStream in;
+            while ((in = current()) != null) {
+                int c = in.read();
+                if (c >= 0) {
+                    return c;
+                }
+                in.close();
+                this.current = null;
             }
-            len += data.length;
+            return -1;
         }
 
-        // now assemble them all into one object
-        byte[] stream = new byte[len];
-        len = 0;
-        for (int i = 0; i < contents.length; i++) {
-            byte data[] = contents[i].getStream();
-            System.arraycopy(data, 0, stream, len, data.length);
-            len += data.length;
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            InputStream in;
+            while ((in = current()) != null) {
+                int read = in.read(b, off, len);
+                if (read > 0) {
+                    return read;
+                }
+                in.close();
+                this.current = null;
+            }
+            return -1;
         }
 
-        return stream;
+        @Override
+        public void close() throws IOException {
+            this.next = this.contents.length;
+            if (this.current != null) {
+                this.current.close();
+                this.current = null;
+            }
+        }
     }
 
     /**
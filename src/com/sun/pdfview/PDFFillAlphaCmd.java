@@ -0,0 +1,37 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package com.sun.pdfview;
+import java.awt.geom.Rectangle2D;
+
+/**
+* set the fill paint
+*/
+class PDFFillAlphaCmd extends PDFCmd {
+    float a;
+
+    public PDFFillAlphaCmd(float a) {
+        this.a = a;
+    }
+
+    @Override
+    public Rectangle2D execute(PDFRenderer state) {
+        state.setFillAlpha(this.a);
+        return null;
+    }
+}
@@ -42,12 +42,15 @@ import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.RasterFormatException;
 import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
@@ -73,6 +76,9 @@ public class PDFImage {
 
 	private static int[][] GREY_TO_ARGB = new int[8][];
 
+	/** the largest subsampling factor used when decoding for a target size */
+	private static final int MAX_SUBSAMPLING = 64;
+
 	/**
 	 * color key mask. Array of start/end pairs of ranges of color components to
 	 * mask out. If a component falls within any of the ranges it is clear.
@@ -244,22 +250,75 @@ public class PDFImage {
 	 * @throws PDFImageParseException 
 	 */
 	public BufferedImage getImage() throws PDFImageParseException {
+		return getImage(1);
+	}
+
+	/**
+	 * Get the image that this PDFImage generates, decoded at a resolution
+	 * suitable for drawing it at the given size in device pixels. The
+	 * result is at least targetWidth x targetHeight pixels large (unless
+	 * the image itself is smaller), but may be a power of two smaller
+	 * than the full resolution image. Images which can't be subsampled
+	 * are always returned at full resolution.
+	 * 
+	 * @param targetWidth
+	 *            the minimum width wanted, in pixels
+	 * @param targetHeight
+	 *            the minimum height wanted, in pixels
+	 * @return a buffered image containing the decoded image data
+	 * @throws PDFImageParseException
+	 */
+	public BufferedImage getImage(int targetWidth, int targetHeight) throws PDFImageParseException {
+		return getImage(getSubsampling(targetWidth, targetHeight));
+	}
+
+	/**
+	 * Get the image decoded with the given subsampling factor. Decoded
+	 * images are cached with the image object, one per factor.
+	 */
+	BufferedImage getImage(int subsample) throws PDFImageParseException {
+		return getImage(subsample, true);
+	}
+
+	/**
+	 * Get the image decoded with the given subsampling factor.
+	 * 
+	 * @param keep whether to cache a newly decoded image with the image
+	 *            object; the renderer doesn't when the render cache of
+	 *            the file keeps the drawable form of the image instead,
+	 *            so it isn't held twice
+	 */
+	BufferedImage getImage(int subsample, boolean keep) throws PDFImageParseException {
 		try {
-			BufferedImage bi = (BufferedImage) this.imageObj.getCache();
+			@SuppressWarnings("unchecked")
+			Map<Integer, BufferedImage> images = (Map<Integer, BufferedImage>) this.imageObj.getCache();
+			if (images == null && keep) {
+				images = new ConcurrentHashMap<Integer, BufferedImage>();
+				this.imageObj.setCache(images);
+			}
+			BufferedImage bi = (images != null) ? images.get(subsample) : null;
 
 			if (bi == null) {
-				byte[] data = imageObj.getStream();
+				byte[] data = null;
 				ByteBuffer jpegBytes = null;
 				if (this.jpegDecode) {
 					// if we're lucky, the stream will have just the DCT
 					// filter applied to it, and we'll have a reference to
 					// an underlying mapped file, so we'll manage to avoid
-					// a copy of the encoded JPEG bytes
+					// a copy of the encoded JPEG bytes. The fully decoded
+					// stream is only needed if ImageIO can't read the JPEG,
+					// so parseData() fetches it itself in that case.
 					jpegBytes = imageObj.getStreamBuffer(PDFDecoder.DCT_FILTERS);
+				} else if (subsample == 1) {
+					data = imageObj.getStream();
 				}
+				// otherwise parseData() reads the rows it keeps straight
+				// from the decoding stream
 				// parse the stream data into an actual image
-				bi = parseData(data, jpegBytes);
-				this.imageObj.setCache(bi);
+				bi = parseData(data, jpegBytes, subsample);
+				if (keep) {
+					images.put(subsample, bi);
+				}
 			}
 			return bi;
 		} catch (IOException ioe) {
@@ -281,12 +340,34 @@ public class PDFImage {
 	 * might be able to scale the image down first. </p
 	 * 
 	 * @param data
-	 *            the data when already completely filtered and uncompressed
+	 *            the data when already completely filtered and uncompressed,
+	 *            may be null if jpegData is given
 	 * @param jpegData
 	 *            a byte buffer if data still requiring the DCDTecode filter is
 	 *            being used
 	 */
 	protected BufferedImage parseData(byte[] data, ByteBuffer jpegData) throws IOException {
+		return parseData(data, jpegData, 1);
+	}
+
+	/**
+	 * Parse the image stream into a buffered image, keeping only every
+	 * subsample-th pixel of every subsample-th row.
+	 * 
+	 * @param data
+	 *            the data when already completely filtered and uncompressed,
+	 *            may be null if it is to be read from the image stream
+	 * @param jpegData
+	 *            a byte buffer if data still requiring the DCDTecode filter is
+	 *            being used
+	 * @param subsample
+	 *            the subsampling factor, 1 for the full resolution image
+	 */
+	private BufferedImage parseData(byte[] data, ByteBuffer jpegData, int subsample) throws IOException {
+		// the size of the image we are about to create
+		final int width = subsampledSize(getWidth(), subsample);
+		final int height = subsampledSize(getHeight(), subsample);
+
 		// pick a color model, based on the number of components and
 		// bits per component
 		ColorModel cm = createColorModel();
@@ -317,7 +398,7 @@ public class PDFImage {
 			// remember where the jpeg data starts
 			jpegData.mark();
 
-			JpegDecoder decoder = new JpegDecoder(jpegData, cm);
+			JpegDecoder decoder = new JpegDecoder(jpegData, cm, subsample);
 
 			IOException decodeEx = null;
 			try {
@@ -333,8 +414,9 @@ public class PDFImage {
 					bi = decoder.decode();
 				} catch (IOException e2) {
 					// It probably wasn't the YCCK/CMYK issue!
-					// try the "old" implementation
-					bi = parseData(data, null);
+					// try the "old" implementation, which runs the whole
+					// filter chain including DCTDecode
+					bi = parseData(data, null, subsample);
 					return bi;
 				}
 			}
@@ -356,20 +438,32 @@ public class PDFImage {
 						+ "support would help?", decodeEx);
 			}
 		} else {
-			// create the data buffer
-			DataBuffer db = new DataBufferByte(data, data.length);
-
 			// pick a color model, based on the number of components and
 			// bits per component
 			cm = getColorModel();
 
+			if (subsample > 1) {
+				int samplesPerPixel = cm.createCompatibleSampleModel(1, 1).getNumBands();
+				InputStream in = (data != null) ? new ByteArrayInputStream(data) : imageObj.getInputStream();
+				try {
+					data = subsampleData(in, subsample, samplesPerPixel, width, height);
+				} finally {
+					in.close();
+				}
+			} else if (data == null) {
+				data = imageObj.getStream();
+			}
+
+			// create the data buffer
+			DataBuffer db = new DataBufferByte(data, data.length);
+
 			// create a compatible raster
-			SampleModel sm = cm.createCompatibleSampleModel(getWidth(), getHeight());
+			SampleModel sm = cm.createCompatibleSampleModel(width, height);
 			WritableRaster raster;
 			try {
 				raster = Raster.createWritableRaster(sm, db, new Point(0, 0));
 			} catch (RasterFormatException e) {
-				int tempExpectedSize = getWidth() * getHeight() * getColorSpace().getNumComponents()
+				int tempExpectedSize = width * height * getColorSpace().getNumComponents()
 						* Math.max(8, getBitsPerComponent()) / 8;
 
 				if (tempExpectedSize < 3) {
@@ -400,7 +494,7 @@ public class PDFImage {
 				}
 
 				// create the image with an explicit indexed color model.
-				bi = new BufferedImage(getWidth(), getHeight(), type, icm);
+				bi = new BufferedImage(width, height, type, icm);
 
 				// set the data explicitly as well
 				bi.setData(raster);
@@ -421,6 +515,9 @@ public class PDFImage {
 
 				final byte[] ncc = new byte[] { (byte) -cc[0], (byte) -cc[1] };
 
+				if (getSMask() == null && Configuration.getInstance().isKeepBilevelImagesPacked()) {
+					return biColorToBinary(raster, ncc);
+				}
 				bi = biColorToGrayscale(raster, ncc);
 				// Return when there is no SMask
 				if (getSMask() == null)
@@ -436,19 +533,20 @@ public class PDFImage {
 		ColorSpace cs = cm.getColorSpace();
 		ColorSpace rgbCS = ColorSpace.getInstance(ColorSpace.CS_sRGB);
 		if (isGreyscale(cs) && bpc <= 8 && getDecode() == null && jpegData == null
+				&& (data != null || bpc != 1)
 				&& Configuration.getInstance().isConvertGreyscaleImagesToArgb()) {
-			bi = convertGreyscaleToArgb(data, bi);
+			bi = convertGreyscaleToArgb(data, bi, width, height);
 		} else if (!isImageMask() && cs instanceof ICC_ColorSpace && !cs.equals(rgbCS)
 				&& !Configuration.getInstance().isAvoidColorConvertOp()) {
 			ColorConvertOp op = new ColorConvertOp(cs, rgbCS, null);
 
-			BufferedImage converted = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+			BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 
 			bi = op.filter(bi, converted);
 		}
 		else if (cs.getType() == ColorSpace.TYPE_CMYK) {
 			// convert to ARGB for faster drawing without ColorConvertOp
-			BufferedImage converted = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+			BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 			Graphics2D graphics = converted.createGraphics();
 			graphics.drawImage(bi,0,0,null);
 			graphics.dispose();
@@ -462,19 +560,23 @@ public class PDFImage {
 			try {
 				int w = bi.getWidth();
 				int h = bi.getHeight();
+				// decode the mask at the resolution this image was decoded at
+				int maskSubsample = sMaskImage.getSubsampling(width, height);
+				int maskWidth = subsampledSize(sMaskImage.getWidth(), maskSubsample);
+				int maskHeight = subsampledSize(sMaskImage.getHeight(), maskSubsample);
 				// if the bitmap is only a few pixels it just defines the color
 				boolean maskOnly = (w <= 2);
 				if (maskOnly) {
 					// use size of mask
-					si = sMaskImage.getImage();
+					si = sMaskImage.getImage(maskSubsample);
 	            	w = si.getWidth();
 	            	h = si.getHeight();
 				}
-				else if (sMaskImage.getHeight() != h && sMaskImage.getWidth() != w) {
+				else if (maskHeight != h || maskWidth != w) {
 	                // in case the two images do not have the same size, scale 
-	            	if (sMaskImage.getHeight()*sMaskImage.getWidth() > w*h) {
+	            	if (maskHeight*maskWidth > w*h) {
 		            	// upscale image
-	            		si = sMaskImage.getImage();
+	            		si = sMaskImage.getImage(maskSubsample);
 		            	w = si.getWidth();
 		            	h = si.getHeight();
 		            	int hints = Image.SCALE_FAST;
@@ -486,41 +588,16 @@ public class PDFImage {
 	            	}
 	            	else {
 	            		// upscale mask
-	            		si = scaleSMaskImage(sMaskImage);
+	            		si = scaleSMaskImage(sMaskImage, maskSubsample, width, height);
 	            	}
 	            } 
 	            else {
-	                si = sMaskImage.getImage();
+	                si = sMaskImage.getImage(maskSubsample);
 	            }
 	            PDFDebugger.debugImage(si, "smask" + this.imageObj.getObjNum());
 
-    			BufferedImage outImage = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
-    			PDFDebugger.debugImage(si, "outImage" + this.imageObj.getObjNum());
-    			int[] srcArray = new int[w];
-    			int[] maskArray = new int[w];
-    
-    			for (int i = 0; i < h; i++) {
-    				if (maskOnly) {
-    					// use first pixel color from image
-    					Arrays.fill(srcArray, bi.getRGB(0,0));
-    				}
-    				else {
-    					// pixel row from image
-        				bi.getRGB(0, i, w, 1, srcArray, 0, w);
-    				}
-    				// pixel row from mask
-    				si.getRGB(0, i, w, 1, maskArray, 0, w);
-    
-    				for (int j = 0; j < w; j++) {
-    					int ac = 0xff000000;
-    					// alpha from mask with color from image
-    					maskArray[j] = ((maskArray[j] & 0xff) << 24) | (srcArray[j] & ~ac);
-    				}
-    				// write pixel row
-    				outImage.setRGB(0, i, w, 1, maskArray, 0, w);
-    			}
-    
-    			bi = outImage;
+    			bi = applySMask(bi, si, w, h, maskOnly);
+    			PDFDebugger.debugImage(bi, "outImage" + this.imageObj.getObjNum());
             } catch (PDFImageParseException e) {
                 PDFDebugger.debug("Error parsing sMask image caused by:" + e.getMessage(), 100);
             }
@@ -530,35 +607,274 @@ public class PDFImage {
 		return bi;
 	}
 
+	/**
+	 * Merge the soft mask into the image as its alpha channel. The pixels
+	 * are read straight from the data buffers of the common packed int and
+	 * interleaved byte RGB images, and written straight into the result.
+	 * An ARGB or RGB int image made for this image takes the alpha into
+	 * its own pixels, so no copy of it is made.
+	 * 
+	 * @param bi the image, the same size as the mask unless maskOnly
+	 * @param si the mask, whose blue channel gives the alpha
+	 * @param w the width of the result
+	 * @param h the height of the result
+	 * @param maskOnly true if the image only defines the color, which is
+	 *            taken from its first pixel
+	 * @return the image with straight (not premultiplied) alpha
+	 */
+	private static BufferedImage applySMask(BufferedImage bi, BufferedImage si, int w, int h, boolean maskOnly) {
+		BufferedImage outImage;
+		int[] out = maskOnly ? null : getPackedRGB(bi, w);
+		boolean inPlace = (out != null);
+		if (inPlace) {
+			// bi was created while decoding this image, so it can be
+			// reused as long as its pixels are reinterpreted as ARGB
+			WritableRaster raster = Raster.createPackedRaster(bi.getRaster().getDataBuffer(), w, h, w,
+					ARGB_MASKS, null);
+			outImage = new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+		} else {
+			outImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			out = ((DataBufferInt) outImage.getRaster().getDataBuffer()).getData();
+		}
+
+		int[] mask = getPackedRGB(si, w);
+		int[] srcRow = (inPlace || maskOnly) ? null : new int[w];
+		int[] maskRow = (mask != null) ? null : new int[w];
+		// use first pixel color from image
+		int color = maskOnly ? bi.getRGB(0, 0) : 0;
+		for (int y = 0, row = 0; y < h; y++, row += w) {
+			if (srcRow != null) {
+				getRGBRow(bi, y, srcRow);
+			}
+			int maskPos = row;
+			if (maskRow != null) {
+				si.getRGB(0, y, w, 1, maskRow, 0, w);
+				maskPos = 0;
+			}
+			int[] maskData = (maskRow != null) ? maskRow : mask;
+			for (int x = 0; x < w; x++) {
+				int rgb = maskOnly ? color : (inPlace ? out[row + x] : srcRow[x]);
+				// alpha from mask with color from image
+				out[row + x] = ((maskData[maskPos + x] & 0xff) << 24) | (rgb & 0xffffff);
+			}
+		}
+		return outImage;
+	}
+
+	/** the masks of the components of an ARGB pixel packed into an int */
+	private static final int[] ARGB_MASKS = { 0xff0000, 0xff00, 0xff, 0xff000000 };
+
+	/**
+	 * Get the pixels of an RGB or ARGB int image which are packed into an
+	 * int each, one row right after the other.
+	 * 
+	 * @return the pixels, or null if the image is laid out differently
+	 */
+	private static int[] getPackedRGB(BufferedImage image, int width) {
+		int type = image.getType();
+		if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+			return null;
+		}
+		WritableRaster raster = image.getRaster();
+		DataBuffer db = raster.getDataBuffer();
+		if (image.getWidth() != width || db.getOffset() != 0 || raster.getSampleModelTranslateX() != 0
+				|| raster.getSampleModelTranslateY() != 0
+				|| ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() != width) {
+			return null;
+		}
+		return ((DataBufferInt) db).getData();
+	}
+
+	/**
+	 * Read a row of pixels as sRGB ints, like BufferedImage.getRGB(), but
+	 * straight from the data buffer for interleaved 8 bit RGB images such
+	 * as decoded JPEGs and FlateDecode DeviceRGB images.
+	 */
+	private static void getRGBRow(BufferedImage image, int y, int[] row) {
+		WritableRaster raster = image.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		ColorModel cm = image.getColorModel();
+		if (sm instanceof PixelInterleavedSampleModel && raster.getDataBuffer() instanceof DataBufferByte
+				&& cm instanceof ComponentColorModel && !cm.hasAlpha() && cm.getNumComponents() == 3
+				&& cm.getColorSpace().isCS_sRGB() && sm.getSampleSize(0) == 8
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+			PixelInterleavedSampleModel psm = (PixelInterleavedSampleModel) sm;
+			int[] bandOffsets = psm.getBandOffsets();
+			int pixelStride = psm.getPixelStride();
+			DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+			byte[] data = db.getData();
+			int pos = db.getOffset() + y * psm.getScanlineStride();
+			int r = pos + bandOffsets[0];
+			int g = pos + bandOffsets[1];
+			int b = pos + bandOffsets[2];
+			for (int x = 0; x < row.length; x++, r += pixelStride, g += pixelStride, b += pixelStride) {
+				row[x] = 0xff000000 | ((data[r] & 0xff) << 16) | ((data[g] & 0xff) << 8) | (data[b] & 0xff);
+			}
+		} else {
+			image.getRGB(0, y, row.length, 1, row, 0, row.length);
+		}
+	}
+
 	/**
 	 * Scale the softmask image to the size of the actual image
 	 * 
 	 * @param sMaskImage
+	 * @param maskSubsample the subsampling factor to decode the mask with
+	 * @param width the width of the decoded image
+	 * @param height the height of the decoded image
 	 * @return
 	 * @throws PDFImageParseException 
 	 */
-	private BufferedImage scaleSMaskImage(PDFImage sMaskImage) throws PDFImageParseException {
-		BufferedImage before = sMaskImage.getImage();
+	private BufferedImage scaleSMaskImage(PDFImage sMaskImage, int maskSubsample, int width, int height)
+			throws PDFImageParseException {
+		BufferedImage before = sMaskImage.getImage(maskSubsample);
 		int w = before.getWidth();
 		int h = before.getHeight();
 
 		if (PDFDebugger.DEBUG_IMAGES) {
-			PDFDebugger.debug("Scaling image from " + w + "/" + h + " to " + this.width + "/" + this.height);
+			PDFDebugger.debug("Scaling image from " + w + "/" + h + " to " + width + "/" + height);
 		}
-		BufferedImage after = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage after = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 		AffineTransform at = new AffineTransform();
 
-		at.scale(((double) this.width / w), ((double) this.height / h));
+		at.scale(((double) width / w), ((double) height / h));
 
 		AffineTransformOp scaleOp = new AffineTransformOp(at, AffineTransformOp.TYPE_BILINEAR);
 		return scaleOp.filter(before, after);
 	}
 
+	/**
+	 * Get the cache of the drawable forms of the images of this image's
+	 * file.
+	 * 
+	 * @return the cache, or null if this image can't be cached because it
+	 *         isn't a numbered object of a file, like an inline image
+	 */
+	PDFImageCache getImageCache() {
+		PDFObject obj = getNumberedObject();
+		if (obj == null || obj.getOwner() == null) {
+			return null;
+		}
+		return obj.getOwner().getImageCache();
+	}
+
+	/**
+	 * Get the key of this image in the image cache.
+	 * 
+	 * @param subsample the subsampling factor the image is decoded with
+	 * @param maskColor the color an image mask is painted in, or null if
+	 *            it isn't painted in a plain color
+	 */
+	PDFImageCache.Key getCacheKey(int subsample, Color maskColor) {
+		PDFObject obj = getNumberedObject();
+		if (maskColor != null) {
+			return new PDFImageCache.Key(obj.getObjNum(), obj.getObjGen(), subsample, maskColor.getRGB());
+		}
+		return new PDFImageCache.Key(obj.getObjNum(), obj.getObjGen(), subsample);
+	}
+
+	/**
+	 * Get the top level object of this image, which XObjects usually
+	 * refer to indirectly.
+	 * 
+	 * @return the object, or null if it has no object number
+	 */
+	private PDFObject getNumberedObject() {
+		PDFObject obj;
+		try {
+			obj = this.imageObj.dereference();
+		} catch (IOException e) {
+			return null;
+		}
+		return obj.getObjNum() < 0 ? null : obj;
+	}
+
+	/**
+	 * Work out the subsampling factor to decode this image with, so that
+	 * it is still at least targetWidth x targetHeight pixels large. Only
+	 * 8 bit per component images are subsampled: 1 bit images and masks
+	 * would lose thin lines, and are cheap in their packed form anyway.
+	 * 
+	 * @return a power of two, 1 for the full resolution image
+	 */
+	int getSubsampling(int targetWidth, int targetHeight) {
+		if (isImageMask() || getBitsPerComponent() != 8) {
+			return 1;
+		}
+		targetWidth = Math.max(targetWidth, 1);
+		targetHeight = Math.max(targetHeight, 1);
+		int subsample = 1;
+		while (subsample < MAX_SUBSAMPLING
+				&& subsampledSize(getWidth(), subsample * 2) >= targetWidth
+				&& subsampledSize(getHeight(), subsample * 2) >= targetHeight) {
+			subsample *= 2;
+		}
+		return subsample;
+	}
+
+	/**
+	 * The number of pixels left of size pixels when keeping every
+	 * subsample-th one, the same as ImageIO's source subsampling.
+	 */
+	private static int subsampledSize(int size, int subsample) {
+		return (size + subsample - 1) / subsample;
+	}
+
+	/**
+	 * Pick every subsample-th pixel of every subsample-th row out of the
+	 * unpacked 8 bit per component image data, reading it a row at a time
+	 * so the full size image is never held in memory. Missing data at the
+	 * end of a short stream is left black, as it would be for a full size
+	 * raster.
+	 */
+	private byte[] subsampleData(InputStream in, int subsample, int components, int width, int height)
+			throws IOException {
+		final int srcStep = subsample * components;
+		final byte[] row = new byte[getWidth() * components];
+		final byte[] subsampled = new byte[width * height * components];
+		int dst = 0;
+		for (int y = 0; y < height; y++) {
+			int read = readRow(in, row);
+			for (int x = 0, src = 0; x < width; x++, src += srcStep) {
+				if (src + components > read) {
+					return subsampled;
+				}
+				for (int c = 0; c < components; c++) {
+					subsampled[dst++] = row[src + c];
+				}
+			}
+			// skip the rows in between
+			for (int i = 1; i < subsample && y < height - 1; i++) {
+				if (readRow(in, row) < row.length) {
+					return subsampled;
+				}
+			}
+		}
+		return subsampled;
+	}
+
+	/**
+	 * Read a row of image data, or as much of it as the stream still has.
+	 * 
+	 * @return the number of bytes read
+	 */
+	private static int readRow(InputStream in, byte[] row) throws IOException {
+		int length = 0;
+		while (length < row.length) {
+			int read = in.read(row, length, row.length - length);
+			if (read < 0) {
+				break;
+			}
+			length += read;
+		}
+		return length;
+	}
+
 	private boolean isGreyscale(ColorSpace aCs) {
 		return aCs == PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_GRAY).getColorSpace();
 	}
 
-	private BufferedImage convertGreyscaleToArgb(byte[] data, BufferedImage bi) {
+	private BufferedImage convertGreyscaleToArgb(byte[] data, BufferedImage bi, int width, int height) {
 		// we use an optimised greyscale colour conversion, as with scanned
 		// greyscale/mono documents consisting of nothing but page-size
 		// images, using the ICC converter is perhaps 15 times slower than this
@@ -570,22 +886,22 @@ public class PDFImage {
 		// each possible greyscale value and its desired value in sRGB.
 		// We also try to avoid going through SampleModels, WritableRasters or
 		// BufferedImages as that takes about 3 times as long.
-		final int[] convertedPixels = new int[getWidth() * getHeight()];
+		final int[] convertedPixels = new int[width * height];
 		final WritableRaster r = bi.getRaster();
 		int i = 0;
 		final int[] greyToArgbMap = getGreyToArgbMap(bpc);
 		if (bpc == 1) {
-			int calculatedLineBytes = (getWidth() + 7) / 8;
+			int calculatedLineBytes = (width + 7) / 8;
 			int rowStartByteIndex;
 			// avoid hitting the WritableRaster for the common 1 bpc case
 			if (greyToArgbMap[0] == 0 && greyToArgbMap[1] == 0xFFFFFFFF) {
 				// optimisation for common case of a direct map to full white
 				// and black, using bit twiddling instead of consulting the
 				// greyToArgb map
-				for (int y = 0; y < getHeight(); ++y) {
+				for (int y = 0; y < height; ++y) {
 					// each row is byte-aligned
 					rowStartByteIndex = y * calculatedLineBytes;
-					for (int x = 0; x < getWidth(); ++x) {
+					for (int x = 0; x < width; ++x) {
 						final byte b = data[rowStartByteIndex + x / 8];
 						final int white = b >> (7 - (x & 7)) & 1;
 						// if white == 0, white - 1 will be 0xFFFFFFFF,
@@ -601,9 +917,9 @@ public class PDFImage {
 			} else {
 				// 1 bpc case where we can't bit-twiddle and need to consult
 				// the map
-				for (int y = 0; y < getHeight(); ++y) {
+				for (int y = 0; y < height; ++y) {
 					rowStartByteIndex = y * calculatedLineBytes;
-					for (int x = 0; x < getWidth(); ++x) {
+					for (int x = 0; x < width; ++x) {
 						final byte b = data[rowStartByteIndex + x / 8];
 						final int val = b >> (7 - (x & 7)) & 1;
 						convertedPixels[i] = greyToArgbMap[val];
@@ -612,8 +928,8 @@ public class PDFImage {
 				}
 			}
 		} else {
-			for (int y = 0; y < getHeight(); ++y) {
-				for (int x = 0; x < getWidth(); ++x) {
+			for (int y = 0; y < height; ++y) {
+				for (int x = 0; x < width; ++x) {
 					final int greyscale = r.getSample(x, y, 0);
 					convertedPixels[i] = greyToArgbMap[greyscale];
 					++i;
@@ -623,8 +939,8 @@ public class PDFImage {
 
 		final ColorModel ccm = ColorModel.getRGBdefault();
 		return new BufferedImage(ccm,
-				Raster.createPackedRaster(new DataBufferInt(convertedPixels, convertedPixels.length), getWidth(),
-						getHeight(), getWidth(), ((PackedColorModel) ccm).getMasks(), null),
+				Raster.createPackedRaster(new DataBufferInt(convertedPixels, convertedPixels.length), width,
+						height, width, ((PackedColorModel) ccm).getMasks(), null),
 				false, null);
 	}
 
@@ -675,6 +991,22 @@ public class PDFImage {
 		return argbVals;
 	}
 
+	/**
+	 * Creates an image of type {@link BufferedImage#TYPE_BYTE_BINARY} on the
+	 * given raster, which is used as it is, so the image takes no more
+	 * memory than the packed data
+	 * 
+	 * @param raster
+	 *            Raster of an image with just two colors, bitwise encoded
+	 * @param ncc
+	 *            Array with two entries that describe the corresponding gray
+	 *            values
+	 */
+	private static BufferedImage biColorToBinary(WritableRaster raster, byte[] ncc) {
+		IndexColorModel icm = new IndexColorModel(1, 2, ncc, ncc, ncc);
+		return new BufferedImage(icm, raster, false, null);
+	}
+
 	/**
 	 * Creates a new image of type {@link TYPE_BYTE_GRAY} which represents the
 	 * given raster
@@ -1094,6 +1426,8 @@ public class PDFImage {
 		private ColorModel cm;
 		/** Whether the YCCK/CMYK decode work-around should be used */
 		private boolean ycckcmykDecodeMode = false;
+		/** The source subsampling factor, 1 for the full resolution image */
+		private final int subsample;
 
 		/**
 		 * Class constructor
@@ -1102,10 +1436,13 @@ public class PDFImage {
 		 *            the JPEG data
 		 * @param cm
 		 *            the color model as presented in the PDF
+		 * @param subsample
+		 *            the source subsampling factor
 		 */
-		private JpegDecoder(ByteBuffer jpegData, ColorModel cm) {
+		private JpegDecoder(ByteBuffer jpegData, ColorModel cm, int subsample) {
 			this.jpegData = jpegData;
 			this.cm = cm;
+			this.subsample = subsample;
 		}
 
 		/**
@@ -1141,11 +1478,20 @@ public class PDFImage {
 		private BufferedImage decode() throws IOException {
 
 			ImageReadParam readParam = null;
+			if (subsample > 1) {
+				// let the reader skip the pixels we don't want, rather
+				// than decoding all of them and scaling down later
+				readParam = new ImageReadParam();
+				readParam.setSourceSubsampling(subsample, subsample, 0, 0);
+			}
 			if (getDecode() != null) {
 				// we have to allocate our own buffered image so that we can
 				// install our colour model which will do the desired decode
-				readParam = new ImageReadParam();
-				SampleModel sm = cm.createCompatibleSampleModel(getWidth(), getHeight());
+				if (readParam == null) {
+					readParam = new ImageReadParam();
+				}
+				SampleModel sm = cm.createCompatibleSampleModel(subsampledSize(getWidth(), subsample),
+						subsampledSize(getHeight(), subsample));
 				final WritableRaster raster = Raster.createWritableRaster(sm, new Point(0, 0));
 				readParam.setDestination(new BufferedImage(cm, raster, true, null));
 			}
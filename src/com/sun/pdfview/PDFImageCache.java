@@ -0,0 +1,343 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of images in the form they are drawn in, so that an image used
+ * on many pages, like a logo or a background, is decoded and converted
+ * only once.
+ * <p>
+ * Images are keyed by their object number and generation, by the
+ * subsampling they were decoded with and, for image masks, by the color
+ * they are painted in. Images with an alpha channel are premultiplied,
+ * i.e. converted to {@link BufferedImage#TYPE_INT_ARGB_PRE}, before they
+ * are cached.
+ * <p>
+ * Like the {@link Cache}, entries are held strongly as long as the size of
+ * their pixel data stays within a memory budget, and a
+ * {@link CachePolicy} chooses which entries to drop when it is exceeded.
+ */
+public class PDFImageCache {
+
+    /** the images in the cache */
+    private final ConcurrentMap<Key, Entry> images = new ConcurrentHashMap<Key, Entry>();
+
+    /** the policy choosing the entries to evict */
+    private final CachePolicy policy;
+
+    /** the budget in bytes, or a value &lt;= 0 for an unbounded cache */
+    private final long maxBytes;
+
+    /** the size of all images in the cache */
+    private final AtomicLong weight = new AtomicLong();
+
+    /** the statistics */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new image cache, using the budget from the
+     * {@link Configuration} and least recently used eviction
+     */
+    public PDFImageCache() {
+        this(Configuration.getInstance().getImageCacheMaxBytes());
+    }
+
+    /**
+     * Creates a new image cache with least recently used eviction
+     *
+     * @param maxBytes the memory budget in bytes; a value &lt;= 0 means
+     *  the cache is never trimmed
+     */
+    public PDFImageCache(long maxBytes) {
+        this(maxBytes, new LRUCachePolicy());
+    }
+
+    /**
+     * Creates a new image cache
+     *
+     * @param maxBytes the memory budget in bytes; a value &lt;= 0 means
+     *  the cache is never trimmed
+     * @param policy the policy choosing the entries to evict
+     */
+    public PDFImageCache(long maxBytes, CachePolicy policy) {
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * Get an image from the cache
+     *
+     * @param key the key of the image
+     * @return the image, or null if it isn't in the cache
+     */
+    public BufferedImage getImage(Key key) {
+        Entry entry = this.images.get(key);
+        if (entry != null) {
+            this.hits.incrementAndGet();
+            this.policy.entryAccessed(entry);
+            return entry.image;
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Convert an image into the form it is drawn in, and add it to the
+     * cache. Images larger than the whole budget are converted but not
+     * kept.
+     *
+     * @param key the key of the image
+     * @param image the image as decoded
+     * @return the image to draw
+     */
+    public BufferedImage addImage(Key key, BufferedImage image) {
+        image = toDrawableImage(image);
+        Entry entry = new Entry(key, image);
+        if (this.maxBytes > 0 && entry.weight > this.maxBytes) {
+            return image;
+        }
+        Entry old = this.images.put(key, entry);
+        if (old != null) {
+            discard(old);
+        }
+        this.weight.addAndGet(entry.weight);
+        synchronized (entry) {
+            // another thread may have replaced it already, then the
+            // policy must not learn about it
+            if (!entry.discarded) {
+                this.policy.entryAdded(entry, entry.weight);
+            }
+        }
+        trim();
+        return image;
+    }
+
+    /**
+     * Remove all images from the cache
+     */
+    public void clear() {
+        for (Entry entry : this.images.values()) {
+            if (this.images.remove(entry.key, entry)) {
+                discard(entry);
+            }
+        }
+    }
+
+    /**
+     * get the memory budget in bytes, a value &lt;= 0 if unbounded
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * get the size of the pixel data of all images in the cache
+     */
+    public long getWeight() {
+        return this.weight.get();
+    }
+
+    /**
+     * get the number of lookups which found their image
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * get the number of lookups which didn't find their image
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * get the number of images removed to stay within the budget
+     */
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    /**
+     * Premultiply straight ARGB images, so that Java2D doesn't have to on
+     * every draw when it scales or composites them. Other images are
+     * returned as they are: the packed and byte formats have fast loops of
+     * their own, and converting them would only make them bigger, and the
+     * renderer picks the way it resizes custom images by their type.
+     * The pixels are premultiplied straight on the int arrays, rounding
+     * like the premultiplied ColorModel does.
+     */
+    static BufferedImage toDrawableImage(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] src = buffer.getData();
+        int start = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                - raster.getSampleModelTranslateX();
+        BufferedImage converted = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] dst = ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+        int out = 0;
+        for (int y = 0; y < height; y++) {
+            int in = start + y * stride;
+            for (int x = 0; x < width; x++) {
+                int argb = src[in++];
+                int a = argb >>> 24;
+                if (a == 255) {
+                    dst[out++] = argb;
+                } else if (a == 0) {
+                    dst[out++] = 0;
+                } else {
+                    float factor = a / 255.0f;
+                    int r = (int) (((argb >> 16) & 0xff) * factor + 0.5f);
+                    int g = (int) (((argb >> 8) & 0xff) * factor + 0.5f);
+                    int b = (int) ((argb & 0xff) * factor + 0.5f);
+                    dst[out++] = (a << 24) | (r << 16) | (g << 8) | b;
+                }
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Account for an entry that is no longer in the cache.
+     */
+    private void discard(Entry entry) {
+        synchronized (entry) {
+            if (entry.discarded) {
+                return;
+            }
+            entry.discarded = true;
+        }
+        this.weight.addAndGet(-entry.weight);
+        this.policy.entryRemoved(entry);
+    }
+
+    /**
+     * Evict the entries chosen by the policy until the size of the cache
+     * fits into the budget.
+     */
+    private void trim() {
+        if (this.maxBytes <= 0) {
+            return;
+        }
+        while (this.weight.get() > this.maxBytes) {
+            Entry victim = (Entry) this.policy.selectVictim();
+            if (victim == null) {
+                return;
+            }
+            if (!this.images.remove(victim.key, victim)) {
+                // another thread removed it and accounts for it
+                return;
+            }
+            this.evictions.incrementAndGet();
+            discard(victim);
+        }
+    }
+
+    /**
+     * The key of an image in the cache
+     */
+    public static final class Key {
+        private final int objNum;
+        private final int objGen;
+        private final int subsample;
+        private final boolean masked;
+        private final int maskColor;
+
+        /**
+         * Create the key of an image
+         *
+         * @param objNum the object number of the image
+         * @param objGen the generation of the image
+         * @param subsample the subsampling factor it was decoded with
+         */
+        public Key(int objNum, int objGen, int subsample) {
+            this(objNum, objGen, subsample, false, 0);
+        }
+
+        /**
+         * Create the key of an image mask painted in a color
+         *
+         * @param objNum the object number of the image
+         * @param objGen the generation of the image
+         * @param subsample the subsampling factor it was decoded with
+         * @param maskColor the ARGB color the mask is painted in
+         */
+        public Key(int objNum, int objGen, int subsample, int maskColor) {
+            this(objNum, objGen, subsample, true, maskColor);
+        }
+
+        private Key(int objNum, int objGen, int subsample, boolean masked, int maskColor) {
+            this.objNum = objNum;
+            this.objGen = objGen;
+            this.subsample = subsample;
+            this.masked = masked;
+            this.maskColor = maskColor;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = this.objNum * 31 + this.objGen;
+            hash = hash * 31 + this.subsample;
+            return this.masked ? hash * 31 + this.maskColor : hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.objNum == key.objNum && this.objGen == key.objGen
+                    && this.subsample == key.subsample && this.masked == key.masked
+                    && this.maskColor == key.maskColor;
+        }
+    }
+
+    /** an image in the cache */
+    private static class Entry {
+        final Key key;
+        final BufferedImage image;
+        /** the size of the pixel data, in bytes */
+        final long weight;
+        /** whether this entry has been accounted for as removed */
+        boolean discarded;
+
+        Entry(Key key, BufferedImage image) {
+            this.key = key;
+            this.image = image;
+            this.weight = Cache.weigh(image);
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.sun.pdfview;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -428,6 +429,46 @@ public class PDFObject {
         return null;
     }
 
+    /**
+     * get the stream from this object as an input stream, decoded while it
+     * is read.  Will return null if this object isn't a STREAM.
+     * @return the stream, or null, if this isn't a STREAM.
+     */
+    public InputStream getInputStream() throws IOException {
+        return getInputStream(Collections.<String>emptySet());
+    }
+
+    /**
+     * get the stream from this object as an input stream, decoded while it
+     * is read.  If the decoded stream is already cached it is read from
+     * the cache instead.  Will return null if this object isn't a STREAM.
+     * @param filterLimits the filters at which to stop decoding
+     * @return the stream, or null, if this isn't a STREAM.
+     */
+    public InputStream getInputStream(Set<String> filterLimits) throws IOException {
+        if (type == INDIRECT) {
+            return dereference().getInputStream(filterLimits);
+        } else if (type == STREAM && stream != null) {
+            ByteBuffer streamBuf;
+            synchronized (stream) {
+                if (decodedStream != null && filterLimits.equals(decodedStreamFilterLimits)) {
+                    ByteBuffer outStream = (ByteBuffer) decodedStream.get();
+                    if (outStream != null) {
+                        outStream = outStream.duplicate();
+                        outStream.rewind();
+                        return new ByteBufferInputStream(outStream);
+                    }
+                }
+                streamBuf = stream.duplicate();
+            }
+            streamBuf.rewind();
+            return PDFDecoder.openStream(this, streamBuf, filterLimits);
+        }
+
+        // wrong type
+        return null;
+    }
+
     /**
      * Get the decoded stream value
      */
@@ -648,6 +689,14 @@ public class PDFObject {
         return obj != null && obj.getStringValue().equals(match);
     }
 
+    /**
+     * get the file this object was read from
+     * @return the file, or null if the object isn't from a file
+     */
+    PDFFile getOwner() {
+        return owner;
+    }
+
     public PDFDecrypter getDecrypter() {
         // PDFObjects without owners are always created as part of
         // content instructions. Such an object will never have encryption
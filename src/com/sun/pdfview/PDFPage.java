@@ -44,9 +44,12 @@ import com.sun.pdfview.annotation.PDFAnnotation;
 * single page from a PDFFile. The PDFPage is not itself drawable;
 * instead, create a PDFImage to display something on the screen.
 * <p>
-* This file also contains all of the PDFCmd commands that might be a part of the command stream in
-* a PDFPage. They probably should be inner classes of PDFPage instead of separate non-public
-* classes.
+* A finished page is frozen into a compact PDFDisplayList when it is first
+* rendered. Adding or removing commands turns it back into a list of
+* commands first.
+* <p>
+* This file also contains the image and shading PDFCmd commands that might
+* be a part of the command stream in a PDFPage.
 *
 * @author Mike Wessler
 */
@@ -54,13 +57,25 @@ public class PDFPage {
     /**
     * the array of commands. The length of this array will always
     * be greater than or equal to the actual number of commands.
+    * Null once the page has been frozen into the display list.
+    */
+    private volatile List<PDFCmd> commands;
+    /**
+    * the commands of a finished page in compact form, created when the
+    * page is first rendered
     */
-    private final List<PDFCmd> commands;
+    private volatile PDFDisplayList displayList;
+    /**
+    * the estimated size of the first weighedCommands commands, see
+    * getByteSize(). Guarded by this page's lock.
+    */
+    private long commandBytes;
+    private int weighedCommands;
     /**
     * whether this page has been finished. If true, there will be no
     * more commands added to the cmds list.
     */
-    private boolean finished = false;
+    private volatile boolean finished = false;
     /** the page number used to find this page */
     private final int pageNumber;
     /** the bounding box of the page, in page coordinates */
@@ -341,21 +356,37 @@ public class PDFPage {
     * get the current number of commands for this page
     */
     public int getCommandCount() {
-        return this.commands.size();
+        Object cmds = currentCommands();
+        if (cmds instanceof PDFDisplayList) {
+            return ((PDFDisplayList) cmds).size();
+        }
+        return ((List<?>) cmds).size();
     }
 
     /**
     * get the command at a given index
     */
+    @SuppressWarnings("unchecked")
     public PDFCmd getCommand(int index) {
-        return this.commands.get(index);
+        Object cmds = currentCommands();
+        if (cmds instanceof PDFDisplayList) {
+            return ((PDFDisplayList) cmds).getCommand(index);
+        }
+        return ((List<PDFCmd>) cmds).get(index);
     }
 
     /**
-    * get all the commands in the current page
+    * get all the commands in the current page. Once the page has been
+    * frozen into its display list, this is a copy.
     */
+    @SuppressWarnings("unchecked")
     public List<PDFCmd> getCommands() {
-        return this.commands;
+        Object cmds = currentCommands();
+        if (cmds instanceof PDFDisplayList) {
+            PDFDisplayList list = (PDFDisplayList) cmds;
+            return list.getCommands(0, list.size());
+        }
+        return (List<PDFCmd>) cmds;
     }
 
     /**
@@ -368,14 +399,145 @@ public class PDFPage {
     /*
      * get the commands in the page within the given start and end indices
      */
+    @SuppressWarnings("unchecked")
     public List<PDFCmd> getCommands(int startIndex, int endIndex) {
-        return this.commands.subList(startIndex, endIndex);
+        Object cmds = currentCommands();
+        if (cmds instanceof PDFDisplayList) {
+            return ((PDFDisplayList) cmds).getCommands(startIndex, endIndex);
+        }
+        return ((List<PDFCmd>) cmds).subList(startIndex, endIndex);
+    }
+
+    /**
+    * copy the commands starting at the given index into an array, as
+    * many as are available and fit.
+    *
+    * @return the number of commands copied
+    */
+    @SuppressWarnings("unchecked")
+    public int getCommands(int startIndex, PDFCmd[] dest) {
+        Object cmds = currentCommands();
+        if (cmds instanceof PDFDisplayList) {
+            PDFDisplayList list = (PDFDisplayList) cmds;
+            int count = Math.min(dest.length, list.size() - startIndex);
+            for (int i = 0; i < count; i++) {
+                dest[i] = list.getCommand(startIndex + i);
+            }
+            return Math.max(count, 0);
+        }
+        List<PDFCmd> list = (List<PDFCmd>) cmds;
+        synchronized (list) {
+            int count = Math.min(dest.length, list.size() - startIndex);
+            for (int i = 0; i < count; i++) {
+                dest[i] = list.get(startIndex + i);
+            }
+            return Math.max(count, 0);
+        }
+    }
+
+    /**
+    * get the display list of a finished page, freezing the commands into
+    * it the first time. Renderers use it to run through the commands
+    * without locking.
+    *
+    * @return the display list, or null if the page isn't finished yet
+    */
+    PDFDisplayList getDisplayList() {
+        PDFDisplayList list = this.displayList;
+        if (list != null || !this.finished) {
+            return list;
+        }
+        synchronized (this) {
+            if (this.displayList == null && this.commands != null) {
+                List<PDFCmd> cmds = this.commands;
+                synchronized (cmds) {
+                    list = new PDFDisplayList(cmds);
+                }
+                // publish the display list before dropping the commands,
+                // see currentCommands(); commands are only added or
+                // removed while holding this page's lock
+                this.displayList = list;
+                this.commands = null;
+            }
+            return this.displayList;
+        }
+    }
+
+    /**
+    * estimate the memory taken by the commands of this page, in bytes: by
+    * its display list once it has been frozen, otherwise by the commands
+    * and a reference to each. Only the commands added since the last
+    * call are weighed, so parsing doesn't pay for it.
+    */
+    long getByteSize() {
+        PDFDisplayList list = this.displayList;
+        if (list != null) {
+            return list.getByteSize();
+        }
+        synchronized (this) {
+            List<PDFCmd> cmds = this.commands;
+            if (cmds == null) {
+                // frozen in the meantime
+                return this.displayList.getByteSize();
+            }
+            // commands are only added or removed while holding this lock
+            int count = cmds.size();
+            for (int i = this.weighedCommands; i < count; i++) {
+                this.commandBytes += cmds.get(i).getByteSize();
+            }
+            this.weighedCommands = count;
+            return this.commandBytes + 8L * count;
+        }
+    }
+
+    /**
+    * get the commands as either the display list of a frozen page or the
+    * list of commands
+    */
+    private Object currentCommands() {
+        PDFDisplayList list = this.displayList;
+        if (list != null) {
+            return list;
+        }
+        List<PDFCmd> cmds = this.commands;
+        if (cmds != null) {
+            return cmds;
+        }
+        // frozen in the meantime
+        return this.displayList;
+    }
+
+    /**
+    * Turn a page that has been frozen into its display list back into a
+    * plain list of commands. Does nothing if the page isn't frozen.
+    * Adding or removing commands does this anyway, so there is no need
+    * to call it first. A finished page is frozen again the next time it
+    * is rendered.
+    */
+    public synchronized void unfreeze() {
+        PDFDisplayList list = this.displayList;
+        if (list != null) {
+            // set the commands before dropping the display list, see
+            // currentCommands()
+            this.commands = Collections.synchronizedList(list.getCommands(0, list.size()));
+            this.displayList = null;
+        }
+    }
+
+    /**
+    * get the list of commands for adding or removing commands. A frozen
+    * page is turned back into a list first. The caller must hold this
+    * page's lock, so the page can't be frozen again meanwhile.
+    */
+    private List<PDFCmd> modifiableCommands() {
+        unfreeze();
+        return this.commands;
     }
 
     public PDFCmd findLastCommand(Class<?> cls) {
-        int index = this.commands.size();
+        int index = getCommandCount();
         while (index-- > 0) {
-            PDFCmd cmd = this.commands.get(index);
+            PDFCmd cmd = getCommand(index);
             if (cmd.getClass().isAssignableFrom(cls)) {
                 return cmd;
             }
@@ -387,8 +549,8 @@ public class PDFPage {
     * Add a single command to the page list.
     */
     public void addCommand(PDFCmd cmd) {
-        synchronized (this.commands) {
-            this.commands.add(cmd);
+        synchronized (this) {
+            modifiableCommands().add(cmd);
         }
         // notify any outstanding images
         updateImages();
@@ -415,14 +577,17 @@ public class PDFPage {
     * If null, no extra transform will be added.
     */
     public void addCommands(PDFPage page, AffineTransform extra) {
-        synchronized (this.commands) {
-            addPush();
-            if (extra != null) {
-                addXform(extra);
+        synchronized (this) {
+            List<PDFCmd> cmds = modifiableCommands();
+            synchronized (cmds) {
+                addPush();
+                if (extra != null) {
+                    addXform(extra);
+                }
+                // addXform(page.getTransform());
+                cmds.addAll(page.getCommands());
+                addPop();
             }
-            // addXform(page.getTransform());
-            this.commands.addAll(page.getCommands());
-            addPop();
         }
         // notify any outstanding images
         updateImages();
@@ -432,8 +597,10 @@ public class PDFPage {
     * Clear all commands off the current page
     */
     public void clearCommands() {
-        synchronized (this.commands) {
-            this.commands.clear();
+        synchronized (this) {
+            modifiableCommands().clear();
+            this.commandBytes = 0;
+            this.weighedCommands = 0;
         }
         // notify any outstanding images
         updateImages();
@@ -696,9 +863,11 @@ public class PDFPage {
 
     public void addAnnotations() {
     	if(this.annots != null) {
-            for (PDFAnnotation pdfAnnotation : this.annots) {
-                // add command to the page if needed
-                this.commands.addAll(pdfAnnotation.getPageCommandsForAnnotation());
+            synchronized (this) {
+                for (PDFAnnotation pdfAnnotation : this.annots) {
+                    // add command to the page if needed
+                    modifiableCommands().addAll(pdfAnnotation.getPageCommandsForAnnotation());
+                }
             }
     	}
     }
@@ -736,74 +905,6 @@ class PDFImageCmd extends PDFCmd {
     }
 }
 
-/**
-* set the fill paint
-*/
-class PDFFillPaintCmd extends PDFCmd {
-    PDFPaint p;
-
-    public PDFFillPaintCmd(PDFPaint p) {
-        this.p = p;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.setFillPaint(this.p);
-        return null;
-    }
-}
-
-/**
-* set the stroke paint
-*/
-class PDFStrokePaintCmd extends PDFCmd {
-    PDFPaint p;
-
-    public PDFStrokePaintCmd(PDFPaint p) {
-        this.p = p;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.setStrokePaint(this.p);
-        return null;
-    }
-}
-
-/**
-* set the fill paint
-*/
-class PDFFillAlphaCmd extends PDFCmd {
-    float a;
-
-    public PDFFillAlphaCmd(float a) {
-        this.a = a;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.setFillAlpha(this.a);
-        return null;
-    }
-}
-
-/**
-* set the stroke paint
-*/
-class PDFStrokeAlphaCmd extends PDFCmd {
-    float a;
-
-    public PDFStrokeAlphaCmd(float a) {
-        this.a = a;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.setStrokeAlpha(this.a);
-        return null;
-    }
-}
-
 /**
 * set the shade paint
 */
@@ -843,123 +944,3 @@ class PDFShadeCommand extends PDFCmd {
     }
 }
 
-/**
-* push the graphics state
-*/
-class PDFPushCmd extends PDFCmd {
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.push();
-        return null;
-    }
-}
-
-/**
-* pop the graphics state
-*/
-class PDFPopCmd extends PDFCmd {
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.pop();
-        return null;
-    }
-}
-
-/**
-* concatenate a transform to the graphics state
-*/
-class PDFXformCmd extends PDFCmd {
-    AffineTransform at;
-
-    public PDFXformCmd(AffineTransform at) {
-        if (at == null) {
-            throw new RuntimeException("Null transform in PDFXformCmd");
-        }
-        this.at = at;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.transform(this.at);
-        return null;
-    }
-
-    public String toString(PDFRenderer state) {
-        return "PDFXformCmd: " + this.at;
-    }
-
-    @Override
-    public String getDetails() {
-        StringBuffer buf = new StringBuffer();
-        buf.append("PDFXformCommand: \n");
-        buf.append(this.at.toString());
-        return buf.toString();
-    }
-}
-
-/**
-* change the stroke style
-*/
-class PDFChangeStrokeCmd extends PDFCmd {
-    float w, limit, phase;
-    int cap, join;
-    float[] ary;
-
-    public PDFChangeStrokeCmd() {
-        this.w = PDFRenderer.NOWIDTH;
-        this.cap = PDFRenderer.NOCAP;
-        this.join = PDFRenderer.NOJOIN;
-        this.limit = PDFRenderer.NOLIMIT;
-        this.ary = PDFRenderer.NODASH;
-        this.phase = PDFRenderer.NOPHASE;
-    }
-
-    /**
-    * set the width of the stroke. Rendering needs to account for a minimum
-    * stroke width in creating the output.
-    *
-    * @param w
-    * float
-    */
-    public void setWidth(float w) {
-        this.w = w;
-    }
-
-    public void setEndCap(int cap) {
-        this.cap = cap;
-    }
-
-    public void setLineJoin(int join) {
-        this.join = join;
-    }
-
-    public void setMiterLimit(float limit) {
-        this.limit = limit;
-    }
-
-    public void setDash(float[] ary, float phase) {
-        if (ary != null) {
-            // make sure no pairs start with 0, since having no opaque
-            // region doesn't make any sense.
-            for (int i = 0; i < ary.length - 1; i += 2) {
-                if (ary[i] == 0) {
-                    /* Give a very small value, since 0 messes java up */
-                    ary[i] = 0.00001f;
-                    break;
-                }
-            }
-        }
-        this.ary = ary;
-        this.phase = phase;
-    }
-
-    @Override
-    public Rectangle2D execute(PDFRenderer state) {
-        state.setStrokeParts(this.w, this.cap, this.join, this.limit, this.ary, this.phase);
-        return null;
-    }
-
-    public String toString(PDFRenderer state) {
-        return "STROKE: w=" + this.w + " cap=" + this.cap + " join=" + this.join + " limit=" + this.limit + " ary=" + this.ary + " phase=" + this.phase;
-    }
-}
\ No newline at end of file
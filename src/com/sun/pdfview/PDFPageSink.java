@@ -0,0 +1,43 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Receives the page images of a batch started with
+ * {@link PDFFile#renderPages(int, int, float, java.util.concurrent.Executor, PDFPageSink, boolean, int)}.
+ * <p>
+ * The batch never calls the sink from two threads at once, but it may call
+ * it from any of the executor's threads.
+ */
+public interface PDFPageSink {
+
+    /**
+     * Take a rendered page.  The image is not used by the batch anymore
+     * once this returns; keeping it keeps it in memory.
+     *
+     * @param pageNumber the number of the page, starting with 1
+     * @param image the rendered page
+     * @throws IOException if the image can't be stored, this stops the
+     * batch
+     */
+    void pageRendered(int pageNumber, BufferedImage image) throws IOException;
+}
@@ -26,11 +26,13 @@ import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.Stack;
 
@@ -52,7 +54,7 @@ import com.sun.pdfview.pattern.PDFShader;
 public class PDFParser extends BaseWatchable {
     private int mDebugCommandIndex;
     // ---- parsing variables
-    private Stack<Object> stack; // stack of Object
+    private OperandStack stack; // stack of operands
     private Stack<ParserState> parserStates; // stack of RenderState
     // the current render state
     private ParserState state;
@@ -75,7 +77,21 @@ public class PDFParser extends BaseWatchable {
     */
     private PDFPage cmds;
     // ---- result variables
+    /**
+    * the content stream, or when reading from an input stream, a window
+    * onto it; the bytes from 0 to limit are valid
+    */
     byte[] stream;
+    private int limit;
+    /** the rest of the content stream, or null if it has all been read */
+    private InputStream input;
+    /** the problem reading the input, rethrown once parsing reaches it */
+    private IOException inputException;
+    /**
+    * the start of the bytes in the window that are still needed when it
+    * is refilled, or -1 if only those from loc on are
+    */
+    private int mark = -1;
     HashMap<String, PDFObject> resources;
 
     boolean errorwritten = false;
@@ -100,11 +116,248 @@ public class PDFParser extends BaseWatchable {
             this.resources = new HashMap<String, PDFObject>();
         }
         this.stream = stream;
+        this.limit = stream.length;
+    }
+
+    /**
+    * Don't call this constructor directly. Instead, use
+    * PDFFile.getPage(int pagenum) to get a PDFPage. There should
+    * never be any reason for a user to create, access, or hold
+    * on to a PDFParser.
+    * <p>
+    * The content stream is read while it is parsed, and closed when
+    * parsing is done.
+    */
+    public PDFParser(PDFPage cmds, InputStream stream, HashMap<String, PDFObject> resources) {
+        this(cmds, new byte[WINDOW_SIZE], resources);
+        this.limit = 0;
+        this.input = stream;
+    }
+
+    /** the initial size of the window onto a content stream being read */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    /**
+    * check whether there is a byte to read at loc, reading more of
+    * the content stream if needed.
+    */
+    private boolean hasMore() {
+        return this.loc < this.limit || fill(1);
+    }
+
+    /**
+    * read more of the content stream, until count bytes are available
+    * from loc on. The bytes that are no longer needed are dropped from
+    * the window, which only grows when a single token needs more room.
+    * The byte before loc is kept, so that a byte just read can still be
+    * pushed back.
+    *
+    * @return true if count bytes are available, false if the stream
+    * ends before that
+    */
+    private boolean fill(int count) {
+        if (this.input == null) {
+            return this.loc + count <= this.limit;
+        }
+        int keep = this.mark >= 0 ? this.mark : Math.max(this.loc - 1, 0);
+        if (keep > 0) {
+            System.arraycopy(this.stream, keep, this.stream, 0, this.limit - keep);
+            this.limit -= keep;
+            this.loc -= keep;
+            if (this.mark >= 0) {
+                this.mark -= keep;
+            }
+        }
+        if (this.loc + count > this.stream.length) {
+            this.stream = Arrays.copyOf(this.stream,
+                    Math.max(this.stream.length * 2, this.loc + count));
+        }
+        try {
+            while (this.loc + count > this.limit) {
+                int read = this.input.read(this.stream, this.limit, this.stream.length - this.limit);
+                if (read < 0) {
+                    closeInput();
+                    return false;
+                }
+                this.limit += read;
+            }
+        } catch (IOException e) {
+            this.inputException = e;
+            closeInput();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+    * close the content stream once it is no longer needed
+    */
+    private void closeInput() {
+        if (this.input != null) {
+            try {
+                this.input.close();
+            } catch (IOException e) {
+                // nothing more will be read from it
+            }
+            this.input = null;
+        }
     }
 
     // ///////////////////////////////////////////////////////////////
     // B E G I N R E A D E R S E C T I O N
     // ///////////////////////////////////////////////////////////////
+    // ///////////////////////////////////////////////////////////////
+    // O P E R A T O R T A B L E
+    // ///////////////////////////////////////////////////////////////
+    /** opcode of a keyword that is not a known operator */
+    static final int OP_UNKNOWN = 0;
+    static final int OP_q = 1;
+    static final int OP_Q = 2;
+    static final int OP_cm = 3;
+    static final int OP_w = 4;
+    static final int OP_J = 5;
+    static final int OP_j = 6;
+    static final int OP_M = 7;
+    static final int OP_d = 8;
+    static final int OP_ri = 9;
+    static final int OP_i = 10;
+    static final int OP_gs = 11;
+    static final int OP_m = 12;
+    static final int OP_l = 13;
+    static final int OP_c = 14;
+    static final int OP_v = 15;
+    static final int OP_y = 16;
+    static final int OP_h = 17;
+    static final int OP_re = 18;
+    static final int OP_S = 19;
+    static final int OP_s = 20;
+    static final int OP_f = 21;
+    static final int OP_F = 22;
+    static final int OP_f_STAR = 23;
+    static final int OP_B = 24;
+    static final int OP_B_STAR = 25;
+    static final int OP_b = 26;
+    static final int OP_b_STAR = 27;
+    static final int OP_n = 28;
+    static final int OP_W = 29;
+    static final int OP_W_STAR = 30;
+    static final int OP_sh = 31;
+    static final int OP_CS = 32;
+    static final int OP_cs = 33;
+    static final int OP_SC = 34;
+    static final int OP_SCN = 35;
+    static final int OP_sc = 36;
+    static final int OP_scn = 37;
+    static final int OP_G = 38;
+    static final int OP_g = 39;
+    static final int OP_RG = 40;
+    static final int OP_rg = 41;
+    static final int OP_K = 42;
+    static final int OP_k = 43;
+    static final int OP_Do = 44;
+    static final int OP_BT = 45;
+    static final int OP_ET = 46;
+    static final int OP_Tc = 47;
+    static final int OP_Tw = 48;
+    static final int OP_Tz = 49;
+    static final int OP_TL = 50;
+    static final int OP_Tf = 51;
+    static final int OP_Tr = 52;
+    static final int OP_Ts = 53;
+    static final int OP_Td = 54;
+    static final int OP_TD = 55;
+    static final int OP_Tm = 56;
+    static final int OP_T_STAR = 57;
+    static final int OP_Tj = 58;
+    static final int OP_QUOTE = 59;
+    static final int OP_DQUOTE = 60;
+    static final int OP_TJ = 61;
+    static final int OP_BI = 62;
+    static final int OP_BX = 63;
+    static final int OP_EX = 64;
+    static final int OP_MP = 65;
+    static final int OP_DP = 66;
+    static final int OP_BMC = 67;
+    static final int OP_BDC = 68;
+    static final int OP_EMC = 69;
+    static final int OP_d0 = 70;
+    static final int OP_d1 = 71;
+    static final int OP_QBT = 72;
+    static final int OP_Qq = 73;
+    static final int OP_qBT = 74;
+    static final int OP_q1 = 75;
+    static final int OP_q0 = 76;
+    static final int OP_ID = 77;
+    static final int OP_EI = 78;
+    static final int OP_true = 79;
+    static final int OP_false = 80;
+    static final int OP_null = 81;
+
+    /**
+    * the text of every known keyword, indexed by opcode. Commands share
+    * these constants instead of allocating a String per token.
+    */
+    static final String[] OPERATORS = {
+        null, "q", "Q", "cm", "w", "J", "j", "M", "d", "ri", "i", "gs", "m",
+        "l", "c", "v", "y", "h", "re", "S", "s", "f", "F", "f*", "B", "B*",
+        "b", "b*", "n", "W", "W*", "sh", "CS", "cs", "SC", "SCN", "sc", "scn",
+        "G", "g", "RG", "rg", "K", "k", "Do", "BT", "ET", "Tc", "Tw", "Tz",
+        "TL", "Tf", "Tr", "Ts", "Td", "TD", "Tm", "T*", "Tj", "'", "\"", "TJ",
+        "BI", "BX", "EX", "MP", "DP", "BMC", "BDC", "EMC", "d0", "d1", "QBT",
+        "Qq", "qBT", "q1", "q0", "ID", "EI", "true", "false", "null"
+    };
+
+    /** the longest keyword in {@link #OPERATORS} */
+    private static final int MAX_OPERATOR_LENGTH = 5;
+
+    /**
+    * open addressed hash table from the packed bytes of a keyword (see
+    * {@link #readOperator()}) to its opcode. Each slot of OPERATOR_KEYS
+    * holds a packed keyword, the same slot of OPERATOR_CODES its opcode.
+    */
+    private static final long[] OPERATOR_KEYS = new long[256];
+    private static final int[] OPERATOR_CODES = new int[256];
+
+    static {
+        for (int op = 1; op < OPERATORS.length; op++) {
+            String name = OPERATORS[op];
+            long key = 0;
+            for (int i = 0; i < name.length(); i++) {
+                key = (key << 8) | name.charAt(i);
+            }
+            int slot = operatorSlot(key);
+            while (OPERATOR_KEYS[slot] != 0) {
+                slot = (slot + 1) & (OPERATOR_KEYS.length - 1);
+            }
+            OPERATOR_KEYS[slot] = key;
+            OPERATOR_CODES[slot] = op;
+        }
+    }
+
+    /**
+    * get the first hash table slot to probe for a packed keyword
+    */
+    private static int operatorSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 56);
+    }
+
+    /**
+    * look up the opcode of a packed keyword
+    *
+    * @return the opcode, or OP_UNKNOWN if the keyword is not an operator
+    */
+    private static int lookupOperator(long key) {
+        int slot = operatorSlot(key);
+        long k;
+        while ((k = OPERATOR_KEYS[slot]) != 0) {
+            if (k == key) {
+                return OPERATOR_CODES[slot];
+            }
+            slot = (slot + 1) & (OPERATOR_KEYS.length - 1);
+        }
+        return OP_UNKNOWN;
+    }
+
     /**
     * a token from a PDF Stream
     */
@@ -139,6 +392,8 @@ public class PDFParser extends BaseWatchable {
         public double value;
         /** the type of the token */
         public int type;
+        /** the opcode of a CMD token, or OP_UNKNOWN */
+        public int op;
 
         /** a printable representation of the token */
         @Override
@@ -173,6 +428,7 @@ public class PDFParser extends BaseWatchable {
             name = null;
             value = 0.0;
             type = UNK;
+            op = OP_UNKNOWN;
         }
     }
 
@@ -190,10 +446,10 @@ public class PDFParser extends BaseWatchable {
             tok = new Tok();
         }
         // skip whitespace
-        while (this.loc < this.stream.length && PDFFile.isWhiteSpace(this.stream[this.loc])) {
+        while (hasMore() && PDFFile.isWhiteSpace(this.stream[this.loc])) {
             this.loc++;
         }
-        if (this.loc >= this.stream.length) {
+        if (!hasMore()) {
             this.tok.type = Tok.EOF;
             return this.tok;
         }
@@ -202,17 +458,17 @@ public class PDFParser extends BaseWatchable {
         while (c == '%' || c == 28) {
             // skip comments
             StringBuffer comment = new StringBuffer();
-            while (this.loc < this.stream.length && c != '\n') {
+            while (hasMore() && c != '\n') {
                 comment.append((char) c);
                 c = this.stream[this.loc++];
             }
-            if (this.loc < this.stream.length) {
+            if (hasMore()) {
                 c = this.stream[this.loc++]; // eat the newline
-                if (c == '\r') {
+                if (c == '\r' && hasMore()) {
                     c = this.stream[this.loc++]; // eat a following return
                 }
                 // skip whitespace
-                while (this.loc < this.stream.length && PDFFile.isWhiteSpace(c)) {
+                while (PDFFile.isWhiteSpace(c) && hasMore()) {
                 	c = this.stream[this.loc++];
                 }
             }
@@ -230,12 +486,13 @@ public class PDFParser extends BaseWatchable {
             this.tok.type = Tok.BRCB;
         } else if (c == '}') {
             this.tok.type = Tok.BRCE;
-        } else if (c == '<' && this.stream[this.loc++] == '<') {
+        } else if (c == '<' && hasMore() && this.stream[this.loc] == '<') {
+            this.loc++;
             this.tok.type = Tok.BRKB;
-        } else if (c == '>' && this.stream[this.loc++] == '>') {
+        } else if (c == '>' && hasMore() && this.stream[this.loc] == '>') {
+            this.loc++;
             this.tok.type = Tok.BRKE;
         } else if (c == '<') {
-            this.loc--;
             this.tok.type = Tok.STR;
             this.tok.name = readByteArray();
         } else if (c == '/') {
@@ -248,7 +505,7 @@ public class PDFParser extends BaseWatchable {
         } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '\'' || c == '"') {
             this.loc--;
             this.tok.type = Tok.CMD;
-            this.tok.name = readName();
+            readOperator();
         } else {
             PDFDebugger.debug("Encountered character: " + c + " (" + (char) c + ")", 1);
             this.tok.type = Tok.UNK;
@@ -261,13 +518,41 @@ public class PDFParser extends BaseWatchable {
     * stream.
     */
     private String readName() {
-        int start = this.loc;
-        while (this.loc < this.stream.length && PDFFile.isRegularCharacter(this.stream[this.loc])) {
+        this.mark = this.loc;
+        while (hasMore() && PDFFile.isRegularCharacter(this.stream[this.loc])) {
             this.loc++;
         }
+        int start = this.mark;
+        this.mark = -1;
         return new String(this.stream, start, this.loc - start);
     }
 
+    /**
+    * read a keyword from the stream into the current token. Known
+    * operators are recognised straight from the stream bytes; only
+    * unknown keywords get their text copied into a new String.
+    */
+    private void readOperator() {
+        this.mark = this.loc;
+        long key = 0;
+        while (hasMore() && PDFFile.isRegularCharacter(this.stream[this.loc])) {
+            key = (key << 8) | (this.stream[this.loc] & 0xff);
+            this.loc++;
+        }
+        int start = this.mark;
+        this.mark = -1;
+        int op = OP_UNKNOWN;
+        if (this.loc - start <= MAX_OPERATOR_LENGTH) {
+            op = lookupOperator(key);
+        }
+        this.tok.op = op;
+        if (op != OP_UNKNOWN) {
+            this.tok.name = OPERATORS[op];
+        } else {
+            this.tok.name = new String(this.stream, start, this.loc - start);
+        }
+    }
+
     /**
     * read a floating point number from the stream
     */
@@ -277,7 +562,7 @@ public class PDFParser extends BaseWatchable {
         boolean sawdot = c == '.';
         double dotmult = sawdot ? 0.1 : 1;
         double value = (c >= '0' && c <= '9') ? c - '0' : 0;
-        while (true) {
+        while (hasMore()) {
             c = this.stream[this.loc++];
             if (c == '.') {
                 if (sawdot) {
@@ -323,7 +608,7 @@ public class PDFParser extends BaseWatchable {
     private String readString() {
         int parenLevel = 0;
         StringBuffer sb = new StringBuffer();
-        while (this.loc < this.stream.length) {
+        while (hasMore()) {
             int c = this.stream[this.loc++];
             if (c == ')') {
                 if (parenLevel-- == 0) {
@@ -333,16 +618,16 @@ public class PDFParser extends BaseWatchable {
                 parenLevel++;
             } else if (c == '\\') {
                 // escape sequences
+                if (!hasMore()) {
+                    break;
+                }
                 c = this.stream[this.loc++];
                 if (c >= '0' && c < '8') {
-                    int count = 0;
-                    int val = 0;
-                    while (c >= '0' && c < '8' && count < 3) {
-                        val = val * 8 + c - '0';
-                        c = this.stream[this.loc++];
-                        count++;
+                    int val = c - '0';
+                    for (int count = 1; count < 3 && hasMore()
+                            && this.stream[this.loc] >= '0' && this.stream[this.loc] < '8'; count++) {
+                        val = val * 8 + this.stream[this.loc++] - '0';
                     }
-                    this.loc--;
                     c = val;
                 } else if (c == 'n') {
                     c = '\n';
@@ -380,7 +665,7 @@ public class PDFParser extends BaseWatchable {
         int count = 0;
         char w = (char) 0;
         // read individual bytes and format into a character array
-        while ((this.loc < this.stream.length) && (this.stream[this.loc] != '>')) {
+        while (hasMore() && (this.stream[this.loc] != '>')) {
             char c = (char) this.stream[this.loc];
             byte b = (byte) 0;
             if (c >= '0' && c <= '9') {
@@ -417,7 +702,7 @@ public class PDFParser extends BaseWatchable {
     */
     @Override
     public void setup() {
-        this.stack = new Stack<Object>();
+        this.stack = new OperandStack();
         this.parserStates = new Stack<ParserState>();
         this.state = new ParserState();
         this.path = new GeneralPath();
@@ -452,6 +737,14 @@ public class PDFParser extends BaseWatchable {
             PDFDebugger.debug("Page gone. Stopping", 10);
             return Watchable.STOPPED;
         }
+        // numbers are by far the most common operands, keep them unboxed
+        Tok t = nextToken();
+        if (t.type == Tok.NUM) {
+            this.stack.pushNumber(t.value);
+            this.cmds = null;
+            return Watchable.RUNNING;
+        }
+        this.resend = true;
         Object obj;
         try {
             obj = parseObject();
@@ -460,121 +753,213 @@ public class PDFParser extends BaseWatchable {
         }
         // if there's nothing left to parse, we're done
         if (obj == null) {
+            if (this.inputException != null) {
+                throw this.inputException;
+            }
             return Watchable.COMPLETED;
         }
         if (obj instanceof Tok) {
             // it's a command. figure out what to do.
             // (if not, the token will be "pushed" onto the stack)
+            int op = ((Tok) obj).op;
             String cmd = ((Tok) obj).name;
-            PDFDebugger.debug("Command: " + cmd + " (stack size is " + this.stack.size() + ")", 10);
-            if (cmd.equals("q")) {
+            if (PDFDebugger.DEBUG_OPERATORS) {
+                PDFDebugger.debug("Command: " + cmd + " (stack size is " + this.stack.size() + ")", 10);
+            }
+            switch (op) {
+            case OP_q: {
                 // push the parser state
                 this.parserStates.push((ParserState) this.state.clone());
                 // push graphics state
                 this.cmds.addPush();
-            } else if (cmd.equals("Q")) {
+                break;
+            }
+            case OP_Q: {
                 processQCmd();
-            } else if (cmd.equals("cm")) {
+                break;
+            }
+            case OP_cm: {
                 // set transform to array of values
                 float[] elts = popFloat(6);
                 AffineTransform xform = new AffineTransform(elts);
                 this.cmds.addXform(xform);
-            } else if (cmd.equals("w")) {
+                break;
+            }
+            case OP_w: {
                 // set stroke width
                 this.cmds.addStrokeWidth(popFloat());
-            } else if (cmd.equals("J")) {
+                break;
+            }
+            case OP_J: {
                 // set end cap style
                 this.cmds.addEndCap(popInt());
-            } else if (cmd.equals("j")) {
+                break;
+            }
+            case OP_j: {
                 // set line join style
                 this.cmds.addLineJoin(popInt());
-            } else if (cmd.equals("M")) {
+                break;
+            }
+            case OP_M: {
                 // set miter limit
                 this.cmds.addMiterLimit(popInt());
-            } else if (cmd.equals("d")) {
+                break;
+            }
+            case OP_d: {
                 // set dash style and phase
                 float phase = popFloat();
                 float[] dashary = popFloatArray();
                 if (!PDFDebugger.DISABLE_PATH_STROKE) {
                     this.cmds.addDash(dashary, phase);
                 }
-            } else if (cmd.equals("ri")) {
+                break;
+            }
+            case OP_ri: {
                 popString();
                 // TODO: do something with rendering intent (page 197)
-            } else if (cmd.equals("i")) {
+                break;
+            }
+            case OP_i: {
                 popFloat();
                 // TODO: do something with flatness tolerance
-            } else if (cmd.equals("gs")) {
+                break;
+            }
+            case OP_gs: {
                 // set graphics state to values in a named dictionary
                 String popString = popString();
                 PDFDebugger.debug("Set GS state "+popString, 10);
                 setGSState(popString);
-            } else if (cmd.equals("m")) {
+                break;
+            }
+            case OP_m: {
                 // path move to
                 float y = popFloat();
                 float x = popFloat();
                 this.path.moveTo(x, y);
-                PDFDebugger.logPath(path, "2 moved to " + x + ", " + y);
-            } else if (cmd.equals("l")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "2 moved to " + x + ", " + y);
+                }
+                break;
+            }
+            case OP_l: {
                 // path line to
                 float y = popFloat();
                 float x = popFloat();
                 this.path.lineTo(x, y);
-                PDFDebugger.logPath(path, "1 line to " + x + ", " + y);
-            } else if (cmd.equals("c")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "1 line to " + x + ", " + y);
+                }
+                break;
+            }
+            case OP_c: {
                 // path curve to
-                float a[] = popFloat(6);
-                this.path.curveTo(a[0], a[1], a[2], a[3], a[4], a[5]);
-                PDFDebugger.logPath(path, "1 curve to " + Arrays.toString(a));
-            } else if (cmd.equals("v")) {
+                float y3 = popFloat();
+                float x3 = popFloat();
+                float y2 = popFloat();
+                float x2 = popFloat();
+                float y1 = popFloat();
+                float x1 = popFloat();
+                this.path.curveTo(x1, y1, x2, y2, x3, y3);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "1 curve to " + x1 + ", " + y1 + ", " + x2 + ", " + y2 + ", " + x3 + ", " + y3);
+                }
+                break;
+            }
+            case OP_v: {
                 // path curve; first control point= start
-                float a[] = popFloat(4);
+                float y3 = popFloat();
+                float x3 = popFloat();
+                float y2 = popFloat();
+                float x2 = popFloat();
                 Point2D cp = this.path.getCurrentPoint();
-                this.path.curveTo((float) cp.getX(), (float) cp.getY(), a[0], a[1], a[2], a[3]);
-                PDFDebugger.logPath(path, "2 curve to " + Arrays.toString(a) + ", " + cp.getX() + "," + cp.getY());
-            } else if (cmd.equals("y")) {
+                this.path.curveTo((float) cp.getX(), (float) cp.getY(), x2, y2, x3, y3);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "2 curve to " + x2 + ", " + y2 + ", " + x3 + ", " + y3 + ", " + cp.getX() + "," + cp.getY());
+                }
+                break;
+            }
+            case OP_y: {
                 // path curve; last control point= end
-                float a[] = popFloat(4);
-                this.path.curveTo(a[0], a[1], a[2], a[3], a[2], a[3]);
-                PDFDebugger.logPath(path, "3 curve to " + Arrays.toString(a));
-            } else if (cmd.equals("h")) {
+                float y3 = popFloat();
+                float x3 = popFloat();
+                float y1 = popFloat();
+                float x1 = popFloat();
+                this.path.curveTo(x1, y1, x3, y3, x3, y3);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "3 curve to " + x1 + ", " + y1 + ", " + x3 + ", " + y3);
+                }
+                break;
+            }
+            case OP_h: {
                 tryClosingPath();
-                PDFDebugger.logPath(path, "closed");
-            } else if (cmd.equals("re")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "closed");
+                }
+                break;
+            }
+            case OP_re: {
                 // path add rectangle
-                float a[] = popFloat(4);
-                this.path.moveTo(a[0], a[1]);
-                PDFDebugger.logPath(path, "1 moved to " + a[0] + "," + a[1]);
-                this.path.lineTo(a[0] + a[2], a[1]);
-                PDFDebugger.logPath(path, "2 line to " + (a[0] + a[2]) + "," + a[1]);
-                this.path.lineTo(a[0] + a[2], a[1] + a[3]);
-                PDFDebugger.logPath(path, "3 line to " + (a[0] + a[2]) + "," + (a[1] + a[3]));
-                this.path.lineTo(a[0], a[1] + a[3]);
-                PDFDebugger.logPath(path, "4 line to " + a[0] + "," + (a[1] + a[3]));
+                float h = popFloat();
+                float w = popFloat();
+                float y = popFloat();
+                float x = popFloat();
+                this.path.moveTo(x, y);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "1 moved to " + x + "," + y);
+                }
+                this.path.lineTo(x + w, y);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "2 line to " + (x + w) + "," + y);
+                }
+                this.path.lineTo(x + w, y + h);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "3 line to " + (x + w) + "," + (y + h));
+                }
+                this.path.lineTo(x, y + h);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "4 line to " + x + "," + (y + h));
+                }
                 tryClosingPath();
-                PDFDebugger.logPath(path, "closed");
-            } else if (cmd.equals("S")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "closed");
+                }
+                break;
+            }
+            case OP_S: {
                 // stroke the path
                 if (!PDFDebugger.DISABLE_PATH_STROKE || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     if(autoAdjustStroke || strokeOverprint || fillOverprint) {
                         path.closePath();
-                        PDFDebugger.logPath(path, "closed");
+                        if (PDFDebugger.DEBUG_PATH) {
+                            PDFDebugger.logPath(path, "closed");
+                        }
                     }
                     this.cmds.addPath(this.path, PDFShapeCmd.STROKE | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("s")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_s: {
                 tryClosingPath();
-                PDFDebugger.logPath(path, "closed");
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "closed");
+                }
                 if (!PDFDebugger.DISABLE_PATH_STROKE || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.STROKE | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("f") || cmd.equals("F")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_f:
+            case OP_F: {
                  tryClosingPath();
                 // fill the path (close/not close identical)
                 if (!PDFDebugger.DISABLE_PATH_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
@@ -582,59 +967,95 @@ public class PDFParser extends BaseWatchable {
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("f*")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_f_STAR: {
                 // fill the path using even/odd rule
                 this.path.setWindingRule(WIND_EVEN_ODD);
-                PDFDebugger.logPath(path, "set winding rule" + WIND_EVEN_ODD);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "set winding rule" + WIND_EVEN_ODD);
+                }
                 if (!PDFDebugger.DISABLE_PATH_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.FILL | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("B")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_B: {
                 // fill and stroke the path
                 if (!PDFDebugger.DISABLE_PATH_STROKE_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.BOTH | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("B*")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_B_STAR: {
                 // fill path using even/odd rule and stroke it
                 this.path.setWindingRule(WIND_EVEN_ODD);
-                PDFDebugger.logPath(path, "set winding rule" + WIND_EVEN_ODD);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "set winding rule" + WIND_EVEN_ODD);
+                }
                 if (!PDFDebugger.DISABLE_PATH_STROKE_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.BOTH | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("b")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_b: {
                 tryClosingPath();
-                PDFDebugger.logPath(path, "close");
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "close");
+                }
                 if (!PDFDebugger.DISABLE_PATH_STROKE_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.BOTH | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("b*")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_b_STAR: {
                 tryClosingPath();
-                PDFDebugger.logPath(path, "close");
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "close");
+                }
                 this.path.setWindingRule(WIND_EVEN_ODD);
-                PDFDebugger.logPath(path, "set winding rule " + WIND_EVEN_ODD);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "set winding rule " + WIND_EVEN_ODD);
+                }
                 if (!PDFDebugger.DISABLE_PATH_STROKE_FILL || (!PDFDebugger.DISABLE_CLIP && this.clip == PDFShapeCmd.CLIP)) {
                     this.cmds.addPath(this.path, PDFShapeCmd.BOTH | this.clip, this.autoAdjustStroke);
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("n")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_n: {
                 if (path.getCurrentPoint() != null) {
                     tryClosingPath();
-                    PDFDebugger.logPath(path, "closed");
+                    if (PDFDebugger.DEBUG_PATH) {
+                        PDFDebugger.logPath(path, "closed");
+                    }
                 }
                 // clip with the path and discard it
                 if (!PDFDebugger.DISABLE_CLIP) {
@@ -644,16 +1065,26 @@ public class PDFParser extends BaseWatchable {
                 }
                 this.clip = 0;
                 this.path = new GeneralPath();
-                PDFDebugger.logPath(path, "new path");
-            } else if (cmd.equals("W")) {
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "new path");
+                }
+                break;
+            }
+            case OP_W: {
                 // mark this path for clipping!
                 this.clip = PDFShapeCmd.CLIP;
-            } else if (cmd.equals("W*")) {
+                break;
+            }
+            case OP_W_STAR: {
                 // mark this path using even/odd rule for clipping
                 this.path.setWindingRule(WIND_EVEN_ODD);
-                PDFDebugger.logPath(path, "set winding rule " + WIND_EVEN_ODD);
+                if (PDFDebugger.DEBUG_PATH) {
+                    PDFDebugger.logPath(path, "set winding rule " + WIND_EVEN_ODD);
+                }
                 this.clip = PDFShapeCmd.CLIP;
-            } else if (cmd.equals("sh")) {
+                break;
+            }
+            case OP_sh: {
                 // shade a region that is defined by the shader itself.
                 // shading the current space from a dictionary
                 // should only be used for limited-dimension shadings
@@ -664,17 +1095,25 @@ public class PDFParser extends BaseWatchable {
                 if (!PDFDebugger.DISABLE_SHADER) {
                     doShader(shobj);
                 }
-            } else if (cmd.equals("CS")) {
+                break;
+            }
+            case OP_CS: {
                 // set the stroke color space
                 this.state.strokeCS = parseColorSpace(new PDFObject(this.stack.pop()));
-            } else if (cmd.equals("cs")) {
+                break;
+            }
+            case OP_cs: {
                 // set the fill color space
                 this.state.fillCS = parseColorSpace(new PDFObject(this.stack.pop()));
-            } else if (cmd.equals("SC")) {
+                break;
+            }
+            case OP_SC: {
                 // set the stroke color
                 int n = this.state.strokeCS.getNumComponents();
                 this.cmds.addStrokePaint(this.state.strokeCS.getPaint(popFloat(n)));
-            } else if (cmd.equals("SCN")) {
+                break;
+            }
+            case OP_SCN: {
                 // set the stroke colour
                 if (this.state.strokeCS instanceof PatternSpace) {
                     this.cmds.addFillPaint(doPattern((PatternSpace) this.state.strokeCS));
@@ -682,34 +1121,48 @@ public class PDFParser extends BaseWatchable {
                     int n = this.state.strokeCS.getNumComponents();
                     this.cmds.addStrokePaint(this.state.strokeCS.getPaint(popFloat(n)));
                 }
-            } else if (cmd.equals("sc")) {
+                break;
+            }
+            case OP_sc: {
                 // set the fill color
                 int n = this.state.fillCS.getNumComponents();
                 this.cmds.addFillPaint(this.state.fillCS.getPaint(popFloat(n)));
-            } else if (cmd.equals("scn")) {
+                break;
+            }
+            case OP_scn: {
                 if (this.state.fillCS instanceof PatternSpace) {
                     this.cmds.addFillPaint(doPattern((PatternSpace) this.state.fillCS));
                 } else {
                     int n = this.state.fillCS.getNumComponents();
                     this.cmds.addFillPaint(this.state.fillCS.getPaint(popFloat(n)));
                 }
-            } else if (cmd.equals("G")) {
+                break;
+            }
+            case OP_G: {
                 // set the stroke color to a Gray value
                 this.state.strokeCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_GRAY);
                 this.cmds.addStrokePaint(this.state.strokeCS.getPaint(popFloat(1)));
-            } else if (cmd.equals("g")) {
+                break;
+            }
+            case OP_g: {
                 // set the fill color to a Gray value
                 this.state.fillCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_GRAY);
                 this.cmds.addFillPaint(this.state.fillCS.getPaint(popFloat(1)));
-            } else if (cmd.equals("RG")) {
+                break;
+            }
+            case OP_RG: {
                 // set the stroke color to an RGB value
                 this.state.strokeCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_RGB);
                 this.cmds.addStrokePaint(this.state.strokeCS.getPaint(popFloat(3)));
-            } else if (cmd.equals("rg")) {
+                break;
+            }
+            case OP_rg: {
                 // set the fill color to an RGB value
                 this.state.fillCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_RGB);
                 this.cmds.addFillPaint(this.state.fillCS.getPaint(popFloat(3)));
-            } else if (cmd.equals("K")) {
+                break;
+            }
+            case OP_K: {
 //                if(strokeOverprint && strokeOverprintMode == 1) {
 //                    if (this.state.strokeCS instanceof PatternSpace) {
 //                        this.cmds.addFillPaint(doPattern((PatternSpace) this.state.strokeCS));
@@ -722,7 +1175,9 @@ public class PDFParser extends BaseWatchable {
                     this.state.strokeCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_CMYK);
                     this.cmds.addStrokePaint(this.state.strokeCS.getPaint(popFloat(4)));
 //                }
-            } else if (cmd.equals("k")) {
+                break;
+            }
+            case OP_k: {
 //                if(fillOverprint && fillOverprintMode == 1) {
 //                    // if OP = true and OPM = 1 apply the same as in "scn"
 //                    if (this.state.fillCS instanceof PatternSpace) {
@@ -736,7 +1191,9 @@ public class PDFParser extends BaseWatchable {
                     this.state.fillCS = PDFColorSpace.getColorSpace(PDFColorSpace.COLORSPACE_CMYK);
                     this.cmds.addFillPaint(this.state.fillCS.getPaint(popFloat(4)));
 //                }
-            } else if (cmd.equals("Do")) {
+                break;
+            }
+            case OP_Do: {
                 // make a do call on the referenced object
                 String name = popString();
                 if (PDFDebugger.DEBUG_IMAGES) {
@@ -744,59 +1201,91 @@ public class PDFParser extends BaseWatchable {
                 }
                 PDFObject xobj = findResource(name, "XObject");
                 doXObject(xobj);
-            } else if (cmd.equals("BT")) {
+                break;
+            }
+            case OP_BT: {
                 processBTCmd();
-            } else if (cmd.equals("ET")) {
+                break;
+            }
+            case OP_ET: {
                 // end of text. noop
                 this.state.textFormat.end();
-            } else if (cmd.equals("Tc")) {
+                break;
+            }
+            case OP_Tc: {
                 // set character spacing
                 this.state.textFormat.setCharSpacing(popFloat());
-            } else if (cmd.equals("Tw")) {
+                break;
+            }
+            case OP_Tw: {
                 // set word spacing
                 this.state.textFormat.setWordSpacing(popFloat());
-            } else if (cmd.equals("Tz")) {
+                break;
+            }
+            case OP_Tz: {
                 // set horizontal scaling
                 this.state.textFormat.setHorizontalScale(popFloat());
-            } else if (cmd.equals("TL")) {
+                break;
+            }
+            case OP_TL: {
                 // set leading
                 this.state.textFormat.setLeading(popFloat());
-            } else if (cmd.equals("Tf")) {
+                break;
+            }
+            case OP_Tf: {
                 // set text font
                 float sz = popFloat();
                 String fontref = popString();
                 this.state.textFormat.setFont(getFontFrom(fontref), sz);
-            } else if (cmd.equals("Tr")) {
+                break;
+            }
+            case OP_Tr: {
                 // set text rendering mode
                 this.state.textFormat.setMode(popInt());
-            } else if (cmd.equals("Ts")) {
+                break;
+            }
+            case OP_Ts: {
                 // set text rise
                 this.state.textFormat.setRise(popFloat());
-            } else if (cmd.equals("Td")) {
+                break;
+            }
+            case OP_Td: {
                 // set text matrix location
                 float y = popFloat();
                 float x = popFloat();
                 this.state.textFormat.carriageReturn(x, y);
-            } else if (cmd.equals("TD")) {
+                break;
+            }
+            case OP_TD: {
                 // set leading and matrix: -y TL x y Td
                 float y = popFloat();
                 float x = popFloat();
                 this.state.textFormat.setLeading(-y);
                 this.state.textFormat.carriageReturn(x, y);
-            } else if (cmd.equals("Tm")) {
+                break;
+            }
+            case OP_Tm: {
                 // set text matrix
                 this.state.textFormat.setMatrix(popFloat(6));
-            } else if (cmd.equals("T*")) {
+                break;
+            }
+            case OP_T_STAR: {
                 // go to next line
                 this.state.textFormat.carriageReturn();
-            } else if (cmd.equals("Tj")) {
+                break;
+            }
+            case OP_Tj: {
                 // show text
                 this.state.textFormat.doText(this.cmds, popString(), this.autoAdjustStroke);
-            } else if (cmd.equals("\'")) {
+                break;
+            }
+            case OP_QUOTE: {
                 // next line and show text: T* string Tj
                 this.state.textFormat.carriageReturn();
                 this.state.textFormat.doText(this.cmds, popString(), this.autoAdjustStroke);
-            } else if (cmd.equals("\"")) {
+                break;
+            }
+            case OP_DQUOTE: {
                 // draw string on new line with char & word spacing:
                 // aw Tw ac Tc string '
                 String string = popString();
@@ -805,69 +1294,104 @@ public class PDFParser extends BaseWatchable {
                 this.state.textFormat.setWordSpacing(aw);
                 this.state.textFormat.setCharSpacing(ac);
                 this.state.textFormat.doText(this.cmds, string, this.autoAdjustStroke);
-            } else if (cmd.equals("TJ")) {
+                break;
+            }
+            case OP_TJ: {
                 // show kerned string
                 this.state.textFormat.doText(this.cmds, popArray(), this.autoAdjustStroke);
-            } else if (cmd.equals("BI")) {
+                break;
+            }
+            case OP_BI: {
                 // parse inline image
                 parseInlineImage();
-            } else if (cmd.equals("BX")) {
+                break;
+            }
+            case OP_BX: {
                 this.catchexceptions = true; // ignore errors
-            } else if (cmd.equals("EX")) {
+                break;
+            }
+            case OP_EX: {
                 this.catchexceptions = false; // stop ignoring errors
-            } else if (cmd.equals("MP")) {
+                break;
+            }
+            case OP_MP: {
                 // mark point (role= mark role name)
                 popString();
-            } else if (cmd.equals("DP")) {
+                break;
+            }
+            case OP_DP: {
                 // mark point with dictionary (role, ref)
                 // result is either inline dict or name in "Properties" rsrc
                 this.stack.pop();
                 popString();
-            } else if (cmd.equals("BMC")) {
+                break;
+            }
+            case OP_BMC: {
                 // begin marked content (role)
                 popString();
-            } else if (cmd.equals("BDC")) {
+                break;
+            }
+            case OP_BDC: {
                 // begin marked content with dict (role, ref)
                 // result is either inline dict or name in "Properties" rsrc
                 this.stack.pop();
                 popString();
-            } else if (cmd.equals("EMC")) {
+                break;
+            }
+            case OP_EMC: {
                 // end marked content
-            } else if (cmd.equals("d0")) {
+                break;
+            }
+            case OP_d0: {
                 // character width in type3 fonts
                 popFloat(2);
-            } else if (cmd.equals("d1")) {
+                break;
+            }
+            case OP_d1: {
                 // character width in type3 fonts
                 popFloat(6);
-            } else if (cmd.equals("QBT")) {// 'Q' & 'BT' mushed together!
+                break;
+            }
+            case OP_QBT: { // 'Q' & 'BT' mushed together!
                 processQCmd();
                 processBTCmd();
-            } else if (cmd.equals("Qq")) {// 'Q' & 'q' mushed together!
+                break;
+            }
+            case OP_Qq: { // 'Q' & 'q' mushed together!
                 processQCmd();
                 // push the parser state
                 this.parserStates.push((ParserState) this.state.clone());
                 // push graphics state
                 this.cmds.addPush();
-            } else if (cmd.equals("qBT")) {// 'q' & 'BT' mushed together!
+                break;
+            }
+            case OP_qBT: { // 'q' & 'BT' mushed together!
             // push the parser state
                 this.parserStates.push((ParserState) this.state.clone());
                 // push graphics state
                 this.cmds.addPush();
                 processBTCmd();
-            } else if (cmd.equals("q1")) {
+                break;
+            }
+            case OP_q1: {
                 PDFDebugger.debug("**** WARNING: Not handled command: " + cmd + " **************************", 10);
-            } else if (cmd.equals("q0")) {
+                break;
+            }
+            case OP_q0: {
                 PDFDebugger.debug("**** WARNING: Not handled command: " + cmd + " **************************", 10);
-            } else {
+                break;
+            }
+            default:
                 if (this.catchexceptions) {
                     PDFDebugger.debug("**** WARNING: Unknown command: " + cmd + " **************************", 10);
                 } else {
                     throw new PDFParseException("Unknown command: " + cmd);
                 }
+                break;
             }
             if (this.stack.size() != 0) {
                 PDFDebugger.debug("**** WARNING! Stack not zero! (cmd=" + cmd + ", size=" + this.stack.size() + ") *************************", 10);
-                this.stack.setSize(0);
+                this.stack.clear();
             }
         } else {
             this.stack.push(obj);
@@ -885,7 +1409,9 @@ public class PDFParser extends BaseWatchable {
     private void tryClosingPath() {
         try {
             this.path.closePath();
-            PDFDebugger.logPath(path, "closed");
+            if (PDFDebugger.DEBUG_PATH) {
+                PDFDebugger.logPath(path, "closed");
+            }
         }catch(java.awt.geom.IllegalPathStateException e) {
             PDFDebugger.debug("Failed to close path", 1000);
         }
@@ -893,21 +1419,21 @@ public class PDFParser extends BaseWatchable {
 
     @SuppressWarnings("unused")
     private void onNextObject(Tok obj) throws DebugStopException {
-        String progress;
-        if (true) {
-            double percent = (100d * this.loc) / this.stream.length;
-            NumberFormat nf = NumberFormat.getInstance();
-            nf.setMinimumFractionDigits(1);
-            nf.setMaximumFractionDigits(1);
-            progress = nf.format(percent) + "%";
-        } else {
-            progress = this.loc + " of " + this.stream.length;
-        }
-        String operators = "";
-        for (Object operator : this.stack) {
-            operators += operator + " ";
-        }
         if (PDFDebugger.DEBUG_OPERATORS) {
+            String progress;
+            if (true) {
+                double percent = (100d * this.loc) / this.limit;
+                NumberFormat nf = NumberFormat.getInstance();
+                nf.setMinimumFractionDigits(1);
+                nf.setMaximumFractionDigits(1);
+                progress = nf.format(percent) + "%";
+            } else {
+                progress = this.loc + " of " + this.limit;
+            }
+            String operators = "";
+            for (int i = 0; i < this.stack.size(); i++) {
+                operators += this.stack.get(i) + " ";
+            }
             PDFDebugger.debug("parser{" + hashCode() + "} " + progress + ": #" + mDebugCommandIndex + " \t" + operators + obj.name);
         }
         mDebugCommandIndex++;
@@ -958,6 +1484,7 @@ public class PDFParser extends BaseWatchable {
         this.path = null;
         this.cmds = null;
         this.tok = null;
+        closeInput();
     }
 
     public void dumpStreamToError() {
@@ -968,7 +1495,7 @@ public class PDFParser extends BaseWatchable {
         try {
             File oops = File.createTempFile("PDFError", ".err");
             FileOutputStream fos = new FileOutputStream(oops);
-            fos.write(this.stream);
+            fos.write(this.stream, 0, this.limit);
             fos.close();
         } catch (IOException ioe) { /* Do nothing */
         }
@@ -1079,7 +1606,7 @@ public class PDFParser extends BaseWatchable {
             if (rsrc != null) {
                 r.putAll(rsrc.getDictionary());
             }
-            PDFParser form = new PDFParser(formCmds, obj.getStream(), r);
+            PDFParser form = new PDFParser(formCmds, obj.getInputStream(), r);
             form.go(true);
             obj.setCache(formCmds);
         }
@@ -1197,10 +1724,10 @@ public class PDFParser extends BaseWatchable {
             Object vobj = parseObject();
             hm.put(name, new PDFObject(vobj));
         }
-        if (this.stream[this.loc] == '\r') {
+        if (hasMore() && this.stream[this.loc] == '\r') {
             this.loc++;
         }
-        if (this.stream[this.loc] == '\n' || this.stream[this.loc] == ' ') {
+        if (hasMore() && (this.stream[this.loc] == '\n' || this.stream[this.loc] == ' ')) {
             this.loc++;
         }
         PDFObject imObj = hm.get("ImageMask");
@@ -1216,11 +1743,20 @@ public class PDFParser extends BaseWatchable {
             hm.put("Decode", new PDFObject(decode));
         }
         PDFObject obj = new PDFObject(null, PDFObject.DICTIONARY, hm);
-        int dstart = this.loc;
+        this.mark = this.loc;
         // now skip data until a whitespace followed by EI
-        while (!PDFFile.isWhiteSpace(this.stream[this.loc]) || this.stream[this.loc + 1] != 'E' || this.stream[this.loc + 2] != 'I') {
+        while (true) {
+            if (!fill(3)) {
+                this.mark = -1;
+                throw new PDFParseException("Inline image data has no EI");
+            }
+            if (PDFFile.isWhiteSpace(this.stream[this.loc]) && this.stream[this.loc + 1] == 'E' && this.stream[this.loc + 2] == 'I') {
+                break;
+            }
             this.loc++;
         }
+        int dstart = this.mark;
+        this.mark = -1;
         // data runs from dstart to loc
         if (PDFDebugger.DEBUG_IMAGES) {
             PDFDebugger.debug("InlineImage from " + dstart + " to " + this.loc);
@@ -1369,10 +1905,10 @@ public class PDFParser extends BaseWatchable {
     */
     private float popFloat() throws PDFParseException {
         if (this.stack.isEmpty() == false) {
-            Object obj = this.stack.pop();
-            if (obj instanceof Double) {
-                return ((Double) obj).floatValue();
+            if (this.stack.isNumber()) {
+                return (float) this.stack.popNumber();
             } else {
+                this.stack.pop();
                 throw new PDFParseException("Expected a number here.");
             }
         }
@@ -1407,10 +1943,10 @@ public class PDFParser extends BaseWatchable {
     * if the top of the stack isn't a number.
     */
     private int popInt() throws PDFParseException {
-        Object obj = this.stack.pop();
-        if (obj instanceof Double) {
-            return ((Double) obj).intValue();
+        if (this.stack.isNumber()) {
+            return (int) this.stack.popNumber();
         } else {
+            this.stack.pop();
             throw new PDFParseException("Expected a number here.");
         }
     }
@@ -1494,6 +2030,109 @@ public class PDFParser extends BaseWatchable {
         return (Object[]) obj;
     }
 
+    /**
+    * The operand stack of the parser. Numbers, which make up nearly all
+    * operands, are kept unboxed in a double array; the rare names,
+    * strings, arrays and dictionaries go to a side array at the same
+    * index, where a null entry marks a number. Unlike java.util.Stack
+    * this is not synchronized, the parser is only used by one thread.
+    */
+    static class OperandStack {
+        /** the numeric operands */
+        private double[] numbers = new double[16];
+        /** the other operands, null where the operand is a number */
+        private Object[] objects = new Object[16];
+        /** the number of operands on the stack */
+        private int size;
+
+        /**
+        * push a number
+        */
+        public void pushNumber(double value) {
+            ensureCapacity();
+            this.numbers[this.size] = value;
+            this.objects[this.size] = null;
+            this.size++;
+        }
+
+        /**
+        * push an operand, numbers given as Double are stored unboxed
+        */
+        public void push(Object obj) {
+            if (obj instanceof Double) {
+                pushNumber(((Double) obj).doubleValue());
+                return;
+            }
+            ensureCapacity();
+            this.objects[this.size] = obj;
+            this.size++;
+        }
+
+        /**
+        * @return true if the top of the stack is a number, false if it
+        * is something else or the stack is empty
+        */
+        public boolean isNumber() {
+            return this.size > 0 && this.objects[this.size - 1] == null;
+        }
+
+        /**
+        * pop a number, the caller must check {@link #isNumber()} first
+        */
+        public double popNumber() {
+            return this.numbers[--this.size];
+        }
+
+        /**
+        * pop the top operand, boxing it if it is a number
+        *
+        * @throws EmptyStackException if there is no operand left
+        */
+        public Object pop() {
+            if (this.size == 0) {
+                throw new EmptyStackException();
+            }
+            this.size--;
+            Object obj = this.objects[this.size];
+            if (obj == null) {
+                return Double.valueOf(this.numbers[this.size]);
+            }
+            this.objects[this.size] = null;
+            return obj;
+        }
+
+        /**
+        * get an operand, counting from the bottom of the stack
+        */
+        public Object get(int index) {
+            Object obj = this.objects[index];
+            return obj != null ? obj : Double.valueOf(this.numbers[index]);
+        }
+
+        public int size() {
+            return this.size;
+        }
+
+        public boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        /**
+        * drop all operands
+        */
+        public void clear() {
+            Arrays.fill(this.objects, 0, this.size, null);
+            this.size = 0;
+        }
+
+        private void ensureCapacity() {
+            if (this.size == this.numbers.length) {
+                this.numbers = Arrays.copyOf(this.numbers, this.size * 2);
+                this.objects = Arrays.copyOf(this.objects, this.size * 2);
+            }
+        }
+    }
+
     /**
     * A class to store state needed whiel rendering. This includes the
     * stroke and fill color spaces, as well as the text formatting
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+/**
+ * The throughput of a batch of pages rendered with
+ * {@link PDFFile#renderPages(int, int, float, java.util.concurrent.Executor, PDFPageSink, boolean, int)}.
+ */
+public class PDFRenderStatistics {
+
+    /** the number of pages handed to the sink */
+    private final int pageCount;
+    /** the number of pixels of those pages */
+    private final long pixelCount;
+    /** the wall clock time of the whole batch */
+    private final long elapsedNanos;
+
+    PDFRenderStatistics(int pageCount, long pixelCount, long elapsedNanos) {
+        this.pageCount = pageCount;
+        this.pixelCount = pixelCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of pages handed to the sink
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * @return the number of pixels of all pages handed to the sink
+     */
+    public long getPixelCount() {
+        return this.pixelCount;
+    }
+
+    /**
+     * @return the time the batch took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return the number of pages per second
+     */
+    public double getPagesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.pageCount * 1e9 / this.elapsedNanos;
+    }
+
+    /**
+     * @return the number of megapixels per second
+     */
+    public double getMegapixelsPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.pixelCount * 1e3 / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d pages in %.3f s (%.2f pages/s, %.2f Mpixel/s)",
+                Integer.valueOf(this.pageCount), Double.valueOf(this.elapsedNanos / 1e9),
+                Double.valueOf(getPagesPerSecond()), Double.valueOf(getMegapixelsPerSecond()));
+    }
+}
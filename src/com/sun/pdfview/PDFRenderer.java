@@ -27,16 +27,23 @@ import java.awt.Paint;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
+import java.awt.Transparency;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.awt.color.ColorSpace;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.ConvolveOp;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.ImageObserver;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Kernel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -59,12 +66,14 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
     private PDFPage page;
     /** where we are in the page's command list */
     private int currentCommand;
+    /** the commands executed by one iteration, copied from the page */
+    private final PDFCmd[] chunk = new PDFCmd[CHUNK_SIZE];
     /** a weak reference to the image we render into.  For the image
      * to remain available, some other code must retain a strong reference to it.
      */
     private WeakReference<BufferedImage> imageRef;
-    /** the graphics object for use within an iteration.  Note this must be
-     * set to null at the end of each iteration, or the image will not be
+    /** the graphics object for use within a run of iterations.  Note this
+     * must be set to null when the iterations end, or the image will not be
      * collected
      */
     private Graphics2D g;
@@ -85,9 +94,20 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
     private long then = 0;
     /** the sum of all the individual dirty regions since the last update */
     private Rectangle2D unupdatedRegion;
+    /** the pixels of the last band of a one bit image drawn, to reuse */
+    private byte[] bilevelBand;
 
     /** how long (in milliseconds) to wait between image updates */
     public static final long UPDATE_DURATION = 200;
+    /** the maximum number of commands executed by one iteration */
+    private static final int CHUNK_SIZE = 32;
+    /**
+     * how many image pixels per device pixel to decode at least, leaving
+     * smartDrawImage() enough detail to smooth the downscaled image
+     */
+    private static final int IMAGE_OVERSAMPLING = 2;
+    /** how many pixels of a one bit per pixel image to unpack at a time */
+    private static final int BILEVEL_BAND_PIXELS = 1 << 20;
     public static final float NOPHASE = -1000;
     public static final float NOWIDTH = -1000;
     public static final float NOLIMIT = -1000;
@@ -143,12 +163,7 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
      * to the image size.
      */
     private void setupRendering(Graphics2D g) {
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION,
-                RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        setRenderingHints(g);
 
         if (this.imageinfo.bgColor != null) {
             g.setColor(this.imageinfo.bgColor);
@@ -178,6 +193,37 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
         this.currentCommand = 0;
     }
 
+    /**
+     * Set the rendering hints used for drawing the page.
+     */
+    private void setRenderingHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION,
+                RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+    }
+
+    /**
+     * Get a graphics object for the image we render into, for use until
+     * the current run of iterations ends.  A RefImage hands out the same
+     * graphics object every time, with its state intact; any other image
+     * gives a fresh one, which gets the hints, transform and clip of the
+     * current graphics state.
+     */
+    private Graphics2D acquireGraphics(BufferedImage bi) {
+        Graphics2D graphics = bi.createGraphics();
+        if (!(bi instanceof RefImage)) {
+            setRenderingHints(graphics);
+            graphics.setTransform(this.state.xform);
+            if (this.state.cliprgn != null) {
+                graphics.clip(this.state.cliprgn);
+            }
+        }
+        return graphics;
+    }
+
     /**
      * push the current graphics state onto the stack.  Continue working
      * with the current object; calling pop() restores the state of this
@@ -281,7 +327,38 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
 
         BufferedImage bi;
         try {
-            bi = image.getImage();
+            int subsample = 1;
+            if (this.imageRef != null) {
+                // we know the resolution we are rendering at, so there
+                // is no need to decode more pixels than we can show
+                AffineTransform xform = this.g.getTransform();
+                int targetWidth = (int) Math.ceil(IMAGE_OVERSAMPLING
+                        * Math.hypot(xform.getScaleX(), xform.getShearY()));
+                int targetHeight = (int) Math.ceil(IMAGE_OVERSAMPLING
+                        * Math.hypot(xform.getShearX(), xform.getScaleY()));
+                subsample = image.getSubsampling(targetWidth, targetHeight);
+            }
+
+            // images used again, like logos, are only decoded and
+            // converted into a drawable form once
+            PDFImageCache cache = image.getImageCache();
+            PDFImageCache.Key key = null;
+            bi = null;
+            if (cache != null) {
+                key = image.getCacheKey(subsample, image.isImageMask() ? getMaskColor() : null);
+                bi = cache.getImage(key);
+            }
+            if (bi == null) {
+                // the render cache keeps the drawable form, so the
+                // decoded image isn't also kept with the image object
+                bi = image.getImage(subsample, cache == null);
+                if (image.isImageMask()) {
+                    bi = getMaskedImage(bi);
+                }
+                if (cache != null) {
+                    bi = cache.addImage(key, bi);
+                }
+            }
         }catch (PDFImageParseException e) {
             // maybe it was an unsupported format, or something.
             // Nothing to draw, anyway!
@@ -293,10 +370,6 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
                 0, -1f / bi.getHeight(),
                 0, 1);
 
-        if (image.isImageMask()) {
-        	bi = getMaskedImage(bi);
-        }
-
         Rectangle r = g.getTransform().createTransformedShape(new Rectangle(0,0,1,1)).getBounds();
         boolean isBlured = false;
         
@@ -304,7 +377,7 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
         		bi.getType() != BufferedImage.TYPE_CUSTOM && 
         		bi.getWidth() >= 1.75*r.getWidth() && bi.getHeight() >= 1.75*r.getHeight()){
         	try {
-            	return smartDrawImage(image, bi, r, at);
+            	return smartDrawImage(image, isKeptBilevel(bi) ? unpackBilevelImage(bi) : bi, r, at);
         	}catch (Exception e) {
 				// do nothing, just go on with the "default" processing 
 			}
@@ -318,7 +391,9 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
 				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         // banded rendering may lead to lower memory consumption for e.g. scanned PDFs with large images
         int bandSize = Configuration.getInstance().getThresholdForBandedImageRendering();
-        if (bandSize > 0 && bi.getHeight() > bandSize) {
+        if (isKeptBilevel(bi)) {
+            drawBilevelImage(bi, at);
+        } else if (bandSize > 0 && bi.getHeight() > bandSize) {
            // draw in bands
            int tempMax = bi.getHeight();
            for (int offset=0; offset<tempMax; offset += bandSize) {
@@ -356,6 +431,153 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
 
     }
 
+    /**
+     * Check whether one bit images are kept packed and this is a plain one
+     * bit per pixel image, like black and white scans and image masks.
+     * Java2D converts all of such an image to ARGB whenever it draws it
+     * scaled.
+     */
+    private static boolean isKeptBilevel(BufferedImage bi) {
+        if (!Configuration.getInstance().isKeepBilevelImagesPacked()
+                || bi.getType() != BufferedImage.TYPE_BYTE_BINARY
+                || bi.getColorModel().getPixelSize() != 1
+                || ((IndexColorModel) bi.getColorModel()).getMapSize() != 2) {
+            return false;
+        }
+        WritableRaster raster = bi.getRaster();
+        return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0
+                && ((MultiPixelPackedSampleModel) raster.getSampleModel()).getDataBitOffset() == 0;
+    }
+
+    /**
+     * Draw a one bit per pixel image a band of rows at a time, each
+     * unpacked into a byte per pixel image Java2D scales without a copy.
+     * Each band is unpacked with the rows next to it, so the interpolation
+     * at its edges sees the same pixels as when drawing the whole image,
+     * and then clipped to its own rows.
+     */
+    private void drawBilevelImage(BufferedImage bi, AffineTransform at) {
+        int width = bi.getWidth();
+        int height = bi.getHeight();
+        int rows = Math.max(1, BILEVEL_BAND_PIXELS / width);
+        int bandHeight = Math.min(height, rows + 2);
+        if (this.bilevelBand == null || this.bilevelBand.length < width * bandHeight) {
+            this.bilevelBand = new byte[width * bandHeight];
+        }
+        BufferedImage band = createUnpackedImage(bi, width, bandHeight, this.bilevelBand);
+        Shape clip = this.g.getClip();
+        // the clips of neighbouring bands must not be moved apart
+        Object strokeControl = this.g.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+        this.g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        for (int start = 0; start < height; start += rows) {
+            int end = Math.min(height, start + rows);
+            int top = Math.max(0, start - 1);
+            int bottom = Math.min(height, end + 1);
+            unpackRows(bi, top, bottom - top, band);
+            AffineTransform bt = new AffineTransform(at);
+            bt.translate(0, top);
+            if (rows < height) {
+                // only clip between bands, the image's own edges stay
+                // as they are drawn for the whole image
+                int clipTop = (start == 0) ? -1 : start;
+                int clipBottom = (end == height) ? height + 1 : end;
+                this.g.clip(at.createTransformedShape(
+                        new Rectangle(-1, clipTop, width + 2, clipBottom - clipTop)));
+            }
+            if (!this.g.drawImage(band.getSubimage(0, 0, width, bottom - top), bt, null)) {
+                PDFDebugger.debug("Image part not completed!", 10);
+            }
+            if (rows < height) {
+                this.g.setClip(clip);
+            }
+        }
+        if (strokeControl != null) {
+            this.g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+        }
+    }
+
+    /**
+     * Unpack all of a one bit per pixel image into a byte per pixel image
+     */
+    private static BufferedImage unpackBilevelImage(BufferedImage bi) {
+        BufferedImage unpacked = createUnpackedImage(bi, bi.getWidth(), bi.getHeight(),
+                new byte[bi.getWidth() * bi.getHeight()]);
+        unpackRows(bi, 0, bi.getHeight(), unpacked);
+        return unpacked;
+    }
+
+    /**
+     * Create a byte per pixel image on the given pixels for the pixels of a
+     * one bit per pixel image: gray if the image is black and white,
+     * otherwise indexed with the colors of the image, e.g. the paint and
+     * transparency of a mask.
+     */
+    private static BufferedImage createUnpackedImage(BufferedImage bi, int width, int height, byte[] pixels) {
+        WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(pixels, width * height),
+                width, height, width, 1, new int[] { 0 }, null);
+        IndexColorModel icm = (IndexColorModel) bi.getColorModel();
+        ColorModel cm;
+        if (isOpaqueGray(icm)) {
+            cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] { 8 },
+                    false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        } else {
+            int[] rgbs = new int[2];
+            icm.getRGBs(rgbs);
+            cm = new IndexColorModel(8, 2, rgbs, 0, icm.hasAlpha(), -1, DataBuffer.TYPE_BYTE);
+        }
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    private static boolean isOpaqueGray(IndexColorModel icm) {
+        if (icm.getTransparency() != Transparency.OPAQUE) {
+            return false;
+        }
+        for (int i = 0; i < 2; i++) {
+            if (icm.getRed(i) != icm.getGreen(i) || icm.getRed(i) != icm.getBlue(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unpack rows of a one bit per pixel image into the first rows of an
+     * image made by createUnpackedImage()
+     */
+    private static void unpackRows(BufferedImage bi, int firstRow, int rows, BufferedImage into) {
+        Raster raster = bi.getRaster();
+        int stride = ((MultiPixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        byte[] src = ((DataBufferByte) raster.getDataBuffer()).getData();
+        byte[] dst = ((DataBufferByte) into.getRaster().getDataBuffer()).getData();
+        byte[] values = { 0, 1 };
+        if (!(into.getColorModel() instanceof IndexColorModel)) {
+            IndexColorModel icm = (IndexColorModel) bi.getColorModel();
+            values[0] = (byte) icm.getRed(0);
+            values[1] = (byte) icm.getRed(1);
+        }
+        int width = bi.getWidth();
+        int fullBytes = width >> 3;
+        int out = 0;
+        for (int y = firstRow; y < firstRow + rows; y++) {
+            int in = y * stride;
+            for (int i = 0; i < fullBytes; i++) {
+                int bits = src[in++];
+                dst[out++] = values[(bits >> 7) & 1];
+                dst[out++] = values[(bits >> 6) & 1];
+                dst[out++] = values[(bits >> 5) & 1];
+                dst[out++] = values[(bits >> 4) & 1];
+                dst[out++] = values[(bits >> 3) & 1];
+                dst[out++] = values[(bits >> 2) & 1];
+                dst[out++] = values[(bits >> 1) & 1];
+                dst[out++] = values[bits & 1];
+            }
+            for (int x = fullBytes << 3; x < width; x++) {
+                dst[out++] = values[(src[in] >> (7 - (x & 7))) & 1];
+            }
+        }
+    }
+
     private Rectangle2D smartDrawImage(PDFImage image, BufferedImage bi, Rectangle r, AffineTransform at) {
         boolean isBlured = false;
         
@@ -684,13 +906,16 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
 
         if (graphics != null) {
             setupRendering(graphics);
+            // keep it for the first run of iterations
+            this.g = graphics;
         }
     }
 
     /**
-     * Draws the next command in the PDFPage to the buffered image.
+     * Draws the next chunk of commands in the PDFPage to the buffered image.
      * The image will be notified about changes no less than every
-     * UPDATE_DURATION milliseconds.
+     * UPDATE_DURATION milliseconds.  While no one is observing the image,
+     * the commands are executed without tracking their dirty regions.
      *
      * @return <ul><li>Watchable.RUNNING when there are commands to be processed
      *             <li>Watchable.NEEDS_DATA when there are no commands to be
@@ -718,12 +943,23 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
                 return Watchable.STOPPED;
             }
 
-            this.g = bi.createGraphics();
+            if (this.g == null) {
+                this.g = acquireGraphics(bi);
+            }
         }
 
         // check if there are any commands to parse.  If there aren't,
         // just return, but check if we'return really finished or not
-        if (this.currentCommand >= this.page.getCommandCount()) {
+        // a finished page is executed from its display list, otherwise
+        // the next commands are copied from the page
+        PDFDisplayList list = this.page.getDisplayList();
+        int count;
+        if (list != null) {
+            count = Math.min(CHUNK_SIZE, list.size() - this.currentCommand);
+        } else {
+            count = this.page.getCommands(this.currentCommand, this.chunk);
+        }
+        if (count <= 0) {
             if (this.page.isFinished()) {
                 return Watchable.COMPLETED;
             } else {
@@ -731,32 +967,39 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
             }
         }
 
-        // find the current command
-        PDFCmd cmd = this.page.getCommand(this.currentCommand++);
-        if (cmd == null) {
-            // uh oh.  Synchronization problem!
-            throw new PDFParseException("Command not found!");
+        boolean observed;
+        synchronized (this.observers) {
+            observed = !this.observers.isEmpty();
         }
 
-        // execute the command
-        Rectangle2D dirtyRegion = cmd.execute(this);
+        if (observed) {
+            for (int i = 0; i < count; i++) {
+                // execute the command
+                Rectangle2D dirtyRegion = execute(list, i);
 
-        // append to the global dirty region
-        this.globalDirtyRegion = addDirtyRegion(dirtyRegion, this.globalDirtyRegion);
-        this.unupdatedRegion = addDirtyRegion(dirtyRegion, this.unupdatedRegion);
+                // append to the global dirty region
+                this.globalDirtyRegion = addDirtyRegion(dirtyRegion, this.globalDirtyRegion);
+                this.unupdatedRegion = addDirtyRegion(dirtyRegion, this.unupdatedRegion);
+            }
 
-        long now = System.currentTimeMillis();
-        if (now > this.then || rendererFinished()) {
-            // now tell any observers, so they can repaint
-            notifyObservers(bi, this.unupdatedRegion);
-            this.unupdatedRegion = null;
-            this.then = now + UPDATE_DURATION;
-        }
+            long now = System.currentTimeMillis();
+            if (now > this.then || rendererFinished()) {
+                // now tell any observers, so they can repaint
+                notifyObservers(bi, this.unupdatedRegion);
+                this.unupdatedRegion = null;
+                this.then = now + UPDATE_DURATION;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                execute(list, i);
+            }
 
-        // if we are based on a reference to a graphics, don't hold on to it
-        // since that will prevent the image from being collected.
-        if (this.imageRef != null) {
-            this.g = null;
+            // we don't know what changed, so an observer added later
+            // has to assume it all did
+            Rectangle2D all = new Rectangle2D.Double(0, 0,
+                    this.imageinfo.width, this.imageinfo.height);
+            this.globalDirtyRegion = all;
+            this.unupdatedRegion = all;
         }
 
         // if we need to stop, it will be caught at the start of the next
@@ -764,6 +1007,42 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
         return Watchable.RUNNING;
     }
 
+    /**
+     * Execute the next command, which is the i-th of the current chunk.
+     *
+     * @param list the display list of the page, or null if the chunk has
+     * been copied from the page
+     * @return the dirty region of the command
+     */
+    private Rectangle2D execute(PDFDisplayList list, int i) throws PDFParseException {
+        int index = this.currentCommand++;
+        if (list != null) {
+            return list.execute(index, this);
+        }
+        PDFCmd cmd = this.chunk[i];
+        if (cmd == null) {
+            // uh oh.  Synchronization problem!
+            throw new PDFParseException("Command not found!");
+        }
+        return cmd.execute(this);
+    }
+
+    /**
+     * Called when a run of iterations ends.  If we are based on a reference
+     * to an image, don't hold on to its graphics, since that will prevent
+     * the image from being collected.
+     */
+    @Override
+    protected void endIterations() {
+        if (this.imageRef != null && this.g != null) {
+            if (this.state != null) {
+                // remember the clip, a new graphics object starts without
+                this.state.cliprgn = this.g.getClip();
+            }
+            this.g = null;
+        }
+    }
+
     /**
      * Called when iteration has stopped
      */
@@ -873,6 +1152,17 @@ public class PDFRenderer extends BaseWatchable implements Runnable {
         }
     }
 
+    /**
+     * Get the color image masks are painted in
+     *
+     * @return the color of the current paint, or null if it isn't a
+     *  plain color
+     */
+    private Color getMaskColor() {
+        Paint paint = state.fillPaint.getPaint();
+        return (paint instanceof Color) ? (Color) paint : null;
+    }
+
     /**
      * Convert an image mask into an image by painting over any pixels
      * that have a value in the image with the current paint
@@ -47,7 +47,7 @@ public class PDFShapeCmd extends PDFCmd {
     /** the bounding box of the path */
     // private Rectangle2D bounds;
     /** the stroke style for the anti-antialias stroke */
-    BasicStroke againstroke = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL);
+    private static final BasicStroke againstroke = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL);
     private boolean autoAdjustStroke = false;
 
     /**
@@ -66,33 +66,62 @@ public class PDFShapeCmd extends PDFCmd {
         this.autoAdjustStroke = autoAdjustStroke;
     }
 
+    /**
+    * get the path, may be null
+    */
+    GeneralPath getPath() {
+        return this.gp;
+    }
+
+    /**
+    * get the style: an OR of STROKE, FILL, or CLIP
+    */
+    int getStyle() {
+        return this.style;
+    }
+
+    /**
+    * get whether the stroke width gets adjusted automatically
+    */
+    boolean isAutoAdjustStroke() {
+        return this.autoAdjustStroke;
+    }
+
     /**
     * perform the stroke and record the dirty region
     */
     @Override
     public Rectangle2D execute(PDFRenderer state) {
+        return execute(state, this.gp, this.style, this.autoAdjustStroke);
+    }
+
+    /**
+    * perform the stroke of a path given by its parts, as a shape command
+    * would, and record the dirty region
+    */
+    static Rectangle2D execute(PDFRenderer state, GeneralPath gp, int style, boolean autoAdjustStroke) {
         Rectangle2D rect = null;
-        if ((this.style & FILL) != 0) {
-            rect = state.fill(this.gp);
-            GeneralPath strokeagain = checkOverlap(state);
+        if ((style & FILL) != 0) {
+            rect = state.fill(gp);
+            GeneralPath strokeagain = checkOverlap(state, gp, style);
             if (strokeagain != null) {
-                state.draw(strokeagain, this.againstroke);
+                state.draw(strokeagain, againstroke);
             }
-            if (this.gp != null) {
-                state.setLastShape(this.gp);
+            if (gp != null) {
+                state.setLastShape(gp);
                 state.rememberTransformation();
             }
         }
-        if ((this.style & STROKE) != 0) {
-            Rectangle2D strokeRect = state.stroke(this.gp, autoAdjustStroke);
+        if ((style & STROKE) != 0) {
+            Rectangle2D strokeRect = state.stroke(gp, autoAdjustStroke);
             if (rect == null) {
                 rect = strokeRect;
             } else {
                 rect = rect.createUnion(strokeRect);
             }
         }
-        if ((this.style & CLIP) != 0) {
-            state.clip(this.gp);
+        if ((style & CLIP) != 0) {
+            state.clip(gp);
         }
         return rect;
     }
@@ -101,11 +130,11 @@ public class PDFShapeCmd extends PDFCmd {
     * Check for overlap with the previous shape to make anti-aliased shapes
     * that are near each other look good
     */
-    private GeneralPath checkOverlap(PDFRenderer state) {
-        if (this.style == FILL && this.gp != null && state.getLastShape() != null) {
+    private static GeneralPath checkOverlap(PDFRenderer state, GeneralPath gp, int style) {
+        if (style == FILL && gp != null && state.getLastShape() != null) {
             float mypoints[] = new float[16];
             float prevpoints[] = new float[16];
-            int mycount = getPoints(this.gp, mypoints, state.getTransform());
+            int mycount = getPoints(gp, mypoints, state.getTransform());
             int prevcount = getPoints(state.getLastShape(), prevpoints, state.getLastTransform());
             // now check mypoints against prevpoints for opposite pairs:
             if (mypoints != null && prevpoints != null) {
@@ -115,7 +144,7 @@ public class PDFShapeCmd extends PDFCmd {
                                 .abs(mypoints[j + 1] - prevpoints[i + 3]) < 0.01)) {
                             // it seems that need to use the original points location (without the Affine Transform)
                             mypoints = new float[16];
-                            getPoints(this.gp, mypoints, null);// without AffineTransform
+                            getPoints(gp, mypoints, null);// without AffineTransform
 
                             GeneralPath strokeagain = new GeneralPath();
                             strokeagain.moveTo(mypoints[j], mypoints[j + 1]);
@@ -135,7 +164,7 @@ public class PDFShapeCmd extends PDFCmd {
     *
     * @return the number of points we actually got
     */
-    private int getPoints(GeneralPath path, float[] mypoints, AffineTransform at) {
+    private static int getPoints(GeneralPath path, float[] mypoints, AffineTransform at) {
         int count = 0;
         float x = 0;
         float y = 0;
@@ -180,6 +209,37 @@ public class PDFShapeCmd extends PDFCmd {
         return count;
     }
 
+    /**
+    * estimate the memory taken by this command and its path
+    */
+    @Override
+    public long getByteSize() {
+        long size = 40;
+        if (this.gp != null) {
+            // the path, a byte per segment and its float coordinates
+            size += 48;
+            float[] coords = new float[6];
+            for (PathIterator pi = this.gp.getPathIterator(null); !pi.isDone(); pi.next()) {
+                switch (pi.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    size += 1 + 2 * 4;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    size += 1 + 4 * 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    size += 1 + 6 * 4;
+                    break;
+                default:
+                    size += 1;
+                    break;
+                }
+            }
+        }
+        return size;
+    }
+
     /**
     * Get detailed information about this shape
     */
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package com.sun.pdfview;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+/**
+* concatenate a transform to the graphics state
+*/
+class PDFXformCmd extends PDFCmd {
+    AffineTransform at;
+
+    public PDFXformCmd(AffineTransform at) {
+        if (at == null) {
+            throw new RuntimeException("Null transform in PDFXformCmd");
+        }
+        this.at = at;
+    }
+
+    @Override
+    public Rectangle2D execute(PDFRenderer state) {
+        state.transform(this.at);
+        return null;
+    }
+
+    @Override
+    public long getByteSize() {
+        // the command and its transform of six doubles and a state
+        return 32 + 72;
+    }
+
+    public String toString(PDFRenderer state) {
+        return "PDFXformCmd: " + this.at;
+    }
+
+    @Override
+    public String getDetails() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("PDFXformCommand: \n");
+        buf.append(this.at.toString());
+        return buf.toString();
+    }
+}
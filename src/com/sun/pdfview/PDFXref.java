@@ -48,7 +48,7 @@ public class PDFXref {
     private final boolean compressed;
     
     // this field is only used in PDFFile.objIdx
-    private SoftReference<PDFObject> reference = null;
+    private volatile SoftReference<PDFObject> reference = null;
 
     /**
      * create a new PDFXref, given a parsed id and generation.
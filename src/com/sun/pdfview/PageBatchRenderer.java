@@ -0,0 +1,252 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Parses and renders a range of pages of one PDFFile concurrently, see
+ * {@link PDFFile#renderPages(int, int, float, Executor, PDFPageSink, boolean, int)}.
+ * <p>
+ * Every page is a task on the executor, which parses the page (through
+ * the file's page cache) and renders it into an image of its own.  A
+ * page holds a permit from submission until it has been handed to the
+ * sink, so no more than maxInFlight images are alive at a time, even
+ * while pages that finished early wait for their turn in page order.
+ */
+class PageBatchRenderer {
+
+    private final PDFFile file;
+    private final int first;
+    private final int last;
+    private final float dpi;
+    private final PDFPageSink sink;
+    private final boolean inPageOrder;
+    /** one permit per page that may be in flight */
+    private final Semaphore permits;
+
+    /** guards all fields below */
+    private final Object lock = new Object();
+    /** pages rendered but not yet delivered, in completion order; null images for failed pages */
+    private final Map<Integer, BufferedImage> done = new LinkedHashMap<Integer, BufferedImage>();
+    /** the next page to deliver in page order */
+    private int nextPage;
+    /** true while a thread is handing pages to the sink */
+    private boolean delivering;
+    /** pages submitted and not yet delivered or dropped */
+    private int outstanding;
+    /** the first failure, stops the batch */
+    private Exception failure;
+    /** the number of pages delivered */
+    private int pageCount;
+    /** the number of pixels delivered */
+    private long pixelCount;
+
+    PageBatchRenderer(PDFFile file, int first, int last, float dpi, PDFPageSink sink,
+            boolean inPageOrder, int maxInFlight) {
+        this.file = file;
+        this.first = first;
+        this.last = last;
+        this.dpi = dpi;
+        this.sink = sink;
+        this.inPageOrder = inPageOrder;
+        this.permits = new Semaphore(Math.max(1, maxInFlight));
+        this.nextPage = first;
+    }
+
+    /**
+     * Render all pages and wait until the sink has got them.
+     */
+    PDFRenderStatistics run(Executor executor) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            for (int n = this.first; n <= this.last; n++) {
+                this.permits.acquire();
+                synchronized (this.lock) {
+                    if (this.failure != null) {
+                        this.permits.release();
+                        break;
+                    }
+                    this.outstanding++;
+                }
+                final int pageNumber = n;
+                Runnable task = new Runnable() {
+                    @Override
+                    public void run() {
+                        renderPage(pageNumber);
+                    }
+                };
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // account for the page as a failed one
+                    finished(pageNumber, null, e);
+                    break;
+                }
+            }
+            synchronized (this.lock) {
+                while (this.outstanding > 0) {
+                    this.lock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+            throw e;
+        }
+
+        synchronized (this.lock) {
+            if (this.failure instanceof IOException) {
+                throw (IOException) this.failure;
+            } else if (this.failure != null) {
+                throw new IOException("Rendering failed: " + this.failure, this.failure);
+            }
+            PDFRenderStatistics stats = new PDFRenderStatistics(this.pageCount, this.pixelCount,
+                    System.nanoTime() - start);
+            PDFDebugger.debug("Rendered " + stats, 100);
+            return stats;
+        }
+    }
+
+    /**
+     * The task of a single page.
+     */
+    private void renderPage(int pageNumber) {
+        BufferedImage image = null;
+        Exception error = null;
+        try {
+            if (!isFailed()) {
+                image = render(pageNumber);
+            }
+        } catch (Exception e) {
+            error = e;
+        } catch (Error e) {
+            // e.g. out of memory, don't lose the permit
+            error = new IOException("Rendering page " + pageNumber + " failed: " + e, e);
+        }
+        finished(pageNumber, image, error);
+    }
+
+    /**
+     * Parse and render a page at the resolution of the batch.
+     */
+    private BufferedImage render(int pageNumber) throws Exception {
+        PDFPage page = this.file.getPage(pageNumber, true);
+        if (page == null) {
+            throw new PDFParseException("Page " + pageNumber + " not found");
+        }
+        int width = Math.max(1, Math.round(page.getWidth() * this.dpi / 72));
+        int height = Math.max(1, Math.round(page.getHeight() * this.dpi / 72));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ImageInfo info = new ImageInfo(width, height, null, Color.WHITE);
+        PDFRenderer renderer = new PDFRenderer(page, info, image);
+        renderer.go(true);
+        if (renderer.getStatus() == Watchable.ERROR) {
+            Exception e = renderer.getException();
+            throw e != null ? e : new PDFParseException("Rendering page " + pageNumber + " failed");
+        }
+        return image;
+    }
+
+    /**
+     * Record a finished page, and deliver all pages that are due unless
+     * another thread is doing so already.
+     */
+    private void finished(int pageNumber, BufferedImage image, Exception error) {
+        synchronized (this.lock) {
+            if (error != null && this.failure == null) {
+                this.failure = error;
+            }
+            this.done.put(Integer.valueOf(pageNumber), image);
+            if (this.delivering) {
+                return;
+            }
+            this.delivering = true;
+        }
+        while (true) {
+            int number;
+            BufferedImage next;
+            boolean drop;
+            synchronized (this.lock) {
+                Integer key = nextKey();
+                if (key == null) {
+                    this.delivering = false;
+                    return;
+                }
+                number = key.intValue();
+                next = this.done.remove(key);
+                drop = next == null || this.failure != null;
+            }
+            if (!drop) {
+                try {
+                    this.sink.pageRendered(number, next);
+                    synchronized (this.lock) {
+                        this.pageCount++;
+                        this.pixelCount += (long) next.getWidth() * next.getHeight();
+                    }
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+            this.permits.release();
+            synchronized (this.lock) {
+                this.outstanding--;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the page to deliver next, or null if none is due.  Must be
+     * called with the lock held.
+     */
+    private Integer nextKey() {
+        if (this.inPageOrder) {
+            Integer key = Integer.valueOf(this.nextPage);
+            if (!this.done.containsKey(key)) {
+                return null;
+            }
+            this.nextPage++;
+            return key;
+        }
+        Iterator<Integer> i = this.done.keySet().iterator();
+        return i.hasNext() ? i.next() : null;
+    }
+
+    private boolean isFailed() {
+        synchronized (this.lock) {
+            return this.failure != null;
+        }
+    }
+
+    private void fail(Exception e) {
+        synchronized (this.lock) {
+            if (this.failure == null) {
+                this.failure = e;
+            }
+        }
+    }
+}
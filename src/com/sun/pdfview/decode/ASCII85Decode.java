@@ -18,6 +18,8 @@
 package com.sun.pdfview.decode;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import com.sun.pdfview.PDFFile;
@@ -33,6 +35,8 @@ public class ASCII85Decode {
 
     private ByteBuffer buf;
 
+    private InputStream in;
+
     /**
      * initialize the decoder with byte buffer in ASCII85 format
      */
@@ -40,13 +44,30 @@ public class ASCII85Decode {
         this.buf = buf;
     }
 
+    /**
+     * initialize the decoder with a stream in ASCII85 format
+     */
+    private ASCII85Decode(InputStream in) {
+        this.in = in;
+    }
+
     /**
      * get the next character from the input.
      * @return the next character, or -1 if at end of stream
      */
-    private int nextChar() {
+    private int nextChar() throws IOException {
         // skip whitespace
         // returns next character, or -1 if end of stream
+        if (this.in != null) {
+            int c;
+            while ((c = this.in.read()) >= 0) {
+                if (!PDFFile.isWhiteSpace((char) (byte) c)) {
+                    return (char) (byte) c;
+                }
+            }
+            return -1;
+        }
+
         while (this.buf.remaining() > 0) {
             char c = (char) this.buf.get();
 
@@ -68,7 +89,7 @@ public class ASCII85Decode {
      * @return false when finished, or true otherwise.
      */
     private boolean decode5(ByteArrayOutputStream baos)
-            throws PDFParseException {
+            throws IOException {
         // stream ends in ~>
         int[] five = new int[5];
         int i;
@@ -117,7 +138,7 @@ public class ASCII85Decode {
      * decode the bytes
      * @return the decoded bytes
      */
-    private ByteBuffer decode() throws PDFParseException {
+    private ByteBuffer decode() throws IOException {
         // start from the beginning of the data
         this.buf.rewind();
 
@@ -143,8 +164,54 @@ public class ASCII85Decode {
      * @return the decoded bytes
      */
     public static ByteBuffer decode(ByteBuffer buf, PDFObject params)
-            throws PDFParseException {
+            throws IOException {
         ASCII85Decode me = new ASCII85Decode(buf);
         return me.decode();
     }
+
+    /**
+     * Get a stream which decodes the given ASCII85 stream as it is read,
+     * five characters at a time
+     */
+    public static InputStream openStream(final InputStream in, PDFObject params) {
+        final ASCII85Decode me = new ASCII85Decode(in);
+        return new InputStream() {
+            private final ByteArrayOutputStream group = new ByteArrayOutputStream(4);
+            private byte[] bytes = new byte[0];
+            private int pos;
+            private boolean more = true;
+
+            @Override
+            public int read() throws IOException {
+                while (this.pos == this.bytes.length) {
+                    if (!this.more) {
+                        return -1;
+                    }
+                    this.group.reset();
+                    this.more = me.decode5(this.group);
+                    this.bytes = this.group.toByteArray();
+                    this.pos = 0;
+                }
+                return this.bytes[this.pos++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = 0;
+                while (count < len) {
+                    int c = read();
+                    if (c < 0) {
+                        return count == 0 && len > 0 ? -1 : count;
+                    }
+                    b[off + count++] = (byte) c;
+                }
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ import com.sun.pdfview.PDFObject;
 import com.sun.pdfview.PDFParseException;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 /**
@@ -123,4 +125,84 @@ public class ASCIIHexDecode {
 	ASCIIHexDecode me = new ASCIIHexDecode(buf);
 	return me.decode();
     }
-}
\ No newline at end of file
+
+    /**
+     * Get a stream which decodes the given ASCIIHex stream as it is read
+     */
+    public static InputStream openStream(InputStream in, PDFObject params) {
+        return new ASCIIHexInputStream(in);
+    }
+
+    /**
+     * Decodes ASCIIHex data while it is read
+     */
+    private static class ASCIIHexInputStream extends InputStream {
+        private final InputStream in;
+        private boolean eof;
+
+        private ASCIIHexInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        private int readHexDigit() throws IOException {
+            // read until we hit a non-whitespace character or the
+            // end of the stream
+            int c;
+            while ((c = this.in.read()) >= 0) {
+                c = (byte) c;
+                if (!PDFFile.isWhiteSpace((char) c)) {
+                    if (c >= '0' && c <= '9') {
+                        return c - '0';
+                    } else if (c >= 'a' && c <= 'f') {
+                        return c - ('a' - 10);
+                    } else if (c >= 'A' && c <= 'F') {
+                        return c - ('A' - 10);
+                    } else if (c == '>') {
+                        return -1;
+                    }
+                    // unknown character
+                    throw new PDFParseException("Bad character " + c +
+                                                "in ASCIIHex decode");
+                }
+            }
+            // end of stream reached
+            throw new PDFParseException("Short stream in ASCIIHex decode");
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.eof) {
+                return -1;
+            }
+            int first = readHexDigit();
+            if (first == -1) {
+                this.eof = true;
+                return -1;
+            }
+            int second = readHexDigit();
+            if (second == -1) {
+                this.eof = true;
+                return (first << 4) & 0xff;
+            }
+            return ((first << 4) + second) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = 0;
+            while (count < len) {
+                int c = read();
+                if (c < 0) {
+                    return count == 0 && len > 0 ? -1 : count;
+                }
+                b[off + count++] = (byte) c;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
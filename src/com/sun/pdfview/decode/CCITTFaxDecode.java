@@ -46,8 +46,10 @@ public class CCITTFaxDecode {
 
 		boolean align = getOptionFieldBoolean(dict, "EncodedByteAlign", false);
 
-		CCITTFaxDecoder decoder = new CCITTFaxDecoder(1, columns, rows);
+		CCITTFaxTableDecoder decoder = new CCITTFaxTableDecoder(1, columns, rows);
 		decoder.setAlign(align);
+		// the decoder paints the runs in the requested polarity
+		decoder.setBlackIs1(getOptionFieldBoolean(dict, "BlackIs1", false));
 		try {
 			if (k == 0) {
 				decoder.decodeT41D(destination, source, 0, rows);
@@ -56,6 +58,10 @@ public class CCITTFaxDecode {
 			} else if (k < 0) {
 				decoder.decodeT6(destination, source, 0, rows);
 			}
+		} catch (CCITTFaxTableDecoder.EndOfDataException e) {
+			// the data is cut short; keep the rows decoded so far, the
+			// others have been left white
+			PDFDebugger.debug("CCITTFax image data ends early, k: " + k);
 		}catch (Exception e) {
 		    PDFDebugger.debug("Error decoding CCITTFax image k: "+ k);
 			// some PDf producer don't correctly assign a k value for the deocde,
@@ -69,13 +75,6 @@ public class CCITTFaxDecode {
 			    PDFDebugger.debug("Error decoding CCITTFax image");
 			}
 		}
-		if (!getOptionFieldBoolean(dict, "BlackIs1", false)) {
-			for (int i = 0; i < destination.length; i++) {
-				// bitwise not
-				destination[i] = (byte) ~destination[i];
-			}
-		}
-
 		return destination;
 	}
 
@@ -0,0 +1,885 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview.decode;
+
+/**
+ * Decodes CCITT group 3 and group 4 fax data a code word at a time.
+ * <p>
+ * The data is read through a 64 bit reservoir, so looking at the next
+ * code word is a shift, and the code words are looked up in tables indexed
+ * by the next 12 (white) or 13 (black) bits, so each run costs a single
+ * lookup instead of a walk through the code tree. Runs are filled a byte
+ * at a time. The decoder paints the runs in the colour they have in the
+ * output, so images where black is 0 don't need a pass to invert them.
+ * <p>
+ * It decodes like {@link CCITTFaxDecoder}, including that decoder's ways
+ * of getting along with broken data, which is still around to compare
+ * against. Unlike that decoder, a run longer than the row is cut off
+ * instead of running on into the next row, and an instance must not be
+ * shared between threads; create one per image.
+ */
+public class CCITTFaxTableDecoder {
+
+	/** the number of bits the white runs are looked up by */
+	private static final int WHITE_BITS = 12;
+
+	/** the number of bits the black runs are looked up by */
+	private static final int BLACK_BITS = 13;
+
+	/** flag of the table entries of make up codes */
+	private static final int MAKEUP = 0x10;
+
+	/** the table entry of the EOL code word */
+	private static final int EOL = -1;
+
+	/**
+	 * Thrown when the data ends before the last scanline is decoded. The
+	 * scanlines before it are complete and the ones after it are white.
+	 */
+	static class EndOfDataException extends RuntimeException {
+		EndOfDataException() {
+			super("Unexpected end of CCITT data"); //$NON-NLS-1$
+		}
+	}
+
+	/** the white code words as triplets of code, length in bits and run */
+	private static final int[] WHITE_CODES = {
+			0x035, 8, 0, 0x007, 6, 1, 0x007, 4, 2, 0x008, 4, 3,
+			0x00b, 4, 4, 0x00c, 4, 5, 0x00e, 4, 6, 0x00f, 4, 7,
+			0x013, 5, 8, 0x014, 5, 9, 0x007, 5, 10, 0x008, 5, 11,
+			0x008, 6, 12, 0x003, 6, 13, 0x034, 6, 14, 0x035, 6, 15,
+			0x02a, 6, 16, 0x02b, 6, 17, 0x027, 7, 18, 0x00c, 7, 19,
+			0x008, 7, 20, 0x017, 7, 21, 0x003, 7, 22, 0x004, 7, 23,
+			0x028, 7, 24, 0x02b, 7, 25, 0x013, 7, 26, 0x024, 7, 27,
+			0x018, 7, 28, 0x002, 8, 29, 0x003, 8, 30, 0x01a, 8, 31,
+			0x01b, 8, 32, 0x012, 8, 33, 0x013, 8, 34, 0x014, 8, 35,
+			0x015, 8, 36, 0x016, 8, 37, 0x017, 8, 38, 0x028, 8, 39,
+			0x029, 8, 40, 0x02a, 8, 41, 0x02b, 8, 42, 0x02c, 8, 43,
+			0x02d, 8, 44, 0x004, 8, 45, 0x005, 8, 46, 0x00a, 8, 47,
+			0x00b, 8, 48, 0x052, 8, 49, 0x053, 8, 50, 0x054, 8, 51,
+			0x055, 8, 52, 0x024, 8, 53, 0x025, 8, 54, 0x058, 8, 55,
+			0x059, 8, 56, 0x05a, 8, 57, 0x05b, 8, 58, 0x04a, 8, 59,
+			0x04b, 8, 60, 0x032, 8, 61, 0x033, 8, 62, 0x034, 8, 63,
+			0x01b, 5, 64, 0x012, 5, 128, 0x017, 6, 192, 0x037, 7, 256,
+			0x036, 8, 320, 0x037, 8, 384, 0x064, 8, 448, 0x065, 8, 512,
+			0x068, 8, 576, 0x067, 8, 640, 0x0cc, 9, 704, 0x0cd, 9, 768,
+			0x0d2, 9, 832, 0x0d3, 9, 896, 0x0d4, 9, 960, 0x0d5, 9, 1024,
+			0x0d6, 9, 1088, 0x0d7, 9, 1152, 0x0d8, 9, 1216, 0x0d9, 9, 1280,
+			0x0da, 9, 1344, 0x0db, 9, 1408, 0x098, 9, 1472, 0x099, 9, 1536,
+			0x09a, 9, 1600, 0x018, 6, 1664, 0x09b, 9, 1728, 0x008, 11, 1792,
+			0x00c, 11, 1856, 0x00d, 11, 1920, 0x012, 12, 1984, 0x013, 12, 2048,
+			0x014, 12, 2112, 0x015, 12, 2176, 0x016, 12, 2240, 0x017, 12, 2304,
+			0x01c, 12, 2368, 0x01d, 12, 2432, 0x01e, 12, 2496, 0x01f, 12, 2560 };
+
+	/** the black code words as triplets of code, length in bits and run */
+	private static final int[] BLACK_CODES = {
+			0x037, 10, 0, 0x002, 3, 1, 0x003, 2, 2, 0x002, 2, 3,
+			0x003, 3, 4, 0x003, 4, 5, 0x002, 4, 6, 0x003, 5, 7,
+			0x005, 6, 8, 0x004, 6, 9, 0x004, 7, 10, 0x005, 7, 11,
+			0x007, 7, 12, 0x004, 8, 13, 0x007, 8, 14, 0x018, 9, 15,
+			0x017, 10, 16, 0x018, 10, 17, 0x008, 10, 18, 0x067, 11, 19,
+			0x068, 11, 20, 0x06c, 11, 21, 0x037, 11, 22, 0x028, 11, 23,
+			0x017, 11, 24, 0x018, 11, 25, 0x0ca, 12, 26, 0x0cb, 12, 27,
+			0x0cc, 12, 28, 0x0cd, 12, 29, 0x068, 12, 30, 0x069, 12, 31,
+			0x06a, 12, 32, 0x06b, 12, 33, 0x0d2, 12, 34, 0x0d3, 12, 35,
+			0x0d4, 12, 36, 0x0d5, 12, 37, 0x0d6, 12, 38, 0x0d7, 12, 39,
+			0x06c, 12, 40, 0x06d, 12, 41, 0x0da, 12, 42, 0x0db, 12, 43,
+			0x054, 12, 44, 0x055, 12, 45, 0x056, 12, 46, 0x057, 12, 47,
+			0x064, 12, 48, 0x065, 12, 49, 0x052, 12, 50, 0x053, 12, 51,
+			0x024, 12, 52, 0x037, 12, 53, 0x038, 12, 54, 0x027, 12, 55,
+			0x028, 12, 56, 0x058, 12, 57, 0x059, 12, 58, 0x02b, 12, 59,
+			0x02c, 12, 60, 0x05a, 12, 61, 0x066, 12, 62, 0x067, 12, 63,
+			0x00f, 10, 64, 0x0c8, 12, 128, 0x0c9, 12, 192, 0x05b, 12, 256,
+			0x033, 12, 320, 0x034, 12, 384, 0x035, 12, 448, 0x06c, 13, 512,
+			0x06d, 13, 576, 0x04a, 13, 640, 0x04b, 13, 704, 0x04c, 13, 768,
+			0x04d, 13, 832, 0x072, 13, 896, 0x073, 13, 960, 0x074, 13, 1024,
+			0x075, 13, 1088, 0x076, 13, 1152, 0x077, 13, 1216, 0x052, 13, 1280,
+			0x053, 13, 1344, 0x054, 13, 1408, 0x055, 13, 1472, 0x05a, 13, 1536,
+			0x05b, 13, 1600, 0x064, 13, 1664, 0x065, 13, 1728, 0x008, 11, 1792,
+			0x00c, 11, 1856, 0x00d, 11, 1920, 0x012, 12, 1984, 0x013, 12, 2048,
+			0x014, 12, 2112, 0x015, 12, 2176, 0x016, 12, 2240, 0x017, 12, 2304,
+			0x01c, 12, 2368, 0x01d, 12, 2432, 0x01e, 12, 2496, 0x01f, 12, 2560 };
+
+	/**
+	 * The white and black runs by the next bits of the data. An entry holds
+	 * the length of the run from bit 5 up, the MAKEUP flag, and the length
+	 * of the code word in the lowest 4 bits. 0 marks an invalid code. Like
+	 * CCITTFaxDecoder, invalid black codes are read as an empty run of 4
+	 * bits rather than rejected, so damaged data decodes the same.
+	 */
+	private static final int[] WHITE_TABLE = createTable(WHITE_CODES, WHITE_BITS, 0);
+	private static final int[] BLACK_TABLE = createTable(BLACK_CODES, BLACK_BITS, 4);
+
+	private final int w;
+
+	private final int fillOrder;
+
+	private boolean align = false;
+
+	private boolean fillBits = false;
+
+	private boolean blackIs1 = true;
+
+	/** the compressed data and its length in bits */
+	private byte[] data;
+	private int dataBits;
+
+	/** the next bits of the data, left aligned */
+	private long reservoir;
+
+	/** the number of bits in the reservoir */
+	private int reservoirBits;
+
+	/** the index of the next byte to load into the reservoir */
+	private int nextByte;
+
+	// the changing elements of the previous and the current scanline
+	private int changingElemSize = 0;
+
+	private int[] prevChangingElems;
+
+	private int[] currChangingElems;
+
+	// Element at which to start search in getNextChangingElement
+	private int lastChangingElement = 0;
+
+	/**
+	 * @param fillOrder
+	 *            The fill order of the compressed data bytes, 1 or 2.
+	 * @param w
+	 *            the width of the image
+	 * @param h
+	 *            the height of the image
+	 */
+	public CCITTFaxTableDecoder(int fillOrder, int w, int h) {
+		if (fillOrder != 1 && fillOrder != 2) {
+			throw new IllegalArgumentException("tag must be either 1 or 2."); //$NON-NLS-1$
+		}
+		this.fillOrder = fillOrder;
+		// the decode methods assume there is room for at least 2
+		// changing elements
+		if (w < 2) {
+			w = 2;
+		}
+		this.w = w;
+		this.prevChangingElems = new int[w + 2];
+		this.currChangingElems = new int[w + 2];
+	}
+
+	private static int[] createTable(int[] codes, int bits, int invalid) {
+		int[] table = new int[1 << bits];
+		for (int j = 0; j < table.length; j++) {
+			table[j] = invalid;
+		}
+		for (int i = 0; i < codes.length; i += 3) {
+			int length = codes[i + 1];
+			int run = codes[i + 2];
+			int entry = (run << 5) | (run >= 64 ? MAKEUP : 0) | length;
+			int shift = bits - length;
+			int end = (codes[i] + 1) << shift;
+			for (int j = codes[i] << shift; j < end; j++) {
+				table[j] = entry;
+			}
+		}
+		// EOL is 0000 0000 0001, but like CCITTFaxDecoder take any code
+		// starting with 10 (white) or 11 (black) zeros for an EOL with fill
+		// bits in front of it
+		for (int j = 0; j < 4; j++) {
+			table[j] = EOL;
+		}
+		return table;
+	}
+
+	public boolean isAlign() {
+		return this.align;
+	}
+
+	public void setAlign(boolean align) {
+		this.align = align;
+	}
+
+	public boolean isFillBits() {
+		return this.fillBits;
+	}
+
+	public void setFillBits(boolean fillBits) {
+		this.fillBits = fillBits;
+	}
+
+	public boolean isBlackIs1() {
+		return this.blackIs1;
+	}
+
+	/**
+	 * Set whether black pixels are decoded to 1 bits, which is the
+	 * default, or to 0 bits like the PDF BlackIs1 parameter asks for when
+	 * it is false.
+	 */
+	public void setBlackIs1(boolean blackIs1) {
+		this.blackIs1 = blackIs1;
+	}
+
+	// One-dimensional decoding methods
+	public void decodeT41D(byte[] buffer, byte[] compData, int startX,
+			int height) {
+		start(buffer, compData, height);
+		int scanlineStride = (this.w + 7) / 8;
+
+		int lineOffset = 0;
+		for (int i = 0; i < height; i++) {
+			consumeEOL();
+			decodeNextScanline(buffer, lineOffset, startX);
+			lineOffset += scanlineStride;
+		}
+	}
+
+	// Two-dimensional decoding methods
+	public void decodeT42D(byte[] buffer, byte[] compData, int startX,
+			int height) {
+		start(buffer, compData, height);
+		int scanlineStride = (this.w + 7) / 8;
+
+		int[] b = new int[2];
+		int[] temp;
+
+		// The data must start with an EOL code
+		if (readEOL(true) != 1) {
+			throw new RuntimeException("First scanline must be 1D encoded."); //$NON-NLS-1$
+		}
+
+		// Then the 1D encoded scanline data will occur, changing elements
+		// array gets set.
+		int lineOffset = 0;
+		decodeNextScanline(buffer, lineOffset, startX);
+		lineOffset += scanlineStride;
+
+		for (int lines = 1; lines < height; lines++) {
+			// Every line must begin with an EOL followed by a bit which
+			// indicates whether the following scanline is 1D or 2D encoded.
+			if (readEOL(false) == 0) {
+				// 2D encoded scanline follows
+				temp = this.prevChangingElems;
+				this.prevChangingElems = this.currChangingElems;
+				int[] cce = this.currChangingElems = temp;
+				int currIndex = 0;
+
+				// a0 has to be set just before the start of this scanline.
+				int a0 = -1;
+				boolean isWhite = true;
+				int bitOffset = startX;
+
+				this.lastChangingElement = 0;
+
+				while (bitOffset < this.w) {
+					getNextChangingElement(a0, isWhite, b);
+					int b1 = b[0];
+					int b2 = b[1];
+
+					checkEnd();
+					int entry = CCITTFaxDecoder.twoDCodes[peek(7)] & 0xff;
+					int code = (entry & 0x78) >>> 3;
+					int bits = entry & 0x07;
+
+					if (code == 0) {
+						// Pass
+						if (!isWhite) {
+							fillRun(buffer, lineOffset, bitOffset, b2 - bitOffset);
+						}
+						bitOffset = a0 = b2;
+						skip(bits);
+					} else if (code == 1) {
+						// Horizontal
+						skip(bits);
+						int number;
+						if (isWhite) {
+							number = decodeWhiteRun();
+							bitOffset += number;
+							cce[currIndex++] = bitOffset;
+
+							number = decodeBlackRun();
+							fillRun(buffer, lineOffset, bitOffset, number);
+							bitOffset += number;
+							cce[currIndex++] = bitOffset;
+						} else {
+							number = decodeBlackRun();
+							fillRun(buffer, lineOffset, bitOffset, number);
+							bitOffset += number;
+							cce[currIndex++] = bitOffset;
+
+							number = decodeWhiteRun();
+							bitOffset += number;
+							cce[currIndex++] = bitOffset;
+						}
+						a0 = bitOffset;
+					} else if (code <= 8) {
+						// Vertical
+						int a1 = b1 + (code - 5);
+						cce[currIndex++] = a1;
+						if (!isWhite) {
+							fillRun(buffer, lineOffset, bitOffset, a1 - bitOffset);
+						}
+						bitOffset = a0 = a1;
+						isWhite = !isWhite;
+						skip(bits);
+					} else {
+						throw invalidCode(
+								"Invalid code encountered while decoding 2D group 3 compressed data."); //$NON-NLS-1$
+					}
+				}
+
+				// Add the changing element beyond the current scanline for the
+				// other color too
+				cce[currIndex++] = bitOffset;
+				this.changingElemSize = currIndex;
+			} else {
+				// 1D encoded scanline follows
+				decodeNextScanline(buffer, lineOffset, startX);
+			}
+
+			lineOffset += scanlineStride;
+		}
+	}
+
+	public void decodeT6(byte[] buffer, byte[] compData, int startX,
+			int height) {
+		start(buffer, compData, height);
+		int scanlineStride = (this.w + 7) / 8;
+
+		int[] b = new int[2];
+		int[] temp;
+
+		// Assume invisible preceding row of all white pixels and insert
+		// both black and white changing elements beyond the end of this
+		// imaginary scanline.
+		int[] cce = this.currChangingElems;
+		this.changingElemSize = 0;
+		cce[this.changingElemSize++] = this.w;
+		cce[this.changingElemSize++] = this.w;
+
+		int lineOffset = 0;
+		for (int lines = 0; lines < height; lines++) {
+			// a0 has to be set just before the start of the scanline.
+			int a0 = -1;
+			boolean isWhite = true;
+
+			temp = this.prevChangingElems;
+			this.prevChangingElems = this.currChangingElems;
+			cce = this.currChangingElems = temp;
+			int currIndex = 0;
+
+			int bitOffset = startX;
+			this.lastChangingElement = 0;
+
+			// Till one whole scanline is decoded
+			while (bitOffset < this.w) {
+				getNextChangingElement(a0, isWhite, b);
+				int b1 = b[0];
+				int b2 = b[1];
+
+				checkEnd();
+				int entry = CCITTFaxDecoder.twoDCodes[peek(7)] & 0xff;
+				int code = (entry & 0x78) >>> 3;
+				int bits = entry & 0x07;
+
+				if (code == 0) { // Pass
+					if (!isWhite) {
+						if (b2 > this.w) {
+							b2 = this.w;
+						}
+						fillRun(buffer, lineOffset, bitOffset, b2 - bitOffset);
+					}
+					bitOffset = a0 = b2;
+					skip(bits);
+				} else if (code == 1) { // Horizontal
+					skip(bits);
+					int number;
+					if (isWhite) {
+						number = decodeWhiteRun();
+						bitOffset += number;
+						cce[currIndex++] = bitOffset;
+
+						number = decodeBlackRun();
+						fillRun(buffer, lineOffset, bitOffset, number);
+						bitOffset += Math.min(number, this.w - bitOffset);
+						cce[currIndex++] = bitOffset;
+					} else {
+						number = decodeBlackRun();
+						fillRun(buffer, lineOffset, bitOffset, number);
+						bitOffset += Math.min(number, this.w - bitOffset);
+						cce[currIndex++] = bitOffset;
+
+						number = decodeWhiteRun();
+						bitOffset += number;
+						cce[currIndex++] = bitOffset;
+					}
+					a0 = bitOffset;
+				} else if (code <= 8) { // Vertical
+					int a1 = b1 + (code - 5);
+					cce[currIndex++] = a1;
+					if (!isWhite) {
+						if (a1 > this.w) {
+							a1 = this.w;
+						}
+						fillRun(buffer, lineOffset, bitOffset, a1 - bitOffset);
+					}
+					bitOffset = a0 = a1;
+					isWhite = !isWhite;
+					skip(bits);
+				} else if (code == 11) {
+					// uncompressed mode
+					skip(7);
+					if (read(3) != 7) {
+						throw new RuntimeException(
+								"Invalid code encountered while decoding 2D group 4 compressed data."); //$NON-NLS-1$
+					}
+
+					int zeros = 0;
+					boolean exit = false;
+
+					while (!exit) {
+						checkEnd();
+						while (read(1) != 1) {
+							zeros++;
+							checkEnd();
+						}
+
+						if (zeros > 5) {
+							// Exit code
+
+							// Zeros before exit code
+							zeros = zeros - 6;
+
+							if (!isWhite && (zeros > 0)) {
+								cce[currIndex++] = bitOffset;
+							}
+
+							// Zeros before the exit code
+							bitOffset += zeros;
+							if (zeros > 0) {
+								// Some zeros have been written
+								isWhite = true;
+							}
+
+							// Read in the bit which specifies the color of
+							// the following run
+							if (read(1) == 0) {
+								if (!isWhite) {
+									cce[currIndex++] = bitOffset;
+								}
+								isWhite = true;
+							} else {
+								if (isWhite) {
+									cce[currIndex++] = bitOffset;
+								}
+								isWhite = false;
+							}
+
+							exit = true;
+						}
+
+						if (zeros == 5) {
+							if (!isWhite) {
+								cce[currIndex++] = bitOffset;
+							}
+							bitOffset += zeros;
+
+							// Last thing written was white
+							isWhite = true;
+						} else {
+							bitOffset += zeros;
+
+							cce[currIndex++] = bitOffset;
+							fillRun(buffer, lineOffset, bitOffset, 1);
+							++bitOffset;
+
+							// Last thing written was black
+							isWhite = false;
+						}
+					}
+				} else {
+					// break line - seems to be a common failure
+					skip(bits);
+					bitOffset = this.w;
+				}
+			}
+
+			align();
+
+			// Add the changing element beyond the current scanline for the
+			// other color too
+			if (currIndex < cce.length) {
+				cce[currIndex++] = bitOffset;
+			}
+			this.changingElemSize = currIndex;
+
+			lineOffset += scanlineStride;
+		}
+	}
+
+	/**
+	 * Decode a scanline of 1D coded runs. Stops early at an EOL code word,
+	 * which is left for the next scanline.
+	 */
+	private void decodeNextScanline(byte[] buffer, int lineOffset,
+			int bitOffset) {
+		int[] cce = this.currChangingElems;
+		int size = 0;
+		int entry;
+
+		// While scanline not complete
+		while (bitOffset < this.w) {
+			// White run
+			do {
+				checkEnd();
+				entry = WHITE_TABLE[peek(WHITE_BITS)];
+				if (entry == EOL) {
+					this.changingElemSize = size;
+					return;
+				} else if (entry == 0) {
+					throw invalidCode("Invalid code encountered."); //$NON-NLS-1$
+				}
+				skip(entry & 0x0f);
+				bitOffset += entry >>> 5;
+			} while ((entry & MAKEUP) != 0);
+			cce[size++] = bitOffset;
+
+			// Check whether this run completed one width, if so
+			// advance to next byte boundary for compression = 2.
+			if (bitOffset == this.w) {
+				align();
+				break;
+			}
+
+			// Black run
+			do {
+				checkEnd();
+				entry = BLACK_TABLE[peek(BLACK_BITS)];
+				if (entry == EOL) {
+					// the black code table of CCITTFaxDecoder consumed the
+					// first 4 bits of the EOL here, keep in step with it
+					skip(4);
+					this.changingElemSize = size;
+					return;
+				} else if (entry == 0) {
+					throw invalidCode("Invalid code encountered."); //$NON-NLS-1$
+				}
+				skip(entry & 0x0f);
+				int run = entry >>> 5;
+				fillRun(buffer, lineOffset, bitOffset, run);
+				bitOffset += run;
+			} while ((entry & MAKEUP) != 0);
+			cce[size++] = bitOffset;
+
+			// Check whether this run completed one width
+			if (bitOffset == this.w) {
+				align();
+				break;
+			}
+		}
+
+		cce[size++] = bitOffset;
+		this.changingElemSize = size;
+	}
+
+	// Returns run length
+	private int decodeWhiteRun() {
+		int runLength = 0;
+		int entry;
+		do {
+			checkEnd();
+			entry = WHITE_TABLE[peek(WHITE_BITS)];
+			if (entry == EOL) {
+				throw invalidCode(
+						"EOL code word encountered in White run."); //$NON-NLS-1$
+			} else if (entry == 0) {
+				throw invalidCode("Invalid code encountered."); //$NON-NLS-1$
+			}
+			skip(entry & 0x0f);
+			runLength += entry >>> 5;
+		} while ((entry & MAKEUP) != 0);
+		return runLength;
+	}
+
+	// Returns run length
+	private int decodeBlackRun() {
+		int runLength = 0;
+		int entry;
+		do {
+			checkEnd();
+			entry = BLACK_TABLE[peek(BLACK_BITS)];
+			if (entry == EOL) {
+				throw invalidCode(
+						"EOL code word encountered in Black run."); //$NON-NLS-1$
+			} else if (entry == 0) {
+				throw invalidCode("Invalid code encountered."); //$NON-NLS-1$
+			}
+			skip(entry & 0x0f);
+			runLength += entry >>> 5;
+		} while ((entry & MAKEUP) != 0);
+		return runLength;
+	}
+
+	private void getNextChangingElement(int a0, boolean isWhite, int[] ret) {
+		// Local copies of instance variables
+		int[] pce = this.prevChangingElems;
+		int ces = this.changingElemSize;
+
+		// If the previous match was at an odd element, we still
+		// have to search the preceeding element.
+		int start = (this.lastChangingElement > 0) ? (this.lastChangingElement - 1) : 0;
+		if (isWhite) {
+			start &= ~0x1; // Search even numbered elements
+		} else {
+			start |= 0x1; // Search odd numbered elements
+		}
+
+		int i = start;
+		for (; i < ces; i += 2) {
+			int temp = pce[i];
+			if (temp > a0) {
+				this.lastChangingElement = i;
+				ret[0] = temp;
+				break;
+			}
+		}
+
+		if ((i + 1) < ces) {
+			ret[1] = pce[i + 1];
+		}
+	}
+
+	private void consumeEOL() {
+		checkEnd();
+		if (peek(12) == 1) {
+			skip(12);
+		}
+	}
+
+	private int readEOL(boolean isFirstEOL) {
+		// Seek to the next EOL.
+		if (!seekEOL()) {
+			throw new EndOfDataException();
+		}
+
+		if (!this.fillBits) {
+			int next12Bits = read(12);
+			if (isFirstEOL && (next12Bits == 0)) {
+				// Might have the case of EOL padding being used even
+				// though it was not flagged.
+				if (read(4) == 1) {
+					// EOL must be padded: reset the fillBits flag.
+					this.fillBits = true;
+					return 1;
+				}
+			}
+			if (next12Bits != 1) {
+				throw new RuntimeException(
+						"Scanline must begin with EOL code word."); //$NON-NLS-1$
+			}
+		} else {
+			// As many fill bits will be present as required to make
+			// the EOL code of 12 bits end on a byte boundary.
+			int bitsLeft = 8 - (position() & 7);
+
+			if (read(bitsLeft) != 0) {
+				throw new RuntimeException(
+						"All fill bits preceding EOL code must be 0."); //$NON-NLS-1$
+			}
+
+			// If the number of bitsLeft is less than 8, then to have a 12
+			// bit EOL sequence, two more bytes are certainly going to be
+			// required. The first of them has to be all zeros, so ensure
+			// that.
+			if (bitsLeft < 4) {
+				if (read(8) != 0) {
+					throw new RuntimeException(
+							"All fill bits preceding EOL code must be 0."); //$NON-NLS-1$
+				}
+			}
+
+			int next8 = peek(8);
+			if (isFirstEOL && (next8 & 0xf0) == 0x10) {
+				// Fill bits are not actually used despite what the flag
+				// says, so only 12 bits have effectively been read.
+				this.fillBits = false;
+				skip(4);
+			} else {
+				// There might be a random number of fill bytes with 0s, so
+				// loop till the EOL of 0000 0001 is found, as long as all
+				// the bytes preceding it are 0's.
+				skip(8);
+				while (next8 != 1) {
+					if (next8 != 0) {
+						throw new RuntimeException("0 bits expected before EOL"); //$NON-NLS-1$
+					}
+					checkEnd();
+					next8 = read(8);
+				}
+			}
+		}
+		// The next one bit signifies 1D/2D encoding of next line.
+		checkEnd();
+		return read(1);
+	}
+
+	// Seeks to the next EOL in the compressed bitstream, and leaves it
+	// unread. Returns 'false' if the end of the data is reached first.
+	private boolean seekEOL() {
+		int last = this.dataBits - 12;
+		for (int bitIndex = position(); bitIndex <= last; bitIndex++) {
+			if (peek(12) == 1) {
+				return true;
+			}
+			skip(1);
+		}
+		return false;
+	}
+
+	/**
+	 * Start decoding: reset the reader and fill the scanlines with white.
+	 */
+	private void start(byte[] buffer, byte[] compData, int height) {
+		this.data = compData;
+		this.dataBits = compData.length * 8;
+		this.reservoir = 0;
+		this.reservoirBits = 0;
+		this.nextByte = 0;
+
+		int end = Math.min(buffer.length, height * ((this.w + 7) / 8));
+		byte white = this.blackIs1 ? 0 : (byte) 0xff;
+		for (int i = 0; i < end; i++) {
+			buffer[i] = white;
+		}
+	}
+
+	// Skip to the next byte boundary for compression = 2
+	private void align() {
+		if (this.align) {
+			int bits = position() & 7;
+			if (bits != 0) {
+				read(8 - bits);
+			}
+		}
+	}
+
+	/**
+	 * The exception for a code word which can't be decoded. Past the end of
+	 * the data the bits read as 0, which looks like an EOL or an invalid
+	 * code, so if the longest code word doesn't fit in what is left of the
+	 * data, the data ended.
+	 */
+	private RuntimeException invalidCode(String message) {
+		if (position() + BLACK_BITS > this.dataBits) {
+			return new EndOfDataException();
+		}
+		return new RuntimeException(message);
+	}
+
+	/**
+	 * Make sure there is still data to read; the data is zero padded for
+	 * reading code words that cross its end, but no more.
+	 */
+	private void checkEnd() {
+		if (position() >= this.dataBits) {
+			throw new EndOfDataException();
+		}
+	}
+
+	/**
+	 * @return the index of the next bit to decode
+	 */
+	private int position() {
+		return (this.nextByte << 3) - this.reservoirBits;
+	}
+
+	/**
+	 * Get the next count bits, at most 32, without consuming them. Past
+	 * the end of the data all bits are 0.
+	 */
+	private int peek(int count) {
+		if (this.reservoirBits < count) {
+			byte[] data = this.data;
+			while (this.reservoirBits <= 56) {
+				int b = 0;
+				if (this.nextByte < data.length) {
+					b = data[this.nextByte] & 0xff;
+					if (this.fillOrder == 2) {
+						b = CCITTFaxDecoder.flipTable[b] & 0xff;
+					}
+				}
+				this.nextByte++;
+				this.reservoir |= (long) b << (56 - this.reservoirBits);
+				this.reservoirBits += 8;
+			}
+		}
+		return (int) (this.reservoir >>> (64 - count));
+	}
+
+	/**
+	 * Consume count bits which have been looked at with peek()
+	 */
+	private void skip(int count) {
+		this.reservoir <<= count;
+		this.reservoirBits -= count;
+	}
+
+	private int read(int count) {
+		int bits = peek(count);
+		skip(count);
+		return bits;
+	}
+
+	/**
+	 * Paint a run of black pixels, clipped to the scanline.
+	 */
+	private void fillRun(byte[] buffer, int lineOffset, int bitOffset,
+			int numBits) {
+		if (numBits > this.w - bitOffset) {
+			numBits = this.w - bitOffset;
+		}
+		if (numBits <= 0) {
+			return;
+		}
+		int first = (lineOffset << 3) + bitOffset;
+		int last = first + numBits - 1;
+		int firstByte = first >> 3;
+		int lastByte = last >> 3;
+		int firstMask = 0xff >>> (first & 7);
+		int lastMask = (0xff00 >>> ((last & 7) + 1)) & 0xff;
+
+		if (firstByte == lastByte) {
+			paint(buffer, firstByte, firstMask & lastMask);
+			return;
+		}
+		paint(buffer, firstByte, firstMask);
+		byte black = this.blackIs1 ? (byte) 0xff : 0;
+		for (int i = firstByte + 1; i < lastByte; i++) {
+			buffer[i] = black;
+		}
+		paint(buffer, lastByte, lastMask);
+	}
+
+	private void paint(byte[] buffer, int index, int mask) {
+		if (this.blackIs1) {
+			buffer[index] |= mask;
+		} else {
+			buffer[index] &= ~mask;
+		}
+	}
+}
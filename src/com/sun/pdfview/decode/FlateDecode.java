@@ -18,9 +18,12 @@
  */
 package com.sun.pdfview.decode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -33,11 +36,43 @@ import com.sun.pdfview.PDFParseException;
  */
 public class FlateDecode {
 
+    /** the names of the Flate filter */
+    private static final Set<String> FLATE_FILTERS =
+            new HashSet<String>(Arrays.asList("FlateDecode", "Fl"));
+
+    /** the largest piece of a mapped input buffer copied at a time */
+    private static final int INPUT_CHUNK_SIZE = 64 * 1024;
+
+    /** the size of the buffer predicted rows are inflated into */
+    private static final int ROW_BUFFER_SIZE = 64 * 1024;
+
+    /** output size guess per compressed byte, if nothing better is known */
+    private static final int GUESSED_RATIO = 4;
+
+    /** the best compression ratio deflate can achieve */
+    private static final int MAX_RATIO = 1032;
+
+    /** the largest number of idle inflaters kept for reuse */
+    private static final int MAX_POOLED_INFLATERS = 8;
+
+    /** idle inflaters, reset and ready to be used again */
+    private static final Inflater[] inflaterPool = new Inflater[MAX_POOLED_INFLATERS];
+
+    /** the number of inflaters in the pool */
+    private static int pooledInflaters;
+
     /**
      * decode a byte buffer in Flate format.
      * <p>
      * Flate is a built-in Java algorithm.  It's part of the java.util.zip
      * package.
+     * <p>
+     * The input is inflated straight from the buffer, without copying it
+     * first if it has a backing array. The output is allocated up front
+     * with the size the stream dictionary describes, so for most images
+     * the returned buffer is exactly the decoded data. If a predictor is
+     * used, its rows are undone as soon as they have been inflated, so
+     * the predicted data never exists as a whole.
      *
      * @param buf the deflated input buffer
      * @param params parameters to the decoder (unused)
@@ -45,52 +80,304 @@ public class FlateDecode {
      */
     public static ByteBuffer decode(PDFObject dict, ByteBuffer buf,
             PDFObject params) throws IOException {
-        Inflater inf = new Inflater(false);
-
         int bufSize = buf.remaining();
 
-        // copy the data, since the array() method is not supported
-        // on raf-based ByteBuffers
-        byte[] data = new byte[bufSize];
-        buf.get(data);
+        Predictor predictor = null;
+        if (params != null && params.getDictionary().containsKey("Predictor")) {
+            predictor = Predictor.getPredictor(params);
+        }
 
-        // set the input to the inflater
-        inf.setInput(data);
+        byte[] out = new byte[expectedSize(dict, predictor, bufSize)];
+        int length = 0;
 
-        // output to a byte-array output stream, since we don't
-        // know how big the output will be
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] decomp = new byte[bufSize];
-        int read = 0;
+        // with a predictor, whole rows are inflated into this buffer and
+        // only then undone into the output
+        byte[] rows = null;
+        int rowsLength = 0;
+        int encodedRowSize = 0;
+        if (predictor != null) {
+            encodedRowSize = predictor.getEncodedRowSize();
+            rows = new byte[Math.max(ROW_BUFFER_SIZE / encodedRowSize, 1) * encodedRowSize];
+        }
+
+        Inflater inf = acquireInflater();
+        try {
+            // mapped buffers have no array we could hand to the inflater,
+            // so those are passed on a chunk at a time
+            byte[] chunk = null;
+            if (buf.hasArray()) {
+                inf.setInput(buf.array(), buf.arrayOffset() + buf.position(), bufSize);
+                buf.position(buf.limit());
+            } else {
+                chunk = new byte[Math.min(bufSize, INPUT_CHUNK_SIZE)];
+                setInput(inf, buf, chunk);
+            }
 
-        try {        	
+            byte[] probe = new byte[1];
             while (!inf.finished()) {
-                read = inf.inflate(decomp);
-                if (read <= 0) {
+                int read;
+                if (rows != null) {
+                    read = inf.inflate(rows, rowsLength, rows.length - rowsLength);
+                    rowsLength += read;
+                    int complete = rowsLength / encodedRowSize;
+                    if (complete > 0) {
+                        int needed = length + complete * predictor.getRowSize();
+                        if (needed > out.length) {
+                            out = Arrays.copyOf(out, Math.max(needed,
+                                    grownSize(length, inf.getBytesRead(), bufSize)));
+                        }
+                        length = predictor.unpredict(rows, 0, complete, out, length);
+                        // keep the start of the next row
+                        rowsLength -= complete * encodedRowSize;
+                        System.arraycopy(rows, complete * encodedRowSize, rows, 0, rowsLength);
+                    }
+                } else if (length < out.length) {
+                    read = inf.inflate(out, length, out.length - length);
+                    length += read;
+                } else {
+                    // the output is full, which is fine if all that is
+                    // left of the stream is its end
+                    read = inf.inflate(probe);
+                    if (read > 0) {
+                        out = Arrays.copyOf(out, grownSize(length, inf.getBytesRead(), bufSize));
+                        out[length++] = probe[0];
+                    }
+                }
+                if (read <= 0 && !inf.finished()) {
                     if (inf.needsDictionary()) {                    	
                         throw new PDFParseException("Don't know how to ask for a dictionary in FlateDecode");
-                    } else {
+                    } else if (!inf.needsInput() || !setInput(inf, buf, chunk)) {
                        	// just return the data which is already read
                        	break;
                     }
                 }
-                baos.write(decomp, 0, read);
             }
         } catch (DataFormatException dfe) {
             throw new PDFParseException("Data format exception:" + dfe.getMessage());
+        } finally {
+            releaseInflater(inf);
         }
 
-        // return the output as a byte buffer
-        ByteBuffer outBytes = ByteBuffer.wrap(baos.toByteArray());
+        // return the output as a byte buffer; an incomplete last row of
+        // predicted data is dropped
+        return ByteBuffer.wrap(out, 0, length);
+    }
 
-        // undo a predictor algorithm, if any was used
+    /**
+     * Get a stream which inflates the given stream as it is read, and
+     * undoes the predictor, if any.
+     *
+     * @param dict the stream dictionary
+     * @param in the deflated input
+     * @param params parameters to the decoder
+     * @return the decoded (inflated) data
+     */
+    public static InputStream openStream(PDFObject dict, InputStream in,
+            PDFObject params) throws IOException {
+        InputStream inflated = new FlateInputStream(in);
         if (params != null && params.getDictionary().containsKey("Predictor")) {
             Predictor predictor = Predictor.getPredictor(params);
             if (predictor != null) {
-                outBytes = predictor.unpredict(outBytes);
+                return predictor.unpredict(inflated);
+            }
+        }
+        return inflated;
+    }
+
+    /**
+     * Pass the next chunk of a buffer without backing array to the
+     * inflater.
+     *
+     * @return false if there is no more input
+     */
+    private static boolean setInput(Inflater inf, ByteBuffer buf, byte[] chunk) {
+        if (chunk == null || !buf.hasRemaining()) {
+            return false;
+        }
+        int length = Math.min(buf.remaining(), chunk.length);
+        buf.get(chunk, 0, length);
+        inf.setInput(chunk, 0, length);
+        return true;
+    }
+
+    /**
+     * Guess the size of the inflated data. Images, where Flate is the
+     * last filter, tell us exactly; for everything else we guess from
+     * the compressed size and grow the output if it turns out too small.
+     */
+    private static int expectedSize(PDFObject dict, Predictor predictor, int compressedSize)
+            throws IOException {
+        long maxSize = (long) compressedSize * MAX_RATIO + 64;
+        long guess = (long) compressedSize * GUESSED_RATIO + 64;
+
+        long expected = 0;
+        PDFObject heightObj = dict.getDictRef("Height");
+        if (heightObj != null && PDFDecoder.isLastFilter(dict, FLATE_FILTERS)) {
+            long rowBytes;
+            if (predictor != null) {
+                // the predictor rows describe the data exactly
+                rowBytes = predictor.getRowSize();
+            } else {
+                int components = getNumComponents(dict);
+                int bpc = getInt(dict, "BitsPerComponent", 1);
+                rowBytes = ((long) getInt(dict, "Width", 0) * components * bpc + 7) / 8;
             }
+            expected = rowBytes * heightObj.getIntValue();
+        }
+
+        if (expected <= 0 || expected > maxSize) {
+            expected = guess;
         }
+        return (int) Math.min(expected, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * The new size of a full output buffer, extrapolated from the ratio
+     * seen so far, so that streams we had to guess need few copies.
+     */
+    private static int grownSize(int length, long bytesRead, int compressedSize) {
+        long projected = length * (long) compressedSize / Math.max(bytesRead, 1);
+        long size = Math.max(projected + projected / 16, length + (long) Math.max(length / 8, 4096));
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
 
-        return outBytes;
+    /**
+     * The number of colour components of an image, or 0 if we can't tell
+     * without the page resources.
+     */
+    private static int getNumComponents(PDFObject dict) throws IOException {
+        PDFObject imageMask = dict.getDictRef("ImageMask");
+        if (imageMask != null && imageMask.getBooleanValue()) {
+            return 1;
+        }
+        PDFObject cs = dict.getDictRef("ColorSpace");
+        if (cs == null) {
+            return 0;
+        }
+        String name;
+        if (cs.getType() == PDFObject.NAME) {
+            name = cs.getStringValue();
+        } else if (cs.getType() == PDFObject.ARRAY && cs.getAt(0) != null) {
+            name = cs.getAt(0).getStringValue();
+            if ("ICCBased".equals(name) && cs.getAt(1) != null) {
+                return getInt(cs.getAt(1), "N", 0);
+            }
+        } else {
+            return 0;
+        }
+        if ("DeviceGray".equals(name) || "G".equals(name) || "CalGray".equals(name)
+                || "Indexed".equals(name) || "I".equals(name) || "Separation".equals(name)) {
+            return 1;
+        } else if ("DeviceRGB".equals(name) || "RGB".equals(name) || "CalRGB".equals(name)
+                || "Lab".equals(name)) {
+            return 3;
+        } else if ("DeviceCMYK".equals(name) || "CMYK".equals(name)) {
+            return 4;
+        }
+        return 0;
+    }
+
+    private static int getInt(PDFObject dict, String key, int defaultValue) throws IOException {
+        PDFObject obj = dict.getDictRef(key);
+        return obj != null ? obj.getIntValue() : defaultValue;
+    }
+
+    /**
+     * Take an inflater from the pool, or create a new one.
+     */
+    private static Inflater acquireInflater() {
+        synchronized (inflaterPool) {
+            if (pooledInflaters > 0) {
+                Inflater inf = inflaterPool[--pooledInflaters];
+                inflaterPool[pooledInflaters] = null;
+                return inf;
+            }
+        }
+        return new Inflater(false);
+    }
+
+    /**
+     * Return an inflater to the pool, or free its native memory if the
+     * pool is full.
+     */
+    private static void releaseInflater(Inflater inf) {
+        inf.reset();
+        synchronized (inflaterPool) {
+            if (pooledInflaters < inflaterPool.length) {
+                inflaterPool[pooledInflaters++] = inf;
+                return;
+            }
+        }
+        inf.end();
+    }
+
+    /**
+     * Inflates a stream as it is read, with an inflater from the pool.
+     * Like decode(), it ends quietly at the end of a truncated stream.
+     */
+    private static class FlateInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] chunk = new byte[INPUT_CHUNK_SIZE];
+        private final byte[] single = new byte[1];
+        private Inflater inf = acquireInflater();
+        private boolean closed;
+
+        private FlateInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(this.single, 0, 1) < 0 ? -1 : this.single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                // the inflater goes back to the pool at the end of the data,
+                // so streams read to the end but never closed don't keep it
+                while (this.inf != null) {
+                    int read = this.inf.inflate(b, off, len);
+                    if (read > 0) {
+                        return read;
+                    }
+                    if (this.inf.needsDictionary()) {
+                        throw new PDFParseException("Don't know how to ask for a dictionary in FlateDecode");
+                    } else if (!this.inf.finished() && this.inf.needsInput()) {
+                        int length = this.in.read(this.chunk, 0, this.chunk.length);
+                        if (length < 0) {
+                            release();
+                        } else {
+                            this.inf.setInput(this.chunk, 0, length);
+                        }
+                    } else {
+                        release();
+                    }
+                }
+            } catch (DataFormatException dfe) {
+                throw new PDFParseException("Data format exception:" + dfe.getMessage());
+            }
+            return -1;
+        }
+
+        private void release() {
+            if (this.inf != null) {
+                releaseInflater(this.inf);
+                this.inf = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+            this.closed = true;
+            this.in.close();
+        }
     }
-}
\ No newline at end of file
+}
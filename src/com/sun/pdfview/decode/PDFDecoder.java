@@ -19,11 +19,15 @@
 package com.sun.pdfview.decode;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.sun.pdfview.ByteBufferInputStream;
 import com.sun.pdfview.PDFObject;
 import com.sun.pdfview.PDFParseException;
 import com.sun.pdfview.decrypt.PDFDecrypterFactory;
@@ -39,10 +43,144 @@ public class PDFDecoder {
 
     public final static Set<String> DCT_FILTERS = new HashSet<String>(Arrays.asList("DCT", "DCTDecode"));
 
+    /** the filters, by name and abbreviated name */
+    private static final Map<String, PDFFilter> filters =
+            new ConcurrentHashMap<String, PDFFilter>();
+
+    static {
+        PDFFilter flate = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return FlateDecode.decode(dict, buf, params);
+            }
+
+            @Override
+            public InputStream openStream(PDFObject dict, InputStream in, PDFObject params)
+                    throws IOException {
+                return FlateDecode.openStream(dict, in, params);
+            }
+        };
+        registerFilter("FlateDecode", flate);
+        registerFilter("Fl", flate);
+
+        PDFFilter lzw = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return LZWDecode.decode(buf, params);
+            }
+        };
+        registerFilter("LZWDecode", lzw);
+        registerFilter("LZW", lzw);
+
+        PDFFilter ascii85 = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return ASCII85Decode.decode(buf, params);
+            }
+
+            @Override
+            public InputStream openStream(PDFObject dict, InputStream in, PDFObject params) {
+                return ASCII85Decode.openStream(in, params);
+            }
+        };
+        registerFilter("ASCII85Decode", ascii85);
+        registerFilter("A85", ascii85);
+
+        PDFFilter asciiHex = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return ASCIIHexDecode.decode(buf, params);
+            }
+
+            @Override
+            public InputStream openStream(PDFObject dict, InputStream in, PDFObject params) {
+                return ASCIIHexDecode.openStream(in, params);
+            }
+        };
+        registerFilter("ASCIIHexDecode", asciiHex);
+        registerFilter("AHx", asciiHex);
+
+        PDFFilter runLength = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return RunLengthDecode.decode(buf, params);
+            }
+
+            @Override
+            public InputStream openStream(PDFObject dict, InputStream in, PDFObject params) {
+                return RunLengthDecode.openStream(in, params);
+            }
+        };
+        registerFilter("RunLengthDecode", runLength);
+        registerFilter("RL", runLength);
+
+        PDFFilter dct = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return DCTDecode.decode(dict, buf, params);
+            }
+        };
+        registerFilter("DCTDecode", dct);
+        registerFilter("DCT", dct);
+
+        registerFilter("JPXDecode", new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return JPXDecode.decode(dict, buf, params);
+            }
+        });
+
+        PDFFilter ccittFax = new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return CCITTFaxDecode.decode(dict, buf, params);
+            }
+        };
+        registerFilter("CCITTFaxDecode", ccittFax);
+        registerFilter("CCF", ccittFax);
+
+        registerFilter("JBIG2Decode", new PDFFilter() {
+            @Override
+            public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+                    throws IOException {
+                return JBig2Decode.decode(dict, buf, params);
+            }
+        });
+    }
+
     /** Creates a new instance of PDFDecoder */
     private PDFDecoder() {
     }
 
+    /**
+     * Register a filter, replacing any filter of the same name. Filters
+     * with an abbreviated name must be registered under both names.
+     *
+     * @param name the name of the filter, as used in stream dictionaries
+     * @param filter the filter
+     */
+    public static void registerFilter(String name, PDFFilter filter) {
+        filters.put(name, filter);
+    }
+
+    /**
+     * Get the filter registered under a name.
+     *
+     * @param name the name of the filter
+     * @return the filter, or null if there is none of that name
+     */
+    public static PDFFilter getFilter(String name) {
+        return filters.get(name);
+    }
+
     public static boolean isLastFilter(PDFObject dict, Set<String> filters) throws IOException {
         PDFObject filter = dict.getDictRef("Filter");
         if (filter == null) {
@@ -119,35 +257,12 @@ public class PDFDecoder {
                         break;
                     }
                     if (enctype == null) {
-                    } else if (enctype.equals("FlateDecode") || enctype.equals("Fl")) {
-                        streamBuf = FlateDecode.decode(dict, streamBuf, spec.params[i]);
-                    } else if (enctype.equals("LZWDecode") || enctype.equals("LZW")) {
-                        streamBuf = LZWDecode.decode(streamBuf, spec.params[i]);
-                    } else if (enctype.equals("ASCII85Decode") || enctype.equals("A85")) {
-                        streamBuf = ASCII85Decode.decode(streamBuf, spec.params[i]);
-                    } else if (enctype.equals("ASCIIHexDecode") || enctype.equals("AHx")) {
-                        streamBuf = ASCIIHexDecode.decode(streamBuf, spec.params[i]);
-                    } else if (enctype.equals("RunLengthDecode") || enctype.equals("RL")) {
-                        streamBuf = RunLengthDecode.decode(streamBuf, spec.params[i]);
-                    } else if (enctype.equals("DCTDecode") || enctype.equals("DCT")) {
-                        streamBuf = DCTDecode.decode(dict, streamBuf, spec.params[i]);
-                    } else if (enctype.equals("JPXDecode")) {
-                        streamBuf = JPXDecode.decode(dict, streamBuf, spec.params[i]);
-                    } else if (enctype.equals("CCITTFaxDecode") || enctype.equals("CCF")) {
-                        streamBuf = CCITTFaxDecode.decode(dict, streamBuf, spec.params[i]);
                     } else if (enctype.equals("Crypt")) {
-                        String cfName = PDFDecrypterFactory.CF_IDENTITY;
-                        if (spec.params[i] != null) {
-                            final PDFObject nameObj = spec.params[i].getDictRef("Name");
-                            if (nameObj != null && nameObj.getType() == PDFObject.NAME) {
-                                cfName = nameObj.getStringValue();
-                            }
-                        }
+                        String cfName = getCryptFilterName(spec.params[i]);
                         streamBuf = dict.getDecrypter().decryptBuffer(cfName, null, streamBuf);
-                    } else if (enctype.equals("JBIG2Decode")) {
-                        streamBuf = JBig2Decode.decode(dict, streamBuf, spec.params[i]);
                     } else {
-                        throw new PDFParseException("Unknown coding method:" + spec.ary[i].getStringValue());
+                        streamBuf = getRegisteredFilter(enctype).decode(
+                                dict, streamBuf, spec.params[i]);
                     }
                 }catch(Exception e) {
                     throw new PDFParseException("Problem decoding "+enctype+" encoded stream!", e);
@@ -159,6 +274,72 @@ public class PDFDecoder {
         return streamBuf;
     }
 
+    /**
+     * Get a stream which decodes a stream's data as it is read, using the
+     * filters specified in the object's dictionary (passed as argument 1).
+     * Filters which can work incrementally are chained as streams, so the
+     * decoded data is never held in memory all at once; the others decode
+     * their whole input when they are first read from.
+     *
+     * @param dict the dictionary associated with the stream
+     * @param streamBuf the data in the stream, as a byte buffer
+     * @param filterLimits the filters at which to stop decoding
+     * @return a stream over the decoded data
+     */
+    public static InputStream openStream(PDFObject dict, ByteBuffer streamBuf,
+            Set<String> filterLimits) throws IOException {
+
+        PDFObject filter = dict.getDictRef("Filter");
+        if (filter == null) {
+            // just apply default decryption
+            return new ByteBufferInputStream(
+                    dict.getDecrypter().decryptBuffer(null, dict, streamBuf));
+        }
+
+        FilterSpec spec = new FilterSpec(dict, filter);
+
+        // decryption applies to the whole buffer, before any other filter
+        int first = 0;
+        if (spec.ary.length != 0 && "Crypt".equals(spec.ary[0].getStringValue())) {
+            if (filterLimits.contains("Crypt")) {
+                return new ByteBufferInputStream(streamBuf);
+            }
+            String cfName = getCryptFilterName(spec.params[0]);
+            streamBuf = dict.getDecrypter().decryptBuffer(cfName, null, streamBuf);
+            first = 1;
+        } else {
+            streamBuf = dict.getDecrypter().decryptBuffer(null, dict, streamBuf);
+        }
+
+        InputStream in = new ByteBufferInputStream(streamBuf);
+        for (int i = first; i < spec.ary.length; i++) {
+            String enctype = spec.ary[i].getStringValue();
+            if (filterLimits.contains(enctype)) {
+                break;
+            }
+            if (enctype != null) {
+                in = getRegisteredFilter(enctype).openStream(dict, in, spec.params[i]);
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Get the filter registered under a name used in a stream dictionary
+     *
+     * @param enctype the name of the filter
+     * @return the filter
+     * @throws PDFParseException if there is no filter of that name
+     */
+    private static PDFFilter getRegisteredFilter(String enctype)
+            throws PDFParseException {
+        PDFFilter filter = filters.get(enctype);
+        if (filter == null) {
+            throw new PDFParseException("Unknown coding method:" + enctype);
+        }
+        return filter;
+    }
+
     /**
      * The name of the Crypt filter to apply
      * @param param the parameters to the Crypt filter
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview.decode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.sun.pdfview.ByteBufferInputStream;
+import com.sun.pdfview.PDFObject;
+
+/**
+ * A stream filter, registered with {@link PDFDecoder} under its name.
+ * <p>
+ * A filter can decode a whole buffer at once, or act as a stage in a
+ * chain of streams, decoding its input as it is read. Filters that can
+ * work incrementally override {@link #openStream}; filters that need all
+ * of their input anyway, like the image codecs, override {@link #decode}.
+ * Each of the two is implemented in terms of the other, so a filter must
+ * override at least one of them.
+ */
+public abstract class PDFFilter {
+
+    /**
+     * Decode a whole buffer.
+     *
+     * @param dict the stream dictionary
+     * @param buf the encoded data
+     * @param params the decode parameters for this filter, may be null
+     * @return the decoded data
+     */
+    public ByteBuffer decode(PDFObject dict, ByteBuffer buf, PDFObject params)
+            throws IOException {
+        InputStream in = openStream(dict, new ByteBufferInputStream(buf), params);
+        try {
+            return readFully(in, buf.remaining());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get a stream which decodes the given input as it is read. Nothing
+     * needs to be read from the input before the returned stream is.
+     * Closing the returned stream closes the input.
+     *
+     * @param dict the stream dictionary
+     * @param in the encoded data
+     * @param params the decode parameters for this filter, may be null
+     * @return the decoded data
+     */
+    public InputStream openStream(final PDFObject dict, final InputStream in,
+            final PDFObject params) throws IOException {
+        return new InputStream() {
+            private InputStream decoded;
+
+            private InputStream decoded() throws IOException {
+                if (this.decoded == null) {
+                    this.decoded = new ByteBufferInputStream(
+                            decode(dict, readFully(in, 0), params));
+                }
+                return this.decoded;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return decoded().read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return decoded().read(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /**
+     * Read a stream up to its end.
+     *
+     * @param in the stream to read
+     * @param sizeHint the expected size, 0 if unknown
+     * @return a buffer over the data read
+     */
+    static ByteBuffer readFully(InputStream in, int sizeHint) throws IOException {
+        byte[] data = new byte[Math.max(sizeHint, 8192)];
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            int read = in.read(data, length, data.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return ByteBuffer.wrap(data, 0, length);
+    }
+}
@@ -19,14 +19,6 @@
 
 package com.sun.pdfview.decode;
 
-import java.nio.ByteBuffer;
-
-import java.io.IOException;
-
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 /**
  * Undo prediction based on the PNG algorithm.
  */
@@ -35,81 +27,64 @@ public class PNGPredictor extends Predictor {
     public PNGPredictor() {
         super (PNG);
     }
-    
+
+    /**
+     * Each predicted row starts with a byte giving its algorithm
+     */
+    @Override
+    public int getEncodedRowSize() {
+        return getRowSize() + 1;
+    }
+
     /**
      * Undo data based on the png algorithm
      */
     @Override
-	public ByteBuffer unpredict(ByteBuffer imageData)
-        throws IOException
-    {
-        List<byte[]> rows = new ArrayList<byte[]>();
-        
-        byte[] curLine = null;
-        byte[] prevLine = null;
-        
-        // get the number of bytes per row
-        int rowSize = getColumns() * getColors() * getBitsPerComponent();
-        rowSize = (int) Math.ceil(rowSize / 8.0);
-        
-        while(imageData.remaining() >= rowSize + 1) {
-            // the first byte determines the algorithm
-            int algorithm = (imageData.get() & 0xff);
-            
-            // read the rest of the line
-            curLine = new byte[rowSize];
-            imageData.get(curLine);
-            
-            // use the algorithm, Luke
-            switch (algorithm) {
-                case 0:
-                    // none
-                    break;
-                case 1:
-                    doSubLine(curLine);
-                    break;
-                case 2:
-                    doUpLine(curLine, prevLine);
-                    break;
-                case 3:
-                    doAverageLine(curLine, prevLine);
-                    break;
-                case 4:
-                    doPaethLine(curLine, prevLine);
-                    break;
-            }
-            
-            rows.add(curLine);
-            prevLine = curLine;
+    protected void unpredictRow(byte[] src, int srcPos, byte[] dst, int dstPos) {
+        int rowSize = getRowSize();
+
+        // the first byte determines the algorithm
+        int algorithm = (src[srcPos] & 0xff);
+
+        // copy the rest of the line
+        System.arraycopy(src, srcPos + 1, dst, dstPos, rowSize);
+
+        // the previous line, if any, is the one decoded before
+        int prevPos = dstPos - rowSize;
+        if (dstPos == 0) {
+            prevPos = -1;
         }
-        
-        // turn into byte array
-        ByteBuffer outBuf = ByteBuffer.allocate(rows.size() * rowSize);
-        for (Iterator i = rows.iterator(); i.hasNext();) {
-            outBuf.put((byte[]) i.next());
+
+        // use the algorithm, Luke
+        switch (algorithm) {
+            case 0:
+                // none
+                break;
+            case 1:
+                doSubLine(dst, dstPos, rowSize);
+                break;
+            case 2:
+                doUpLine(dst, dstPos, prevPos, rowSize);
+                break;
+            case 3:
+                doAverageLine(dst, dstPos, prevPos, rowSize);
+                break;
+            case 4:
+                doPaethLine(dst, dstPos, prevPos, rowSize);
+                break;
         }
-        
-        // reset start pointer
-        outBuf.flip();
-        
-        // return
-        return outBuf;
-        
     }
     
     /**
      * Return the value of the Sub algorithm on the line (compare bytes to
      * the previous byte of the same color on this line).
      */
-    protected void doSubLine(byte[] curLine) {
+    protected void doSubLine(byte[] data, int pos, int rowSize) {
         // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
-            int prevIdx = i - sub;
-            if (prevIdx >= 0) {
-                curLine[i] += curLine[prevIdx];
-            }
+        for (int i = sub; i < rowSize; i++) {
+            data[pos + i] += data[pos + i - sub];
         }
     }
     
@@ -117,14 +92,14 @@ public class PNGPredictor extends Predictor {
      * Return the value of the up algorithm on the line (compare bytes to
      * the same byte in the previous line)
      */
-    protected void doUpLine(byte[] curLine, byte[] prevLine) {
-        if (prevLine == null) {
+    protected void doUpLine(byte[] data, int pos, int prevPos, int rowSize) {
+        if (prevPos < 0) {
             // do nothing if this is the first line
             return;
         }
         
-        for (int i = 0; i < curLine.length; i++) {
-            curLine[i] += prevLine[i];
+        for (int i = 0; i < rowSize; i++) {
+            data[pos + i] += data[prevPos + i];
         }
     }
     
@@ -133,61 +108,59 @@ public class PNGPredictor extends Predictor {
      * bytes to the average of the previous byte of the same color and 
      * the same byte on the previous line)
      */
-    protected void doAverageLine(byte[] curLine, byte[] prevLine) {
-         // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+    protected void doAverageLine(byte[] data, int pos, int prevPos, int rowSize) {
+        // get the number of bytes per sample
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
+        for (int i = 0; i < rowSize; i++) {
             int raw = 0;
             int prior = 0;
             
             // get the last value of this color
-            int prevIdx = i - sub;
-            if (prevIdx >= 0) {
-                raw = curLine[prevIdx] & 0xff;
+            if (i >= sub) {
+                raw = data[pos + i - sub] & 0xff;
             }
             
             // get the value on the previous line
-            if (prevLine != null) {
-                prior = prevLine[i] & 0xff;
+            if (prevPos >= 0) {
+                prior = data[prevPos + i] & 0xff;
             }
             
             // add the average
-            curLine[i] += (byte) Math.floor((raw + prior) / 2);
+            data[pos + i] += (byte) ((raw + prior) >> 1);
         }      
     }
     
      /**
-     * Return the value of the average algorithm on the line (compare
-     * bytes to the average of the previous byte of the same color and 
-     * the same byte on the previous line)
+     * Return the value of the paeth algorithm on the line (compare
+     * bytes to the previous byte of the same color, the same byte on
+     * the previous line and the byte before that)
      */
-    protected void doPaethLine(byte[] curLine, byte[] prevLine) {
-         // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+    protected void doPaethLine(byte[] data, int pos, int prevPos, int rowSize) {
+        // get the number of bytes per sample
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
+        for (int i = 0; i < rowSize; i++) {
             int left = 0;
             int up = 0;
             int upLeft = 0;
             
             // get the last value of this color
-            int prevIdx = i - sub;
-            if (prevIdx >= 0) {
-                left = curLine[prevIdx] & 0xff;
+            if (i >= sub) {
+                left = data[pos + i - sub] & 0xff;
             }
             
             // get the value on the previous line
-            if (prevLine != null) {
-                up = prevLine[i] & 0xff;
+            if (prevPos >= 0) {
+                up = data[prevPos + i] & 0xff;
             }
             
-            if (prevIdx >= 0 && prevLine != null) {
-                upLeft = prevLine[prevIdx] & 0xff;
+            if (i >= sub && prevPos >= 0) {
+                upLeft = data[prevPos + i - sub] & 0xff;
             }
             
             // add the average
-            curLine[i] += (byte) paeth(left, up, upLeft);
+            data[pos + i] += (byte) paeth(left, up, upLeft);
         }      
     }
     
@@ -209,4 +182,4 @@ public class PNGPredictor extends Predictor {
         }
     }
     
-}
\ No newline at end of file
+}
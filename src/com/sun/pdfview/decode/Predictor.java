@@ -20,6 +20,7 @@
 package com.sun.pdfview.decode;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import com.sun.pdfview.PDFObject;
@@ -55,11 +56,100 @@ public abstract class Predictor {
     }
     
     /**
-     * Actually perform this algorithm on decoded image data.
+     * Actually perform this algorithm on decoded image data. The result
+     * is written to a single buffer of the final size; an incomplete row
+     * at the end of the data is dropped.
+     */
+    public ByteBuffer unpredict(ByteBuffer imageData)
+        throws IOException
+    {
+        int encodedRowSize = getEncodedRowSize();
+        int rows = imageData.remaining() / encodedRowSize;
+
+        byte[] src;
+        int srcPos;
+        if (imageData.hasArray()) {
+            src = imageData.array();
+            srcPos = imageData.arrayOffset() + imageData.position();
+        } else {
+            src = new byte[rows * encodedRowSize];
+            srcPos = 0;
+            imageData.duplicate().get(src);
+        }
+
+        byte[] out = new byte[rows * getRowSize()];
+        unpredict(src, srcPos, rows, out, 0);
+        return ByteBuffer.wrap(out);
+    }
+
+    /**
+     * Get a stream which undoes the prediction of the given stream as it
+     * is read, a few rows at a time. An incomplete row at the end of the
+     * data is dropped.
+     *
+     * @param in the predicted data
+     * @return the decoded data
+     */
+    public InputStream unpredict(InputStream in) {
+        return new PredictorInputStream(this, in);
+    }
+
+    /**
+     * Undo the prediction of a number of complete rows. The rows decoded
+     * so far must be in front of dstPos in the destination, as the row
+     * just before dstPos is the previous row for the first one decoded
+     * here; at dstPos 0 there is no previous row. This allows decoding
+     * a stream a few rows at a time, straight into its final buffer.
+     *
+     * @param src the predicted data, getEncodedRowSize() bytes per row
+     * @param srcPos the start of the first row in src
+     * @param rows the number of rows to decode
+     * @param dst the decoded data, getRowSize() bytes per row
+     * @param dstPos where to put the first decoded row
+     * @return the position in dst after the last decoded row
+     */
+    public int unpredict(byte[] src, int srcPos, int rows, byte[] dst, int dstPos)
+        throws IOException
+    {
+        int encodedRowSize = getEncodedRowSize();
+        int rowSize = getRowSize();
+        for (int i = 0; i < rows; i++) {
+            unpredictRow(src, srcPos, dst, dstPos);
+            srcPos += encodedRowSize;
+            dstPos += rowSize;
+        }
+        return dstPos;
+    }
+
+    /**
+     * Undo the prediction of a single row, see
+     * {@link #unpredict(byte[], int, int, byte[], int)}.
      * Subclasses must implement this method
      */
-    public abstract ByteBuffer unpredict(ByteBuffer imageData)
+    protected abstract void unpredictRow(byte[] src, int srcPos, byte[] dst, int dstPos)
         throws IOException;
+
+    /**
+     * Get the number of bytes in a decoded row
+     */
+    public int getRowSize() {
+        return (getColumns() * getColors() * getBitsPerComponent() + 7) / 8;
+    }
+
+    /**
+     * Get the number of bytes in a row of predicted data, which is the
+     * same as the decoded row unless the algorithm adds to it
+     */
+    public int getEncodedRowSize() {
+        return getRowSize();
+    }
+
+    /**
+     * Get the number of bytes per pixel, rounded up to at least one
+     */
+    protected int getBytesPerPixel() {
+        return (getColors() * getBitsPerComponent() + 7) / 8;
+    }
     
     /**
      * Get an instance of a predictor
@@ -116,6 +206,11 @@ public abstract class Predictor {
             predictor.setColumns(columnsObj.getIntValue());
         }
         
+        if (predictor.getColors() < 1 || predictor.getBitsPerComponent() < 1
+                || predictor.getColumns() < 1) {
+            throw new PDFParseException("Bad predictor parameters: " + params);
+        }
+
         // all set
         return predictor;
     }
@@ -170,4 +265,91 @@ public abstract class Predictor {
     public void setColumns(int columns) {
         this.columns = columns;
     }
-}
\ No newline at end of file
+
+    /**
+     * Undoes a predictor while the data is read. The decoded rows are kept
+     * behind the previous row, which starts out as zeros; to all of the
+     * algorithms that is the same as having no previous row.
+     */
+    private static class PredictorInputStream extends InputStream {
+        /** the number of rows decoded at a time, at most */
+        private static final int BUFFER_SIZE = 16 * 1024;
+
+        private final Predictor predictor;
+        private final InputStream in;
+        private final int rowSize;
+        private final int encodedRowSize;
+        /** predicted rows read from the input */
+        private final byte[] encoded;
+        /** the previous row, followed by the decoded rows */
+        private final byte[] decoded;
+        /** the read position in decoded */
+        private int pos;
+        /** the end of the decoded data in decoded */
+        private int end;
+
+        private PredictorInputStream(Predictor predictor, InputStream in) {
+            this.predictor = predictor;
+            this.in = in;
+            this.rowSize = predictor.getRowSize();
+            this.encodedRowSize = predictor.getEncodedRowSize();
+            int rows = Math.max(BUFFER_SIZE / this.encodedRowSize, 1);
+            this.encoded = new byte[rows * this.encodedRowSize];
+            this.decoded = new byte[(rows + 1) * this.rowSize];
+            this.pos = this.rowSize;
+            this.end = this.rowSize;
+        }
+
+        /**
+         * Decode the next rows
+         *
+         * @return false at the end of the data
+         */
+        private boolean fill() throws IOException {
+            int length = 0;
+            while (length < this.encoded.length) {
+                int read = this.in.read(this.encoded, length, this.encoded.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+            int rows = length / this.encodedRowSize;
+            if (rows == 0) {
+                return false;
+            }
+            // the last row decoded is the previous row of the next one
+            System.arraycopy(this.decoded, this.end - this.rowSize, this.decoded, 0, this.rowSize);
+            this.end = this.predictor.unpredict(this.encoded, 0, rows, this.decoded, this.rowSize);
+            this.pos = this.rowSize;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.pos == this.end && !fill()) {
+                return -1;
+            }
+            return this.decoded[this.pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (this.pos == this.end && !fill()) {
+                return -1;
+            }
+            int count = Math.min(len, this.end - this.pos);
+            System.arraycopy(this.decoded, this.pos, b, off, count);
+            this.pos += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
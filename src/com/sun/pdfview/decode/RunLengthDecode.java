@@ -19,6 +19,8 @@
 package com.sun.pdfview.decode;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import com.sun.pdfview.PDFObject;
@@ -91,4 +93,79 @@ public class RunLengthDecode {
 		RunLengthDecode me = new RunLengthDecode(buf);
 		return me.decode();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get a stream which decodes the given run length encoded stream as it
+	 * is read
+	 */
+	public static InputStream openStream(InputStream in, PDFObject params) {
+		return new RunLengthInputStream(in);
+	}
+
+	/**
+	 * Decodes run length encoded data while it is read
+	 */
+	private static class RunLengthInputStream extends InputStream {
+		private final InputStream in;
+		/** bytes left to copy from the input */
+		private int literal;
+		/** times left to repeat the byte in repeated */
+		private int repeat;
+		private int repeated;
+		private boolean eof;
+
+		private RunLengthInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		private int next() throws IOException {
+			int c = this.in.read();
+			if (c < 0) {
+				throw new PDFParseException("Short stream in RunLength decode");
+			}
+			return c;
+		}
+
+		@Override
+		public int read() throws IOException {
+			while (this.literal == 0 && this.repeat == 0) {
+				if (this.eof) {
+					return -1;
+				}
+				int dupAmount = next();
+				if (dupAmount == RUN_LENGTH_EOD) {
+					this.eof = true;
+				} else if (dupAmount <= 127) {
+					this.literal = dupAmount + 1;
+				} else {
+					this.repeated = next();
+					this.repeat = 257 - dupAmount;
+				}
+			}
+			if (this.literal > 0) {
+				this.literal--;
+				return next();
+			}
+			this.repeat--;
+			return this.repeated;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = 0;
+			while (count < len) {
+				int c = read();
+				if (c < 0) {
+					return count == 0 && len > 0 ? -1 : count;
+				}
+				b[off + count++] = (byte) c;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+}
@@ -21,9 +21,6 @@
 
 package com.sun.pdfview.decode;
 
-import java.io.IOException;
-import java.nio.ByteBuffer;
-
 /**
  * Undo prediction based on the TIFF Predictor 2 algorithm
  */
@@ -34,89 +31,63 @@ public class TIFFPredictor extends Predictor {
     }
 
     /**
-     * Undo data based on the png algorithm
+     * Undo data based on the tiff algorithm
      */
-    public ByteBuffer unpredict(ByteBuffer imageData)
-        throws IOException
-    {
-        ByteBuffer out = ByteBuffer.allocate(imageData.limit());
-
+    @Override
+    protected void unpredictRow(byte[] src, int srcPos, byte[] dst, int dstPos) {
         final int numComponents = getColors();
-        final int pixelBits = numComponents * getBitsPerComponent();
-
-        int bytePerRow = (getColumns() * pixelBits + 7) / 8;
+        final int bpc = getBitsPerComponent();
+        final int pixelBits = numComponents * bpc;
+        final int rowSize = getRowSize();
 
-        final byte[] row = new byte[bytePerRow];
+        System.arraycopy(src, srcPos, dst, dstPos, rowSize);
 
-        while(imageData.remaining() > 0) {
-            imageData.get(row);
-            if (getBitsPerComponent() == 8) {
-                for (int i = numComponents; i < row.length; i += numComponents) {
-                    for (int c = 0; c < numComponents; ++c) {
-                        final int pos = i + c;
-                        row[pos] += row[pos - numComponents];
-                    }
-                }
-            } else if (getBitsPerComponent() == 16) {
-                final short[] prev = new short[numComponents];
-                for (int c = 0; c < numComponents; c += 1) {
-                    final int pos = c * 2;
-                    prev[c] = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
-                }
-                for (int i = numComponents * 2; i < row.length; i += numComponents * 2) {
-                    for (int c = 0; c < numComponents; c += 1) {
-                        final int pos = i + c * 2;
-                        short cur = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
-                        cur += prev[c];
-                        row[pos] = (byte) (cur >>> 8 & 0xFF);
-                        row[pos + 1] = (byte) (cur & 0xFF);
-                        prev[c] = cur;
-                    }
-                }
-            } else {
-                assert getBitsPerComponent() == 1 || getBitsPerComponent() == 2 || getBitsPerComponent() == 4 : "we don't want to grab components across pixel boundaries";
-                int bitsOnRow = pixelBits * getColumns(); // may be less than bytesOnRow * 8
-                byte prev[] = new byte[numComponents];
-                final int shiftWhenAligned = 8 - getBitsPerComponent();
-                final int mask = (1 << getBitsPerComponent()) - 1;
+        if (bpc == 8) {
+            final int end = dstPos + rowSize;
+            for (int pos = dstPos + numComponents; pos < end; pos++) {
+                dst[pos] += dst[pos - numComponents];
+            }
+        } else if (bpc == 16) {
+            final int end = dstPos + rowSize;
+            final int pixelBytes = numComponents * 2;
+            for (int pos = dstPos + pixelBytes; pos + 1 < end; pos += 2) {
+                final int prevPos = pos - pixelBytes;
+                short prev = (short) ((dst[prevPos] << 8) | (dst[prevPos + 1] & 0xFF));
+                short cur = (short) ((dst[pos] << 8) | (dst[pos + 1] & 0xFF));
+                cur += prev;
+                dst[pos] = (byte) (cur >>> 8 & 0xFF);
+                dst[pos + 1] = (byte) (cur & 0xFF);
+            }
+        } else {
+            assert bpc == 1 || bpc == 2 || bpc == 4 : "we don't want to grab components across pixel boundaries";
+            final int bitsOnRow = pixelBits * getColumns(); // may be less than bytesOnRow * 8
+            final int shiftWhenAligned = 8 - bpc;
+            final int mask = (1 << bpc) - 1;
+            for (int i = pixelBits; i < bitsOnRow; i += pixelBits) {
                 for (int c = 0; c < numComponents; ++c) {
-                    prev[c] = getbits(row, c * getBitsPerComponent(), shiftWhenAligned, mask);
-                }
-                for (int i = pixelBits; i < bitsOnRow; i += pixelBits) {
-                    for (int c = 0; c < numComponents; ++c) {
-                        byte cur = getbits(row, i + c * getBitsPerComponent(), shiftWhenAligned, mask);
-                        cur += prev[c];
-                        prev[c] = cur;
-                        setbits(row, i + c * getBitsPerComponent(), shiftWhenAligned, mask, cur);
-                    }
+                    final int bit = i + c * bpc;
+                    byte cur = getbits(dst, dstPos, bit, shiftWhenAligned, mask);
+                    cur += getbits(dst, dstPos, bit - pixelBits, shiftWhenAligned, mask);
+                    setbits(dst, dstPos, bit, shiftWhenAligned, mask, cur);
                 }
             }
-            out.put(row);
         }
-
-
-        // reset start pointer
-        out.flip();
-
-        // return
-        return out;
-
     }
 
-    private static byte getbits(byte[] data, int bitIndex, int shiftWhenByteAligned, int mask)
+    private static byte getbits(byte[] data, int offset, int bitIndex, int shiftWhenByteAligned, int mask)
     {
-        final int b = data[(bitIndex >> 3)];
+        final int b = data[offset + (bitIndex >> 3)];
         final int bitIndexInB = bitIndex & 7;
         final int shift =  shiftWhenByteAligned - bitIndexInB;
         return (byte) ((b >>> shift) & mask);
     }
 
-    private static void setbits(byte[] data, int bitIndex, int shiftWhenByteAligned, int mask, byte bits)
+    private static void setbits(byte[] data, int offset, int bitIndex, int shiftWhenByteAligned, int mask, byte bits)
     {
-        final int b = data[(bitIndex >> 3)];
+        final int b = data[offset + (bitIndex >> 3)];
         final int bitIndexInB = bitIndex & 7;
         final int shift =  shiftWhenByteAligned - bitIndexInB;
-        data[bitIndex >> 3] = (byte) ((b & ~(mask << shift)) | (bits << shift));
+        data[offset + (bitIndex >> 3)] = (byte) ((b & ~(mask << shift)) | ((bits & mask) << shift));
     }
 
 
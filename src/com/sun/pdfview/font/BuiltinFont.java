@@ -19,10 +19,13 @@
 package com.sun.pdfview.font;
 
 import java.awt.Font;
+import java.awt.geom.GeneralPath;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.sun.pdfview.PDFObject;
 
@@ -30,13 +33,20 @@ import com.sun.pdfview.PDFObject;
  * This class represents the 14 built-in fonts.  It reads these fonts
  * from files in the "res" directory, as specified in
  * BaseNames.properties.
+ * <p>
+ * Each font is read and parsed only once per VM, into a program that is
+ * shared by every document using it.  The program holds the charstrings
+ * and parses each glyph outline and width the first time any document
+ * asks for it.  A BuiltinFont for a document keeps its own widths and
+ * encoding, and the outlines as scaled to those widths.
  */
 public class BuiltinFont extends Type1Font {
 
     /** the properties file */
     private static Properties props;
-    /** the fonts themselves */
-    private static Map fonts;
+    /** the parsed programs of the base fonts, by name */
+    private static final Map<String,BuiltinFont> programs =
+            new HashMap<String,BuiltinFont>();
     /** the names of the 14 base fonts */
     private static final String[] baseFonts = {
         "Courier", "Courier-Bold", "Courier-BoldOblique", "Courier-Oblique",
@@ -81,6 +91,11 @@ public class BuiltinFont extends Type1Font {
         "CourierNew,Italic", "Courier-Oblique",
     };
 
+    /** the shared program of the font, or null if this is the program */
+    private BuiltinFont program;
+    /** the outlines of this font, scaled to its widths, by glyph name */
+    private Map<String,GeneralPath> outlines;
+
     /**
      * Create a new Builtin object based on the name of a built-in font
      *
@@ -92,6 +107,19 @@ public class BuiltinFont extends Type1Font {
     public BuiltinFont(String baseFont, PDFObject fontObj) throws IOException {
         super(baseFont, fontObj, null);
 
+        shareProgram(baseFont);
+    }
+
+    /**
+     * Create the shared program of a built-in font, with no widths of
+     * its own
+     *
+     * @param baseFont the name of one of the 14 built-in fonts
+     */
+    private BuiltinFont(String baseFont) throws IOException {
+        super(baseFont, new PDFObject(null, PDFObject.DICTIONARY,
+                new HashMap<String,PDFObject>()), null);
+
         parseFont(baseFont);
     }
 
@@ -110,7 +138,7 @@ public class BuiltinFont extends Type1Font {
         // check if it's one of the 14 base fonts
         for (int i = 0; i < baseFonts.length; i++) {
             if (fontName.equalsIgnoreCase(baseFonts[i])) {
-                parseFont(fontName);
+                shareProgram(fontName);
                 return;
             }
         }
@@ -118,7 +146,7 @@ public class BuiltinFont extends Type1Font {
         // check if it's a mapped font
         for (int i = 0; i < mappedFonts.length; i += 2) {
             if (fontName.equalsIgnoreCase(mappedFonts[i])) {
-                parseFont(mappedFonts[i + 1]);
+                shareProgram(mappedFonts[i + 1]);
                 return;
             }
         }
@@ -167,18 +195,144 @@ public class BuiltinFont extends Type1Font {
             }
         }
 
-        parseFont(name);
+        shareProgram(name);
     }
 
     /**
-     * Parse a font given only the name of a builtin font
+     * Get the base fonts properties, loading them if they aren't already
+     * loaded
      */
-    private void parseFont(String baseFont) throws IOException {
-        // load the base fonts properties files, if it isn't already loaded
+    private synchronized static Properties getProperties() throws IOException {
         if (props == null) {
-            props = new Properties();
-            props.load(BuiltinFont.class.getResourceAsStream("res/BaseFonts.properties"));
+            Properties loaded = new Properties();
+            loaded.load(BuiltinFont.class.getResourceAsStream("res/BaseFonts.properties"));
+            props = loaded;
+        }
+        return props;
+    }
+
+    /**
+     * Get the shared program of a builtin font, parsing it the first
+     * time it is asked for
+     */
+    private synchronized static BuiltinFont getProgram(String baseFont)
+            throws IOException {
+        BuiltinFont program = programs.get(baseFont);
+        if (program == null) {
+            program = new BuiltinFont(baseFont);
+            programs.put(baseFont, program);
+        }
+        return program;
+    }
+
+    /**
+     * Use the shared program of a builtin font for the glyphs of this font
+     */
+    private void shareProgram(String baseFont) throws IOException {
+        this.program = getProgram(baseFont);
+        this.chr2name = this.program.chr2name;
+        this.at = this.program.at;
+        this.outlines = new ConcurrentHashMap<String,GeneralPath>();
+    }
+
+    /**
+     * Check whether the program has a glyph of the given name
+     */
+    private boolean hasGlyph(String name) {
+        return this.name2outline.containsKey(name);
+    }
+
+    /**
+     * Get a glyph outline of the program, in the units of the font.  The
+     * outline is shared and must not be changed.
+     *
+     * @param name the name of a glyph of the program
+     */
+    private GeneralPath getProgramOutline(String name) {
+        return super.getOutline(name, 0);
+    }
+
+    /**
+     * Get the advance width of a glyph of the program, which must not be
+     * changed
+     *
+     * @param name the name of a glyph of the program
+     */
+    private FlPoint getProgramWidth(String name) {
+        if (!this.name2width.containsKey(name)) {
+            // getting the outline will force it to get read
+            super.getOutline(name, 0);
+        }
+        return this.name2width.get(name);
+    }
+
+    /**
+     * Get the width of a given character
+     *
+     * Fonts without a width array take the widths of the program.
+     */
+    @Override
+    public float getWidth(char code, String name) {
+        if (this.program == null
+                || (getFirstChar() != -1 && getLastChar() != -1)) {
+            return super.getWidth(code, name);
+        }
+
+        String key = this.chr2name[code & 0xff];
+
+        // use a name if one is provided
+        if (name != null) {
+            key = name;
+        }
+
+        if (key != null && this.program.hasGlyph(key)) {
+            if (!this.outlines.containsKey(key)) {
+                // like Type1Font, keep the outline unscaled when its
+                // width is asked for first
+                getOutline(key, 0);
+            }
+            return this.program.getProgramWidth(key).x / getDefaultWidth();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get a glyph outline by name, from the program
+     *
+     * @param name the name of the desired glyph
+     * @return the glyph outline
+     */
+    @Override
+    protected GeneralPath getOutline(String name, float width) {
+        if (this.program == null) {
+            // this is the program, parsing one of its glyphs
+            return super.getOutline(name, width);
+        }
+
+        // make sure we have a valid name
+        if (name == null || !this.program.hasGlyph(name)) {
+            name = ".notdef";
+        }
+
+        GeneralPath outline = this.outlines.get(name);
+        if (outline == null) {
+            outline = this.program.getProgramOutline(name);
+            FlPoint advance = this.program.getProgramWidth(name);
+            if (width != 0 && advance.x != 0) {
+                outline = (GeneralPath) outline.clone();
+                fitToWidth(outline, advance, width);
+            }
+            this.outlines.put(name, outline);
         }
+        return outline;
+    }
+
+    /**
+     * Parse a font given only the name of a builtin font
+     */
+    private void parseFont(String baseFont) throws IOException {
+        Properties props = getProperties();
 
         // make sure we're a known font
         if (!props.containsKey(baseFont + ".file")) {
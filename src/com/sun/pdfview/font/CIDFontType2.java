@@ -257,7 +257,7 @@ public class CIDFontType2 extends TTFFont {
      * a CID mapped font.
      */
     @Override
-    protected synchronized GeneralPath getOutline(char src, float width) {
+    protected GeneralPath getOutline(char src, float width) {
         int glyphId = (src & 0xffff);
 
         // check if there is a cidToGidMap
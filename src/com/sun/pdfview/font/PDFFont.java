@@ -19,24 +19,24 @@
 package com.sun.pdfview.font;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-import com.sun.pdfview.BaseWatchable;
 import com.sun.pdfview.PDFDebugger;
 import com.sun.pdfview.PDFObject;
 import com.sun.pdfview.PDFParseException;
 import com.sun.pdfview.PDFRenderer;
 import com.sun.pdfview.font.cid.PDFCMap;
 import com.sun.pdfview.font.cid.ToUnicodeMap;
-import com.sun.pdfview.font.ttf.TrueTypeFont;
 
 /**
  * a Font definition for PDF files
@@ -44,15 +44,6 @@ import com.sun.pdfview.font.ttf.TrueTypeFont;
  */
 public abstract class PDFFont {
 
-    private static final FilenameFilter TTF_FILTER = new FilenameFilter() {
-        @Override
-		public boolean accept(File dir, String name) {
-            return name.toLowerCase().endsWith(".ttf");
-        }
-    };
-
-    private static Map<String,File> namedFontsToLocalTtfFiles = null;
-
     /** the font SubType of this font */
     private String subtype;
     /** the postscript name of this font */
@@ -64,7 +55,8 @@ public abstract class PDFFont {
     /** the CMap that maps this font to unicode values */
     private PDFCMap unicodeMap;
     /** a cache of glyphs indexed by character */
-    private Map<Character,PDFGlyph> charCache;
+    private final ConcurrentMap<Character,PDFGlyph> charCache =
+            new ConcurrentHashMap<Character,PDFGlyph>();
 
 
 
@@ -88,8 +80,38 @@ public abstract class PDFFont {
      * FontMatrix = (array, typically [0.001, 0, 0, 0.001, 0, 0])<br>
      * CharProcs = (dictionary)
      * Resources = (dictionary)
+     * <p>
+     * Each font object is loaded once, threads asking for it while it
+     * loads wait for it. Different fonts load at the same time.
+     */
+    public static PDFFont getFont(PDFObject obj,
+            HashMap<String,PDFObject> resources)
+            throws IOException {
+        PDFObject fontObj = obj.dereference();
+        FontLoader loader;
+        boolean load = false;
+        synchronized (fontObj) {
+            Object cached = fontObj.getCache();
+            if (cached instanceof PDFFont) {
+                return (PDFFont) cached;
+            } else if (cached instanceof FontLoader) {
+                loader = (FontLoader) cached;
+            } else {
+                loader = new FontLoader(fontObj, resources);
+                fontObj.setCache(loader);
+                load = true;
+            }
+        }
+        if (load) {
+            return loader.load();
+        }
+        return loader.await();
+    }
+
+    /**
+     * Create the PDFFont for a font dictionary, see getFont()
      */
-    public synchronized static PDFFont getFont(PDFObject obj,
+    private static PDFFont createFont(PDFObject obj,
             HashMap<String,PDFObject> resources)
             throws IOException {
         // the obj is actually a dictionary containing:
@@ -123,11 +145,7 @@ public abstract class PDFFont {
         //    FontFile3 (stream for CFF/Type1C fonts)
         //
         // Font data can be Type1, TrueType(native), or Type1C
-        PDFFont font = (PDFFont) obj.getCache();
-        if (font != null) {
-            return font;
-        }
-
+        PDFFont font = null;
         String baseFont = null;
         PDFFontEncoding encoding = null;
         PDFFontDescriptor descriptor = null;
@@ -232,121 +250,86 @@ public abstract class PDFFont {
         font.setSubtype(subType);
         font.setEncoding(encoding);
 
-        obj.setCache(font);
         return font;
     }
 
-    private static File findExternalTtf(String fontName) {
-        ensureNamedTtfFontFiles();
-        return namedFontsToLocalTtfFiles.get(fontName);
-    }
-
-    private synchronized static void ensureNamedTtfFontFiles() {
-        if (namedFontsToLocalTtfFiles == null) {
-            namedFontsToLocalTtfFiles = new HashMap<String, File>();
-
-            if (Boolean.getBoolean("PDFRenderer.avoidExternalTtf")) {
-                return;
-            }
+    /**
+     * The loading of one font object. It is kept in the object's cache
+     * while the font loads, for other threads to wait for, and replaced
+     * by the font once it is loaded.
+     */
+    private static class FontLoader extends FutureTask<PDFFont> {
+
+        /** the font dictionary */
+        private final PDFObject fontObj;
+        /** the thread loading the font */
+        private volatile Thread thread;
+
+        FontLoader(final PDFObject fontObj,
+                final HashMap<String,PDFObject> resources) {
+            super(new Callable<PDFFont>() {
+                @Override
+                public PDFFont call() throws IOException {
+                    return createFont(fontObj, resources);
+                }
+            });
+            this.fontObj = fontObj;
+        }
 
-            for (final String fontDirName : getFontSearchPath()) {
-
-                final File fontDir = new File(fontDirName);
-                if (fontDir.exists()) {
-                    for (final File ttfFile : fontDir.listFiles(TTF_FILTER)) {
-                        if (ttfFile.canRead()) {
-                            try {
-                                byte[] fontBytes;
-                                RandomAccessFile fontRa = null;
-                                try {
-                                    fontRa = new RandomAccessFile (ttfFile, "r");
-                                    int size = (int) fontRa.length ();
-                                    fontBytes = new byte[size];
-                                    fontRa.readFully(fontBytes);
-                                } finally {
-                                    if (fontRa != null) {
-                                        fontRa.close();
-                                    }
-                                }
-
-                                TrueTypeFont ttf = TrueTypeFont.parseFont(fontBytes);
-                                for (final String fontName : ttf.getNames()) {
-                                    if (!namedFontsToLocalTtfFiles.containsKey(fontName)) {
-                                        namedFontsToLocalTtfFiles.put(fontName, ttfFile);
-                                    }
-                                }
-                            } catch (Throwable t) {
-                                // I'm not sure how much confidence we should have
-                                // in the font parsing, so we'll avoid relying on
-                                // this not to fail
-                                System.err.println("Problem parsing " + ttfFile);
-                                BaseWatchable.getErrorHandler().publishException(t);
-                            }
-                        }
+        /**
+         * Load the font on this thread
+         */
+        PDFFont load() throws IOException {
+            this.thread = Thread.currentThread();
+            run();
+            PDFFont font = null;
+            try {
+                font = getLoadedFont();
+                return font;
+            } finally {
+                // a failed font is tried again the next time it is used
+                synchronized (this.fontObj) {
+                    if (this.fontObj.getCache() == this) {
+                        this.fontObj.setCache(font);
                     }
                 }
             }
         }
 
-    }
-
-    private static String[] getFontSearchPath() {
-        String pathProperty = System.getProperty("PDFRenderer.fontSearchPath");
-        if (pathProperty != null) {
-            return pathProperty.split(Pattern.quote(File.pathSeparator));
-        } else {
-            return getDefaultFontSearchPath();
-        }
-    }
-
-
-    private static String[] getDefaultFontSearchPath()
-    {
-        String osName = null;
-        try {
-            osName = System.getProperty("os.name");
-        } catch (SecurityException e) {
-            // preserve null osName
-        }
-
-        if (osName == null) {
-            // Makes it a bit tricky to figure out a nice default
-            return new String[0];
+        /**
+         * Wait for another thread to load the font
+         */
+        PDFFont await() throws IOException {
+            if (this.thread == Thread.currentThread() && !isDone()) {
+                throw new PDFParseException("Font refers to itself: " + this.fontObj);
+            }
+            return getLoadedFont();
         }
 
-        osName = osName != null ? osName.toLowerCase() : "";
-        if (osName.startsWith("windows")) {
-            // start with some reasonable default
-            String path = "C:/WINDOWS/Fonts";
+        private PDFFont getLoadedFont() throws IOException {
             try {
-                String windir = System.getenv("WINDIR");
-                if (windir != null) {
-                    path = windir + "/Fonts/";
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading a font");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
                 }
-            } catch (SecurityException secEx) {
-                // drop through and accept default path
+                throw new IOException("Error loading font: " + cause, cause);
             }
-            return new String[] { path };
-        } else if (osName != null && osName.startsWith("mac")) {
-            List<String> paths = new ArrayList<String>(Arrays.asList(
-                    "/Library/Fonts",
-                    "/Network/Library/Fonts",
-                    "/System/Library/Fonts",
-                    "/System Folder/Fonts"));
-            // try and add the user font dir at the front
-            try {
-                paths.add(0, System.getProperty("user.home") + "/Library/Fonts");
-            } catch (SecurityException e) {
-                // I suppose we just won't use the user fonts
-            }
-            return paths.toArray(new String[paths.size()]);
-        } else {
-            // Feel free to insert some reasonable defaults for other
-            // (UNIX, most likely) platforms here
-            return new String[0];
         }
     }
 
+    private static File findExternalTtf(String fontName) throws IOException {
+        return SystemFontIndex.getInstance().getFile(fontName);
+    }
+
     /**
      * Get the subtype of this font.
      * @return the subtype, one of: Type0, Type1, TrueType or Type3
@@ -451,24 +434,26 @@ public abstract class PDFFont {
 
     /**
      * Get a glyph for a given character code.  The glyph is returned
-     * from the cache if available, or added to the cache if not
+     * from the cache if available, or added to the cache if not.
+     * Glyphs are read and created without locking; when threads create
+     * the same glyph at once, the one cached first is used by all.
      *
      * @param src the character code of this glyph
      * @param name the name of the glyph, or null if the name is unknown
      * @return a glyph for this character
      */
     public PDFGlyph getCachedGlyph(char src, String name) {
-        if (this.charCache == null) {
-            this.charCache = new HashMap<Character,PDFGlyph>();
-        }
-
         // try the cache
-        PDFGlyph glyph = this.charCache.get(Character.valueOf(src));
+        Character key = Character.valueOf(src);
+        PDFGlyph glyph = this.charCache.get(key);
 
         // if it's not there, add it to the cache
         if (glyph == null) {
             glyph = getGlyph(src, name);
-            this.charCache.put(Character.valueOf(src), glyph);
+            PDFGlyph cached = this.charCache.putIfAbsent(key, glyph);
+            if (cached != null) {
+                glyph = cached;
+            }
         }
 
         return glyph;
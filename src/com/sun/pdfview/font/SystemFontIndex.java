@@ -0,0 +1,506 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc., 4150 Network Circle,
+ * Santa Clara, California 95054, U.S.A. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.sun.pdfview.font;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import com.sun.pdfview.BaseWatchable;
+import com.sun.pdfview.PDFDebugger;
+import com.sun.pdfview.font.ttf.NameTable;
+import com.sun.pdfview.font.ttf.TrueTypeTable;
+
+/**
+ * An index of the TrueType fonts installed on the system, which maps
+ * each name in the name table of a font to the font file.  The fonts
+ * are looked for in the directories of the PDFRenderer.fontSearchPath
+ * system property, or in the font directories of the platform.
+ * <p>
+ * Only the name table of each font is read.  The index is kept in
+ * memory.  If the PDFRenderer.fontIndexFile system property names a
+ * cache file, the index is also saved there along with the size and
+ * modification time of each font, so that building it again, in this
+ * or another VM, reads just the fonts added or changed since.
+ * <p>
+ * The index is built the first time a font is looked up, or in the
+ * background after {@link #loadInBackground()}.  Lookups wait for it to
+ * be built.
+ */
+public class SystemFontIndex {
+
+    private static final FilenameFilter TTF_FILTER = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return name.toLowerCase().endsWith(".ttf");
+        }
+    };
+
+    /** the first int of a cache file, "PDFI" */
+    private static final int CACHE_MAGIC = 0x50444649;
+    /** the version of the format of the cache file */
+    private static final int CACHE_VERSION = 1;
+    /** longer names, like license texts, are left out of the index */
+    private static final int MAX_NAME_LENGTH = 1024;
+
+    /** the index of the system fonts */
+    private static SystemFontIndex instance;
+
+    /** the cache file, or null if the index is not saved */
+    private final File cacheFile;
+    /** the building of the current index */
+    private FutureTask<Index> task;
+
+    /**
+     * Create an index of the system fonts
+     *
+     * @param cacheFile the file the index is saved in, or null to keep it
+     *  in memory only
+     */
+    public SystemFontIndex(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Get the index of the system fonts, saved in the cache file named by
+     * the PDFRenderer.fontIndexFile system property, if any
+     */
+    public static synchronized SystemFontIndex getInstance() {
+        if (instance == null) {
+            instance = new SystemFontIndex(getDefaultCacheFile());
+        }
+        return instance;
+    }
+
+    /**
+     * Start building the index of the system fonts on a background
+     * thread, so that the first document using one doesn't wait for it.
+     * Does nothing if the index is built or being built already.
+     */
+    public static void loadInBackground() {
+        getInstance().startLoading();
+    }
+
+    /**
+     * Start building the index on a background thread, unless it is built
+     * or being built already
+     */
+    public void startLoading() {
+        FutureTask<Index> loading;
+        synchronized (this) {
+            if (this.task != null) {
+                return;
+            }
+            loading = createTask(null);
+            this.task = loading;
+        }
+        Thread thread = new Thread(loading, "System Font Index Thread");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Get the file of a font
+     *
+     * @param fontName one of the names in the name table of the font
+     * @return the font file, or null if no font of that name is installed
+     */
+    public File getFile(String fontName) throws IOException {
+        return getIndex().files.get(fontName);
+    }
+
+    /**
+     * Build the index again, to find the fonts installed, changed or
+     * removed since it was built.  Only the fonts added or changed are
+     * read.  Lookups use the old index until the new one is built.
+     */
+    public void refresh() throws IOException {
+        FutureTask<Index> refreshing = createTask(getIndex());
+        refreshing.run();
+        getIndex(refreshing);
+        synchronized (this) {
+            this.task = refreshing;
+        }
+    }
+
+    /**
+     * Get the index, building it on this thread if nobody else is
+     */
+    private Index getIndex() throws IOException {
+        FutureTask<Index> current;
+        boolean build = false;
+        synchronized (this) {
+            if (this.task == null) {
+                this.task = createTask(null);
+                build = true;
+            }
+            current = this.task;
+        }
+        if (build) {
+            current.run();
+        }
+        try {
+            return getIndex(current);
+        } catch (RuntimeException e) {
+            // a failed index is built again the next time it is used
+            synchronized (this) {
+                if (this.task == current) {
+                    this.task = null;
+                }
+            }
+            throw e;
+        }
+    }
+
+    private Index getIndex(FutureTask<Index> building) throws IOException {
+        try {
+            return building.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing the system fonts");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Error indexing the system fonts: " + cause, cause);
+        }
+    }
+
+    private FutureTask<Index> createTask(final Index previous) {
+        return new FutureTask<Index>(new Callable<Index>() {
+            @Override
+            public Index call() {
+                return build(previous);
+            }
+        });
+    }
+
+    /**
+     * Build the index, reusing the names of the fonts that haven't
+     * changed since the previous index or the one in the cache file
+     *
+     * @param previous the previous index, or null to start from the
+     *  cache file
+     */
+    private Index build(Index previous) {
+        Index index = new Index();
+        if (Boolean.getBoolean("PDFRenderer.avoidExternalTtf")) {
+            return index;
+        }
+
+        Map<String,Entry> known = (previous != null) ? previous.entries : readCache();
+        boolean changed = false;
+        for (String fontDirName : getFontSearchPath()) {
+            File[] ttfFiles = new File(fontDirName).listFiles(TTF_FILTER);
+            if (ttfFiles == null) {
+                continue;
+            }
+            for (File ttfFile : ttfFiles) {
+                String path = ttfFile.getAbsolutePath();
+                if (!ttfFile.canRead() || index.entries.containsKey(path)) {
+                    continue;
+                }
+                Entry entry = known.get(path);
+                if (entry == null || entry.length != ttfFile.length()
+                        || entry.modified != ttfFile.lastModified()) {
+                    entry = readEntry(ttfFile);
+                    changed = true;
+                }
+                index.add(path, ttfFile, entry);
+            }
+        }
+
+        if (changed || index.entries.size() != known.size()) {
+            writeCache(index);
+        }
+        return index;
+    }
+
+    /**
+     * Read the names of a font. A font that can't be read is kept in the
+     * index without names, so it is not read again until it changes.
+     */
+    private static Entry readEntry(File ttfFile) {
+        long length = ttfFile.length();
+        long modified = ttfFile.lastModified();
+        String[] names;
+        try {
+            names = readNames(ttfFile);
+        } catch (Throwable t) {
+            // I'm not sure how much confidence we should have
+            // in the font parsing, so we'll avoid relying on
+            // this not to fail
+            System.err.println("Problem parsing " + ttfFile);
+            BaseWatchable.getErrorHandler().publishException(t);
+            names = new String[0];
+        }
+        return new Entry(length, modified, names);
+    }
+
+    /**
+     * Read the name table of a TrueType font, seeking to it through the
+     * table directory instead of reading the whole font
+     */
+    static String[] readNames(File ttfFile) throws IOException {
+        RandomAccessFile fontRa = new RandomAccessFile(ttfFile, "r");
+        try {
+            // the offset table, then 16 bytes for each table
+            fontRa.seek(4);
+            int numTables = fontRa.readUnsignedShort();
+            byte[] directory = new byte[numTables * 16];
+            fontRa.seek(12);
+            fontRa.readFully(directory);
+
+            ByteBuffer entries = ByteBuffer.wrap(directory);
+            for (int i = 0; i < numTables; i++) {
+                int tag = entries.getInt();
+                entries.getInt();   // checksum
+                long offset = entries.getInt() & 0xffffffffL;
+                int length = entries.getInt();
+                if (tag == TrueTypeTable.NAME_TABLE) {
+                    byte[] data = new byte[length];
+                    fontRa.seek(offset);
+                    fontRa.readFully(data);
+
+                    NameTable table = (NameTable) TrueTypeTable.createTable(
+                            null, "name", ByteBuffer.wrap(data));
+                    List<String> names = new ArrayList<String>();
+                    for (String name : table.getNames()) {
+                        if (name.length() <= MAX_NAME_LENGTH) {
+                            names.add(name);
+                        }
+                    }
+                    return names.toArray(new String[names.size()]);
+                }
+            }
+            return new String[0];
+        } finally {
+            fontRa.close();
+        }
+    }
+
+    /**
+     * Read the fonts of the cache file, by path. A cache file that is
+     * missing or can't be read gives no fonts.
+     */
+    private Map<String,Entry> readCache() {
+        Map<String,Entry> entries = new HashMap<String,Entry>();
+        if (this.cacheFile == null || !this.cacheFile.isFile()) {
+            return entries;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(this.cacheFile)));
+            try {
+                if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                    return entries;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long length = in.readLong();
+                    long modified = in.readLong();
+                    String[] names = new String[in.readInt()];
+                    for (int n = 0; n < names.length; n++) {
+                        names[n] = in.readUTF();
+                    }
+                    entries.put(path, new Entry(length, modified, names));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            PDFDebugger.debug("Can't read the font index " + this.cacheFile + ": " + e);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Save the index to the cache file. It is written to a new file which
+     * then replaces the old one, so other VMs never read half a file.
+     */
+    private void writeCache(Index index) {
+        if (this.cacheFile == null) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            File dir = this.cacheFile.getAbsoluteFile().getParentFile();
+            dir.mkdirs();
+            tempFile = File.createTempFile(this.cacheFile.getName(), ".tmp", dir);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(index.entries.size());
+                for (Map.Entry<String,Entry> e : index.entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.length);
+                    out.writeLong(entry.modified);
+                    out.writeInt(entry.names.length);
+                    for (String name : entry.names) {
+                        out.writeUTF(name);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(this.cacheFile)) {
+                // some platforms don't replace files on rename
+                this.cacheFile.delete();
+                if (!tempFile.renameTo(this.cacheFile)) {
+                    throw new IOException("Can't replace " + this.cacheFile);
+                }
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            PDFDebugger.debug("Can't save the font index " + this.cacheFile + ": " + e);
+        } catch (SecurityException e) {
+            PDFDebugger.debug("Can't save the font index " + this.cacheFile + ": " + e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static File getDefaultCacheFile() {
+        try {
+            String name = System.getProperty("PDFRenderer.fontIndexFile");
+            if (name != null && name.length() > 0) {
+                return new File(name);
+            }
+        } catch (SecurityException e) {
+            // then the index isn't saved
+        }
+        return null;
+    }
+
+    private static String[] getFontSearchPath() {
+        String pathProperty = System.getProperty("PDFRenderer.fontSearchPath");
+        if (pathProperty != null) {
+            return pathProperty.split(Pattern.quote(File.pathSeparator));
+        } else {
+            return getDefaultFontSearchPath();
+        }
+    }
+
+
+    private static String[] getDefaultFontSearchPath()
+    {
+        String osName = null;
+        try {
+            osName = System.getProperty("os.name");
+        } catch (SecurityException e) {
+            // preserve null osName
+        }
+
+        if (osName == null) {
+            // Makes it a bit tricky to figure out a nice default
+            return new String[0];
+        }
+
+        osName = osName != null ? osName.toLowerCase() : "";
+        if (osName.startsWith("windows")) {
+            // start with some reasonable default
+            String path = "C:/WINDOWS/Fonts";
+            try {
+                String windir = System.getenv("WINDIR");
+                if (windir != null) {
+                    path = windir + "/Fonts/";
+                }
+            } catch (SecurityException secEx) {
+                // drop through and accept default path
+            }
+            return new String[] { path };
+        } else if (osName != null && osName.startsWith("mac")) {
+            List<String> paths = new ArrayList<String>(Arrays.asList(
+                    "/Library/Fonts",
+                    "/Network/Library/Fonts",
+                    "/System/Library/Fonts",
+                    "/System Folder/Fonts"));
+            // try and add the user font dir at the front
+            try {
+                paths.add(0, System.getProperty("user.home") + "/Library/Fonts");
+            } catch (SecurityException e) {
+                // I suppose we just won't use the user fonts
+            }
+            return paths.toArray(new String[paths.size()]);
+        } else {
+            // Feel free to insert some reasonable defaults for other
+            // (UNIX, most likely) platforms here
+            return new String[0];
+        }
+    }
+
+    /** the fonts of one build of the index */
+    private static class Index {
+        /** the font files by name, the first file found for each name */
+        final Map<String,File> files = new HashMap<String,File>();
+        /** the fonts by absolute path */
+        final Map<String,Entry> entries = new HashMap<String,Entry>();
+
+        void add(String path, File ttfFile, Entry entry) {
+            this.entries.put(path, entry);
+            for (String name : entry.names) {
+                if (!this.files.containsKey(name)) {
+                    this.files.put(name, ttfFile);
+                }
+            }
+        }
+    }
+
+    /** a font file as it was when its names were read */
+    private static class Entry {
+        final long length;
+        final long modified;
+        final String[] names;
+
+        Entry(long length, long modified, String[] names) {
+            this.length = length;
+            this.modified = modified;
+            this.names = names;
+        }
+    }
+}
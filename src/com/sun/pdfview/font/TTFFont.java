@@ -109,7 +109,7 @@ public class TTFFont extends OutlineFont {
      * Get the outline of a character given the character code
      */
     @Override
-	protected synchronized GeneralPath getOutline (char src, float width) {
+	protected GeneralPath getOutline (char src, float width) {
         // find the cmaps
         CmapTable cmap = (CmapTable) this.font.getTable ("cmap");
 
@@ -154,8 +154,8 @@ public class TTFFont extends OutlineFont {
      * @param width
      * @return GeneralPath
      */
-    protected synchronized GeneralPath getOutlineFrom31CMap (char val,
-                                                            float width) {
+    protected GeneralPath getOutlineFrom31CMap (char val,
+                                                float width) {
         // find the cmaps
         CmapTable cmap = (CmapTable) this.font.getTable ("cmap");
 
@@ -180,7 +180,7 @@ public class TTFFont extends OutlineFont {
      * Get the outline of a character given the character name
      */
     @Override
-	protected synchronized GeneralPath getOutline (String name, float width) {
+	protected GeneralPath getOutline (String name, float width) {
         int idx;
         PostTable post = (PostTable) this.font.getTable ("post");
         if (post != null) {
@@ -201,7 +201,7 @@ public class TTFFont extends OutlineFont {
     /**
      * Get the outline of a character given the glyph id
      */
-    protected synchronized GeneralPath getOutline (int glyphId, float width) {
+    protected GeneralPath getOutline (int glyphId, float width) {
         // find the glyph itself
         GlyfTable glyf = (GlyfTable) this.font.getTable ("glyf");
         Glyf g = glyf.getGlyph (glyphId);
@@ -42,16 +42,8 @@ public class Type1CFont extends OutlineFont {
 
     byte[] data;
 
-    int pos;
-
     byte[] subrs;
 
-    float[] stack = new float[100];
-
-    int stackptr = 0;
-
-    int stemhints = 0;
-
     String names[];
 
     int glyphnames[];
@@ -62,12 +54,6 @@ public class Type1CFont extends OutlineFont {
 
     AffineTransform at = new AffineTransform (0.001f, 0, 0, 0.001f, 0, 0);
 
-    int num;
-
-    float fnum;
-
-    int type;
-
     static int CMD = 0;
 
     static int NUM = 1;
@@ -86,10 +72,9 @@ public class Type1CFont extends OutlineFont {
 
         PDFObject dataObj = descriptor.getFontFile3 ();
         this.data = dataObj.getStream ();
-        this.pos = 0;
         parse ();
 
-        // TODO: free up (set to null) unused structures (data, subrs, stack)
+        // TODO: free up (set to null) unused structures (data, subrs)
     }
 
     /**
@@ -125,113 +110,159 @@ public class Type1CFont extends OutlineFont {
     }
 
     /**
-     * read the next decoded value from the stream
-     * @param charstring ????
+     * The position in the font data and the operand stack of one reading
+     * of it.  The dictionaries are read with one when the font is parsed,
+     * and each glyph with one of its own, so any number of threads can
+     * read glyphs at once.
      */
-    private int readNext (boolean charstring) {
-        this.num = (this.data[this.pos++]) & 0xff;
-        if (this.num == 30 && !charstring) { // goofy floatingpoint rep
-            readFNum ();
-            return this.type = FLT;
-        } else if (this.num == 28) {
-            this.num = ((this.data[this.pos]) << 8) + ((this.data[this.pos + 1]) & 0xff);
-            this.pos += 2;
-            return this.type = NUM;
-        } else if (this.num == 29 && !charstring) {
-            this.num = ((this.data[this.pos] & 0xff) << 24) |
-                    ((this.data[this.pos + 1] & 0xff) << 16) |
-                    ((this.data[this.pos + 2] & 0xff) << 8) |
-                    ((this.data[this.pos + 3] & 0xff));
-            this.pos += 4;
-            return this.type = NUM;
-        } else if (this.num == 12) {  // two-byte command
-            this.num = 1000 + ((this.data[this.pos++]) & 0xff);
-            return this.type = CMD;
-        } else if (this.num < 32) {
-            return this.type = CMD;
-        } else if (this.num < 247) {
-            this.num -= 139;
-            return this.type = NUM;
-        } else if (this.num < 251) {
-            this.num = (this.num - 247) * 256 + ((this.data[this.pos++]) & 0xff) + 108;
-            return this.type = NUM;
-        } else if (this.num < 255) {
-            this.num = -(this.num - 251) * 256 - ((this.data[this.pos++]) & 0xff) - 108;
-            return this.type = NUM;
-        } else if (!charstring) { // dict shouldn't have a 255 code
-            printData ();
-            throw new RuntimeException ("Got a 255 code while reading dict");
-        } else { // num was 255
-        	this.fnum = (((this.data[this.pos] & 0xff) << 24) |
-                    ((this.data[this.pos + 1] & 0xff) << 16) |
-                    ((this.data[this.pos + 2] & 0xff) << 8) |
-                    ((this.data[this.pos + 3] & 0xff))) / 65536f;
-            this.pos += 4;
-            return this.type = FLT;
+    private class Reader {
+
+        int pos;
+
+        float[] stack = new float[100];
+
+        int stackptr = 0;
+
+        int stemhints = 0;
+
+        float temps[] = new float[32];
+
+        int num;
+
+        float fnum;
+
+        int type;
+
+        Reader (int pos) {
+            this.pos = pos;
         }
-    }
 
-    /**
-     * read the next funky floating point number from the input stream.
-     * value gets put into the fnum field.
-     */
-    public void readFNum () {
-        // work in nybbles: 0-9=0-9, a=. b=E, c=E-, d=rsvd e=neg f=end
-        float f = 0;
-        boolean neg = false;
-        int exp = 0;
-        int eval = 0;
-        float mul = 1;
-        byte work = this.data[this.pos++];
-        while (true) {
-            if (work == (byte) 0xdd) {
-                work = this.data[this.pos++];
+        /**
+         * read the next decoded value from the stream
+         * @param charstring ????
+         */
+        private int readNext (boolean charstring) {
+            this.num = (data[this.pos++]) & 0xff;
+            if (this.num == 30 && !charstring) { // goofy floatingpoint rep
+                readFNum ();
+                return this.type = FLT;
+            } else if (this.num == 28) {
+                this.num = ((data[this.pos]) << 8) + ((data[this.pos + 1]) & 0xff);
+                this.pos += 2;
+                return this.type = NUM;
+            } else if (this.num == 29 && !charstring) {
+                this.num = ((data[this.pos] & 0xff) << 24) |
+                        ((data[this.pos + 1] & 0xff) << 16) |
+                        ((data[this.pos + 2] & 0xff) << 8) |
+                        ((data[this.pos + 3] & 0xff));
+                this.pos += 4;
+                return this.type = NUM;
+            } else if (this.num == 12) {  // two-byte command
+                this.num = 1000 + ((data[this.pos++]) & 0xff);
+                return this.type = CMD;
+            } else if (this.num < 32) {
+                return this.type = CMD;
+            } else if (this.num < 247) {
+                this.num -= 139;
+                return this.type = NUM;
+            } else if (this.num < 251) {
+                this.num = (this.num - 247) * 256 + ((data[this.pos++]) & 0xff) + 108;
+                return this.type = NUM;
+            } else if (this.num < 255) {
+                this.num = -(this.num - 251) * 256 - ((data[this.pos++]) & 0xff) - 108;
+                return this.type = NUM;
+            } else if (!charstring) { // dict shouldn't have a 255 code
+                printData ();
+                throw new RuntimeException ("Got a 255 code while reading dict");
+            } else { // num was 255
+            	this.fnum = (((data[this.pos] & 0xff) << 24) |
+                        ((data[this.pos + 1] & 0xff) << 16) |
+                        ((data[this.pos + 2] & 0xff) << 8) |
+                        ((data[this.pos + 3] & 0xff))) / 65536f;
+                this.pos += 4;
+                return this.type = FLT;
             }
-            int nyb = (work >> 4) & 0xf;
-            work = (byte) ((work << 4) | 0xd);
-            if (nyb < 10) {
-                if (exp != 0) {         // working on the exponent
-                    eval = eval * 10 + nyb;
-                } else if (mul == 1) {  // working on an int
-                    f = f * 10 + nyb;
-                } else {              // working on decimal part
-                    f += nyb * mul;
-                    mul /= 10f;
+        }
+
+        /**
+         * read the next funky floating point number from the input stream.
+         * value gets put into the fnum field.
+         */
+        public void readFNum () {
+            // work in nybbles: 0-9=0-9, a=. b=E, c=E-, d=rsvd e=neg f=end
+            float f = 0;
+            boolean neg = false;
+            int exp = 0;
+            int eval = 0;
+            float mul = 1;
+            byte work = data[this.pos++];
+            while (true) {
+                if (work == (byte) 0xdd) {
+                    work = data[this.pos++];
+                }
+                int nyb = (work >> 4) & 0xf;
+                work = (byte) ((work << 4) | 0xd);
+                if (nyb < 10) {
+                    if (exp != 0) {         // working on the exponent
+                        eval = eval * 10 + nyb;
+                    } else if (mul == 1) {  // working on an int
+                        f = f * 10 + nyb;
+                    } else {              // working on decimal part
+                        f += nyb * mul;
+                        mul /= 10f;
+                    }
+                } else if (nyb == 0xa) {    // decimal
+                    mul = 0.1f;
+                } else if (nyb == 0xb) {    // E+
+                    exp = 1;
+                } else if (nyb == 0xc) {    // E-
+                    exp = -1;
+                } else if (nyb == 0xe) {      // neg
+                    neg = true;
+                } else {
+                    break;
                 }
-            } else if (nyb == 0xa) {    // decimal
-                mul = 0.1f;
-            } else if (nyb == 0xb) {    // E+
-                exp = 1;
-            } else if (nyb == 0xc) {    // E-
-                exp = -1;
-            } else if (nyb == 0xe) {      // neg
-                neg = true;
-            } else {
-                break;
             }
+            this.fnum = (neg ? -1 : 1) * f * (float) Math.pow (10, eval * exp);
         }
-        this.fnum = (neg ? -1 : 1) * f * (float) Math.pow (10, eval * exp);
-    }
 
-    /**
-     * read an integer from the input stream
-     * @param len the number of bytes in the integer
-     * @return the integer
-     */
-    private int readInt (int len) {
-        int n = 0;
-        for (int i = 0; i < len; i++) {
-            n = (n << 8) | ((this.data[this.pos++]) & 0xff);
+        /**
+         * read an integer from the input stream
+         * @param len the number of bytes in the integer
+         * @return the integer
+         */
+        private int readInt (int len) {
+            int n = 0;
+            for (int i = 0; i < len; i++) {
+                n = (n << 8) | ((data[this.pos++]) & 0xff);
+            }
+            return n;
         }
-        return n;
-    }
 
-    /**
-     * read the next byte from the stream
-     * @return the byte
-     */
-    private int readByte () {
-        return (this.data[this.pos++]) & 0xff;
+        /**
+         * read the next byte from the stream
+         * @return the byte
+         */
+        private int readByte () {
+            return (data[this.pos++]) & 0xff;
+        }
+
+        /**
+         * read a complete command.  this may involve several numbers
+         * which go onto a stack before an actual command is read.
+         * @param charstring ????
+         * @return the command.  Some numbers may also be on the stack.
+         */
+        private int readCommand (boolean charstring) {
+            while (true) {
+                int t = readNext (charstring);
+                if (t == CMD) {
+                    return this.num;
+                } else {
+                    this.stack[this.stackptr++] = (t == NUM) ? (float) this.num : this.fnum;
+                }
+            }
+        }
     }
 
     // DICT structure:
@@ -248,21 +279,19 @@ public class Type1CFont extends OutlineFont {
      * @return the size of the dictionary, in bytes.
      */
     public int getIndexSize (int loc) {
-        int hold = this.pos;
-        this.pos = loc;
-        int count = readInt (2);
+        Reader reader = new Reader (loc);
+        int count = reader.readInt (2);
         if (count <= 0) {
             return 2;
         }
-        int encsz = readByte ();
+        int encsz = reader.readByte ();
         if (encsz < 1 || encsz > 4) {
             throw new RuntimeException ("Offsize: " + encsz +
                     ", must be in range 1-4.");
         }
         // pos is now at the first offset.  last offset is at count*encsz
-        this.pos += count * encsz;
-        int end = readInt (encsz);
-        this.pos = hold;
+        reader.pos += count * encsz;
+        int end = reader.readInt (encsz);
         return 2 + (count + 1) * encsz + end;
     }
 
@@ -273,13 +302,10 @@ public class Type1CFont extends OutlineFont {
      * @return
      */
     public int getTableLength (int loc) {
-        int hold = this.pos;
-        this.pos = loc;
-        int count = readInt (2);
+        int count = new Reader (loc).readInt (2);
         if (count <= 0) {
             return 2;
         }
-        this.pos = hold;
         return count;
     }
 
@@ -324,20 +350,17 @@ public class Type1CFont extends OutlineFont {
      * the entry from the start of the file, not the dictionary
      */
     Range getIndexEntry (int index, int id) {
-        int hold = this.pos;
-        this.pos = index;
-        int count = readInt (2);
-        int encsz = readByte ();
+        Reader reader = new Reader (index);
+        int count = reader.readInt (2);
+        int encsz = reader.readByte ();
         if (encsz < 1 || encsz > 4) {
             throw new RuntimeException ("Offsize: " + encsz +
                     ", must be in range 1-4.");
         }
-        this.pos += encsz * id;
-        int from = readInt (encsz);
-        Range r = new Range (from + 2 + index + encsz * (count + 1), readInt (
+        reader.pos += encsz * id;
+        int from = reader.readInt (encsz);
+        return new Range (from + 2 + index + encsz * (count + 1), reader.readInt (
                 encsz) - from);
-        this.pos = hold;
-        return r;
     }
     // Top DICT: NAME    CODE   DEFAULT
     // charstringtype    12 6    2
@@ -350,8 +373,6 @@ public class Type1CFont extends OutlineFont {
     // and code encoding[i]
     int charstringtype = 2;
 
-    float temps[] = new float[32];
-
     int charsetbase = 0;
 
     int encodingbase = 0;
@@ -377,52 +398,35 @@ public class Type1CFont extends OutlineFont {
      * within the dictionary.
      */
     private void readDict (Range r) {
-        this.pos = r.getStart ();
-        while (this.pos < r.getEnd ()) {
-            int cmd = readCommand (false);
+        Reader reader = new Reader (r.getStart ());
+        while (reader.pos < r.getEnd ()) {
+            int cmd = reader.readCommand (false);
             if (cmd == 1006) { // charstringtype, default=2
-                this.charstringtype = (int) this.stack[0];
+                this.charstringtype = (int) reader.stack[0];
             } else if (cmd == 1007) { // fontmatrix
-                if (this.stackptr == 4) {
-                    this.at = new AffineTransform (this.stack[0], this.stack[1],
-                            this.stack[2], this.stack[3],
+                if (reader.stackptr == 4) {
+                    this.at = new AffineTransform (reader.stack[0], reader.stack[1],
+                            reader.stack[2], reader.stack[3],
                             0, 0);
                 } else {
-                    this.at = new AffineTransform (this.stack[0], this.stack[1],
-                            this.stack[2], this.stack[3],
-                            this.stack[4], this.stack[5]);
+                    this.at = new AffineTransform (reader.stack[0], reader.stack[1],
+                            reader.stack[2], reader.stack[3],
+                            reader.stack[4], reader.stack[5]);
                 }
             } else if (cmd == 15) { // charset
-                this.charsetbase = (int) this.stack[0];
+                this.charsetbase = (int) reader.stack[0];
             } else if (cmd == 16) { // encoding
-                this.encodingbase = (int) this.stack[0];
+                this.encodingbase = (int) reader.stack[0];
             } else if (cmd == 17) { // charstrings
-                this.charstringbase = (int) this.stack[0];
+                this.charstringbase = (int) reader.stack[0];
             } else if (cmd == 18) { // private
-                this.privatesize = (int) this.stack[0];
-                this.privatebase = (int) this.stack[1];
+                this.privatesize = (int) reader.stack[0];
+                this.privatebase = (int) reader.stack[1];
             } else if (cmd == 19) { // subrs (in Private dict)
-                this.lsubrbase = this.privatebase + (int) this.stack[0];
+                this.lsubrbase = this.privatebase + (int) reader.stack[0];
                 this.lsubrsoffset = calcoffset (this.lsubrbase);
             }
-            this.stackptr = 0;
-        }
-    }
-
-    /**
-     * read a complete command.  this may involve several numbers
-     * which go onto a stack before an actual command is read.
-     * @param charstring ????
-     * @return the command.  Some numbers may also be on the stack.
-     */
-    private int readCommand (boolean charstring) {
-        while (true) {
-            int t = readNext (charstring);
-            if (t == CMD) {
-                return this.num;
-            } else {
-                this.stack[this.stackptr++] = (t == NUM) ? (float) this.num : this.fnum;
-            }
+            reader.stackptr = 0;
         }
     }
 
@@ -438,20 +442,20 @@ public class Type1CFont extends OutlineFont {
             PDFDebugger.debug("**** EXPERT ENCODING not yet implemented!");
             // TODO: copy ExpertEncoding
         } else {
-            this.pos = base;
-            int encodingtype = readByte ();
+            Reader reader = new Reader (base);
+            int encodingtype = reader.readByte ();
             if ((encodingtype & 127) == 0) {
-                int ncodes = readByte ();
+                int ncodes = reader.readByte ();
                 for (int i = 1; i < ncodes + 1; i++) {
-                    int idx = readByte () & 0xff;
+                    int idx = reader.readByte () & 0xff;
                     this.encoding[idx] = i;
                 }
             } else if ((encodingtype & 127) == 1) {
-                int nranges = readByte ();
+                int nranges = reader.readByte ();
                 int p = 1;
                 for (int i = 0; i < nranges; i++) {
-                    int start = readByte ();
-                    int more = readByte ();
+                    int start = reader.readByte ();
+                    int more = reader.readByte ();
                     for (int j = start; j < start + more + 1; j++) {
                         this.encoding[j] = p++;
                     }
@@ -484,17 +488,17 @@ public class Type1CFont extends OutlineFont {
         // nglyphs has already been set.
         this.glyphnames = new int[this.nglyphs];
         this.glyphnames[0] = 0;
-        this.pos = base;
-        int t = readByte ();
+        Reader reader = new Reader (base);
+        int t = reader.readByte ();
         if (t == 0) {
             for (int i = 1; i < this.nglyphs; i++) {
-                this.glyphnames[i] = readInt (2);
+                this.glyphnames[i] = reader.readInt (2);
             }
         } else if (t == 1) {
             int n = 1;
             while (n < this.nglyphs) {
-                int sid = readInt (2);
-                int range = readByte () + 1;
+                int sid = reader.readInt (2);
+                int range = reader.readByte () + 1;
                 for (int i = 0; i < range; i++) {
                     this.glyphnames[n++] = sid++;
                 }
@@ -502,8 +506,8 @@ public class Type1CFont extends OutlineFont {
         } else if (t == 2) {
             int n = 1;
             while (n < this.nglyphs) {
-                int sid = readInt (2);
-                int range = readInt (2) + 1;
+                int sid = reader.readInt (2);
+                int range = reader.readInt (2) + 1;
                 for (int i = 0; i < range; i++) {
                     this.glyphnames[n++] = sid++;
                 }
@@ -516,8 +520,7 @@ public class Type1CFont extends OutlineFont {
      * @param base the start of the name table
      */
     private void readNames (int base) {
-        this.pos = base;
-        int nextra = readInt (2);
+        int nextra = new Reader (base).readInt (2);
         this.names = new String[nextra];
         //	safenames= new String[nextra];
         for (int i = 0; i < nextra; i++) {
@@ -532,10 +535,11 @@ public class Type1CFont extends OutlineFont {
      * @param encdif a dictionary describing the encoding.
      */
     private void parse () throws IOException {
-        int majorVersion = readByte ();
-        int minorVersion = readByte ();
-        int hdrsz = readByte ();
-        int offsize = readByte ();
+        Reader reader = new Reader (0);
+        int majorVersion = reader.readByte ();
+        int minorVersion = reader.readByte ();
+        int hdrsz = reader.readByte ();
+        int offsize = reader.readByte ();
         // jump over rest of header: base of font names index
         int fnames = hdrsz;
         // offset in the file of the array of font dicts
@@ -548,8 +552,8 @@ public class Type1CFont extends OutlineFont {
         // read extra names
         readNames (theNames);
         // does this file have more than one font?
-        this.pos = topdicts;
-        if (readInt (2) != 1) {
+        reader.pos = topdicts;
+        if (reader.readInt (2) != 1) {
             printData ();
             throw new RuntimeException ("More than one font in this file!");
         }
@@ -560,8 +564,8 @@ public class Type1CFont extends OutlineFont {
         // read the private dictionary
         readDict (new Range (this.privatebase, this.privatesize));
         // calculate the number of glyphs
-        this.pos = this.charstringbase;
-        this.nglyphs = readInt (2);
+        reader.pos = this.charstringbase;
+        this.nglyphs = reader.readInt (2);
         // now get the glyph names
         readGlyphNames (this.charsetbase);
         // now figure out the encoding
@@ -608,7 +612,7 @@ public class Type1CFont extends OutlineFont {
      * @param base the start of the glyph table
      * @param offset the index of this glyph in the glyph table
      */
-    private synchronized GeneralPath readGlyph (int base, int offset) {
+    private GeneralPath readGlyph (int base, int offset) {
         FlPoint pt = new FlPoint ();
 
         // find this entry
@@ -617,17 +621,9 @@ public class Type1CFont extends OutlineFont {
         // create a path
         GeneralPath gp = new GeneralPath ();
 
-
-        // rember the start position (for recursive calls due to seac)
-        int hold = this.pos;
-
-        // read the glyph itself
-        this.stackptr = 0;
-        this.stemhints = 0;
-        parseGlyph (r, gp, pt);
-
-        // restore the start position
-        this.pos = hold;
+        // read the glyph itself, with a reader of its own (seac reads
+        // the glyphs it is made of with theirs)
+        parseGlyph (new Reader (r.getStart ()), r, gp, pt);
 
         gp.transform (this.at);
 
@@ -704,334 +700,335 @@ public class Type1CFont extends OutlineFont {
 
     /**
      * parse a glyph defined in a particular range
+     * @param reader the reader of the glyph
      * @param r the range of the glyph definition
      * @param gp a GeneralPath in which to store the glyph outline
      * @param pt a FlPoint representing the end of the current path
      */
-    void parseGlyph (Range r, GeneralPath gp, FlPoint pt) {
-        this.pos = r.getStart ();
+    void parseGlyph (Reader reader, Range r, GeneralPath gp, FlPoint pt) {
+        reader.pos = r.getStart ();
         int i;
         float x1, y1, x2, y2, x3, y3, ybase;
         int hold;
-        while (this.pos < r.getEnd ()) {
-            int cmd = readCommand (true);
+        while (reader.pos < r.getEnd ()) {
+            int cmd = reader.readCommand (true);
             hold = 0;
             switch (cmd) {
                 case 1: // hstem
                 case 3: // vstem
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 4: // vmoveto
-                    if (this.stackptr > 1) {  // this is the first call, arg1 is width
-                        this.stack[0] = this.stack[1];
+                    if (reader.stackptr > 1) {  // this is the first call, arg1 is width
+                        reader.stack[0] = reader.stack[1];
                     }
-                    pt.y += this.stack[0];
+                    pt.y += reader.stack[0];
                     if (pt.open) {
                         gp.closePath ();
                     }
                     pt.open = false;
                     gp.moveTo (pt.x, pt.y);
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 5: // rlineto
-                    for (i = 0; i < this.stackptr;) {
-                        pt.x += this.stack[i++];
-                        pt.y += this.stack[i++];
+                    for (i = 0; i < reader.stackptr;) {
+                        pt.x += reader.stack[i++];
+                        pt.y += reader.stack[i++];
                         gp.lineTo (pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 6: // hlineto
-                    for (i = 0; i < this.stackptr;) {
+                    for (i = 0; i < reader.stackptr;) {
                         if ((i & 1) == 0) {
-                            pt.x += this.stack[i++];
+                            pt.x += reader.stack[i++];
                         } else {
-                            pt.y += this.stack[i++];
+                            pt.y += reader.stack[i++];
                         }
                         gp.lineTo (pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 7: // vlineto
-                    for (i = 0; i < this.stackptr;) {
+                    for (i = 0; i < reader.stackptr;) {
                         if ((i & 1) == 0) {
-                            pt.y += this.stack[i++];
+                            pt.y += reader.stack[i++];
                         } else {
-                            pt.x += this.stack[i++];
+                            pt.x += reader.stack[i++];
                         }
                         gp.lineTo (pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 8: // rrcurveto
-                    for (i = 0; i < this.stackptr;) {
-                        x1 = pt.x + this.stack[i++];
-                        y1 = pt.y + this.stack[i++];
-                        x2 = x1 + this.stack[i++];
-                        y2 = y1 + this.stack[i++];
-                        pt.x = x2 + this.stack[i++];
-                        pt.y = y2 + this.stack[i++];
+                    for (i = 0; i < reader.stackptr;) {
+                        x1 = pt.x + reader.stack[i++];
+                        y1 = pt.y + reader.stack[i++];
+                        x2 = x1 + reader.stack[i++];
+                        y2 = y1 + reader.stack[i++];
+                        pt.x = x2 + reader.stack[i++];
+                        pt.y = y2 + reader.stack[i++];
                         gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 10: // callsubr
-                    hold = this.pos;
-                    i = (int) this.stack[--this.stackptr] + this.lsubrsoffset;
+                    hold = reader.pos;
+                    i = (int) reader.stack[--reader.stackptr] + this.lsubrsoffset;
                     Range lsubr = getIndexEntry (this.lsubrbase, i);
-                    parseGlyph (lsubr, gp, pt);
-                    this.pos = hold;
+                    parseGlyph (reader, lsubr, gp, pt);
+                    reader.pos = hold;
                     break;
                 case 11: // return
                     return;
                 case 14: // endchar
                     // width x y achar bchar endchar == x y achar bchar seac
-                    if (this.stackptr == 5) {
-                        buildAccentChar (this.stack[1], this.stack[2], (char) this.stack[3],
-                                (char) this.stack[4], gp);
-                } else if (this.stackptr == 4) {
+                    if (reader.stackptr == 5) {
+                        buildAccentChar (reader.stack[1], reader.stack[2], (char) reader.stack[3],
+                                (char) reader.stack[4], gp);
+                } else if (reader.stackptr == 4) {
                     // see page 58 on specification 5177.Type2.pdf which indicates that
                     // these parameters are valid for Type1C as the width is optional
-                    buildAccentChar(this.stack[0], this.stack[1], (char) this.stack[2], (char) this.stack[3], gp);
+                    buildAccentChar(reader.stack[0], reader.stack[1], (char) reader.stack[2], (char) reader.stack[3], gp);
                 }
                     if (pt.open) {
                         gp.closePath ();
                     }
                     pt.open = false;
-                    this.stackptr = 0;
-                    stemhints = 0;
+                    reader.stackptr = 0;
+                    reader.stemhints = 0;
                     break;
                 case 18: // hstemhm
-                    stemhints += (this.stackptr) / 2;
-                    this.stackptr = 0;
+                    reader.stemhints += (reader.stackptr) / 2;
+                    reader.stackptr = 0;
                     break;
                 case 19: // hintmask
                 case 20: // cntrmask
-                	stemhints += (this.stackptr) / 2;
-                    this.pos += (stemhints - 1) / 8 + 1;
-                    this.stackptr = 0;
+                	reader.stemhints += (reader.stackptr) / 2;
+                    reader.pos += (reader.stemhints - 1) / 8 + 1;
+                    reader.stackptr = 0;
                     break;
                 case 21: // rmoveto
-                    if (this.stackptr > 2) {
-                        this.stack[0] = this.stack[1];
-                        this.stack[1] = this.stack[2];
+                    if (reader.stackptr > 2) {
+                        reader.stack[0] = reader.stack[1];
+                        reader.stack[1] = reader.stack[2];
                     }
-                    pt.x += this.stack[0];
-                    pt.y += this.stack[1];
+                    pt.x += reader.stack[0];
+                    pt.y += reader.stack[1];
                     if (pt.open) {
                         gp.closePath ();
                     }
                     gp.moveTo (pt.x, pt.y);
                     pt.open = false;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 22: // hmoveto
-                    if (this.stackptr > 1) {
-                        this.stack[0] = this.stack[1];
+                    if (reader.stackptr > 1) {
+                        reader.stack[0] = reader.stack[1];
                     }
-                    pt.x += this.stack[0];
+                    pt.x += reader.stack[0];
                     if (pt.open) {
                         gp.closePath ();
                     }
                     gp.moveTo (pt.x, pt.y);
                     pt.open = false;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 23: // vstemhm
-                    stemhints += (this.stackptr) / 2;
-                    this.stackptr = 0;
+                    reader.stemhints += (reader.stackptr) / 2;
+                    reader.stackptr = 0;
                     break;
                 case 24: // rcurveline
-                    for (i = 0; i < this.stackptr - 2;) {
-                        x1 = pt.x + this.stack[i++];
-                        y1 = pt.y + this.stack[i++];
-                        x2 = x1 + this.stack[i++];
-                        y2 = y1 + this.stack[i++];
-                        pt.x = x2 + this.stack[i++];
-                        pt.y = y2 + this.stack[i++];
+                    for (i = 0; i < reader.stackptr - 2;) {
+                        x1 = pt.x + reader.stack[i++];
+                        y1 = pt.y + reader.stack[i++];
+                        x2 = x1 + reader.stack[i++];
+                        y2 = y1 + reader.stack[i++];
+                        pt.x = x2 + reader.stack[i++];
+                        pt.y = y2 + reader.stack[i++];
                         gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     }
-                    pt.x += this.stack[i++];
-                    pt.y += this.stack[i++];
+                    pt.x += reader.stack[i++];
+                    pt.y += reader.stack[i++];
                     gp.lineTo (pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 25: // rlinecurve
-                    for (i = 0; i < this.stackptr - 6;) {
-                        pt.x += this.stack[i++];
-                        pt.y += this.stack[i++];
+                    for (i = 0; i < reader.stackptr - 6;) {
+                        pt.x += reader.stack[i++];
+                        pt.y += reader.stack[i++];
                         gp.lineTo (pt.x, pt.y);
                     }
-                    x1 = pt.x + this.stack[i++];
-                    y1 = pt.y + this.stack[i++];
-                    x2 = x1 + this.stack[i++];
-                    y2 = y1 + this.stack[i++];
-                    pt.x = x2 + this.stack[i++];
-                    pt.y = y2 + this.stack[i++];
+                    x1 = pt.x + reader.stack[i++];
+                    y1 = pt.y + reader.stack[i++];
+                    x2 = x1 + reader.stack[i++];
+                    y2 = y1 + reader.stack[i++];
+                    pt.x = x2 + reader.stack[i++];
+                    pt.y = y2 + reader.stack[i++];
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 26: // vvcurveto
                     i = 0;
-                    if ((this.stackptr & 1) == 1) { // odd number of arguments
-                        pt.x += this.stack[i++];
+                    if ((reader.stackptr & 1) == 1) { // odd number of arguments
+                        pt.x += reader.stack[i++];
                     }
-                    while (i < this.stackptr) {
+                    while (i < reader.stackptr) {
                         x1 = pt.x;
-                        y1 = pt.y + this.stack[i++];
-                        x2 = x1 + this.stack[i++];
-                        y2 = y1 + this.stack[i++];
+                        y1 = pt.y + reader.stack[i++];
+                        x2 = x1 + reader.stack[i++];
+                        y2 = y1 + reader.stack[i++];
                         pt.x = x2;
-                        pt.y = y2 + this.stack[i++];
+                        pt.y = y2 + reader.stack[i++];
                         gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 27: // hhcurveto
                     i = 0;
-                    if ((this.stackptr & 1) == 1) { // odd number of arguments
-                        pt.y += this.stack[i++];
+                    if ((reader.stackptr & 1) == 1) { // odd number of arguments
+                        pt.y += reader.stack[i++];
                     }
-                    while (i < this.stackptr) {
-                        x1 = pt.x + this.stack[i++];
+                    while (i < reader.stackptr) {
+                        x1 = pt.x + reader.stack[i++];
                         y1 = pt.y;
-                        x2 = x1 + this.stack[i++];
-                        y2 = y1 + this.stack[i++];
-                        pt.x = x2 + this.stack[i++];
+                        x2 = x1 + reader.stack[i++];
+                        y2 = y1 + reader.stack[i++];
+                        pt.x = x2 + reader.stack[i++];
                         pt.y = y2;
                         gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 29: // callgsubr
-                    hold = this.pos;
-                    i = (int) this.stack[--this.stackptr] + this.gsubrsoffset;
+                    hold = reader.pos;
+                    i = (int) reader.stack[--reader.stackptr] + this.gsubrsoffset;
                     Range gsubr = getIndexEntry (this.gsubrbase, i);
-                    parseGlyph (gsubr, gp, pt);
-                    this.pos = hold;
+                    parseGlyph (reader, gsubr, gp, pt);
+                    reader.pos = hold;
                     break;
                 case 30: // vhcurveto
                     hold = 4;
                 case 31: // hvcurveto
-                    for (i = 0; i < this.stackptr;) {
+                    for (i = 0; i < reader.stackptr;) {
                         boolean hv = (((i + hold) & 4) == 0);
-                        x1 = pt.x + (hv ? this.stack[i++] : 0);
-                        y1 = pt.y + (hv ? 0 : this.stack[i++]);
-                        x2 = x1 + this.stack[i++];
-                        y2 = y1 + this.stack[i++];
-                        pt.x = x2 + (hv ? 0 : this.stack[i++]);
-                        pt.y = y2 + (hv ? this.stack[i++] : 0);
-                        if (i == this.stackptr - 1) {
+                        x1 = pt.x + (hv ? reader.stack[i++] : 0);
+                        y1 = pt.y + (hv ? 0 : reader.stack[i++]);
+                        x2 = x1 + reader.stack[i++];
+                        y2 = y1 + reader.stack[i++];
+                        pt.x = x2 + (hv ? 0 : reader.stack[i++]);
+                        pt.y = y2 + (hv ? reader.stack[i++] : 0);
+                        if (i == reader.stackptr - 1) {
                             if (hv) {
-                                pt.x += this.stack[i++];
+                                pt.x += reader.stack[i++];
                             } else {
-                                pt.y += this.stack[i++];
+                                pt.y += reader.stack[i++];
                             }
                         }
                         gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     }
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 1000: // old dotsection command.  ignore.
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 1003: // and
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = ((x1 != 0) && (y1 != 0)) ? 1 : 0;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = ((x1 != 0) && (y1 != 0)) ? 1 : 0;
                     break;
                 case 1004: // or
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = ((x1 != 0) || (y1 != 0)) ? 1 : 0;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = ((x1 != 0) || (y1 != 0)) ? 1 : 0;
                     break;
                 case 1005: // not
-                    x1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = (x1 == 0) ? 1 : 0;
+                    x1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = (x1 == 0) ? 1 : 0;
                     break;
                 case 1009: // abs
-                    this.stack[this.stackptr - 1] = Math.abs (this.stack[this.stackptr - 1]);
+                    reader.stack[reader.stackptr - 1] = Math.abs (reader.stack[reader.stackptr - 1]);
                     break;
                 case 1010: // add
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = x1 + y1;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = x1 + y1;
                     break;
                 case 1011: // sub
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = y1 - x1;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = y1 - x1;
                     break;
                 case 1012: // div
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = y1 / x1;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = y1 / x1;
                     break;
                 case 1014: // neg
-                    this.stack[this.stackptr - 1] = -this.stack[this.stackptr - 1];
+                    reader.stack[reader.stackptr - 1] = -reader.stack[reader.stackptr - 1];
                     break;
                 case 1015: // eq
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = (x1 == y1) ? 1 : 0;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = (x1 == y1) ? 1 : 0;
                     break;
                 case 1018: // drop
-                    this.stackptr--;
+                    reader.stackptr--;
                     break;
                 case 1020: // put
-                    i = (int) this.stack[--this.stackptr];
-                    x1 = this.stack[--this.stackptr];
-                    this.temps[i] = x1;
+                    i = (int) reader.stack[--reader.stackptr];
+                    x1 = reader.stack[--reader.stackptr];
+                    reader.temps[i] = x1;
                     break;
                 case 1021: // get
-                    i = (int) this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = this.temps[i];
+                    i = (int) reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = reader.temps[i];
                     break;
                 case 1022: // ifelse
-                    if (this.stack[this.stackptr - 2] > this.stack[this.stackptr - 1]) {
-                        this.stack[this.stackptr - 4] = this.stack[this.stackptr - 3];
+                    if (reader.stack[reader.stackptr - 2] > reader.stack[reader.stackptr - 1]) {
+                        reader.stack[reader.stackptr - 4] = reader.stack[reader.stackptr - 3];
                     }
-                    this.stackptr -= 3;
+                    reader.stackptr -= 3;
                     break;
                 case 1023: // random
-                    this.stack[this.stackptr++] = (float) Math.random ();
+                    reader.stack[reader.stackptr++] = (float) Math.random ();
                     break;
                 case 1024: // mul
-                    x1 = this.stack[--this.stackptr];
-                    y1 = this.stack[--this.stackptr];
-                    this.stack[this.stackptr++] = y1 * x1;
+                    x1 = reader.stack[--reader.stackptr];
+                    y1 = reader.stack[--reader.stackptr];
+                    reader.stack[reader.stackptr++] = y1 * x1;
                     break;
                 case 1026: // sqrt
-                    this.stack[this.stackptr - 1] = (float) Math.sqrt (this.stack[this.stackptr - 1]);
+                    reader.stack[reader.stackptr - 1] = (float) Math.sqrt (reader.stack[reader.stackptr - 1]);
                     break;
                 case 1027: // dup
-                    x1 = this.stack[this.stackptr - 1];
-                    this.stack[this.stackptr++] = x1;
+                    x1 = reader.stack[reader.stackptr - 1];
+                    reader.stack[reader.stackptr++] = x1;
                     break;
                 case 1028: // exch
-                    x1 = this.stack[this.stackptr - 1];
-                    this.stack[this.stackptr - 1] = this.stack[this.stackptr - 2];
-                    this.stack[this.stackptr - 2] = x1;
+                    x1 = reader.stack[reader.stackptr - 1];
+                    reader.stack[reader.stackptr - 1] = reader.stack[reader.stackptr - 2];
+                    reader.stack[reader.stackptr - 2] = x1;
                     break;
                 case 1029: // index
-                    i = (int) this.stack[this.stackptr - 1];
+                    i = (int) reader.stack[reader.stackptr - 1];
                     if (i < 0) {
                         i = 0;
                     }
-                    this.stack[this.stackptr - 1] = this.stack[this.stackptr - 2 - i];
+                    reader.stack[reader.stackptr - 1] = reader.stack[reader.stackptr - 2 - i];
                     break;
                 case 1030: // roll
-                    i = (int) this.stack[--this.stackptr];
-                    int n = (int) this.stack[--this.stackptr];
+                    i = (int) reader.stack[--reader.stackptr];
+                    int n = (int) reader.stack[--reader.stackptr];
                     // roll n number by i (+ = upward)
                     if (i > 0) {
                         i = i % n;
@@ -1041,91 +1038,91 @@ public class Type1CFont extends OutlineFont {
                     // x x x x i y y y -> y y y x x x x i (where i=3)
                     if (i > 0) {
                         float roll[] = new float[n];
-                        System.arraycopy (this.stack, this.stackptr - 1 - i, roll, 0, i);
-                        System.arraycopy (this.stack, this.stackptr - 1 - n, roll, i,
+                        System.arraycopy (reader.stack, reader.stackptr - 1 - i, roll, 0, i);
+                        System.arraycopy (reader.stack, reader.stackptr - 1 - n, roll, i,
                                 n - i);
-                        System.arraycopy (roll, 0, this.stack, this.stackptr - 1 - n, n);
+                        System.arraycopy (roll, 0, reader.stack, reader.stackptr - 1 - n, n);
                     }
                     break;
                 case 1034: // hflex
-                    x1 = pt.x + this.stack[0];
+                    x1 = pt.x + reader.stack[0];
                     y1 = ybase = pt.y;
-                    x2 = x1 + this.stack[1];
-                    y2 = y1 + this.stack[2];
-                    pt.x = x2 + this.stack[3];
+                    x2 = x1 + reader.stack[1];
+                    y2 = y1 + reader.stack[2];
+                    pt.x = x2 + reader.stack[3];
                     pt.y = y2;
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
-                    x1 = pt.x + this.stack[4];
+                    x1 = pt.x + reader.stack[4];
                     y1 = pt.y;
-                    x2 = x1 + this.stack[5];
+                    x2 = x1 + reader.stack[5];
                     y2 = ybase;
-                    pt.x = x2 + this.stack[6];
+                    pt.x = x2 + reader.stack[6];
                     pt.y = y2;
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 1035: // flex
-                    x1 = pt.x + this.stack[0];
-                    y1 = pt.y + this.stack[1];
-                    x2 = x1 + this.stack[2];
-                    y2 = y1 + this.stack[3];
-                    pt.x = x2 + this.stack[4];
-                    pt.y = y2 + this.stack[5];
+                    x1 = pt.x + reader.stack[0];
+                    y1 = pt.y + reader.stack[1];
+                    x2 = x1 + reader.stack[2];
+                    y2 = y1 + reader.stack[3];
+                    pt.x = x2 + reader.stack[4];
+                    pt.y = y2 + reader.stack[5];
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
-                    x1 = pt.x + this.stack[6];
-                    y1 = pt.y + this.stack[7];
-                    x2 = x1 + this.stack[8];
-                    y2 = y1 + this.stack[9];
-                    pt.x = x2 + this.stack[10];
-                    pt.y = y2 + this.stack[11];
+                    x1 = pt.x + reader.stack[6];
+                    y1 = pt.y + reader.stack[7];
+                    x2 = x1 + reader.stack[8];
+                    y2 = y1 + reader.stack[9];
+                    pt.x = x2 + reader.stack[10];
+                    pt.y = y2 + reader.stack[11];
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 1036: // hflex1
                     ybase = pt.y;
-                    x1 = pt.x + this.stack[0];
-                    y1 = pt.y + this.stack[1];
-                    x2 = x1 + this.stack[2];
-                    y2 = y1 + this.stack[3];
-                    pt.x = x2 + this.stack[4];
+                    x1 = pt.x + reader.stack[0];
+                    y1 = pt.y + reader.stack[1];
+                    x2 = x1 + reader.stack[2];
+                    y2 = y1 + reader.stack[3];
+                    pt.x = x2 + reader.stack[4];
                     pt.y = y2;
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
-                    x1 = pt.x + this.stack[5];
+                    x1 = pt.x + reader.stack[5];
                     y1 = pt.y;
-                    x2 = x1 + this.stack[6];
-                    y2 = y1 + this.stack[7];
-                    pt.x = x2 + this.stack[8];
+                    x2 = x1 + reader.stack[6];
+                    y2 = y1 + reader.stack[7];
+                    pt.x = x2 + reader.stack[8];
                     pt.y = ybase;
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 case 1037: // flex1
                     ybase = pt.y;
                     float xbase = pt.x;
-                    x1 = pt.x + this.stack[0];
-                    y1 = pt.y + this.stack[1];
-                    x2 = x1 + this.stack[2];
-                    y2 = y1 + this.stack[3];
-                    pt.x = x2 + this.stack[4];
-                    pt.y = y2 + this.stack[5];
+                    x1 = pt.x + reader.stack[0];
+                    y1 = pt.y + reader.stack[1];
+                    x2 = x1 + reader.stack[2];
+                    y2 = y1 + reader.stack[3];
+                    pt.x = x2 + reader.stack[4];
+                    pt.y = y2 + reader.stack[5];
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
-                    x1 = pt.x + this.stack[6];
-                    y1 = pt.y + this.stack[7];
-                    x2 = x1 + this.stack[8];
-                    y2 = y1 + this.stack[9];
+                    x1 = pt.x + reader.stack[6];
+                    y1 = pt.y + reader.stack[7];
+                    x2 = x1 + reader.stack[8];
+                    y2 = y1 + reader.stack[9];
                     if (Math.abs (x2 - xbase) > Math.abs (y2 - ybase)) {
-                        pt.x = x2 + this.stack[10];
+                        pt.x = x2 + reader.stack[10];
                         pt.y = ybase;
                     } else {
                         pt.x = xbase;
-                        pt.y = y2 + this.stack[10];
+                        pt.y = y2 + reader.stack[10];
                     }
                     gp.curveTo (x1, y1, x2, y2, pt.x, pt.y);
                     pt.open = true;
-                    this.stackptr = 0;
+                    reader.stackptr = 0;
                     break;
                 default:
                     PDFDebugger.debug("ERROR! TYPE1C CHARSTRING CMD IS " + cmd);
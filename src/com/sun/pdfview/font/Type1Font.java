@@ -24,8 +24,8 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.sun.pdfview.PDFDebugger;
 import com.sun.pdfview.PDFFile;
@@ -41,17 +41,27 @@ public class Type1Font extends OutlineFont {
     int password;
     byte[] subrs[];
     int lenIV;
-    Map<String,Object> name2outline;
-    Map<String,FlPoint> name2width;
+    ConcurrentMap<String,Object> name2outline;
+    ConcurrentMap<String,FlPoint> name2width;
     AffineTransform at;
-    /** the Type1 stack of command values */
-    float stack[] = new float[100];
-    /** the current position in the Type1 stack */
-    int sloc = 0;
-    /** the stack of postscript commands (used by callothersubr) */
-    float psStack[] = new float[3];
-    /** the current position in the postscript stack */
-    int psLoc = 0;
+
+    /**
+     * The stacks of one run of the glyph interpreter.  Every glyph is
+     * parsed with stacks of its own, so any number of threads can parse
+     * glyphs at once.
+     */
+    private static class ParseState {
+        /** the Type1 stack of command values */
+        float stack[] = new float[100];
+        /** the current position in the Type1 stack */
+        int sloc = 0;
+        /** the stack of postscript commands (used by callothersubr) */
+        float psStack[] = new float[3];
+        /** the current position in the postscript stack */
+        int psLoc = 0;
+        /** the depth of subroutine calls */
+        int callcount = 0;
+    }
 
     /**
      * create a new Type1Font based on a font data stream and an encoding.
@@ -75,7 +85,7 @@ public class Type1Font extends OutlineFont {
 
     /** Read a font from it's data, start position and length */
     protected void parseFont(byte[] font, int start, int len) {
-        this.name2width = new HashMap<String,FlPoint>();
+        this.name2width = new ConcurrentHashMap<String,FlPoint>();
 
         byte data[] = null;
 
@@ -109,7 +119,7 @@ public class Type1Font extends OutlineFont {
         }
 
         this.subrs = readSubrs(data);
-        this.name2outline = new TreeMap<String,Object>(readChars(data));
+        this.name2outline = new ConcurrentHashMap<String,Object>(readChars(data));
     // at this point, name2outline holds name -> byte[].
     }
 
@@ -467,25 +477,25 @@ public class Type1Font extends OutlineFont {
     /**
      * pop the next item off the stack
      */
-    private float pop() {
+    private float pop(ParseState state) {
         float val = 0;
-        if (this.sloc > 0) {
-            val = this.stack[--this.sloc];
+        if (state.sloc > 0) {
+            val = state.stack[--state.sloc];
         }
         return val;
     }
-    int callcount = 0;
 
     /**
      * parse glyph data into a GeneralPath, and return the advance width.
      * The working point is passed in as a parameter in order to allow
      * recursion.
+     * @param state the stacks of the glyph being parsed
      * @param cs the decrypted glyph data
      * @param gp a GeneralPath into which the glyph shape will be stored
      * @param pt a FlPoint object that will be used to generate the path
      * @param wid a FlPoint into which the advance width will be placed.
      */
-    private void parse(byte[] cs, GeneralPath gp, FlPoint pt, FlPoint wid) {
+    private void parse(ParseState state, byte[] cs, GeneralPath gp, FlPoint pt, FlPoint wid) {
         int loc = 0;
         float x1, x2, x3, y1, y2, y3;
         boolean flexMode = false;
@@ -494,33 +504,33 @@ public class Type1Font extends OutlineFont {
         while (loc < cs.length) {
             int v = (cs[loc++]) & 0xff;
             if (v == 255) {
-                this.stack[this.sloc++] = (((cs[loc]) & 0xff) << 24) +
+                state.stack[state.sloc++] = (((cs[loc]) & 0xff) << 24) +
                         (((cs[loc + 1]) & 0xff) << 16) +
                         (((cs[loc + 2]) & 0xff) << 8) +
                         (((cs[loc + 3]) & 0xff));
                 loc += 4;
             } else if (v >= 251) {
-                this.stack[this.sloc++] = -((v - 251) << 8) - ((cs[loc]) & 0xff) - 108;
+                state.stack[state.sloc++] = -((v - 251) << 8) - ((cs[loc]) & 0xff) - 108;
                 loc++;
             } else if (v >= 247) {
-                this.stack[this.sloc++] = ((v - 247) << 8) + ((cs[loc]) & 0xff) + 108;
+                state.stack[state.sloc++] = ((v - 247) << 8) + ((cs[loc]) & 0xff) + 108;
                 loc++;
             } else if (v >= 32) {
-                this.stack[this.sloc++] = v - 139;
+                state.stack[state.sloc++] = v - 139;
             } else {
                 switch (v) {
                     case 0:   // x
                         throw new RuntimeException("Bad command (" + v + ")");
                     case 1:   // hstem
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 2:   // x
                         throw new RuntimeException("Bad command (" + v + ")");
                     case 3:   // vstem
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 4:   // y vmoveto
-                		pt.y += pop();
+                		pt.y += pop(state);
                     	if (flexMode) {
                     		flexArray[flexPt++] = pt.x;
                     		flexArray[flexPt++] = pt.y;
@@ -528,48 +538,48 @@ public class Type1Font extends OutlineFont {
                     	else{
                     		gp.moveTo(pt.x, pt.y);
                     	}
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 5:   // x y rlineto
-                        pt.y += pop();
-                        pt.x += pop();
+                        pt.y += pop(state);
+                        pt.x += pop(state);
                         gp.lineTo(pt.x, pt.y);
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 6:   // x hlineto
-                    	pt.x += pop();
+                    	pt.x += pop(state);
                         gp.lineTo(pt.x, pt.y);
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 7:   // y vlineto
-                    	pt.y += pop();
+                    	pt.y += pop(state);
                     	gp.lineTo(pt.x, pt.y);
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 8:   // x1 y1 x2 y2 x3 y3 rcurveto
-                        y3 = pop();
-                        x3 = pop();
-                        y2 = pop();
-                        x2 = pop();
-                        y1 = pop();
-                        x1 = pop();
+                        y3 = pop(state);
+                        x3 = pop(state);
+                        y2 = pop(state);
+                        x2 = pop(state);
+                        y1 = pop(state);
+                        x1 = pop(state);
                         gp.curveTo(pt.x + x1, pt.y + y1,
                                 pt.x + x1 + x2, pt.y + y1 + y2,
                                 pt.x + x1 + x2 + x3, pt.y + y1 + y2 + y3);
                         pt.x += x1 + x2 + x3;
                         pt.y += y1 + y2 + y3;                        
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 9:   // closepath
                         gp.closePath();
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 10:  // n callsubr
-                        int n = (int) pop();
+                        int n = (int) pop(state);
                         if (n == 1) {
                         	flexMode = true;
                         	flexPt = 0;
-                        	this.sloc = 0;
+                        	state.sloc = 0;
                         	break;
                         }
                         if (n == 0) {
@@ -584,7 +594,7 @@ public class Type1Font extends OutlineFont {
                         				flexArray[11],
                         				flexArray[12], flexArray[13]);
                         		flexMode = false;
-                        		this.sloc = 0;
+                        		state.sloc = 0;
                         		//System.out.println("End Flex " + flexPt);
                         		break;
                         	}
@@ -594,20 +604,20 @@ public class Type1Font extends OutlineFont {
                         	    PDFDebugger.debug("Flex mode assumed");
                         	} 
                         	else {
-                        		this.sloc = 0;
+                        		state.sloc = 0;
                         		break;
                         	}
                         }
                         if (this.subrs[n] == null) {
                             PDFDebugger.debug("No subroutine #" + n);
                         } else {
-                            this.callcount++;
-                            if (this.callcount > 10) {
+                            state.callcount++;
+                            if (state.callcount > 10) {
                                 PDFDebugger.debug("Call stack too large");
                             } else {
-                                parse(this.subrs[n], gp, pt, wid);
+                                parse(state, this.subrs[n], gp, pt, wid);
                             }
-                            this.callcount--;
+                            state.callcount--;
                         }
                         break;
                     case 11:  // return
@@ -615,70 +625,70 @@ public class Type1Font extends OutlineFont {
                     case 12:  // ext...
                         v = (cs[loc++]) & 0xff;
                         if (v == 6) {  // s x y a b seac
-                        char a = (char) pop();
-                            char b = (char) pop();
-                            float y = pop();
-                            float x = pop();
+                        char a = (char) pop(state);
+                            char b = (char) pop(state);
+                            float y = pop(state);
+                            float x = pop(state);
                             buildAccentChar(x, y, a, b, gp);
-                            this.sloc = 0;
+                            state.sloc = 0;
                         } else if (v == 7) {  // x y w h sbw
-                            wid.y = pop();
-                            wid.x = pop();
-                            pt.y = pop();
-                            pt.x = pop();
-                            this.sloc = 0;
+                            wid.y = pop(state);
+                            wid.x = pop(state);
+                            pt.y = pop(state);
+                            pt.x = pop(state);
+                            state.sloc = 0;
                         } else if (v == 12) {  // a b div -> a/b
-                            float b = pop();
-                            float a = pop();
-                            this.stack[this.sloc++] = a / b;
+                            float b = pop(state);
+                            float a = pop(state);
+                            state.stack[state.sloc++] = a / b;
                         } else if (v == 33) {  // a b setcurrentpoint
-                            pt.y = pop();
-                            pt.x = pop();
+                            pt.y = pop(state);
+                            pt.x = pop(state);
                             gp.moveTo(pt.x, pt.y);
-                            this.sloc = 0;
+                            state.sloc = 0;
                         } else if (v == 0) { // dotsection
-                            this.sloc = 0;
+                            state.sloc = 0;
                         } else if (v == 1) {  // vstem3
-                            this.sloc = 0;
+                            state.sloc = 0;
                         } else if (v == 2) {  // hstem3
-                            this.sloc = 0;
+                            state.sloc = 0;
                         } else if (v == 16) {  // n callothersubr
-                            int cn = (int) pop();
-                            int countargs = (int) pop();
+                            int cn = (int) pop(state);
+                            int countargs = (int) pop(state);
 
                             switch (cn) {
                                 case 0:
                                     // push args2 and args3 onto stack
-                                    this.psStack[this.psLoc++] = pop();
-                                    this.psStack[this.psLoc++] = pop();
-                                    pop();
+                                    state.psStack[state.psLoc++] = pop(state);
+                                    state.psStack[state.psLoc++] = pop(state);
+                                    pop(state);
                                     break;
                                 case 3:
                                     // push 3 onto the postscript stack
-                                    this.psStack[this.psLoc++] = 3;
+                                    state.psStack[state.psLoc++] = 3;
                                     break;
                                 default:
                                     // push arguments onto the postscript stack
                                     for (int i = 0; i > countargs; i--) {
-                                        this.psStack[this.psLoc++] = pop();
+                                        state.psStack[state.psLoc++] = pop(state);
                                     }
                                     break;
                             }
                         } else if (v == 17) {  // pop
                             // pop from the postscript stack onto the type1 stack
-                            this.stack[this.sloc++] = this.psStack[this.psLoc - 1];
-                            this.psLoc--;
+                            state.stack[state.sloc++] = state.psStack[state.psLoc - 1];
+                            state.psLoc--;
                         } else {
                             throw new RuntimeException("Bad command (" + v + ")");
                         }
                         break;
                     case 13:  // s w hsbw
-                        wid.x = pop();
+                        wid.x = pop(state);
                         wid.y = 0;
-                        pt.x = pop();
+                        pt.x = pop(state);
                         pt.y = 0;
                         //		    gp.moveTo(pt.x, pt.y);
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 14:  // endchar
                         //		    return;
@@ -691,8 +701,8 @@ public class Type1Font extends OutlineFont {
                     case 20:  // x
                         throw new RuntimeException("Bad command (" + v + ")");
                     case 21:  // x y rmoveto
-                		pt.y += pop();
-                		pt.x += pop();
+                		pt.y += pop(state);
+                		pt.x += pop(state);
                     	if (flexMode) {
                     		flexArray[flexPt++] = pt.x;
                     		flexArray[flexPt++] = pt.y;
@@ -700,10 +710,10 @@ public class Type1Font extends OutlineFont {
                     	else{
                     		gp.moveTo(pt.x, pt.y);
                     	}
-                		this.sloc = 0;
+                		state.sloc = 0;
                         break;
                     case 22:  // x hmoveto
-                		pt.x += pop();
+                		pt.x += pop(state);
                     	if (flexMode) {
                     		flexArray[flexPt++] = pt.x;
                     		flexArray[flexPt++] = pt.y;
@@ -711,7 +721,7 @@ public class Type1Font extends OutlineFont {
                     	else {
                     		gp.moveTo(pt.x, pt.y);
                     	}
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 23:  // x
                     case 24:  // x
@@ -722,30 +732,30 @@ public class Type1Font extends OutlineFont {
                     case 29:  // x
                         throw new RuntimeException("Bad command (" + v + ")");
                     case 30:  // y1 x2 y2 x3 vhcurveto
-                        x3 = pop();
-                        y2 = pop();
-                        x2 = pop();
-                        y1 = pop();
+                        x3 = pop(state);
+                        y2 = pop(state);
+                        x2 = pop(state);
+                        y1 = pop(state);
                         x1 = y3 = 0;
                         gp.curveTo(pt.x, pt.y + y1,
                                 pt.x + x2, pt.y + y1 + y2,
                                 pt.x + x2 + x3, pt.y + y1 + y2);
                         pt.x += x2 + x3;
                         pt.y += y1 + y2;
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                     case 31:  // x1 x2 y2 y3 hvcurveto
-                        y3 = pop();
-                        y2 = pop();
-                        x2 = pop();
-                        x1 = pop();
+                        y3 = pop(state);
+                        y2 = pop(state);
+                        x2 = pop(state);
+                        x1 = pop(state);
                         y1 = x3 = 0;
                         gp.curveTo(pt.x + x1, pt.y,
                                 pt.x + x1 + x2, pt.y + y2,
                                 pt.x + x1 + x2, pt.y + y2 + y3);
                         pt.x += x1 + x2;
                         pt.y += y2 + y3;
-                        this.sloc = 0;
+                        state.sloc = 0;
                         break;
                 }
             }
@@ -781,6 +791,8 @@ public class Type1Font extends OutlineFont {
         }
 
         GeneralPath pathB = getOutline(b, getWidth(b, null));
+        // don't manipulate the original glyph either
+        pathB = (GeneralPath) pathB.clone();
 
         try {
             AffineTransform xformB = this.at.createInverse();
@@ -833,13 +845,12 @@ public class Type1Font extends OutlineFont {
     /**
      * Decrypt a glyph stored in byte form
      */
-    private synchronized GeneralPath parseGlyph(byte[] cs, FlPoint advance,
+    private GeneralPath parseGlyph(byte[] cs, FlPoint advance,
             AffineTransform at) {
         GeneralPath gp = new GeneralPath();
         FlPoint curpoint = new FlPoint();
 
-        this.sloc = 0;
-        parse(cs, gp, curpoint, advance);
+        parse(new ParseState(), cs, gp, curpoint, advance);
 
         gp.transform(at);
         return gp;
@@ -870,24 +881,38 @@ public class Type1Font extends OutlineFont {
             FlPoint advance = new FlPoint();
 
             GeneralPath gp = parseGlyph(cs, advance, this.at);
-
-            if (width != 0 && advance.x != 0) {
-                // scale the glyph to fit in the width
-                Point2D p = new Point2D.Float(advance.x, advance.y);
-                this.at.transform(p, p);
-
-                double scale = width / p.getX();
-                AffineTransform xform = AffineTransform.getScaleInstance(scale, 1.0);
-                gp.transform(xform);
+            fitToWidth(gp, advance, width);
+
+            // put the parsed object in the cache, the width first for
+            // getWidth.  If another thread parsed the glyph as well, use
+            // the outline it put there.
+            this.name2width.putIfAbsent(name, advance);
+            if (!this.name2outline.replace(name, cs, gp)) {
+                return (GeneralPath) this.name2outline.get(name);
             }
-
-            // put the parsed object in the cache
-            this.name2outline.put(name, gp);
-            this.name2width.put(name, advance);
             return gp;
         }
     }
 
+    /**
+     * Scale a glyph outline to fit in the width given for it
+     *
+     * @param gp the outline, which is scaled in place
+     * @param advance the advance width of the glyph in the font program
+     * @param width the width of the glyph, or 0 to leave it as it is
+     */
+    void fitToWidth(GeneralPath gp, FlPoint advance, float width) {
+        if (width != 0 && advance.x != 0) {
+            // scale the glyph to fit in the width
+            Point2D p = new Point2D.Float(advance.x, advance.y);
+            this.at.transform(p, p);
+
+            double scale = width / p.getX();
+            AffineTransform xform = AffineTransform.getScaleInstance(scale, 1.0);
+            gp.transform(xform);
+        }
+    }
+
     /**
      * Get a glyph outline by character code
      *
@@ -19,16 +19,32 @@
 package com.sun.pdfview.font.ttf;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Model the TrueType Glyf table
+ * Model the TrueType Glyf table. Glyphs are parsed from the table data
+ * when they are asked for, and only the most recently used ones are
+ * kept, so a font with many glyphs costs memory for the glyphs used.
  */
 public class GlyfTable extends TrueTypeTable {
-    /** 
-     * the glyph data, as either a byte buffer (unparsed) or a 
-     * glyph object (parsed)
-     */
-    private Object[] glyphs;
+    /** the number of parsed glyphs kept */
+    private static final int MAX_CACHED_GLYPHS = 256;
+
+    /** the glyph data, or null if the table has no data */
+    private ByteBuffer data;
+    
+    /** the number of glyphs */
+    private int numGlyphs;
+    
+    /** the parsed glyphs, by index, in the order they were used */
+    private final Map<Integer, Glyf> glyphs =
+            new LinkedHashMap<Integer, Glyf>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Glyf> eldest) {
+            return size() > MAX_CACHED_GLYPHS;
+        }
+    };
     
     /**
      * The glyph location table
@@ -42,80 +58,60 @@ public class GlyfTable extends TrueTypeTable {
         this.loca = (LocaTable) ttf.getTable("loca");
         
         MaxpTable maxp = (MaxpTable) ttf.getTable("maxp");
-        int numGlyphs = maxp.getNumGlyphs();
-        
-        this.glyphs = new Object[numGlyphs]; 
+        this.numGlyphs = maxp.getNumGlyphs();
     }
   
     /**
-     * Get the glyph at a given index, parsing it as needed
+     * Get the glyph at a given index, parsing it as needed.  Glyphs are
+     * parsed outside the lock of the cache, so threads don't wait for
+     * each other's glyphs.
      */
     public Glyf getGlyph(int index) {
-        Object o = this.glyphs[index];
-        if (o == null) {
-            return null;
+        if (index < 0 || index >= this.numGlyphs) {
+            throw new ArrayIndexOutOfBoundsException(index);
         }
         
-        if (o instanceof ByteBuffer) {
-            Glyf g = Glyf.getGlyf((ByteBuffer) o);
-            this.glyphs[index] = g;
+        Integer key = Integer.valueOf(index);
+        Glyf g;
+        synchronized (this.glyphs) {
+            g = this.glyphs.get(key);
+        }
+        if (g == null) {
+            int length = this.loca.getSize(index);
+            if (this.data == null || length == 0) {
+                // undefined glyph
+                return null;
+            }
             
-            return g;
-        } else {
-            return (Glyf) o;
+            ByteBuffer glyfData = this.data.duplicate();
+            glyfData.position(this.loca.getOffset(index));
+            glyfData = glyfData.slice();
+            glyfData.limit(length);
+            
+            g = Glyf.getGlyf(glyfData);
+            synchronized (this.glyphs) {
+                this.glyphs.put(key, g);
+            }
         }
+        return g;
     }
-  
+    
     /** get the data in this map as a ByteBuffer */
     @Override
 	public ByteBuffer getData() {
-        int size = getLength();
-        
-        ByteBuffer buf = ByteBuffer.allocate(size);
-        
-        // write the offsets
-        for (int i = 0; i < this.glyphs.length; i++) {
-            Object o = this.glyphs[i];
-            if (o == null) {
-		continue;
-            }
-
-            ByteBuffer glyfData = null;
-            if (o instanceof ByteBuffer) {
-                glyfData = (ByteBuffer) o;
-            } else {
-                glyfData = ((Glyf) o).getData();
-            }
-            
-            glyfData.rewind();
-            buf.put(glyfData);
-            glyfData.flip();
+        if (this.data == null) {
+            return ByteBuffer.allocate(0);
         }
         
-        // reset the start pointer
-        buf.flip();
-        
-        return buf;
+        // the glyphs can't be changed, so this is the data read
+        return this.data.duplicate();
     }
     
     /** Initialize this structure from a ByteBuffer */
     @Override
 	public void setData(ByteBuffer data) {
-        for (int i = 0; i < this.glyphs.length; i++) {
-            int location = this.loca.getOffset(i);
-            int length = this.loca.getSize(i);
-            
-            if (length == 0) {
-                // undefined glyph
-                continue;
-            }
-            
-            data.position(location);
-            ByteBuffer glyfData = data.slice();
-            glyfData.limit(length);
-            
-            this.glyphs[i] = glyfData;
-        }
+        // keep the data, the glyphs are parsed when they are needed
+        this.data = data.slice();
     }
     
     /**
@@ -123,22 +119,7 @@ public class GlyfTable extends TrueTypeTable {
      */
     @Override
 	public int getLength() {
-        int length = 0;
-        
-        for (int i = 0; i < this.glyphs.length; i++) {
-            Object o = this.glyphs[i];
-            if (o == null) {
-                continue;
-            }
-            
-            if (o instanceof ByteBuffer) {
-                length += ((ByteBuffer) o).remaining();
-            } else {
-                length += ((Glyf) o).getLength();
-            }
-        }
-        
-        return length;
+        return (this.data == null) ? 0 : this.data.remaining();
     }
     
     /**
@@ -149,9 +130,9 @@ public class GlyfTable extends TrueTypeTable {
         StringBuffer buf = new StringBuffer();
         String indent = "    ";
      
-        buf.append(indent + "Glyf Table: (" + this.glyphs.length + " glyphs)\n");
+        buf.append(indent + "Glyf Table: (" + this.numGlyphs + " glyphs)\n");
         buf.append(indent + "  Glyf 0: " + getGlyph(0));
         
         return buf.toString();
     }
-}
\ No newline at end of file
+}
@@ -22,14 +22,19 @@ package com.sun.pdfview.font.ttf;
 import java.nio.ByteBuffer;
 
 /**
- * Model the TrueType Loca table
+ * Model the TrueType Loca table. The offsets are read from the table data
+ * as they are asked for, so a font with many glyphs costs nothing until
+ * its glyphs are used.
  */
 public class LocaTable extends TrueTypeTable {
     /** if true, the table stores glyphs in long format */
     private boolean isLong;
     
-    /** the offsets themselves */
-    private int offsets[];
+    /** the number of glyphs */
+    private int numGlyphs;
+    
+    /** the offsets themselves, or null if the table has no data */
+    private ByteBuffer offsets;
     
     /** Creates a new instance of HmtxTable */
     protected LocaTable(TrueTypeFont ttf) {
@@ -42,7 +47,7 @@ public class LocaTable extends TrueTypeTable {
         short format = head.getIndexToLocFormat();
         this.isLong = (format == 1);
         
-        this.offsets = new int[numGlyphs + 1]; 
+        this.numGlyphs = numGlyphs;
     }
     
     /** 
@@ -50,14 +55,21 @@ public class LocaTable extends TrueTypeTable {
      * the glyph table
      */
     public int getOffset(int glyphID) {
-        return this.offsets[glyphID];
+        if (this.offsets == null) {
+            return 0;
+        }
+        if (isLongFormat()) {
+            return this.offsets.getInt(glyphID * 4);
+        } else {
+            return 2 * (0xFFFF & this.offsets.getShort(glyphID * 2));
+        }
     }
       
     /** 
      * get the size, in bytes, of the given glyph 
      */
     public int getSize(int glyphID) {
-        return this.offsets[glyphID + 1] - this.offsets[glyphID];
+        return getOffset(glyphID + 1) - getOffset(glyphID);
     }
     
     /**
@@ -77,11 +89,11 @@ public class LocaTable extends TrueTypeTable {
         ByteBuffer buf = ByteBuffer.allocate(size);
         
         // write the offsets
-        for (int i = 0; i < this.offsets.length; i++) {
+        for (int i = 0; i <= this.numGlyphs; i++) {
             if (isLongFormat()) {
-                buf.putInt(this.offsets[i]);
+                buf.putInt(getOffset(i));
             } else {
-                buf.putShort((short) (this.offsets[i] / 2));
+                buf.putShort((short) (getOffset(i) / 2));
             }
         }
         
@@ -94,13 +106,8 @@ public class LocaTable extends TrueTypeTable {
     /** Initialize this structure from a ByteBuffer */
     @Override
 	public void setData(ByteBuffer data) {
-        for (int i = 0; i < this.offsets.length; i++) {
-            if (isLongFormat()) {
-                this.offsets[i] = data.getInt();
-            } else {
-                this.offsets[i] = 2 * ( 0xFFFF & data.getShort());
-            }
-        }
+        // keep the data, the offsets are read when they are needed
+        this.offsets = data.slice();
     }
     
     /**
@@ -109,9 +116,9 @@ public class LocaTable extends TrueTypeTable {
     @Override
 	public int getLength() {
         if (isLongFormat()) {
-            return this.offsets.length * 4;
+            return (this.numGlyphs + 1) * 4;
         } else {
-            return this.offsets.length * 2;
+            return (this.numGlyphs + 1) * 2;
         }
     }
 }
\ No newline at end of file
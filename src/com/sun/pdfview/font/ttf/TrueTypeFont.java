@@ -27,8 +27,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.sun.pdfview.BaseWatchable;
 import com.sun.pdfview.PDFDebugger;
@@ -42,14 +42,13 @@ public class TrueTypeFont {
     private final int type;
     // could be a ByteBuffer or a TrueTypeTable
 
-    private final SortedMap<String, Object> tables;
+    private final ConcurrentNavigableMap<String, Object> tables;
 
     /** Creates a new instance of TrueTypeParser */
     public TrueTypeFont (int type) {
         this.type = type;
 
-        this.tables = Collections.synchronizedSortedMap (
-                new TreeMap<String, Object> ());
+        this.tables = new ConcurrentSkipListMap<String, Object> ();
     }
 
     /**
@@ -122,11 +121,15 @@ public class TrueTypeFont {
 
         if (tableObj instanceof ByteBuffer) {
             // the table has not yet been parsed.  Parse it, and add the
-            // parsed version to the map of tables.
+            // parsed version to the map of tables.  Threads parsing it at
+            // once each read a buffer of their own, and the table added
+            // first is used by all.
             ByteBuffer data = (ByteBuffer) tableObj;
 
-            table = TrueTypeTable.createTable (this, tagString, data);
-            addTable (tagString, table);
+            table = TrueTypeTable.createTable (this, tagString, data.duplicate ());
+            if (!this.tables.replace (tagString, data, table)) {
+                return getTable (tagString);
+            }
         } else {
             table = (TrueTypeTable) tableObj;
         }
@@ -317,16 +320,21 @@ public class TrueTypeFont {
             ByteBuffer tableData = data.slice ();
             tableData.limit (length);
 
-            int calcChecksum = calculateChecksum (tagString, tableData);
-
-            if (calcChecksum == checksum) {
-                ttf.addTable (tagString, tableData);
-            } else {
-                PDFDebugger.debug("Mismatched checksums on table " + tagString + ": " + calcChecksum + " != " + checksum, 200);
-
-                ttf.addTable (tagString, tableData);
-
+            if (PDFDebugger.debuglevel < 200) {
+                // checking the sums reads the whole font, so only do it
+                // when a mismatch would be reported
+                int calcChecksum = calculateChecksum (tagString, tableData);
+
+                if (calcChecksum != checksum) {
+                    PDFDebugger.debug("Mismatched checksums on table " + tagString + ": " + calcChecksum + " != " + checksum, 200);
+                }
+            } else if (tagString.equals ("head") && !tableData.isReadOnly ()) {
+                // the checkSumAdjustment is ignored, as when the sum
+                // is checked
+                tableData.putInt (8, 0);
             }
+
+            ttf.addTable (tagString, tableData);
             data.reset ();
         }
     }
@@ -0,0 +1,403 @@
+package com.sun.pdfview.decode;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.sun.pdfview.PDFObject;
+
+/**
+ * Encodes pages with a reference CCITT encoder and checks CCITTFaxDecode
+ * and CCITTFaxTableDecoder give back the page, and decode the same as
+ * CCITTFaxDecoder.
+ */
+public class CCITTFaxDecodeTest {
+
+	private static final int WIDTH = 1728;
+	private static final int HEIGHT = 300;
+
+	/** the white code words as triplets of code, length in bits and run */
+	private static final int[] WHITE_CODES = {
+			0x035, 8, 0, 0x007, 6, 1, 0x007, 4, 2, 0x008, 4, 3,
+			0x00b, 4, 4, 0x00c, 4, 5, 0x00e, 4, 6, 0x00f, 4, 7,
+			0x013, 5, 8, 0x014, 5, 9, 0x007, 5, 10, 0x008, 5, 11,
+			0x008, 6, 12, 0x003, 6, 13, 0x034, 6, 14, 0x035, 6, 15,
+			0x02a, 6, 16, 0x02b, 6, 17, 0x027, 7, 18, 0x00c, 7, 19,
+			0x008, 7, 20, 0x017, 7, 21, 0x003, 7, 22, 0x004, 7, 23,
+			0x028, 7, 24, 0x02b, 7, 25, 0x013, 7, 26, 0x024, 7, 27,
+			0x018, 7, 28, 0x002, 8, 29, 0x003, 8, 30, 0x01a, 8, 31,
+			0x01b, 8, 32, 0x012, 8, 33, 0x013, 8, 34, 0x014, 8, 35,
+			0x015, 8, 36, 0x016, 8, 37, 0x017, 8, 38, 0x028, 8, 39,
+			0x029, 8, 40, 0x02a, 8, 41, 0x02b, 8, 42, 0x02c, 8, 43,
+			0x02d, 8, 44, 0x004, 8, 45, 0x005, 8, 46, 0x00a, 8, 47,
+			0x00b, 8, 48, 0x052, 8, 49, 0x053, 8, 50, 0x054, 8, 51,
+			0x055, 8, 52, 0x024, 8, 53, 0x025, 8, 54, 0x058, 8, 55,
+			0x059, 8, 56, 0x05a, 8, 57, 0x05b, 8, 58, 0x04a, 8, 59,
+			0x04b, 8, 60, 0x032, 8, 61, 0x033, 8, 62, 0x034, 8, 63,
+			0x01b, 5, 64, 0x012, 5, 128, 0x017, 6, 192, 0x037, 7, 256,
+			0x036, 8, 320, 0x037, 8, 384, 0x064, 8, 448, 0x065, 8, 512,
+			0x068, 8, 576, 0x067, 8, 640, 0x0cc, 9, 704, 0x0cd, 9, 768,
+			0x0d2, 9, 832, 0x0d3, 9, 896, 0x0d4, 9, 960, 0x0d5, 9, 1024,
+			0x0d6, 9, 1088, 0x0d7, 9, 1152, 0x0d8, 9, 1216, 0x0d9, 9, 1280,
+			0x0da, 9, 1344, 0x0db, 9, 1408, 0x098, 9, 1472, 0x099, 9, 1536,
+			0x09a, 9, 1600, 0x018, 6, 1664, 0x09b, 9, 1728, 0x008, 11, 1792,
+			0x00c, 11, 1856, 0x00d, 11, 1920, 0x012, 12, 1984, 0x013, 12, 2048,
+			0x014, 12, 2112, 0x015, 12, 2176, 0x016, 12, 2240, 0x017, 12, 2304,
+			0x01c, 12, 2368, 0x01d, 12, 2432, 0x01e, 12, 2496, 0x01f, 12, 2560 };
+
+	/** the black code words as triplets of code, length in bits and run */
+	private static final int[] BLACK_CODES = {
+			0x037, 10, 0, 0x002, 3, 1, 0x003, 2, 2, 0x002, 2, 3,
+			0x003, 3, 4, 0x003, 4, 5, 0x002, 4, 6, 0x003, 5, 7,
+			0x005, 6, 8, 0x004, 6, 9, 0x004, 7, 10, 0x005, 7, 11,
+			0x007, 7, 12, 0x004, 8, 13, 0x007, 8, 14, 0x018, 9, 15,
+			0x017, 10, 16, 0x018, 10, 17, 0x008, 10, 18, 0x067, 11, 19,
+			0x068, 11, 20, 0x06c, 11, 21, 0x037, 11, 22, 0x028, 11, 23,
+			0x017, 11, 24, 0x018, 11, 25, 0x0ca, 12, 26, 0x0cb, 12, 27,
+			0x0cc, 12, 28, 0x0cd, 12, 29, 0x068, 12, 30, 0x069, 12, 31,
+			0x06a, 12, 32, 0x06b, 12, 33, 0x0d2, 12, 34, 0x0d3, 12, 35,
+			0x0d4, 12, 36, 0x0d5, 12, 37, 0x0d6, 12, 38, 0x0d7, 12, 39,
+			0x06c, 12, 40, 0x06d, 12, 41, 0x0da, 12, 42, 0x0db, 12, 43,
+			0x054, 12, 44, 0x055, 12, 45, 0x056, 12, 46, 0x057, 12, 47,
+			0x064, 12, 48, 0x065, 12, 49, 0x052, 12, 50, 0x053, 12, 51,
+			0x024, 12, 52, 0x037, 12, 53, 0x038, 12, 54, 0x027, 12, 55,
+			0x028, 12, 56, 0x058, 12, 57, 0x059, 12, 58, 0x02b, 12, 59,
+			0x02c, 12, 60, 0x05a, 12, 61, 0x066, 12, 62, 0x067, 12, 63,
+			0x00f, 10, 64, 0x0c8, 12, 128, 0x0c9, 12, 192, 0x05b, 12, 256,
+			0x033, 12, 320, 0x034, 12, 384, 0x035, 12, 448, 0x06c, 13, 512,
+			0x06d, 13, 576, 0x04a, 13, 640, 0x04b, 13, 704, 0x04c, 13, 768,
+			0x04d, 13, 832, 0x072, 13, 896, 0x073, 13, 960, 0x074, 13, 1024,
+			0x075, 13, 1088, 0x076, 13, 1152, 0x077, 13, 1216, 0x052, 13, 1280,
+			0x053, 13, 1344, 0x054, 13, 1408, 0x055, 13, 1472, 0x05a, 13, 1536,
+			0x05b, 13, 1600, 0x064, 13, 1664, 0x065, 13, 1728, 0x008, 11, 1792,
+			0x00c, 11, 1856, 0x00d, 11, 1920, 0x012, 12, 1984, 0x013, 12, 2048,
+			0x014, 12, 2112, 0x015, 12, 2176, 0x016, 12, 2240, 0x017, 12, 2304,
+			0x01c, 12, 2368, 0x01d, 12, 2432, 0x01e, 12, 2496, 0x01f, 12, 2560 };
+
+	/** the vertical mode codes for a1 - b1 from -3 to 3 */
+	private static final int[] VERTICAL_CODES = {
+			0x02, 7, 0x02, 6, 0x2, 3, 0x1, 1, 0x3, 3, 0x03, 6, 0x03, 7 };
+
+	/**
+	 * Writes code words MSB first, and remembers where each row starts.
+	 */
+	private static class BitWriter {
+		private byte[] data = new byte[1024];
+		private int bits;
+		int[] rowStarts;
+
+		BitWriter(int rows) {
+			this.rowStarts = new int[rows + 1];
+		}
+
+		void write(int code, int length) {
+			for (int i = length - 1; i >= 0; i--) {
+				if ((this.bits >> 3) == this.data.length) {
+					this.data = Arrays.copyOf(this.data, this.data.length * 2);
+				}
+				if (((code >> i) & 1) != 0) {
+					this.data[this.bits >> 3] |= 0x80 >>> (this.bits & 7);
+				}
+				this.bits++;
+			}
+		}
+
+		void align() {
+			this.bits = (this.bits + 7) & ~7;
+		}
+
+		void eol(boolean fillBits) {
+			if (fillBits) {
+				// so the EOL ends on a byte boundary
+				while (((this.bits + 12) & 7) != 0) {
+					write(0, 1);
+				}
+			}
+			write(1, 12);
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.data, (this.bits + 7) >> 3);
+		}
+	}
+
+	private static void writeRun(BitWriter out, int run, boolean white) {
+		int[] codes = white ? WHITE_CODES : BLACK_CODES;
+		while (run >= 0) {
+			int piece = run >= 2560 ? 2560 : run >= 64 ? run & ~63 : run;
+			for (int i = 0; i < codes.length; i += 3) {
+				if (codes[i + 2] == piece) {
+					out.write(codes[i], codes[i + 1]);
+					break;
+				}
+			}
+			if (piece < 64) {
+				return;
+			}
+			run -= piece;
+		}
+	}
+
+	/**
+	 * The first changing element after the given position, or the width.
+	 */
+	private static int nextChange(boolean[] row, int from) {
+		if (from + 1 >= row.length) {
+			return row.length;
+		}
+		int x = Math.max(from + 1, 0);
+		boolean previous = x > 0 && row[x - 1];
+		while (x < row.length && row[x] == previous) {
+			x++;
+		}
+		return x;
+	}
+
+	private static void encode1D(BitWriter out, boolean[] row) {
+		int a0 = 0;
+		boolean white = true;
+		while (a0 < row.length) {
+			int a1 = a0;
+			while (a1 < row.length && row[a1] == !white) {
+				a1++;
+			}
+			writeRun(out, a1 - a0, white);
+			a0 = a1;
+			white = !white;
+		}
+	}
+
+	private static void encode2D(BitWriter out, boolean[] row, boolean[] reference) {
+		int w = row.length;
+		int a0 = -1;
+		boolean white = true;
+		while (a0 < w) {
+			int a1 = nextChange(row, a0);
+			int a2 = nextChange(row, a1);
+			// b1 is the first change on the reference line to the colour
+			// opposite to the one of a0
+			int b1 = nextChange(reference, a0);
+			if (b1 < w && reference[b1] == !white) {
+				b1 = nextChange(reference, b1);
+			}
+			int b2 = nextChange(reference, b1);
+			if (b2 < a1) {
+				// pass
+				out.write(0x1, 4);
+				a0 = b2;
+			} else if (Math.abs(a1 - b1) <= 3) {
+				int i = (a1 - b1 + 3) * 2;
+				out.write(VERTICAL_CODES[i], VERTICAL_CODES[i + 1]);
+				a0 = a1;
+				white = !white;
+			} else {
+				out.write(0x1, 3);
+				writeRun(out, a1 - Math.max(a0, 0), white);
+				writeRun(out, a2 - a1, !white);
+				a0 = a2;
+			}
+		}
+	}
+
+	/**
+	 * Encode a page as the CCITTFaxDecode parameters describe it.
+	 *
+	 * @param k as the K parameter: 0 for 1D, above for mixed 1D and 2D
+	 *        coded rows and below for G4
+	 * @param eol whether to start each row with an EOL
+	 * @param fillBits whether the EOLs end on a byte boundary
+	 * @param align whether rows start on a byte boundary
+	 */
+	private static BitWriter encode(boolean[][] page, int k, boolean eol, boolean fillBits, boolean align) {
+		BitWriter out = new BitWriter(page.length);
+		boolean[] reference = new boolean[page[0].length];
+		for (int r = 0; r < page.length; r++) {
+			out.rowStarts[r] = out.bits;
+			if (k > 0) {
+				out.eol(fillBits);
+				boolean oneD = r % k == 0;
+				out.write(oneD ? 1 : 0, 1);
+				if (oneD) {
+					encode1D(out, page[r]);
+				} else {
+					encode2D(out, page[r], reference);
+				}
+			} else if (k == 0) {
+				if (eol) {
+					out.eol(fillBits);
+				}
+				encode1D(out, page[r]);
+			} else {
+				encode2D(out, page[r], reference);
+			}
+			if (align) {
+				out.align();
+			}
+			reference = page[r];
+		}
+		out.rowStarts[page.length] = out.bits;
+		return out;
+	}
+
+	/**
+	 * A page of rules, boxes and speckles; mostly white with short black
+	 * runs, like a faxed letter.
+	 */
+	private static boolean[][] createPage(int width, int height, long seed) {
+		boolean[][] page = new boolean[height][width];
+		Random random = new Random(seed);
+		for (int x = 50; x < width - 50; x++) {
+			page[20][x] = page[21][x] = true;
+		}
+		for (int i = 0; i < 300; i++) {
+			int x = random.nextInt(width - 20);
+			int y = 30 + random.nextInt(height - 50);
+			int w = 1 + random.nextInt(14);
+			int h = 1 + random.nextInt(12);
+			for (int dy = 0; dy < h; dy++) {
+				// slanted boxes, so rows change by more than vertical mode covers
+				int shift = dy * random.nextInt(3);
+				for (int dx = 0; dx < w && x + dx + shift < width; dx++) {
+					page[y + dy][x + dx + shift] = true;
+				}
+			}
+		}
+		// a black row and one starting and ending black
+		Arrays.fill(page[height - 3], true);
+		for (int x = 0; x < width; x += 4) {
+			page[height - 2][x] = true;
+		}
+		page[height - 2][width - 1] = true;
+		return page;
+	}
+
+	private static byte[] pack(boolean[][] page, int rows, boolean blackIs1) {
+		int width = page[0].length;
+		int stride = (width + 7) >> 3;
+		byte[] out = new byte[page.length * stride];
+		for (int r = 0; r < page.length; r++) {
+			for (int x = 0; x < stride * 8; x++) {
+				// padding and rows past the given ones are white
+				boolean black = r < rows && x < width && page[r][x];
+				if (black == blackIs1) {
+					out[r * stride + (x >> 3)] |= 0x80 >>> (x & 7);
+				}
+			}
+		}
+		return out;
+	}
+
+	private static byte[] decodeFilter(byte[] data, int width, int height, int k,
+			boolean align, boolean blackIs1) throws IOException {
+		HashMap<String, PDFObject> params = new HashMap<String, PDFObject>();
+		params.put("K", new PDFObject(Double.valueOf(k)));
+		params.put("Columns", new PDFObject(Double.valueOf(width)));
+		params.put("Rows", new PDFObject(Double.valueOf(height)));
+		params.put("EncodedByteAlign", new PDFObject(Boolean.valueOf(align)));
+		params.put("BlackIs1", new PDFObject(Boolean.valueOf(blackIs1)));
+		HashMap<String, PDFObject> dict = new HashMap<String, PDFObject>();
+		dict.put("Width", new PDFObject(Double.valueOf(width)));
+		dict.put("Height", new PDFObject(Double.valueOf(height)));
+		dict.put("DecodeParms", new PDFObject(params));
+		return CCITTFaxDecode.decode(new PDFObject(dict), data);
+	}
+
+	/**
+	 * Decode with CCITTFaxDecoder, inverted if black is 0 as
+	 * CCITTFaxDecode used to do.
+	 */
+	private static byte[] decodeOld(byte[] data, int width, int height, int k,
+			boolean align, boolean blackIs1) {
+		byte[] out = new byte[height * ((width + 7) >> 3)];
+		CCITTFaxDecoder decoder = new CCITTFaxDecoder(1, width, height);
+		decoder.setAlign(align);
+		if (k == 0) {
+			decoder.decodeT41D(out, data, 0, height);
+		} else if (k > 0) {
+			decoder.decodeT42D(out, data, 0, height);
+		} else {
+			decoder.decodeT6(out, data, 0, height);
+		}
+		if (!blackIs1) {
+			for (int i = 0; i < out.length; i++) {
+				out[i] = (byte) ~out[i];
+			}
+		}
+		return out;
+	}
+
+	private void check(int width, int k, boolean eol, boolean fillBits, boolean align) throws IOException {
+		boolean[][] page = createPage(width, HEIGHT, width + k);
+		byte[] data = encode(page, k, eol, fillBits, align).toByteArray();
+		for (int i = 0; i < 2; i++) {
+			boolean blackIs1 = i == 0;
+			byte[] expected = pack(page, HEIGHT, blackIs1);
+			assertArrayEquals(expected, decodeFilter(data, width, HEIGHT, k, align, blackIs1));
+			assertArrayEquals(expected, decodeOld(data, width, HEIGHT, k, align, blackIs1));
+		}
+	}
+
+	@Test
+	public void testG31D() throws IOException {
+		check(WIDTH, 0, false, false, false);
+		check(WIDTH, 0, true, false, false);
+		check(203, 0, false, false, false);
+		check(2900, 0, false, false, false);
+	}
+
+	@Test
+	public void testG32D() throws IOException {
+		check(WIDTH, 2, true, false, false);
+		check(WIDTH, 4, true, true, false);
+		check(203, 3, true, false, false);
+	}
+
+	@Test
+	public void testG4() throws IOException {
+		check(WIDTH, -1, false, false, false);
+		check(203, -1, false, false, false);
+		check(2900, -1, false, false, false);
+	}
+
+	@Test
+	public void testEncodedByteAlign() throws IOException {
+		check(WIDTH, 0, false, false, true);
+		check(203, 0, true, false, true);
+		check(WIDTH, -1, false, false, true);
+		check(203, -1, false, false, true);
+	}
+
+	private void checkTruncated(int k) throws IOException {
+		boolean[][] page = createPage(WIDTH, HEIGHT, 1);
+		BitWriter out = encode(page, k, false, false, false);
+		byte[] data = out.toByteArray();
+		byte[] truncated = Arrays.copyOf(data, data.length / 2);
+		// the rows which are complete in the truncated data
+		int rows = 0;
+		while (out.rowStarts[rows + 1] <= truncated.length * 8) {
+			rows++;
+		}
+		int stride = (WIDTH + 7) >> 3;
+		for (int i = 0; i < 2; i++) {
+			boolean blackIs1 = i == 0;
+			byte[] expected = pack(page, rows, blackIs1);
+			byte[] decoded = decodeFilter(truncated, WIDTH, HEIGHT, k, false, blackIs1);
+			// the row cut in half may be anything
+			Arrays.fill(decoded, rows * stride, (rows + 1) * stride, (byte) 0);
+			Arrays.fill(expected, rows * stride, (rows + 1) * stride, (byte) 0);
+			assertArrayEquals(expected, decoded);
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		checkTruncated(0);
+		checkTruncated(2);
+		checkTruncated(-1);
+	}
+}
@@ -0,0 +1,268 @@
+package com.sun.pdfview.decode;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import com.sun.pdfview.PDFObject;
+
+public class PredictorTest {
+
+	/** more rows than fit in the row buffers of FlateDecode and the predictor stream */
+	private static final int ROWS = 150;
+
+	private static PDFObject params(int predictor, int colors, int bpc, int columns) throws IOException {
+		HashMap<String, PDFObject> map = new HashMap<String, PDFObject>();
+		map.put("Predictor", new PDFObject(Double.valueOf(predictor)));
+		map.put("Colors", new PDFObject(Double.valueOf(colors)));
+		map.put("BitsPerComponent", new PDFObject(Double.valueOf(bpc)));
+		map.put("Columns", new PDFObject(Double.valueOf(columns)));
+		return new PDFObject(map);
+	}
+
+	private static PDFObject emptyDict() throws IOException {
+		return new PDFObject(new HashMap<String, PDFObject>());
+	}
+
+	private static byte[] randomRows(int rows, int rowSize, long seed) {
+		byte[] data = new byte[rows * rowSize];
+		Random random = new Random(seed);
+		// smooth data, so the filters have something to predict
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 251 + random.nextInt(8));
+		}
+		return data;
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buf);
+			out.write(buf, 0, n);
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream in, int chunk) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[chunk];
+		int n;
+		while ((n = in.read(buf)) >= 0) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] toArray(ByteBuffer buf) {
+		byte[] data = new byte[buf.remaining()];
+		buf.get(data);
+		return data;
+	}
+
+	private static int paeth(int left, int up, int upLeft) {
+		int p = left + up - upLeft;
+		int pa = Math.abs(p - left);
+		int pb = Math.abs(p - up);
+		int pc = Math.abs(p - upLeft);
+		if (pa <= pb && pa <= pc) {
+			return left;
+		} else if (pb <= pc) {
+			return up;
+		}
+		return upLeft;
+	}
+
+	/**
+	 * PNG encode rows, with the filter type of each row taken from the
+	 * given types in turn.
+	 */
+	private static byte[] pngEncode(byte[] data, int rowSize, int bpp, int[] types) {
+		int rows = data.length / rowSize;
+		byte[] out = new byte[rows * (rowSize + 1)];
+		for (int r = 0; r < rows; r++) {
+			int type = types[r % types.length];
+			int pos = r * rowSize;
+			int outPos = r * (rowSize + 1);
+			out[outPos++] = (byte) type;
+			for (int i = 0; i < rowSize; i++) {
+				int cur = data[pos + i] & 0xff;
+				int left = i >= bpp ? data[pos + i - bpp] & 0xff : 0;
+				int up = r > 0 ? data[pos + i - rowSize] & 0xff : 0;
+				int upLeft = r > 0 && i >= bpp ? data[pos + i - rowSize - bpp] & 0xff : 0;
+				int pred;
+				switch (type) {
+					case 1: pred = left; break;
+					case 2: pred = up; break;
+					case 3: pred = (left + up) >> 1; break;
+					case 4: pred = paeth(left, up, upLeft); break;
+					default: pred = 0; break;
+				}
+				out[outPos + i] = (byte) (cur - pred);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * TIFF Predictor 2 encode rows, component by component, for any
+	 * bits per component.
+	 */
+	private static byte[] tiffEncode(byte[] data, int colors, int bpc, int columns) {
+		int rowSize = (colors * bpc * columns + 7) / 8;
+		byte[] out = data.clone();
+		int mask = (1 << bpc) - 1;
+		for (int pos = 0; pos < data.length; pos += rowSize) {
+			for (int x = columns - 1; x > 0; x--) {
+				for (int c = 0; c < colors; c++) {
+					int cur = getSample(data, pos, (x * colors + c), bpc);
+					int prev = getSample(data, pos, ((x - 1) * colors + c), bpc);
+					setSample(out, pos, (x * colors + c), bpc, (cur - prev) & mask);
+				}
+			}
+		}
+		return out;
+	}
+
+	private static int getSample(byte[] data, int pos, int index, int bpc) {
+		if (bpc == 16) {
+			return ((data[pos + 2 * index] & 0xff) << 8) | (data[pos + 2 * index + 1] & 0xff);
+		}
+		int bit = index * bpc;
+		int shift = 8 - bpc - (bit & 7);
+		return (data[pos + (bit >> 3)] >> shift) & ((1 << bpc) - 1);
+	}
+
+	private static void setSample(byte[] data, int pos, int index, int bpc, int value) {
+		if (bpc == 16) {
+			data[pos + 2 * index] = (byte) (value >> 8);
+			data[pos + 2 * index + 1] = (byte) value;
+			return;
+		}
+		int bit = index * bpc;
+		int shift = 8 - bpc - (bit & 7);
+		int mask = ((1 << bpc) - 1) << shift;
+		int b = data[pos + (bit >> 3)];
+		data[pos + (bit >> 3)] = (byte) ((b & ~mask) | ((value << shift) & mask));
+	}
+
+	private void checkPNG(int colors, int bpc, int columns, int[] types) throws IOException {
+		PDFObject params = params(15, colors, bpc, columns);
+		Predictor predictor = Predictor.getPredictor(params);
+		int rowSize = predictor.getRowSize();
+		byte[] data = randomRows(ROWS, rowSize, columns);
+		byte[] encoded = pngEncode(data, rowSize, predictor.getBytesPerPixel(), types);
+		byte[] deflated = deflate(encoded);
+
+		assertArrayEquals(data, toArray(predictor.unpredict(ByteBuffer.wrap(encoded))));
+
+		// inflated into the row buffer from an array and a chunked direct buffer
+		assertArrayEquals(data, toArray(FlateDecode.decode(emptyDict(), ByteBuffer.wrap(deflated), params)));
+		ByteBuffer direct = ByteBuffer.allocateDirect(deflated.length);
+		direct.put(deflated);
+		direct.flip();
+		assertArrayEquals(data, toArray(FlateDecode.decode(emptyDict(), direct, params)));
+
+		// streamed, read in pieces which don't line up with the rows
+		InputStream in = FlateDecode.openStream(emptyDict(), new ByteArrayInputStream(deflated), params);
+		assertArrayEquals(data, readAll(in, 1000));
+		in = Predictor.getPredictor(params).unpredict(new ByteArrayInputStream(encoded));
+		assertArrayEquals(data, readAll(in, 7));
+	}
+
+	@Test
+	public void testPNGEachFilter() throws IOException {
+		for (int type = 0; type <= 4; type++) {
+			// rows large enough for the row buffers to hold only a few
+			checkPNG(3, 8, 1500, new int[] {type});
+			checkPNG(1, 8, 333, new int[] {type});
+		}
+	}
+
+	@Test
+	public void testPNGMixedFilters() throws IOException {
+		int[] types = {0, 1, 2, 3, 4, 4, 3, 2, 1};
+		checkPNG(3, 8, 1500, types);
+		checkPNG(4, 8, 1023, types);
+		checkPNG(1, 16, 517, types);
+		checkPNG(1, 1, 1001, types);
+		checkPNG(3, 4, 77, types);
+	}
+
+	private void checkTIFF(int colors, int bpc, int columns) throws IOException {
+		PDFObject params = params(2, colors, bpc, columns);
+		Predictor predictor = Predictor.getPredictor(params);
+		int rowSize = predictor.getRowSize();
+		assertEquals((colors * bpc * columns + 7) / 8, rowSize);
+		byte[] data = randomRows(ROWS, rowSize, columns);
+		// the padding bits at the end of a row are not predicted
+		int used = colors * bpc * columns;
+		if (used % 8 != 0) {
+			int mask = (0xff << (8 - used % 8)) & 0xff;
+			for (int pos = rowSize - 1; pos < data.length; pos += rowSize) {
+				data[pos] &= mask;
+			}
+		}
+		byte[] encoded = tiffEncode(data, colors, bpc, columns);
+
+		byte[] out = new byte[data.length];
+		assertEquals(data.length, predictor.unpredict(encoded, 0, ROWS, out, 0));
+		assertArrayEquals(data, out);
+		assertArrayEquals(data, toArray(predictor.unpredict(ByteBuffer.wrap(encoded))));
+		assertArrayEquals(data, toArray(FlateDecode.decode(emptyDict(), ByteBuffer.wrap(deflate(encoded)), params)));
+		InputStream in = Predictor.getPredictor(params).unpredict(new ByteArrayInputStream(encoded));
+		assertArrayEquals(data, readAll(in, 100));
+	}
+
+	@Test
+	public void testTIFFSubByte() throws IOException {
+		for (int bpc = 1; bpc <= 4; bpc *= 2) {
+			checkTIFF(1, bpc, 1);
+			checkTIFF(1, bpc, 13);
+			checkTIFF(3, bpc, 13);
+			checkTIFF(4, bpc, 200);
+		}
+	}
+
+	@Test
+	public void testTIFF8And16Bit() throws IOException {
+		checkTIFF(1, 8, 101);
+		checkTIFF(3, 8, 101);
+		checkTIFF(1, 16, 101);
+		checkTIFF(3, 16, 101);
+		checkTIFF(4, 16, 7);
+	}
+
+	@Test
+	public void testTruncatedLastRow() throws IOException {
+		PDFObject params = params(12, 3, 8, 1500);
+		Predictor predictor = Predictor.getPredictor(params);
+		int rowSize = predictor.getRowSize();
+		byte[] data = randomRows(ROWS, rowSize, 1);
+		byte[] encoded = pngEncode(data, rowSize, predictor.getBytesPerPixel(), new int[] {2});
+		// cut the last row in half
+		byte[] truncated = Arrays.copyOf(encoded, encoded.length - rowSize / 2);
+		byte[] expected = Arrays.copyOf(data, data.length - rowSize);
+
+		assertArrayEquals(expected, toArray(predictor.unpredict(ByteBuffer.wrap(truncated))));
+		assertArrayEquals(expected, toArray(FlateDecode.decode(emptyDict(), ByteBuffer.wrap(deflate(truncated)), params)));
+		InputStream in = FlateDecode.openStream(emptyDict(), new ByteArrayInputStream(deflate(truncated)), params);
+		assertArrayEquals(expected, readAll(in, 4096));
+		in = Predictor.getPredictor(params).unpredict(new ByteArrayInputStream(truncated));
+		assertArrayEquals(expected, readAll(in, 4096));
+	}
+}
@@ -0,0 +1,104 @@
+package test.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.sun.pdfview.PDFFile;
+
+/**
+ * Small helpers shared by the hand rolled benchmarks in this package.
+ * The benchmarks are plain main() programs, run them with the built
+ * classes and the jbig2 jar on the class path, e.g.
+ * <pre>
+ * java -cp target/classes:target/test-classes:stdclasses/unpublic/jbig2.jar test.benchmark.DereferenceBenchmark big.pdf
+ * </pre>
+ */
+public class BenchmarkSupport {
+
+	/** number of untimed rounds run before measuring */
+	public static final int WARMUP_ROUNDS = 3;
+	/** number of measured rounds */
+	public static final int MEASURE_ROUNDS = 5;
+
+	/**
+	 * Map a file into memory the same way the viewer does.
+	 */
+	public static ByteBuffer map(String fileName) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(new File(fileName), "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Open a fresh PDFFile, so no object or page is cached yet.
+	 */
+	public static PDFFile open(ByteBuffer data) throws IOException {
+		return new PDFFile(data.duplicate());
+	}
+
+	/**
+	 * Print a single result line.
+	 */
+	public static void report(String name, long nanos, long operations, String unit) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-40s %10.1f %s/s  (%d in %.3f s)",
+				name, operations / seconds, unit, operations, seconds));
+	}
+
+	/**
+	 * Used heap after a (best effort) garbage collection.
+	 */
+	public static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * Bytes allocated so far by the current thread, or -1 if the VM can't
+	 * tell. Comparing two readings gives the allocation of the code in
+	 * between, similar to what a gc profiler reports.
+	 */
+	public static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Print the allocation per operation measured with allocatedBytes().
+	 */
+	public static void reportAllocation(String name, long bytes, long nanos, long operations, String unit) {
+		if (bytes < 0) {
+			return;
+		}
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-40s %10.1f B/%s  (%.1f MB/s)",
+				name, (double) bytes / operations, unit, bytes / seconds / (1024 * 1024)));
+	}
+
+	/**
+	 * Fail with a usage message if no file has been passed.
+	 */
+	public static String fileArgument(String[] args, Class<?> benchmark) {
+		if (args.length < 1) {
+			System.err.println("usage: java " + benchmark.getName() + " <file.pdf>");
+			System.exit(1);
+		}
+		return args[0];
+	}
+}
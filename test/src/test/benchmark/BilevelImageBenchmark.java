@@ -0,0 +1,165 @@
+package test.benchmark;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import com.sun.pdfview.Configuration;
+import com.sun.pdfview.ImageInfo;
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPage;
+import com.sun.pdfview.PDFRenderer;
+
+/**
+ * Renders a page showing a black and white A4 scan at 300 dpi, a 1 bit
+ * DeviceGray Flate image in a file built in memory, at 150 dpi. Runs once
+ * with the scan expanded to gray and once with it kept packed at one bit
+ * per pixel, and reports the pages per second, the bytes allocated per
+ * page and the size of the image kept for drawing it again. Checks both ways draw the same
+ * pixels. Blur resizing is switched off, as it makes a copy of the image
+ * either way.
+ */
+public class BilevelImageBenchmark {
+
+	private static final int PAGES = 20;
+	private static final int WIDTH = 2480;
+	private static final int HEIGHT = 3508;
+
+	public static void main(String[] args) throws Exception {
+		ByteBuffer data = ByteBuffer.wrap(createFile(deflate(createScan())));
+		Configuration config = Configuration.getInstance();
+		boolean packed = config.isKeepBilevelImagesPacked();
+		boolean blur = config.isUseBlurResizingForImages();
+		config.setUseBlurResizingForImages(false);
+		try {
+			int[] gray = run("expanded to gray", data, false);
+			int[] binary = run("kept packed", data, true);
+			if (!Arrays.equals(gray, binary)) {
+				throw new IllegalStateException("the packed image is drawn differently");
+			}
+		} finally {
+			config.setKeepBilevelImagesPacked(packed);
+			config.setUseBlurResizingForImages(blur);
+		}
+	}
+
+	private static int[] run(String name, ByteBuffer data, boolean packed) throws Exception {
+		Configuration.getInstance().setKeepBilevelImagesPacked(packed);
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			render(BenchmarkSupport.open(data));
+		}
+		long allocated = BenchmarkSupport.allocatedBytes();
+		long start = System.nanoTime();
+		BufferedImage page = null;
+		PDFFile file = null;
+		for (int i = 0; i < PAGES; i++) {
+			file = BenchmarkSupport.open(data);
+			page = render(file);
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+
+		BenchmarkSupport.report(name, nanos, PAGES, "pages");
+		BenchmarkSupport.reportAllocation(name, allocated, nanos, PAGES, "page");
+		System.out.println(String.format("%-40s %10d bytes kept in the image cache", name,
+				file.getImageCache().getWeight()));
+		return page.getRGB(0, 0, page.getWidth(), page.getHeight(), null, 0, page.getWidth());
+	}
+
+	/**
+	 * Render the page on this thread, so its allocation is counted.
+	 */
+	private static BufferedImage render(PDFFile file) throws Exception {
+		PDFPage page = file.getPage(1, true);
+		BufferedImage image = new BufferedImage(WIDTH / 2, HEIGHT / 2, BufferedImage.TYPE_INT_ARGB);
+		PDFRenderer renderer = new PDFRenderer(page, new ImageInfo(image.getWidth(), image.getHeight(), null), image);
+		renderer.go(true);
+		return image;
+	}
+
+	/**
+	 * A one page file with the scan drawn over all of an A4 page.
+	 */
+	private static byte[] createFile(byte[] scan) throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		objects.add("<< /Type /Pages /Kids [3 0 R] /Count 1 >>".getBytes());
+		objects.add(("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+				+ "/Resources << /XObject << /Scan 4 0 R >> >> /Contents 5 0 R >>").getBytes());
+		objects.add(createStream(scan, "/Type /XObject /Subtype /Image /Width " + WIDTH + " /Height " + HEIGHT
+				+ " /ColorSpace /DeviceGray /BitsPerComponent 1 /Filter /FlateDecode"));
+		objects.add(createStream("q 595 0 0 842 0 0 cm /Scan Do Q\n".getBytes(), ""));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createStream(byte[] data, String entries) throws Exception {
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+		object.write(("<< " + entries + " /Length " + data.length + " >>\nstream\n").getBytes());
+		object.write(data);
+		object.write("\nendstream".getBytes());
+		return object.toByteArray();
+	}
+
+	/**
+	 * Lines of random words, packed a bit per pixel with white as 1, the
+	 * same as in DeviceGray.
+	 */
+	private static byte[] createScan() {
+		BufferedImage scan = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D g = scan.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.setColor(Color.BLACK);
+		g.setFont(new Font("Serif", Font.PLAIN, 42));
+		Random random = new Random(42);
+		for (int y = 300; y < HEIGHT - 300; y += 60) {
+			StringBuilder line = new StringBuilder();
+			while (line.length() < 90) {
+				int length = 2 + random.nextInt(8);
+				for (int i = 0; i < length; i++) {
+					line.append((char) ('a' + random.nextInt(26)));
+				}
+				line.append(' ');
+			}
+			g.drawString(line.toString(), 250, y);
+		}
+		g.dispose();
+		return ((DataBufferByte) scan.getRaster().getDataBuffer()).getData();
+	}
+
+	private static byte[] deflate(byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		deflater.write(data);
+		deflater.close();
+		return out.toByteArray();
+	}
+}
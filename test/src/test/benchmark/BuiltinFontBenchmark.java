@@ -0,0 +1,140 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.sun.pdfview.ImageInfo;
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPage;
+import com.sun.pdfview.PDFRenderer;
+
+/**
+ * Opens a one page invoice set in the base fonts Helvetica, Helvetica-Bold,
+ * Times-Roman and Courier, none of them embedded, and renders its page at
+ * 72 dpi, the way a batch run opens document after document. The file is
+ * built in memory. Reports the latency of the first document, which reads
+ * the fonts, and then the documents per second of fresh PDFFiles opened
+ * after it. Run it in a fresh VM, as the first document is only cold once.
+ * Checks every document draws the same pixels as the first.
+ */
+public class BuiltinFontBenchmark {
+
+	private static final int DOCUMENTS = 200;
+	private static final int WIDTH = 612;
+	private static final int HEIGHT = 792;
+
+	public static void main(String[] args) throws Exception {
+		ByteBuffer data = ByteBuffer.wrap(createFile());
+
+		long start = System.nanoTime();
+		int[] first = render(BenchmarkSupport.open(data));
+		long nanos = System.nanoTime() - start;
+		System.out.println(String.format("%-40s %10.1f ms", "first document", nanos / 1e6));
+
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			render(BenchmarkSupport.open(data));
+		}
+		long allocated = BenchmarkSupport.allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			if (!Arrays.equals(first, render(BenchmarkSupport.open(data)))) {
+				throw new IllegalStateException("document " + i + " is drawn differently");
+			}
+		}
+		nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+		BenchmarkSupport.report("following documents", nanos, DOCUMENTS, "documents");
+		BenchmarkSupport.reportAllocation("following documents", allocated, nanos, DOCUMENTS, "document");
+	}
+
+	/**
+	 * Render the first page on this thread and return its pixels.
+	 */
+	private static int[] render(PDFFile file) throws Exception {
+		PDFPage page = file.getPage(1, true);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		PDFRenderer renderer = new PDFRenderer(page, new ImageInfo(WIDTH, HEIGHT, null), image);
+		renderer.go(true);
+		return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+	}
+
+	/**
+	 * A one page file with a heading, address lines, a table of invoice
+	 * lines and a footer.
+	 */
+	private static byte[] createFile() throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		objects.add("<< /Type /Pages /Kids [3 0 R] /Count 1 >>".getBytes());
+		objects.add(("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Resources << /Font << "
+				+ "/F1 4 0 R /F2 5 0 R /F3 6 0 R /F4 7 0 R >> >> /Contents 8 0 R >>").getBytes());
+		objects.add(createFont("Helvetica"));
+		objects.add(createFont("Helvetica-Bold"));
+		objects.add(createFont("Times-Roman"));
+		objects.add(createFont("Courier"));
+		objects.add(createStream(createContent().getBytes()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createFont(String name) {
+		return ("<< /Type /Font /Subtype /Type1 /BaseFont /" + name + " /Encoding /WinAnsiEncoding >>").getBytes();
+	}
+
+	private static byte[] createStream(byte[] data) throws Exception {
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+		object.write(("<< /Length " + data.length + " >>\nstream\n").getBytes());
+		object.write(data);
+		object.write("\nendstream".getBytes());
+		return object.toByteArray();
+	}
+
+	private static String createContent() {
+		StringBuilder content = new StringBuilder();
+		content.append("BT /F2 20 Tf 50 740 Td (INVOICE 2024-00417) Tj ET\n");
+		content.append("BT /F1 10 Tf 12 TL 50 710 Td (Acme Widgets Ltd.) Tj T* (12 Harbour Road) Tj T* ")
+				.append("(Portsmouth PO1 3AX) Tj T* (United Kingdom) Tj ET\n");
+		content.append("BT /F2 10 Tf 50 640 Td (Item) Tj 300 0 Td (Qty) Tj 80 0 Td (Amount) Tj ET\n");
+		Random random = new Random(42);
+		int y = 620;
+		for (int i = 0; i < 30; i++, y -= 16) {
+			StringBuilder item = new StringBuilder();
+			while (item.length() < 40) {
+				int length = 3 + random.nextInt(7);
+				item.append((char) ('A' + random.nextInt(26)));
+				for (int j = 1; j < length; j++) {
+					item.append((char) ('a' + random.nextInt(26)));
+				}
+				item.append(' ');
+			}
+			content.append("BT /F3 10 Tf 50 ").append(y).append(" Td (").append(item).append(") Tj ");
+			content.append("/F4 10 Tf 300 0 Td (").append(1 + random.nextInt(99)).append(") Tj ");
+			content.append("80 0 Td (").append(random.nextInt(100000) / 100.0).append(" EUR) Tj ET\n");
+		}
+		content.append("BT /F1 8 Tf 50 60 Td (Payable within 30 days. Thank you for your business!) Tj ET\n");
+		return content.toString();
+	}
+}
@@ -0,0 +1,215 @@
+package test.benchmark;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.sun.pdfview.decode.CCITTFaxDecoder;
+import com.sun.pdfview.decode.CCITTFaxTableDecoder;
+
+/**
+ * Decodes fax pages with CCITTFaxDecoder followed by the BlackIs1
+ * inversion CCITTFaxDecode used to apply, and with CCITTFaxTableDecoder
+ * which paints the runs in the right polarity directly. The pages are
+ * lines of text on a standard 1728 pixel wide fax page, rendered in
+ * memory and compressed as G4 (T.6) and G3 (T.4 1D) with the TIFF writer
+ * of ImageIO, so this needs a VM that ships one. Reports pages per second;
+ * that the decoders give back the page is checked by CCITTFaxDecodeTest.
+ */
+public class CCITTFaxBenchmark {
+
+	private static final int PAGES = 4;
+	private static final int ROUNDS = 10;
+	private static final int WIDTH = 1728;
+	private static final int HEIGHT = 2200;
+	private static final String TIFF_METADATA = "javax_imageio_tiff_image_1.0";
+
+	public static void main(String[] args) throws Exception {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+		if (!writers.hasNext()) {
+			System.err.println("no TIFF writer available to encode the pages");
+			System.exit(1);
+		}
+		ImageWriter writer = writers.next();
+		byte[][] g4 = new byte[PAGES][];
+		byte[][] g3 = new byte[PAGES][];
+		for (int i = 0; i < PAGES; i++) {
+			BufferedImage page = createPage(i);
+			g4[i] = encode(writer, page, "CCITT T.6");
+			g3[i] = encode(writer, page, "CCITT T.4");
+		}
+		run("G4", g4, -1);
+		run("G3", g3, 0);
+	}
+
+	private static void run(String name, byte[][] pages, int k) {
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			decodeAll(pages, k, false);
+			decodeAll(pages, k, true);
+		}
+		long old = 0;
+		long table = 0;
+		for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+			long start = System.nanoTime();
+			decodeAll(pages, k, false);
+			old += System.nanoTime() - start;
+			start = System.nanoTime();
+			decodeAll(pages, k, true);
+			table += System.nanoTime() - start;
+		}
+		long operations = (long) pages.length * ROUNDS * BenchmarkSupport.MEASURE_ROUNDS;
+		BenchmarkSupport.report(name + ", CCITTFaxDecoder", old, operations, "pages");
+		BenchmarkSupport.report(name + ", CCITTFaxTableDecoder", table, operations, "pages");
+	}
+
+	private static void decodeAll(byte[][] pages, int k, boolean table) {
+		for (int r = 0; r < ROUNDS; r++) {
+			for (byte[] page : pages) {
+				decode(page, k, table);
+			}
+		}
+	}
+
+	/**
+	 * Decode one page with BlackIs1 false, the default of the filter.
+	 */
+	private static byte[] decode(byte[] data, int k, boolean table) {
+		byte[] destination = new byte[HEIGHT * ((WIDTH + 7) >> 3)];
+		if (table) {
+			CCITTFaxTableDecoder decoder = new CCITTFaxTableDecoder(1, WIDTH, HEIGHT);
+			decoder.setBlackIs1(false);
+			if (k < 0) {
+				decoder.decodeT6(destination, data, 0, HEIGHT);
+			} else {
+				decoder.decodeT41D(destination, data, 0, HEIGHT);
+			}
+		} else {
+			CCITTFaxDecoder decoder = new CCITTFaxDecoder(1, WIDTH, HEIGHT);
+			if (k < 0) {
+				decoder.decodeT6(destination, data, 0, HEIGHT);
+			} else {
+				decoder.decodeT41D(destination, data, 0, HEIGHT);
+			}
+			for (int i = 0; i < destination.length; i++) {
+				destination[i] = (byte) ~destination[i];
+			}
+		}
+		return destination;
+	}
+
+	/**
+	 * A page of random words with a ruled header, the way a faxed letter
+	 * looks to the coder: mostly white with short black runs.
+	 */
+	private static BufferedImage createPage(int seed) {
+		BufferedImage page = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D g = page.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.setColor(Color.BLACK);
+		g.fillRect(100, 120, WIDTH - 200, 6);
+		g.setFont(new Font("Serif", Font.PLAIN, 26));
+		Random random = new Random(seed);
+		for (int y = 200; y < HEIGHT - 100; y += 34) {
+			StringBuilder line = new StringBuilder();
+			while (line.length() < 100) {
+				int length = 2 + random.nextInt(8);
+				for (int i = 0; i < length; i++) {
+					line.append((char) ('a' + random.nextInt(26)));
+				}
+				line.append(' ');
+			}
+			g.drawString(line.toString(), 100, y);
+		}
+		g.dispose();
+		return page;
+	}
+
+	/**
+	 * Compress the page as a single strip TIFF and return the strip.
+	 */
+	private static byte[] encode(ImageWriter writer, BufferedImage page, String compression) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+		writer.setOutput(stream);
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionType(compression);
+		IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(page), param);
+		IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(TIFF_METADATA);
+		IIOMetadataNode ifd = (IIOMetadataNode) root.getElementsByTagName("TIFFIFD").item(0);
+		// one strip for the whole page, as a PDF image stream has it
+		ifd.appendChild(createField(278, HEIGHT));
+		if (compression.equals("CCITT T.4")) {
+			// plain one-dimensional coding without EOL fill bits
+			ifd.appendChild(createField(292, 0));
+		}
+		metadata.setFromTree(TIFF_METADATA, root);
+		writer.write(null, new IIOImage(page, null, metadata), param);
+		stream.close();
+		return extractStrip(out.toByteArray());
+	}
+
+	private static IIOMetadataNode createField(int tag, long value) {
+		IIOMetadataNode field = new IIOMetadataNode("TIFFField");
+		field.setAttribute("number", String.valueOf(tag));
+		IIOMetadataNode values = new IIOMetadataNode("TIFFLongs");
+		IIOMetadataNode entry = new IIOMetadataNode("TIFFLong");
+		entry.setAttribute("value", String.valueOf(value));
+		values.appendChild(entry);
+		field.appendChild(values);
+		return field;
+	}
+
+	private static byte[] extractStrip(byte[] tiff) {
+		boolean little = tiff[0] == 'I';
+		int ifd = readInt(tiff, 4, little);
+		int entries = readShort(tiff, ifd, little);
+		int offset = -1;
+		int count = -1;
+		for (int i = 0; i < entries; i++) {
+			int entry = ifd + 2 + i * 12;
+			int tag = readShort(tiff, entry, little);
+			int type = readShort(tiff, entry + 2, little);
+			int values = readInt(tiff, entry + 4, little);
+			int value = type == 3 ? readShort(tiff, entry + 8, little) : readInt(tiff, entry + 8, little);
+			if (tag == 273 || tag == 279) {
+				if (values != 1) {
+					throw new IllegalStateException("page was written in " + values + " strips");
+				}
+				if (tag == 273) {
+					offset = value;
+				} else {
+					count = value;
+				}
+			}
+		}
+		return Arrays.copyOfRange(tiff, offset, offset + count);
+	}
+
+	private static int readShort(byte[] data, int offset, boolean little) {
+		int a = data[offset] & 0xff;
+		int b = data[offset + 1] & 0xff;
+		return little ? a | (b << 8) : (a << 8) | b;
+	}
+
+	private static int readInt(byte[] data, int offset, boolean little) {
+		int a = readShort(data, offset, little);
+		int b = readShort(data, offset + 2, little);
+		return little ? a | (b << 16) : (a << 16) | b;
+	}
+}
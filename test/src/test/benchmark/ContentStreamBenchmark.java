@@ -0,0 +1,150 @@
+package test.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPage;
+
+/**
+ * Gets a page whose contents are split over several large Flate content
+ * streams, like the pages of big maps and CAD drawings. The file is built
+ * in memory. Reports how long it takes until the parser has produced the
+ * first command, which is when rendering can begin, how long parsing the
+ * whole page takes, and the peak heap seen meanwhile.
+ */
+public class ContentStreamBenchmark {
+
+	private static final int STREAMS = 8;
+	private static final int STREAM_SIZE = 4 * 1024 * 1024;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		ByteBuffer data = ByteBuffer.wrap(createFile());
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			getPage(data);
+		}
+		long firstCommand = 0;
+		long complete = 0;
+		long peak = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			BenchmarkSupport.usedHeap();
+			resetPeakHeap();
+			long[] times = getPage(data);
+			firstCommand += times[0];
+			complete += times[1];
+			peak = Math.max(peak, peakHeap());
+		}
+		System.out.println(String.format("%-40s %10.1f ms", "time to first command", firstCommand / 1e6 / ROUNDS));
+		System.out.println(String.format("%-40s %10.1f ms", "time to parse the page", complete / 1e6 / ROUNDS));
+		System.out.println(String.format("%-40s %10.1f MB peak heap", "parsing", peak / (1024.0 * 1024)));
+	}
+
+	/**
+	 * @return the nanoseconds until the first command and until the page
+	 * was complete
+	 */
+	private static long[] getPage(ByteBuffer data) throws Exception {
+		PDFFile file = BenchmarkSupport.open(data);
+		long start = System.nanoTime();
+		PDFPage page = file.getPage(1, false);
+		while (page.getCommandCount() == 0 && !page.isFinished()) {
+			Thread.sleep(1);
+		}
+		long first = System.nanoTime() - start;
+		page.waitForFinish();
+		return new long[] { first, System.nanoTime() - start };
+	}
+
+	/**
+	 * A file with a single page, its contents split over STREAMS streams.
+	 */
+	private static byte[] createFile() throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		StringBuilder contents = new StringBuilder();
+		for (int i = 0; i < STREAMS; i++) {
+			contents.append(4 + i).append(" 0 R ");
+		}
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		objects.add("<< /Type /Pages /Kids [3 0 R] /Count 1 >>".getBytes());
+		objects.add(("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents ["
+				+ contents + "] >>").getBytes());
+		Random random = new Random(7);
+		for (int i = 0; i < STREAMS; i++) {
+			byte[] stream = deflate(createPaths(random));
+			ByteArrayOutputStream object = new ByteArrayOutputStream();
+			object.write(("<< /Length " + stream.length + " /Filter /FlateDecode >>\nstream\n").getBytes());
+			object.write(stream);
+			object.write("\nendstream".getBytes());
+			objects.add(object.toByteArray());
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createPaths(Random random) {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < STREAM_SIZE) {
+			sb.append(random.nextInt(600)).append(' ').append(random.nextInt(800)).append(" m ");
+			for (int i = 0; i < 4; i++) {
+				sb.append(random.nextInt(600)).append(' ').append(random.nextInt(800)).append(" l ");
+			}
+			sb.append("S\n");
+		}
+		return sb.toString().getBytes();
+	}
+
+	private static byte[] deflate(byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		deflater.write(data);
+		deflater.close();
+		return out.toByteArray();
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Sum of the per pool peaks, an upper bound of the real peak.
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
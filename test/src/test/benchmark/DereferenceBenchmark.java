@@ -0,0 +1,61 @@
+package test.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.pdfview.PDFFile;
+
+/**
+ * Measures how page parsing (and therefore object dereferencing) scales
+ * with the number of threads working on one shared PDFFile. Each round
+ * opens the file again so no object is cached, then lets 1, 2, 4 ... up
+ * to the number of cores threads pull page numbers from a shared counter.
+ */
+public class DereferenceBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String fileName = BenchmarkSupport.fileArgument(args, DereferenceBenchmark.class);
+		ByteBuffer data = BenchmarkSupport.map(fileName);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+				run(data, threads);
+			}
+			long total = 0;
+			int pages = 0;
+			for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+				long start = System.nanoTime();
+				pages += run(data, threads);
+				total += System.nanoTime() - start;
+			}
+			BenchmarkSupport.report("getPage, " + threads + " thread(s)", total, pages, "pages");
+		}
+	}
+
+	private static int run(ByteBuffer data, int threads) throws Exception {
+		final PDFFile file = BenchmarkSupport.open(data);
+		final int numPages = file.getNumPages();
+		final AtomicInteger next = new AtomicInteger(1);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread() {
+				@Override
+				public void run() {
+					int pageNum;
+					while ((pageNum = next.getAndIncrement()) <= numPages) {
+						file.getPage(pageNum, true);
+					}
+				}
+			};
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return numPages;
+	}
+}
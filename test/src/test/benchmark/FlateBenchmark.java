@@ -0,0 +1,140 @@
+package test.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import com.sun.pdfview.PDFObject;
+
+/**
+ * Inflates FlateDecode streams through PDFObject.getStreamBuffer(), once
+ * from a heap buffer and once from a direct buffer standing in for a
+ * mapped file. The streams are a content stream and an RGB image built
+ * in memory, the image also with a PNG predictor. Reports throughput and the bytes allocated per decode,
+ * which shows how many copies of the data are made on the way.
+ */
+public class FlateBenchmark {
+
+	private static final int ROUNDS = 20;
+	private static final int IMAGE_WIDTH = 2000;
+	private static final int IMAGE_HEIGHT = 1500;
+
+	public static void main(String[] args) throws Exception {
+		byte[] content = createContent();
+		byte[] image = createImage();
+
+		HashMap<String, PDFObject> contentDict = new HashMap<String, PDFObject>();
+		HashMap<String, PDFObject> imageDict = new HashMap<String, PDFObject>();
+		imageDict.put("Subtype", new PDFObject(null, PDFObject.NAME, "Image"));
+		imageDict.put("Width", new PDFObject(Integer.valueOf(IMAGE_WIDTH)));
+		imageDict.put("Height", new PDFObject(Integer.valueOf(IMAGE_HEIGHT)));
+		imageDict.put("BitsPerComponent", new PDFObject(Integer.valueOf(8)));
+		imageDict.put("ColorSpace", new PDFObject(null, PDFObject.NAME, "DeviceRGB"));
+
+		run("content stream, heap", contentDict, deflate(content), false, content.length);
+		run("content stream, direct", contentDict, deflate(content), true, content.length);
+		run("RGB image, heap", imageDict, deflate(image), false, image.length);
+		run("RGB image, direct", imageDict, deflate(image), true, image.length);
+
+		HashMap<String, PDFObject> parms = new HashMap<String, PDFObject>();
+		parms.put("Predictor", new PDFObject(Integer.valueOf(12)));
+		parms.put("Colors", new PDFObject(Integer.valueOf(3)));
+		parms.put("Columns", new PDFObject(Integer.valueOf(IMAGE_WIDTH)));
+		HashMap<String, PDFObject> predictedDict = new HashMap<String, PDFObject>(imageDict);
+		predictedDict.put("DecodeParms", new PDFObject(parms));
+		run("RGB image, PNG predictor", predictedDict, deflate(predictUp(image)), false, image.length);
+	}
+
+	private static void run(String name, HashMap<String, PDFObject> dict, byte[] deflated, boolean direct,
+			int size) throws Exception {
+		ByteBuffer data;
+		if (direct) {
+			data = ByteBuffer.allocateDirect(deflated.length);
+			data.put(deflated);
+			data.flip();
+		} else {
+			data = ByteBuffer.wrap(deflated);
+		}
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			decode(dict, data, size);
+		}
+		long allocated = BenchmarkSupport.allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			decode(dict, data, size);
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+
+		BenchmarkSupport.report(name, nanos, (long) ROUNDS * size / (1024 * 1024), "MB");
+		if (allocated >= 0) {
+			System.out.println(String.format("%-40s %10.2f x decoded size allocated", name,
+					(double) allocated / ROUNDS / size));
+		}
+	}
+
+	/**
+	 * Decode a fresh stream object, so the decoded stream cache is empty.
+	 */
+	private static void decode(HashMap<String, PDFObject> dict, ByteBuffer data, int size) throws Exception {
+		HashMap<String, PDFObject> streamDict = new HashMap<String, PDFObject>(dict);
+		streamDict.put("Filter", new PDFObject(null, PDFObject.NAME, "FlateDecode"));
+		PDFObject stream = new PDFObject(null, PDFObject.STREAM, streamDict);
+		stream.setStream(data.duplicate());
+		ByteBuffer decoded = stream.getStreamBuffer();
+		if (decoded.remaining() != size) {
+			throw new IllegalStateException("decoded " + decoded.remaining() + " bytes instead of " + size);
+		}
+	}
+
+	private static byte[] createContent() {
+		StringBuilder sb = new StringBuilder();
+		Random random = new Random(7);
+		while (sb.length() < 16 * 1024 * 1024) {
+			sb.append("BT /F1 12 Tf ").append(random.nextInt(600)).append(' ').append(random.nextInt(800))
+					.append(" Td (Lorem ipsum dolor sit amet) Tj ET\n");
+			sb.append(random.nextInt(600)).append(' ').append(random.nextInt(800)).append(" m ")
+					.append(random.nextInt(600)).append(' ').append(random.nextInt(800)).append(" l S\n");
+		}
+		return sb.toString().getBytes();
+	}
+
+	private static byte[] createImage() {
+		byte[] rgb = new byte[IMAGE_WIDTH * IMAGE_HEIGHT * 3];
+		Random random = new Random(7);
+		for (int i = 0; i < rgb.length; i += 3) {
+			int x = (i / 3) % IMAGE_WIDTH;
+			rgb[i] = (byte) x;
+			rgb[i + 1] = (byte) (i / 3 / IMAGE_WIDTH);
+			rgb[i + 2] = (byte) random.nextInt(16);
+		}
+		return rgb;
+	}
+
+	/**
+	 * Apply the PNG Up predictor to every row.
+	 */
+	private static byte[] predictUp(byte[] rgb) {
+		int rowSize = IMAGE_WIDTH * 3;
+		byte[] predicted = new byte[IMAGE_HEIGHT * (rowSize + 1)];
+		for (int y = 0; y < IMAGE_HEIGHT; y++) {
+			int dst = y * (rowSize + 1);
+			predicted[dst++] = 2;
+			for (int x = 0; x < rowSize; x++) {
+				int src = y * rowSize + x;
+				predicted[dst + x] = (byte) (rgb[src] - (y > 0 ? rgb[src - rowSize] : 0));
+			}
+		}
+		return predicted;
+	}
+
+	private static byte[] deflate(byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		deflater.write(data);
+		deflater.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,239 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPageSink;
+import com.sun.pdfview.font.ttf.MaxpTable;
+import com.sun.pdfview.font.ttf.TrueTypeFont;
+
+/**
+ * Renders the pages of a document with PDFFile.renderPages() on 1, 2, 4
+ * ... threads, up to the number of cores and at least 4, so the threads
+ * ask the fonts they share for glyph outlines at the same time. The
+ * fonts given are embedded in the document, built in memory, e.g.
+ * <pre>
+ * java -cp target/classes:target/test-classes test.benchmark.GlyphThroughputBenchmark /usr/share/fonts/truetype/dejavu/DejaVuSans.ttf
+ * </pre>
+ * A TrueType font (.ttf) is embedded as a CIDFontType2 font, and every
+ * page shows another slice of its glyphs. Any other file is taken for a
+ * bare CFF font and embedded as a Type1C font showing codes 32 to 255 on
+ * every page. Each page also has a line in the base font Helvetica, a
+ * Type 1 font. Every round opens the file again, so the glyphs are made
+ * again. Reports the glyphs shown per second and checks each page is
+ * drawn the same as with one thread.
+ */
+public class GlyphThroughputBenchmark {
+
+	private static final int PAGES = 16;
+	private static final int GLYPHS_PER_LINE = 32;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkSupport.fileArgument(args, GlyphThroughputBenchmark.class);
+		List<byte[]> fonts = new ArrayList<byte[]>();
+		List<Boolean> trueType = new ArrayList<Boolean>();
+		for (String arg : args) {
+			fonts.add(read(new File(arg)));
+			trueType.add(Boolean.valueOf(arg.toLowerCase().endsWith(".ttf")));
+		}
+		int[] glyphs = new int[1];
+		ByteBuffer data = ByteBuffer.wrap(createFile(fonts, trueType, glyphs));
+
+		Map<Integer, Integer> first = null;
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= Math.max(cores, 4); threads *= 2) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+					Map<Integer, Integer> pages = run(data, executor);
+					if (first == null) {
+						first = pages;
+					} else if (!first.equals(pages)) {
+						throw new IllegalStateException("pages are drawn differently with " + threads + " threads");
+					}
+				}
+				long nanos = 0;
+				for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+					long start = System.nanoTime();
+					Map<Integer, Integer> pages = run(data, executor);
+					nanos += System.nanoTime() - start;
+					if (!first.equals(pages)) {
+						throw new IllegalStateException("pages are drawn differently with " + threads + " threads");
+					}
+				}
+				BenchmarkSupport.report("glyphs, " + threads + " thread(s)", nanos,
+						(long) glyphs[0] * BenchmarkSupport.MEASURE_ROUNDS, "glyphs");
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Render all pages of a fresh PDFFile and return a hash of the pixels
+	 * of each page.
+	 */
+	private static Map<Integer, Integer> run(ByteBuffer data, ExecutorService executor) throws Exception {
+		final Map<Integer, Integer> pages = new ConcurrentHashMap<Integer, Integer>();
+		PDFPageSink sink = new PDFPageSink() {
+			@Override
+			public void pageRendered(int pageNumber, BufferedImage image) {
+				int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+				pages.put(Integer.valueOf(pageNumber), Integer.valueOf(Arrays.hashCode(pixels)));
+			}
+		};
+		PDFFile file = BenchmarkSupport.open(data);
+		file.renderPages(1, file.getNumPages(), 72, executor, sink);
+		if (pages.size() != PAGES) {
+			throw new IllegalStateException(pages.size() + " of " + PAGES + " pages rendered");
+		}
+		return pages;
+	}
+
+	/**
+	 * A file of PAGES pages showing glyphs of the fonts. The number of
+	 * glyphs shown in all is put into glyphs[0].
+	 */
+	private static byte[] createFile(List<byte[]> fonts, List<Boolean> trueType, int[] glyphs) throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		StringBuilder kids = new StringBuilder();
+		for (int i = 0; i < PAGES; i++) {
+			kids.append(3 + i).append(" 0 R ");
+		}
+		objects.add(("<< /Type /Pages /Kids [" + kids + "] /Count " + PAGES + " >>").getBytes());
+		// the pages and their contents come first, the fonts after them
+		int fontBase = 3 + 2 * PAGES;
+		StringBuilder resources = new StringBuilder("<< /Font << /F0 " + fontBase + " 0 R ");
+		List<byte[]> fontObjects = new ArrayList<byte[]>();
+		fontObjects.add("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>".getBytes());
+		int[] numGlyphs = new int[fonts.size()];
+		for (int f = 0; f < fonts.size(); f++) {
+			byte[] font = fonts.get(f);
+			int number = fontBase + fontObjects.size();
+			resources.append("/F").append(f + 1).append(' ').append(number).append(" 0 R ");
+			if (trueType.get(f).booleanValue()) {
+				MaxpTable maxp = (MaxpTable) TrueTypeFont.parseFont(font).getTable("maxp");
+				numGlyphs[f] = maxp.getNumGlyphs();
+				fontObjects.add(("<< /Type /Font /Subtype /Type0 /BaseFont /Embedded" + f
+						+ " /Encoding /Identity-H /DescendantFonts [" + (number + 1) + " 0 R] >>").getBytes());
+				fontObjects.add(("<< /Type /Font /Subtype /CIDFontType2 /BaseFont /Embedded" + f
+						+ " /CIDSystemInfo << /Registry (Adobe) /Ordering (Identity) /Supplement 0 >>"
+						+ " /DW 1000 /CIDToGIDMap /Identity /FontDescriptor " + (number + 2) + " 0 R >>").getBytes());
+				fontObjects.add(createDescriptor(f, "/FontFile2 " + (number + 3) + " 0 R"));
+				fontObjects.add(createStream(font, "/Length1 " + font.length));
+			} else {
+				StringBuilder widths = new StringBuilder();
+				for (int c = 32; c < 256; c++) {
+					widths.append("500 ");
+				}
+				fontObjects.add(("<< /Type /Font /Subtype /Type1 /BaseFont /Embedded" + f
+						+ " /FirstChar 32 /LastChar 255 /Widths [" + widths + "] /FontDescriptor " + (number + 1)
+						+ " 0 R >>").getBytes());
+				fontObjects.add(createDescriptor(f, "/FontFile3 " + (number + 2) + " 0 R"));
+				fontObjects.add(createStream(font, "/Subtype /Type1C"));
+			}
+		}
+		resources.append(">> >>");
+
+		glyphs[0] = 0;
+		List<byte[]> contents = new ArrayList<byte[]>();
+		for (int page = 0; page < PAGES; page++) {
+			objects.add(("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Resources " + resources
+					+ " /Contents " + (3 + PAGES + page) + " 0 R >>").getBytes());
+			StringBuilder content = new StringBuilder("BT /F0 10 Tf 12 TL 30 760 Td (");
+			for (char c = 32; c < 127; c++) {
+				if (c == '(' || c == ')' || c == '\\') {
+					content.append('\\');
+				}
+				content.append(c);
+			}
+			content.append(") Tj\n");
+			glyphs[0] += 127 - 32;
+			for (int f = 0; f < fonts.size(); f++) {
+				int from;
+				int to;
+				if (trueType.get(f).booleanValue()) {
+					from = numGlyphs[f] * page / PAGES;
+					to = numGlyphs[f] * (page + 1) / PAGES;
+				} else {
+					from = 32;
+					to = 256;
+				}
+				content.append("/F").append(f + 1).append(" 8 Tf\n");
+				for (int line = from; line < to; line += GLYPHS_PER_LINE) {
+					content.append("T* <");
+					for (int g = line; g < Math.min(to, line + GLYPHS_PER_LINE); g++) {
+						content.append(String.format(trueType.get(f).booleanValue() ? "%04x" : "%02x", g));
+					}
+					content.append("> Tj\n");
+				}
+				glyphs[0] += to - from;
+			}
+			content.append("ET\n");
+			contents.add(createStream(content.toString().getBytes(), ""));
+		}
+		objects.addAll(contents);
+		objects.addAll(fontObjects);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createDescriptor(int font, String fontFile) {
+		return ("<< /Type /FontDescriptor /FontName /Embedded" + font + " /Flags 32 /ItalicAngle 0 "
+				+ "/FontBBox [0 -200 1000 900] /Ascent 900 /Descent -200 /CapHeight 700 /StemV 80 "
+				+ fontFile + " >>").getBytes();
+	}
+
+	private static byte[] createStream(byte[] data, String entries) throws Exception {
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+		object.write(("<< " + entries + " /Length " + data.length + " >>\nstream\n").getBytes());
+		object.write(data);
+		object.write("\nendstream".getBytes());
+		return object.toByteArray();
+	}
+
+	private static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < data.length) {
+				read += in.read(data, read, data.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+}
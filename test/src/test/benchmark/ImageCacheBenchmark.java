@@ -0,0 +1,191 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+
+import com.sun.pdfview.Configuration;
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFImageCache;
+import com.sun.pdfview.PDFPageSink;
+
+/**
+ * Renders a document whose pages all show the same images, the way
+ * letterheads and slide decks repeat a logo: a Flate RGB image with a
+ * soft mask and a stencil mask painted in two colors. The file is built
+ * in memory. Renders every page at 72 dpi with the image cache switched
+ * off and on, and reports the pages per second and the cache hits. Blur
+ * resizing is switched off, as it works on every draw of a downscaled
+ * image whether it was cached or not.
+ */
+public class ImageCacheBenchmark {
+
+	private static final int PAGES = 50;
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	public static void main(String[] args) throws Exception {
+		ByteBuffer data = ByteBuffer.wrap(createFile());
+		PDFPageSink sink = new PDFPageSink() {
+			@Override
+			public void pageRendered(int pageNumber, BufferedImage image) {
+				// drop it
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Configuration config = Configuration.getInstance();
+		long defaultBudget = config.getImageCacheMaxBytes();
+		boolean blur = config.isUseBlurResizingForImages();
+		config.setUseBlurResizingForImages(false);
+		try {
+			// a budget smaller than any image keeps the cache empty
+			run("images not cached", data, executor, sink, 1);
+			run("images cached", data, executor, sink, defaultBudget);
+		} finally {
+			config.setImageCacheMaxBytes(defaultBudget);
+			config.setUseBlurResizingForImages(blur);
+			executor.shutdown();
+		}
+	}
+
+	private static void run(String name, ByteBuffer data, ExecutorService executor, PDFPageSink sink, long budget)
+			throws Exception {
+		Configuration.getInstance().setImageCacheMaxBytes(budget);
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			render(data, executor, sink);
+		}
+		long total = 0;
+		long hits = 0;
+		long misses = 0;
+		for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+			long start = System.nanoTime();
+			PDFFile file = render(data, executor, sink);
+			total += System.nanoTime() - start;
+			PDFImageCache cache = file.getImageCache();
+			hits += cache.getHitCount();
+			misses += cache.getMissCount();
+		}
+		BenchmarkSupport.report(name, total, PAGES * BenchmarkSupport.MEASURE_ROUNDS, "pages");
+		System.out.println(String.format("%-40s %10d hits, %d misses", name, hits, misses));
+	}
+
+	private static PDFFile render(ByteBuffer data, ExecutorService executor, PDFPageSink sink) throws Exception {
+		PDFFile file = BenchmarkSupport.open(data);
+		file.renderPages(1, PAGES, 72, executor, sink);
+		return file;
+	}
+
+	/**
+	 * A file with PAGES pages, each drawing the images of objects 4 to 6.
+	 */
+	private static byte[] createFile() throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		StringBuilder kids = new StringBuilder();
+		for (int i = 0; i < PAGES; i++) {
+			kids.append(8 + i).append(" 0 R ");
+		}
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		objects.add(("<< /Type /Pages /Kids [" + kids + "] /Count " + PAGES + " >>").getBytes());
+		objects.add("<< /XObject << /Logo 4 0 R /Stamp 6 0 R >> >>".getBytes());
+		objects.add(createImage("/ColorSpace /DeviceRGB /BitsPerComponent 8 /SMask 5 0 R",
+				createRGBSamples()));
+		objects.add(createImage("/ColorSpace /DeviceGray /BitsPerComponent 8", createMaskSamples()));
+		objects.add(createImage("/ImageMask true /BitsPerComponent 1", createStencilSamples()));
+		objects.add(createStream(("q 300 0 0 225 40 520 cm /Logo Do Q\n"
+				+ "q 0.8 0.1 0.1 rg 200 0 0 150 40 300 cm /Stamp Do Q\n"
+				+ "q 0.1 0.1 0.8 rg 200 0 0 150 300 300 cm /Stamp Do Q\n").getBytes(), ""));
+		for (int i = 0; i < PAGES; i++) {
+			objects.add("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Resources 3 0 R /Contents 7 0 R >>"
+					.getBytes());
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createImage(String entries, byte[] samples) throws Exception {
+		return createStream(samples, "/Type /XObject /Subtype /Image /Width " + WIDTH + " /Height " + HEIGHT + " "
+				+ entries);
+	}
+
+	private static byte[] createStream(byte[] data, String entries) throws Exception {
+		byte[] stream = deflate(data);
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+		object.write(("<< " + entries + " /Length " + stream.length + " /Filter /FlateDecode >>\nstream\n")
+				.getBytes());
+		object.write(stream);
+		object.write("\nendstream".getBytes());
+		return object.toByteArray();
+	}
+
+	private static byte[] createRGBSamples() {
+		byte[] samples = new byte[WIDTH * HEIGHT * 3];
+		int i = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				samples[i++] = (byte) (x * 255 / WIDTH);
+				samples[i++] = (byte) (y * 255 / HEIGHT);
+				samples[i++] = (byte) ((x ^ y) & 0xff);
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * A soft mask fading out towards the edges.
+	 */
+	private static byte[] createMaskSamples() {
+		byte[] samples = new byte[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int edge = Math.min(Math.min(x, WIDTH - 1 - x), Math.min(y, HEIGHT - 1 - y));
+				samples[y * WIDTH + x] = (byte) Math.min(255, edge);
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * A checkerboard of 16 pixel squares.
+	 */
+	private static byte[] createStencilSamples() {
+		int stride = (WIDTH + 7) / 8;
+		byte[] samples = new byte[stride * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < stride; x++) {
+				samples[y * stride + x] = (byte) ((((x / 2) ^ (y / 16)) & 1) != 0 ? 0xff : 0);
+			}
+		}
+		return samples;
+	}
+
+	private static byte[] deflate(byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		deflater.write(data);
+		deflater.close();
+		return out.toByteArray();
+	}
+}
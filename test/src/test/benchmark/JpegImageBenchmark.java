@@ -0,0 +1,130 @@
+package test.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import com.sun.pdfview.PDFImage;
+import com.sun.pdfview.PDFObject;
+
+/**
+ * Decodes DCTDecode image XObjects the way PDFImage.getImage() does
+ * while rendering a photo heavy document. The images are built in
+ * memory from a synthetic photo, so no fixture file is needed.
+ * Reports decode time, allocation per image and the peak heap seen
+ * while decoding.
+ */
+public class JpegImageBenchmark {
+
+	private static final int IMAGES = 40;
+	private static final int WIDTH = 1600;
+	private static final int HEIGHT = 1200;
+
+	public static void main(String[] args) throws Exception {
+		byte[] rgb = encode(createPhoto(BufferedImage.TYPE_INT_RGB));
+		byte[] gray = encode(createPhoto(BufferedImage.TYPE_BYTE_GRAY));
+
+		run("DCT DeviceRGB " + WIDTH + "x" + HEIGHT, rgb, "DeviceRGB");
+		run("DCT DeviceGray " + WIDTH + "x" + HEIGHT, gray, "DeviceGray");
+	}
+
+	private static void run(String name, byte[] jpeg, String colorSpace) throws Exception {
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			decode(jpeg, colorSpace, IMAGES / 4);
+		}
+		BenchmarkSupport.usedHeap();
+		resetPeakHeap();
+		long allocated = BenchmarkSupport.allocatedBytes();
+		long start = System.nanoTime();
+		decode(jpeg, colorSpace, IMAGES);
+		long nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+
+		BenchmarkSupport.report(name, nanos, IMAGES, "images");
+		BenchmarkSupport.reportAllocation(name, allocated, nanos, IMAGES, "image");
+		System.out.println(String.format("%-40s %10.1f MB peak heap", name, peakHeap() / (1024.0 * 1024)));
+	}
+
+	private static void decode(byte[] jpeg, String colorSpace, int count) throws Exception {
+		HashMap<String, PDFObject> resources = new HashMap<String, PDFObject>();
+		for (int i = 0; i < count; i++) {
+			PDFObject image = createImageObject(jpeg, colorSpace);
+			BufferedImage bi = PDFImage.createImage(image, resources, false).getImage();
+			if (bi.getWidth() != WIDTH) {
+				throw new IllegalStateException("unexpected width " + bi.getWidth());
+			}
+		}
+	}
+
+	/**
+	 * A fresh image XObject each time, so nothing is served from the
+	 * object's image or stream caches.
+	 */
+	private static PDFObject createImageObject(byte[] jpeg, String colorSpace) throws Exception {
+		HashMap<String, PDFObject> dict = new HashMap<String, PDFObject>();
+		dict.put("Type", new PDFObject(null, PDFObject.NAME, "XObject"));
+		dict.put("Subtype", new PDFObject(null, PDFObject.NAME, "Image"));
+		dict.put("Width", new PDFObject(Integer.valueOf(WIDTH)));
+		dict.put("Height", new PDFObject(Integer.valueOf(HEIGHT)));
+		dict.put("BitsPerComponent", new PDFObject(Integer.valueOf(8)));
+		dict.put("ColorSpace", new PDFObject(null, PDFObject.NAME, colorSpace));
+		dict.put("Filter", new PDFObject(null, PDFObject.NAME, "DCTDecode"));
+		dict.put("Length", new PDFObject(Integer.valueOf(jpeg.length)));
+		PDFObject image = new PDFObject(null, PDFObject.STREAM, dict);
+		image.setStream(ByteBuffer.wrap(jpeg));
+		return image;
+	}
+
+	private static BufferedImage createPhoto(int type) {
+		BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, type);
+		Graphics2D g = bi.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, new Color(40, 90, 160), WIDTH, HEIGHT, new Color(230, 180, 90)));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		Random random = new Random(42);
+		for (int i = 0; i < 400; i++) {
+			g.setColor(new Color(random.nextInt(0x1000000)));
+			g.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), 20 + random.nextInt(120), 20 + random.nextInt(120));
+		}
+		g.dispose();
+		return bi;
+	}
+
+	private static byte[] encode(BufferedImage bi) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (!ImageIO.write(bi, "jpeg", out)) {
+			throw new IllegalStateException("no JPEG writer");
+		}
+		return out.toByteArray();
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Sum of the per pool peaks, an upper bound of the real peak.
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,106 @@
+package test.benchmark;
+
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+
+import com.sun.pdfview.PDFObject;
+import com.sun.pdfview.PDFPage;
+import com.sun.pdfview.PDFParser;
+
+/**
+ * Measures raw content stream parsing speed, i.e. how fast PDFParser turns
+ * operators into PDFCmds. Two synthetic streams are used: a text heavy one
+ * (mostly BT/Tf/Td/Tj/TJ/ET, the operators found at the end of the
+ * dispatch) and a path heavy one (m/l/c/re/S/f with many operands, as found
+ * in CAD drawings). No file is needed, so the numbers only depend on the
+ * parser itself. Besides the throughput the bytes allocated per operator
+ * are reported; the parser runs synchronously in the measuring thread, so
+ * the thread's allocation counter covers all of its garbage.
+ */
+public class ParserBenchmark {
+
+	/** number of blocks generated for each synthetic stream */
+	private static final int BLOCKS = 5000;
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String, PDFObject> resources = createResources();
+		run("text heavy stream", createTextStream(), resources);
+		run("path heavy stream", createPathStream(), resources);
+	}
+
+	private static void run(String name, Content content, HashMap<String, PDFObject> resources) throws Exception {
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			parse(content, resources);
+		}
+		long total = 0;
+		long operators = 0;
+		long allocated = 0;
+		for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+			long bytes = BenchmarkSupport.allocatedBytes();
+			long start = System.nanoTime();
+			parse(content, resources);
+			total += System.nanoTime() - start;
+			allocated += BenchmarkSupport.allocatedBytes() - bytes;
+			operators += content.operators;
+		}
+		BenchmarkSupport.report(name, total, operators, "operators");
+		BenchmarkSupport.reportAllocation(name, allocated, total, operators, "operator");
+	}
+
+	static PDFPage parse(Content content, HashMap<String, PDFObject> resources) {
+		PDFPage page = new PDFPage(new Rectangle2D.Float(0, 0, 612, 792), 0);
+		PDFParser parser = new PDFParser(page, content.data, resources);
+		parser.go(true);
+		return page;
+	}
+
+	static HashMap<String, PDFObject> createResources() throws Exception {
+		HashMap<String, PDFObject> font = new HashMap<String, PDFObject>();
+		font.put("Type", new PDFObject("Font"));
+		font.put("Subtype", new PDFObject("Type1"));
+		font.put("BaseFont", new PDFObject("Helvetica"));
+		HashMap<String, PDFObject> fonts = new HashMap<String, PDFObject>();
+		fonts.put("F1", new PDFObject(font));
+		HashMap<String, PDFObject> resources = new HashMap<String, PDFObject>();
+		resources.put("Font", new PDFObject(fonts));
+		return resources;
+	}
+
+	static Content createTextStream() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < BLOCKS; i++) {
+			sb.append("BT /F1 10 Tf 1 0 0 1 72 ").append(700 - i % 600).append(" Tm\n");
+			sb.append("0 Tc 0 Tw 12 TL (Lorem ipsum dolor sit amet) Tj\n");
+			sb.append("T* [(consectetur) -250 (adipiscing) -250 (elit)] TJ\n");
+			sb.append("0 -12 Td (sed do eiusmod tempor) Tj ET\n");
+		}
+		// BT Tf Tm Tc Tw TL Tj T* TJ Td Tj ET
+		return new Content(sb, BLOCKS * 12);
+	}
+
+	static Content createPathStream() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < BLOCKS; i++) {
+			double x = i % 500;
+			double y = (i * 7) % 700;
+			sb.append("q 0.5 w 0 0 1 RG ").append(x).append(' ').append(y).append(" m\n");
+			sb.append(x + 10.25).append(' ').append(y + 3.5).append(" l\n");
+			sb.append(x + 20.5).append(' ').append(y + 1.75).append(' ');
+			sb.append(x + 25.125).append(' ').append(y + 9.5).append(' ');
+			sb.append(x + 30).append(' ').append(y).append(" c S\n");
+			sb.append(x).append(' ').append(y).append(" 5.5 4.25 re f Q\n");
+		}
+		// q w RG m l c S re f Q
+		return new Content(sb, BLOCKS * 10);
+	}
+
+	static class Content {
+		final byte[] data;
+		final int operators;
+
+		Content(CharSequence text, int operators) {
+			this.data = text.toString().getBytes();
+			this.operators = operators;
+		}
+	}
+}
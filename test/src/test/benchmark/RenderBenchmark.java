@@ -0,0 +1,60 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+import com.sun.pdfview.ImageInfo;
+import com.sun.pdfview.PDFObject;
+import com.sun.pdfview.PDFPage;
+import com.sun.pdfview.PDFRenderer;
+import com.sun.pdfview.RefImage;
+
+/**
+ * Measures how many commands per second PDFRenderer executes, using the
+ * synthetic text and path heavy pages of the ParserBenchmark. Each page
+ * is rendered into a plain BufferedImage, as done by code that creates
+ * its own PDFRenderer, and into a RefImage, as done by PDFPage.getImage().
+ */
+public class RenderBenchmark {
+
+	private static final int WIDTH = 612;
+	private static final int HEIGHT = 792;
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String, PDFObject> resources = ParserBenchmark.createResources();
+		PDFPage text = ParserBenchmark.parse(ParserBenchmark.createTextStream(), resources);
+		PDFPage path = ParserBenchmark.parse(ParserBenchmark.createPathStream(), resources);
+		run("text heavy page, BufferedImage", text, false);
+		run("text heavy page, RefImage", text, true);
+		run("path heavy page, BufferedImage", path, false);
+		run("path heavy page, RefImage", path, true);
+	}
+
+	private static void run(String name, PDFPage page, boolean refImage) {
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			render(page, refImage);
+		}
+		long total = 0;
+		long commands = 0;
+		for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+			long start = System.nanoTime();
+			render(page, refImage);
+			total += System.nanoTime() - start;
+			commands += page.getCommandCount();
+		}
+		BenchmarkSupport.report(name, total, commands, "commands");
+	}
+
+	private static BufferedImage render(PDFPage page, boolean refImage) {
+		BufferedImage image;
+		if (refImage) {
+			image = new RefImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		} else {
+			image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		}
+		ImageInfo info = new ImageInfo(WIDTH, HEIGHT, null);
+		PDFRenderer renderer = new PDFRenderer(page, info, image);
+		renderer.go(true);
+		return image;
+	}
+}
@@ -0,0 +1,55 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPageSink;
+import com.sun.pdfview.PDFRenderStatistics;
+
+/**
+ * Measures PDFFile.renderPages() for the whole document at 72 dpi with
+ * 1, 2, 4 ... up to the number of cores threads. Each round opens the
+ * file again, so every page is parsed as well as rendered. The images
+ * are dropped by the sink.
+ */
+public class RenderPagesBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String fileName = BenchmarkSupport.fileArgument(args, RenderPagesBenchmark.class);
+		ByteBuffer data = BenchmarkSupport.map(fileName);
+		int cores = Runtime.getRuntime().availableProcessors();
+		PDFPageSink sink = new PDFPageSink() {
+			@Override
+			public void pageRendered(int pageNumber, BufferedImage image) {
+				// drop it
+			}
+		};
+
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+					run(data, executor, sink);
+				}
+				long total = 0;
+				int pages = 0;
+				for (int i = 0; i < BenchmarkSupport.MEASURE_ROUNDS; i++) {
+					PDFRenderStatistics stats = run(data, executor, sink);
+					total += stats.getElapsedNanos();
+					pages += stats.getPageCount();
+				}
+				BenchmarkSupport.report("renderPages, " + threads + " thread(s)", total, pages, "pages");
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private static PDFRenderStatistics run(ByteBuffer data, ExecutorService executor, PDFPageSink sink) throws Exception {
+		PDFFile file = BenchmarkSupport.open(data);
+		return file.renderPages(1, file.getNumPages(), 72, executor, sink);
+	}
+}
@@ -0,0 +1,145 @@
+package test.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.imageio.ImageIO;
+
+import com.sun.pdfview.PDFImage;
+import com.sun.pdfview.PDFObject;
+import com.sun.pdfview.PDFParseException;
+
+/**
+ * Decodes images with a soft mask, the way transparent PNGs end up in
+ * PDFs: an RGB image, DCT or Flate encoded, with a Flate encoded greyscale
+ * SMask of the same size. The image objects are built in memory. Reports
+ * the images decoded per second and the bytes allocated per image, most
+ * of which is spent on merging the mask into the image.
+ */
+public class SMaskBenchmark {
+
+	private static final int IMAGES = 20;
+	private static final int WIDTH = 1600;
+	private static final int HEIGHT = 1200;
+
+	public static void main(String[] args) throws Exception {
+		BufferedImage photo = createPhoto(BufferedImage.TYPE_INT_RGB);
+		byte[] jpeg = encodeJpeg(photo);
+		byte[] rgb = deflate(getRGBSamples(photo));
+		byte[] mask = deflate(createMask());
+
+		run("DCT DeviceRGB with SMask", jpeg, "DCTDecode", mask);
+		run("Flate DeviceRGB with SMask", rgb, "FlateDecode", mask);
+	}
+
+	private static void run(String name, byte[] data, String filter, byte[] mask) throws Exception {
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			decode(data, filter, mask, IMAGES / 4);
+		}
+		long allocated = BenchmarkSupport.allocatedBytes();
+		long start = System.nanoTime();
+		decode(data, filter, mask, IMAGES);
+		long nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+
+		BenchmarkSupport.report(name, nanos, IMAGES, "images");
+		BenchmarkSupport.reportAllocation(name, allocated, nanos, IMAGES, "image");
+	}
+
+	private static void decode(byte[] data, String filter, byte[] mask, int count) throws Exception {
+		HashMap<String, PDFObject> resources = new HashMap<String, PDFObject>();
+		for (int i = 0; i < count; i++) {
+			PDFObject image = createImageObject(data, filter, "DeviceRGB");
+			image.getDictionary().put("SMask", createImageObject(mask, "FlateDecode", "DeviceGray"));
+			BufferedImage bi = PDFImage.createImage(image, resources, false).getImage();
+			if (bi.getWidth() != WIDTH || !bi.getColorModel().hasAlpha()) {
+				throw new IllegalStateException("unexpected image " + bi);
+			}
+		}
+	}
+
+	/**
+	 * A fresh image XObject each time, so nothing is served from the
+	 * object's image or stream caches.
+	 */
+	private static PDFObject createImageObject(byte[] data, String filter, String colorSpace)
+			throws PDFParseException {
+		HashMap<String, PDFObject> dict = new HashMap<String, PDFObject>();
+		dict.put("Type", new PDFObject(null, PDFObject.NAME, "XObject"));
+		dict.put("Subtype", new PDFObject(null, PDFObject.NAME, "Image"));
+		dict.put("Width", new PDFObject(Integer.valueOf(WIDTH)));
+		dict.put("Height", new PDFObject(Integer.valueOf(HEIGHT)));
+		dict.put("BitsPerComponent", new PDFObject(Integer.valueOf(8)));
+		dict.put("ColorSpace", new PDFObject(null, PDFObject.NAME, colorSpace));
+		dict.put("Filter", new PDFObject(null, PDFObject.NAME, filter));
+		dict.put("Length", new PDFObject(Integer.valueOf(data.length)));
+		PDFObject image = new PDFObject(null, PDFObject.STREAM, dict);
+		image.setStream(ByteBuffer.wrap(data));
+		return image;
+	}
+
+	private static BufferedImage createPhoto(int type) {
+		BufferedImage bi = new BufferedImage(WIDTH, HEIGHT, type);
+		Graphics2D g = bi.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, new Color(40, 90, 160), WIDTH, HEIGHT, new Color(230, 180, 90)));
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		Random random = new Random(42);
+		for (int i = 0; i < 400; i++) {
+			g.setColor(new Color(random.nextInt(0x1000000)));
+			g.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), 20 + random.nextInt(120), 20 + random.nextInt(120));
+		}
+		g.dispose();
+		return bi;
+	}
+
+	private static byte[] getRGBSamples(BufferedImage bi) {
+		byte[] samples = new byte[WIDTH * HEIGHT * 3];
+		int i = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int rgb = bi.getRGB(x, y);
+				samples[i++] = (byte) (rgb >> 16);
+				samples[i++] = (byte) (rgb >> 8);
+				samples[i++] = (byte) rgb;
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * A mask fading out towards the edges.
+	 */
+	private static byte[] createMask() {
+		byte[] mask = new byte[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int edge = Math.min(Math.min(x, WIDTH - 1 - x), Math.min(y, HEIGHT - 1 - y));
+				mask[y * WIDTH + x] = (byte) Math.min(255, edge);
+			}
+		}
+		return mask;
+	}
+
+	private static byte[] encodeJpeg(BufferedImage bi) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (!ImageIO.write(bi, "jpeg", out)) {
+			throw new IllegalStateException("no JPEG writer");
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+		deflater.write(data);
+		deflater.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,144 @@
+package test.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.pdfview.font.SystemFontIndex;
+import com.sun.pdfview.font.ttf.TrueTypeFont;
+
+/**
+ * Indexes a font directory the size of a server's, made of COPIES copies
+ * of the TrueType fonts in the directory given, e.g.
+ * <pre>
+ * java -cp target/classes:target/test-classes test.benchmark.SystemFontIndexBenchmark /usr/share/fonts/truetype/dejavu
+ * </pre>
+ * Times reading and parsing every font whole, the way the fonts used to
+ * be looked for, and building a SystemFontIndex with no cache file, from
+ * its cache file, and again after one font changed. Checks the index
+ * finds the same file for every name as parsing the whole fonts does.
+ */
+public class SystemFontIndexBenchmark {
+
+	private static final int COPIES = 500;
+
+	public static void main(String[] args) throws Exception {
+		File source = new File(BenchmarkSupport.fileArgument(args, SystemFontIndexBenchmark.class));
+		File dir = createTempDir("fonts");
+		File cacheFile = new File(createTempDir("index"), "ttf-index");
+		String searchPath = System.getProperty("PDFRenderer.fontSearchPath");
+		try {
+			int fonts = copyFonts(source, dir);
+			System.setProperty("PDFRenderer.fontSearchPath", dir.getPath());
+
+			long start = System.nanoTime();
+			Map<String, File> parsed = parseAll(dir);
+			BenchmarkSupport.report("read and parse whole fonts", System.nanoTime() - start, fonts, "fonts");
+
+			start = System.nanoTime();
+			SystemFontIndex index = new SystemFontIndex(cacheFile);
+			index.getFile("");
+			BenchmarkSupport.report("index, no cache file", System.nanoTime() - start, fonts, "fonts");
+			check(index, parsed);
+
+			start = System.nanoTime();
+			index = new SystemFontIndex(cacheFile);
+			index.getFile("");
+			BenchmarkSupport.report("index, from cache file", System.nanoTime() - start, fonts, "fonts");
+			check(index, parsed);
+
+			File changed = dir.listFiles()[0];
+			if (!changed.setLastModified(changed.lastModified() - 60000)) {
+				throw new IllegalStateException("can't touch " + changed);
+			}
+			start = System.nanoTime();
+			index.refresh();
+			BenchmarkSupport.report("refresh, one font changed", System.nanoTime() - start, fonts, "fonts");
+			check(index, parsed);
+		} finally {
+			if (searchPath == null) {
+				System.clearProperty("PDFRenderer.fontSearchPath");
+			} else {
+				System.setProperty("PDFRenderer.fontSearchPath", searchPath);
+			}
+			delete(dir);
+			delete(cacheFile.getParentFile());
+		}
+	}
+
+	/**
+	 * Map the names of the fonts to their files by parsing each font.
+	 */
+	private static Map<String, File> parseAll(File dir) throws IOException {
+		Map<String, File> files = new HashMap<String, File>();
+		for (File file : dir.listFiles()) {
+			TrueTypeFont ttf = TrueTypeFont.parseFont(read(file));
+			for (String name : ttf.getNames()) {
+				if (!files.containsKey(name)) {
+					files.put(name, file);
+				}
+			}
+		}
+		return files;
+	}
+
+	private static void check(SystemFontIndex index, Map<String, File> parsed) throws IOException {
+		for (Map.Entry<String, File> entry : parsed.entrySet()) {
+			// long texts like licenses aren't indexed
+			if (entry.getKey().length() <= 1024 && !entry.getValue().equals(index.getFile(entry.getKey()))) {
+				throw new IllegalStateException("the index has another file for " + entry.getKey());
+			}
+		}
+	}
+
+	private static int copyFonts(File source, File dir) throws IOException {
+		File[] fonts = source.listFiles();
+		int count = 0;
+		for (int i = 0; i < COPIES; i++) {
+			for (File font : fonts) {
+				if (font.getName().toLowerCase().endsWith(".ttf")) {
+					FileOutputStream out = new FileOutputStream(new File(dir, i + "-" + font.getName()));
+					out.write(read(font));
+					out.close();
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < data.length) {
+				read += in.read(data, read, data.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+
+	private static File createTempDir(String name) throws IOException {
+		File dir = File.createTempFile(name, "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("can't create " + dir);
+		}
+		return dir;
+	}
+
+	private static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+}
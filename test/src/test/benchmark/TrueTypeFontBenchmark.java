@@ -0,0 +1,134 @@
+package test.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.pdfview.ImageInfo;
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFPage;
+import com.sun.pdfview.PDFRenderer;
+
+/**
+ * Opens documents with the TrueType font given embedded in them and
+ * renders a first page using a dozen of its glyphs, the way a subset
+ * font is used, e.g.
+ * <pre>
+ * java -cp target/classes:target/test-classes test.benchmark.TrueTypeFontBenchmark /usr/share/fonts/truetype/dejavu/DejaVuSans.ttf
+ * </pre>
+ * The file is built in memory. Reports the documents per second and the
+ * bytes allocated per document, which grow with the number of glyphs of
+ * the font for a parser that reads all of them. Checks every document
+ * draws the same pixels.
+ */
+public class TrueTypeFontBenchmark {
+
+	private static final int DOCUMENTS = 200;
+	private static final int WIDTH = 612;
+	private static final int HEIGHT = 792;
+	private static final String TEXT = "Lazy brown fox";
+
+	public static void main(String[] args) throws Exception {
+		File font = new File(BenchmarkSupport.fileArgument(args, TrueTypeFontBenchmark.class));
+		ByteBuffer data = ByteBuffer.wrap(createFile(read(font)));
+
+		int[] first = render(BenchmarkSupport.open(data));
+		for (int i = 0; i < BenchmarkSupport.WARMUP_ROUNDS; i++) {
+			render(BenchmarkSupport.open(data));
+		}
+		long allocated = BenchmarkSupport.allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			if (!Arrays.equals(first, render(BenchmarkSupport.open(data)))) {
+				throw new IllegalStateException("document " + i + " is drawn differently");
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = BenchmarkSupport.allocatedBytes() - allocated;
+		String name = font.getName();
+		BenchmarkSupport.report(name, nanos, DOCUMENTS, "documents");
+		BenchmarkSupport.reportAllocation(name, allocated, nanos, DOCUMENTS, "document");
+	}
+
+	/**
+	 * Render the first page on this thread and return its pixels.
+	 */
+	private static int[] render(PDFFile file) throws Exception {
+		PDFPage page = file.getPage(1, true);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		PDFRenderer renderer = new PDFRenderer(page, new ImageInfo(WIDTH, HEIGHT, null), image);
+		renderer.go(true);
+		return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+	}
+
+	/**
+	 * A one page file showing TEXT in the font, in a few sizes.
+	 */
+	private static byte[] createFile(byte[] font) throws Exception {
+		List<byte[]> objects = new ArrayList<byte[]>();
+		objects.add("<< /Type /Catalog /Pages 2 0 R >>".getBytes());
+		objects.add("<< /Type /Pages /Kids [3 0 R] /Count 1 >>".getBytes());
+		objects.add(("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] "
+				+ "/Resources << /Font << /F1 4 0 R >> >> /Contents 7 0 R >>").getBytes());
+		objects.add(("<< /Type /Font /Subtype /TrueType /BaseFont /Embedded "
+				+ "/Encoding /WinAnsiEncoding /FontDescriptor 5 0 R >>").getBytes());
+		objects.add(("<< /Type /FontDescriptor /FontName /Embedded /Flags 32 /ItalicAngle 0 "
+				+ "/FontBBox [0 -200 1000 900] /Ascent 900 /Descent -200 /CapHeight 700 /StemV 80 "
+				+ "/FontFile2 6 0 R >>").getBytes());
+		objects.add(createStream(font, "/Length1 " + font.length));
+		StringBuilder content = new StringBuilder();
+		for (int size = 12, y = 740; y > 100; size += 4, y -= size + 8) {
+			content.append("BT /F1 ").append(size).append(" Tf 50 ").append(y).append(" Td (").append(TEXT)
+					.append(") Tj ET\n");
+		}
+		objects.add(createStream(content.toString().getBytes(), ""));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("%PDF-1.4\n".getBytes());
+		int[] offsets = new int[objects.size()];
+		for (int i = 0; i < objects.size(); i++) {
+			offsets[i] = out.size();
+			out.write(((i + 1) + " 0 obj\n").getBytes());
+			out.write(objects.get(i));
+			out.write("\nendobj\n".getBytes());
+		}
+		int xref = out.size();
+		StringBuilder sb = new StringBuilder();
+		sb.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+		for (int offset : offsets) {
+			sb.append(String.format("%010d 00000 n \n", offset));
+		}
+		sb.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n");
+		sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+		out.write(sb.toString().getBytes());
+		return out.toByteArray();
+	}
+
+	private static byte[] createStream(byte[] data, String entries) throws Exception {
+		ByteArrayOutputStream object = new ByteArrayOutputStream();
+		object.write(("<< " + entries + " /Length " + data.length + " >>\nstream\n").getBytes());
+		object.write(data);
+		object.write("\nendstream".getBytes());
+		return object.toByteArray();
+	}
+
+	private static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (read < data.length) {
+				read += in.read(data, read, data.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+}